@@ -0,0 +1,192 @@
+package com.example.fieldnotes.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.arch.persistence.room.RoomDatabase;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of mixed read/write throughput. Fills a database with synthetic
+ * notebooks, then for a fixed time has one thread updating stops while two threads read the stops
+ * of random notebooks, the way an export reads while the user keeps logging. It runs once with
+ * the old rollback journal and once with the app's <code>DatabaseConfig</code>, and logs the
+ * operations per second of each, under the tag below.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class DatabaseThroughputBenchmark {
+
+    private static final String TAG = "DatabaseThroughput";
+    private static final String TEST_DB = "throughput_test_database";
+
+    static final int NOTEBOOKS = 50;
+    static final int STOPS_PER_NOTEBOOK = 200;
+    private static final int PICTURES_PER_STOP = 10;
+    private static final int NOTES_LENGTH = 2048;
+    private static final int READERS = 2;
+    private static final long RUN_MILLIS = 10000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void mixedReadWriteThroughput() throws InterruptedException {
+        DatabaseConfig before = new DatabaseConfig();
+        before.setJournalMode(RoomDatabase.JournalMode.TRUNCATE);
+        before.setSynchronous(DatabaseConfig.Synchronous.FULL);
+        before.setCacheSize(-2000);
+        before.setMmapSize(0);
+        before.setTempStore(DatabaseConfig.TempStore.DEFAULT);
+
+        long[] rollback = run(before);
+        context.deleteDatabase(TEST_DB);
+        long[] wal = run(new DatabaseConfig());
+
+        Log.i(TAG, "rollback journal: " + perSecond(rollback[0]) + " writes/s, "
+                + perSecond(rollback[1]) + " reads/s");
+        Log.i(TAG, "WAL + DatabaseConfig: " + perSecond(wal[0]) + " writes/s, "
+                + perSecond(wal[1]) + " reads/s");
+
+        assertTrue(rollback[0] > 0 && rollback[1] > 0);
+        assertTrue(wal[0] > 0 && wal[1] > 0);
+    }
+
+    /**
+     * Builds and fills a database with <code>config</code>, then runs the writer and readers
+     * against it for <code>RUN_MILLIS</code>.
+     *
+     * @return The number of writes and the number of reads completed, in that order.
+     */
+    private long[] run(DatabaseConfig config) throws InterruptedException {
+        final FieldNotesRoomDatabase db = FieldNotesRoomDatabase.build(context, TEST_DB, config);
+        populate(db.getOpenHelper().getWritableDatabase());
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong writes = new AtomicLong();
+        final AtomicLong reads = new AtomicLong();
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(1);
+                StopDao dao = db.stopDao();
+                while (running.get()) {
+                    long notebook = 1 + random.nextInt(NOTEBOOKS);
+                    long stop = stopId(notebook, random.nextInt(STOPS_PER_NOTEBOOK));
+                    dao.updateStop(stop, "stop " + stop, random.nextDouble(), random.nextDouble(),
+                            "edited " + random.nextInt(), stop, notebook);
+                    writes.incrementAndGet();
+                }
+            }
+        });
+        Thread[] readers = new Thread[READERS];
+        for (int i = 0; i < READERS; i++) {
+            final int seed = i + 2;
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    StopDao dao = db.stopDao();
+                    while (running.get()) {
+                        dao.getStopsByNotebookSynchronously(1 + random.nextInt(NOTEBOOKS));
+                        reads.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        writer.start();
+        for (Thread reader : readers)
+            reader.start();
+        Thread.sleep(RUN_MILLIS);
+        running.set(false);
+        writer.join();
+        for (Thread reader : readers)
+            reader.join();
+
+        db.close();
+        return new long[]{writes.get(), reads.get()};
+    }
+
+    /**
+     * Fills the database with synthetic notebooks, stops and pictures in one transaction. The
+     * notes are long, like transcribed voice notes, so the database ends up a realistic size.
+     */
+    static void populate(SupportSQLiteDatabase db) {
+        StringBuilder notes = new StringBuilder(NOTES_LENGTH);
+        while (notes.length() < NOTES_LENGTH)
+            notes.append("lorem ipsum dolor sit amet ");
+
+        SupportSQLiteStatement notebook = db.compileStatement("INSERT INTO notebooks_table VALUES (?, ?)");
+        SupportSQLiteStatement stop = db.compileStatement(
+                "INSERT INTO stops_table VALUES (?, ?, ?, ?, ?, ?, ?)");
+        SupportSQLiteStatement picture = db.compileStatement("INSERT INTO pictures_table VALUES (?, ?, ?, ?)");
+
+        long pictureId = 1;
+        db.beginTransaction();
+        try {
+            for (long n = 1; n <= NOTEBOOKS; n++) {
+                notebook.bindLong(1, n);
+                notebook.bindString(2, "notebook " + n);
+                notebook.executeInsert();
+
+                for (int s = 0; s < STOPS_PER_NOTEBOOK; s++) {
+                    long stopId = stopId(n, s);
+                    stop.bindLong(1, stopId);
+                    stop.bindString(2, "stop " + stopId);
+                    stop.bindLong(3, n);
+                    stop.bindDouble(4, 40.0 + s / 1000.0);
+                    stop.bindDouble(5, -75.0 - s / 1000.0);
+                    stop.bindString(6, notes.toString());
+                    stop.bindLong(7, stopId);
+                    stop.executeInsert();
+
+                    for (int p = 0; p < PICTURES_PER_STOP; p++) {
+                        picture.bindLong(1, pictureId);
+                        picture.bindLong(2, stopId);
+                        picture.bindString(3, "/sdcard/Pictures/Fieldnotes/" + pictureId + ".jpg");
+                        picture.bindString(4, "caption " + pictureId);
+                        picture.executeInsert();
+                        pictureId++;
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    static long stopId(long notebook, int index) {
+        return notebook * 1000000 + index;
+    }
+
+    private static long perSecond(long count) {
+        return count * 1000 / RUN_MILLIS;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.fieldnotes.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.Room;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.fieldnotes.java.NearbyStop;
+import com.example.fieldnotes.java.Notebook;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test that builds a version 3 database (the last version shipped before
+ * <code>FieldNotesMigrations</code> existed) filled with 100,000 pictures, then opens it through
+ * Room so every migration runs, and logs how long that took.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FieldNotesMigrationTest {
+
+    private static final String TAG = "FieldNotesMigrationTest";
+    private static final String TEST_DB = "migration_test_database";
+
+    private static final int NOTEBOOKS = 10;
+    private static final int STOPS_PER_NOTEBOOK = 100;
+    private static final int PICTURES_PER_STOP = 100;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrateFromVersion3KeepsDataAndAddsIndexes() {
+        createVersion3Database();
+
+        FieldNotesRoomDatabase db = Room.databaseBuilder(context, FieldNotesRoomDatabase.class, TEST_DB)
+                .addMigrations(FieldNotesMigrations.ALL)
+                .build();
+
+        long start = SystemClock.elapsedRealtime();
+        //opening the database is what runs the migrations
+        SupportSQLiteDatabase migrated = db.getOpenHelper().getWritableDatabase();
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Migrated " + (NOTEBOOKS * STOPS_PER_NOTEBOOK * PICTURES_PER_STOP)
+                + " pictures in " + elapsed + " ms");
+
+        assertEquals(NOTEBOOKS * STOPS_PER_NOTEBOOK * PICTURES_PER_STOP,
+                count(migrated, "SELECT COUNT(*) FROM pictures_table"));
+        assertEquals(NOTEBOOKS * STOPS_PER_NOTEBOOK, count(migrated, "SELECT COUNT(*) FROM stops_table"));
+
+        Set<String> indexes = indexNames(migrated);
+        assertTrue(indexes.contains("index_stops_table_parent_notebook_id_stop_time"));
+        assertTrue(indexes.contains("index_pictures_table_parent_stop_id"));
+
+        db.close();
+    }
+
+    @Test
+    public void migratedStopsAndCaptionsAreSearchable() {
+        createVersion3Database();
+
+        FieldNotesRoomDatabase db = Room.databaseBuilder(context, FieldNotesRoomDatabase.class, TEST_DB)
+                .addMigrations(FieldNotesMigrations.ALL)
+                .build();
+        SupportSQLiteDatabase migrated = db.getOpenHelper().getWritableDatabase();
+
+        //every stop's notes hold "notes", and every stop has pictures captioned "caption N"
+        assertEquals(NOTEBOOKS * STOPS_PER_NOTEBOOK,
+                count(migrated, "SELECT COUNT(*) FROM stops_fts WHERE stops_fts MATCH 'notes'"));
+        assertEquals(1, count(migrated, "SELECT COUNT(*) FROM stops_fts WHERE stops_fts MATCH 'captions:1'"));
+        assertEquals(1, SearchIndex.search(db.searchDao(), "stop 1000005").getHits().size());
+
+        //the triggers keep the index in step with deletes, including cascaded ones
+        db.notebookDao().deleteNotebook(1);
+        assertEquals((NOTEBOOKS - 1) * STOPS_PER_NOTEBOOK,
+                count(migrated, "SELECT COUNT(*) FROM stops_fts WHERE stops_fts MATCH 'notes'"));
+        assertEquals(0, SearchIndex.search(db.searchDao(), "stop 1000005").getHits().size());
+
+        db.close();
+    }
+
+    @Test
+    public void deletingMigratedNotebookCascadesToStopsAndPictures() {
+        createVersion3Database();
+
+        FieldNotesRoomDatabase db = Room.databaseBuilder(context, FieldNotesRoomDatabase.class, TEST_DB)
+                .addMigrations(FieldNotesMigrations.ALL)
+                .build();
+
+        long start = SystemClock.elapsedRealtime();
+        db.notebookDao().deleteNotebook(1);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Deleted a notebook of " + (STOPS_PER_NOTEBOOK * PICTURES_PER_STOP)
+                + " pictures in " + elapsed + " ms");
+
+        SupportSQLiteDatabase migrated = db.getOpenHelper().getWritableDatabase();
+        assertEquals((NOTEBOOKS - 1) * STOPS_PER_NOTEBOOK, count(migrated, "SELECT COUNT(*) FROM stops_table"));
+        assertEquals((NOTEBOOKS - 1) * STOPS_PER_NOTEBOOK * PICTURES_PER_STOP,
+                count(migrated, "SELECT COUNT(*) FROM pictures_table"));
+
+        db.close();
+    }
+
+    @Test
+    public void migratedStopsCanBeFoundByLocation() {
+        createVersion3Database();
+
+        FieldNotesRoomDatabase db = Room.databaseBuilder(context, FieldNotesRoomDatabase.class, TEST_DB)
+                .addMigrations(FieldNotesMigrations.ALL)
+                .build();
+        SupportSQLiteDatabase migrated = db.getOpenHelper().getWritableDatabase();
+        assertEquals(NOTEBOOKS * STOPS_PER_NOTEBOOK, count(migrated, "SELECT COUNT(*) FROM stop_cells_table"));
+
+        //stop s of every notebook is at (40 + s/1000, -75 - s/1000); stops 0 and 1 are within 200 m
+        List<NearbyStop> near = GeoIndex.nearest(db.stopDao(), 40.0, -75.0, 200, 100);
+        assertEquals(2 * NOTEBOOKS, near.size());
+        assertEquals(0, near.get(0).getDistance(), 1);
+
+        //the triggers move a stop's cell when it moves
+        long moved = near.get(0).getStopId();
+        db.stopDao().updateStop(moved, "moved", 10.0, 10.0, null, moved, near.get(0).getNotebookId());
+        assertEquals(2 * NOTEBOOKS - 1, GeoIndex.nearest(db.stopDao(), 40.0, -75.0, 200, 100).size());
+        assertEquals(1, GeoIndex.nearest(db.stopDao(), 10.0, 10.0, 200, 100).size());
+
+        db.close();
+    }
+
+    @Test
+    public void migratedRowsAreStampedAndChangesAreLogged() {
+        createVersion3Database();
+
+        FieldNotesRoomDatabase db = Room.databaseBuilder(context, FieldNotesRoomDatabase.class, TEST_DB)
+                .addMigrations(FieldNotesMigrations.ALL)
+                .build();
+        SupportSQLiteDatabase migrated = db.getOpenHelper().getWritableDatabase();
+
+        //the rows already there count as changed by the migration
+        assertEquals(0, count(migrated, "SELECT COUNT(*) FROM pictures_table WHERE last_modified = 0"));
+        assertTrue(indexNames(migrated).contains("index_stops_table_last_modified"));
+        long since = System.currentTimeMillis();
+        SystemClock.sleep(5);
+        assertEquals(0, db.stopDao().countChangedStops(since, Long.MAX_VALUE));
+
+        //an update stamps the one row it changes
+        db.stopDao().updateStop(1000000, "renamed", 40.0, -75.0, null, 1000000, 1);
+        assertEquals(1, db.stopDao().countChangedStops(since, Long.MAX_VALUE));
+        assertEquals(0, db.pictureDao().countChangedPictures(since, Long.MAX_VALUE));
+
+        //a delete is logged for every row it takes, including the cascaded ones
+        db.notebookDao().deleteNotebook(2);
+        assertEquals(1 + STOPS_PER_NOTEBOOK + STOPS_PER_NOTEBOOK * PICTURES_PER_STOP,
+                db.deletionDao().countDeletions(since, Long.MAX_VALUE));
+
+        //and forgotten if the row comes back
+        db.notebookDao().insert(new Notebook(2, "notebook 2"));
+        assertEquals(0, count(migrated, "SELECT COUNT(*) FROM deletions_table WHERE table_name = 'notebooks_table'"));
+        assertEquals(1, db.notebookDao().countChangedNotebooks(since, Long.MAX_VALUE));
+
+        db.close();
+    }
+
+    /**
+     * Creates the tables exactly as Room generated them for version 3 of the database, and fills
+     * them with synthetic data in a single transaction.
+     */
+    private void createVersion3Database() {
+        SQLiteDatabase db = context.openOrCreateDatabase(TEST_DB, Context.MODE_PRIVATE, null);
+        db.execSQL("CREATE TABLE IF NOT EXISTS `stops_table` (`stop_id` INTEGER NOT NULL, "
+                + "`stop_name` TEXT NOT NULL, `parent_notebook_id` INTEGER NOT NULL, "
+                + "`latitude` REAL NOT NULL, `longitude` REAL NOT NULL, `notes` TEXT, "
+                + "`stop_time` INTEGER NOT NULL, PRIMARY KEY(`stop_id`))");
+        db.execSQL("CREATE TABLE IF NOT EXISTS `notebooks_table` (`notebook_id` INTEGER NOT NULL, "
+                + "`notebook_name` TEXT NOT NULL, PRIMARY KEY(`notebook_id`))");
+        db.execSQL("CREATE TABLE IF NOT EXISTS `pictures_table` (`picture_id` INTEGER NOT NULL, "
+                + "`parent_stop_id` INTEGER NOT NULL, `file_path` TEXT, `caption` TEXT, "
+                + "PRIMARY KEY(`picture_id`))");
+
+        SQLiteStatement notebook = db.compileStatement("INSERT INTO notebooks_table VALUES (?, ?)");
+        SQLiteStatement stop = db.compileStatement("INSERT INTO stops_table VALUES (?, ?, ?, ?, ?, ?, ?)");
+        SQLiteStatement picture = db.compileStatement("INSERT INTO pictures_table VALUES (?, ?, ?, ?)");
+
+        long pictureId = 1;
+        db.beginTransaction();
+        try {
+            for (long n = 1; n <= NOTEBOOKS; n++) {
+                notebook.bindLong(1, n);
+                notebook.bindString(2, "notebook " + n);
+                notebook.executeInsert();
+
+                for (long s = 0; s < STOPS_PER_NOTEBOOK; s++) {
+                    long stopId = n * 1000000 + s;
+                    stop.bindLong(1, stopId);
+                    stop.bindString(2, "stop " + stopId);
+                    stop.bindLong(3, n);
+                    stop.bindDouble(4, 40.0 + s / 1000.0);
+                    stop.bindDouble(5, -75.0 - s / 1000.0);
+                    stop.bindString(6, "notes for stop " + stopId);
+                    stop.bindLong(7, stopId);
+                    stop.executeInsert();
+
+                    for (int p = 0; p < PICTURES_PER_STOP; p++) {
+                        picture.bindLong(1, pictureId);
+                        picture.bindLong(2, stopId);
+                        picture.bindString(3, "/sdcard/Pictures/Fieldnotes/" + pictureId + ".jpg");
+                        picture.bindString(4, "caption " + pictureId);
+                        picture.executeInsert();
+                        pictureId++;
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.setVersion(3);
+        db.close();
+    }
+
+    private static long count(SupportSQLiteDatabase db, String query) {
+        Cursor cursor = db.query(query);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static Set<String> indexNames(SupportSQLiteDatabase db) {
+        Set<String> names = new HashSet<>();
+        Cursor cursor = db.query("SELECT name FROM sqlite_master WHERE type = 'index'");
+        try {
+            while (cursor.moveToNext())
+                names.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.fieldnotes.database;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test of <code>NotebookStops</code> reading a notebook of several pages while
+ * <code>Stops</code> are deleted from it, as they can be while an export runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotebookStopsTest {
+
+    private static final String TEST_DB = "notebook_stops_test_database";
+
+    private static final long NOTEBOOK = 1556976130000L;
+    private static final int STOPS = 2 * NotebookStops.PAGE_SIZE + 10;
+
+    private Context context;
+    private FieldNotesRoomDatabase db;
+    private Notebook notebook;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        db = FieldNotesRoomDatabase.build(context, TEST_DB, new DatabaseConfig());
+
+        notebook = new Notebook(NOTEBOOK, "Boulder");
+        db.notebookDao().insert(notebook);
+        for (int i = STOPS - 1; i >= 0; i--) {
+            Stop stop = new Stop(stopId(i), "stop " + i, NOTEBOOK, null, 40.0, -105.0);
+            stop.setTime(NOTEBOOK + i);
+            db.stopDao().insert(stop);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void readsEveryStopOnceInTimeOrder() {
+        assertEquals(expected(new ArrayList<Long>()), readAll(new NotebookStops(
+                db.stopDao(), db.pictureDao(), notebook), -1, null));
+    }
+
+    @Test
+    public void deletingWrittenStopsDoesntSkipTheNextOne() {
+        //with an OFFSET, the next page would start five Stops late
+        List<Long> deleted = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            deleted.add(stopId(i));
+        List<Long> read = readAll(new NotebookStops(db.stopDao(), db.pictureDao(), notebook),
+                NotebookStops.PAGE_SIZE, deleted);
+
+        assertEquals(expected(new ArrayList<Long>()), read);
+    }
+
+    @Test
+    public void deletingUnwrittenStopsLeavesTheRest() {
+        List<Long> deleted = new ArrayList<>();
+        deleted.add(stopId(NotebookStops.PAGE_SIZE + 3));
+        deleted.add(stopId(STOPS - 1));
+        List<Long> read = readAll(new NotebookStops(db.stopDao(), db.pictureDao(), notebook),
+                NotebookStops.PAGE_SIZE, deleted);
+
+        assertEquals(expected(deleted), read);
+    }
+
+    @Test
+    public void startSkipsTheStopsAlreadyWritten() {
+        NotebookStops stops = new NotebookStops(db.stopDao(), db.pictureDao(), notebook);
+        stops.start(NotebookStops.PAGE_SIZE + 1);
+        StopWithPictures first = stops.next();
+        stops.close();
+        assertEquals(stopId(NotebookStops.PAGE_SIZE + 1), first.getStop().getUnixTime());
+    }
+
+    /**
+     * Reads every <code>Stop</code> from the start, deleting some once <code>deleteAfter</code>
+     * of them have been read.
+     */
+    private List<Long> readAll(NotebookStops stops, int deleteAfter, List<Long> delete) {
+        List<Long> read = new ArrayList<>();
+        stops.start(0);
+        StopWithPictures stop;
+        while ((stop = stops.next()) != null) {
+            read.add(stop.getStop().getUnixTime());
+            if (read.size() == deleteAfter) {
+                for (Long id : delete)
+                    db.stopDao().deleteStop(id);
+            }
+        }
+        stops.close();
+        return read;
+    }
+
+    /**
+     * The ids of every <code>Stop</code> in time order, but for those not expected to be read.
+     */
+    private static List<Long> expected(List<Long> missing) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < STOPS; i++) {
+            if (!missing.contains(stopId(i)))
+                ids.add(stopId(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Stop ids run backwards from their times, so the order can't come from the ids alone.
+     */
+    private static long stopId(int index) {
+        return NOTEBOOK + 10000 - index;
+    }
+}
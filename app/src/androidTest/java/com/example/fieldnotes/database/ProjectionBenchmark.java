@@ -0,0 +1,122 @@
+package com.example.fieldnotes.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of what the stop list costs to read with whole <code>Stops</code>
+ * (<code>SELECT *</code>) and with <code>StopSummaries</code> (the three columns the list shows).
+ * For each, it reads every stop of one notebook the way a page does and logs, under the tag
+ * below, the bytes of column data the cursor window had to hold and the bytes allocated on the
+ * reading thread.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ProjectionBenchmark {
+
+    private static final String TAG = "ProjectionBenchmark";
+    private static final String TEST_DB = "projection_test_database";
+
+    private static final String FULL =
+            "SELECT * FROM stops_table WHERE parent_notebook_id = ? ORDER BY stop_time, stop_id";
+    private static final String SUMMARY =
+            "SELECT stop_id, stop_name, stop_time FROM stops_table WHERE parent_notebook_id = ? ORDER BY stop_time, stop_id";
+
+    private static final int ROUNDS = 20;
+
+    private Context context;
+    private FieldNotesRoomDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        db = FieldNotesRoomDatabase.build(context, TEST_DB, new DatabaseConfig());
+        DatabaseThroughputBenchmark.populate(db.getOpenHelper().getWritableDatabase());
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void summaryReadsLessThanWholeStops() {
+        SupportSQLiteDatabase sql = db.getOpenHelper().getReadableDatabase();
+
+        long fullBytes = windowBytes(sql, FULL);
+        long summaryBytes = windowBytes(sql, SUMMARY);
+        long fullAllocated = allocated(sql, FULL);
+        long summaryAllocated = allocated(sql, SUMMARY);
+
+        Log.i(TAG, DatabaseThroughputBenchmark.STOPS_PER_NOTEBOOK + " stops, SELECT *: "
+                + fullBytes + " bytes in the window, " + fullAllocated + " bytes allocated per read");
+        Log.i(TAG, DatabaseThroughputBenchmark.STOPS_PER_NOTEBOOK + " stops, StopSummary: "
+                + summaryBytes + " bytes in the window, " + summaryAllocated + " bytes allocated per read");
+
+        assertTrue(summaryBytes < fullBytes);
+    }
+
+    /**
+     * Adds up the size of every value a query puts in the cursor window: 8 bytes for numbers, the
+     * UTF-8 length for text.
+     */
+    private static long windowBytes(SupportSQLiteDatabase sql, String query) {
+        long bytes = 0;
+        Cursor cursor = sql.query(query, new Object[]{1L});
+        try {
+            while (cursor.moveToNext()) {
+                for (int column = 0; column < cursor.getColumnCount(); column++) {
+                    if (cursor.getType(column) == Cursor.FIELD_TYPE_STRING)
+                        bytes += cursor.getString(column).getBytes().length;
+                    else
+                        bytes += 8;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads every row of a query, the way Room does when it fills a page, and returns the average
+     * number of bytes that allocated on this thread.
+     */
+    @SuppressWarnings("deprecation")
+    private static long allocated(SupportSQLiteDatabase sql, String query) {
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        for (int round = 0; round < ROUNDS; round++) {
+            Cursor cursor = sql.query(query, new Object[]{1L});
+            try {
+                while (cursor.moveToNext()) {
+                    for (int column = 0; column < cursor.getColumnCount(); column++) {
+                        if (cursor.getType(column) == Cursor.FIELD_TYPE_STRING)
+                            cursor.getString(column);
+                        else
+                            cursor.getLong(column);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocSize() / ROUNDS;
+    }
+}
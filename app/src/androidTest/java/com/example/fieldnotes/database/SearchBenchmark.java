@@ -0,0 +1,174 @@
+package com.example.fieldnotes.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.fieldnotes.java.SearchResults;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of search on 200,000 stops. Each term is searched for through
+ * <code>SearchIndex</code> and with the <code>LIKE '%term%'</code> scan of the names, notes and
+ * captions it replaces, and the median time of each is logged under the tag below. The terms range
+ * from a word in a few hundred stops to one in nearly half of them. The <code>LIKE</code> scan
+ * reads every match. The FTS search reads at most <code>SearchIndex.MAX_CANDIDATES</code> of them,
+ * so its time stops growing once a term is that common, and the log says which searches were cut
+ * short.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class SearchBenchmark {
+
+    private static final String TAG = "SearchBenchmark";
+    private static final String TEST_DB = "search_test_database";
+
+    private static final int NOTEBOOKS = 1000;
+    private static final int STOPS_PER_NOTEBOOK = 200;
+    private static final int WORDS_PER_NOTE = 60;
+    private static final int VOCABULARY = 5000;
+    private static final int RUNS = 9;
+    private static final long BUDGET_MILLIS = 50;
+
+    //"w12" turns up in nearly half the stops, "w345" in about one in fifty, "w4321" in a few hundred
+    private static final String[] TERMS = {"w12", "w345", "w4321", "w12 w345", "w43"};
+
+    private static final String LIKE = "SELECT s.stop_id FROM stops_table s WHERE s.stop_name LIKE ? "
+            + "OR s.notes LIKE ? OR EXISTS (SELECT 1 FROM pictures_table p "
+            + "WHERE p.parent_stop_id = s.stop_id AND p.caption LIKE ?)";
+
+    private Context context;
+    private FieldNotesRoomDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        db = FieldNotesRoomDatabase.build(context, TEST_DB, new DatabaseConfig());
+        populate(db.getOpenHelper().getWritableDatabase());
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void ftsIsFasterThanLikeAndWithinBudget() {
+        SupportSQLiteDatabase sql = db.getOpenHelper().getReadableDatabase();
+        SearchDao dao = db.searchDao();
+
+        for (String term : TERMS) {
+            long[] fts = new long[RUNS];
+            long[] like = new long[RUNS];
+            SearchResults results = null;
+            for (int run = 0; run < RUNS; run++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                results = SearchIndex.search(dao, term);
+                fts[run] = SystemClock.elapsedRealtimeNanos() - start;
+
+                start = SystemClock.elapsedRealtimeNanos();
+                like(sql, term.split(" ")[0]);
+                like[run] = SystemClock.elapsedRealtimeNanos() - start;
+            }
+            long ftsMillis = median(fts) / 1000000;
+            long likeMillis = median(like) / 1000000;
+            Log.i(TAG, "\"" + term + "\": " + results.getHits().size() + " hits"
+                    + (results.isTruncated() ? " (cut short)" : "") + ", FTS " + ftsMillis
+                    + " ms, LIKE " + likeMillis + " ms (medians of " + RUNS + ")");
+
+            assertTrue("FTS slower than LIKE for " + term, ftsMillis <= likeMillis);
+            assertTrue("FTS over budget for " + term, ftsMillis < BUDGET_MILLIS);
+        }
+    }
+
+    /**
+     * Runs the <code>LIKE</code> scan for one word and reads its results.
+     */
+    private static void like(SupportSQLiteDatabase sql, String word) {
+        String pattern = "%" + word + "%";
+        Cursor cursor = sql.query(LIKE, new Object[]{pattern, pattern, pattern});
+        try {
+            while (cursor.moveToNext())
+                cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Fills the database with notebooks of stops whose notes are random words, drawn so some are
+     * common and some rare, and one captioned picture per stop, in one transaction. The index is
+     * filled by its triggers as the rows go in, as it would be in the app.
+     */
+    private static void populate(SupportSQLiteDatabase db) {
+        Random random = new Random(1);
+        SupportSQLiteStatement notebook = db.compileStatement("INSERT INTO notebooks_table VALUES (?, ?)");
+        SupportSQLiteStatement stop = db.compileStatement(
+                "INSERT INTO stops_table VALUES (?, ?, ?, ?, ?, ?, ?)");
+        SupportSQLiteStatement picture = db.compileStatement("INSERT INTO pictures_table VALUES (?, ?, ?, ?)");
+
+        db.beginTransaction();
+        try {
+            for (long n = 1; n <= NOTEBOOKS; n++) {
+                notebook.bindLong(1, n);
+                notebook.bindString(2, "notebook " + n);
+                notebook.executeInsert();
+
+                for (int s = 0; s < STOPS_PER_NOTEBOOK; s++) {
+                    long stopId = n * 1000000 + s;
+                    StringBuilder notes = new StringBuilder();
+                    for (int w = 0; w < WORDS_PER_NOTE; w++)
+                        notes.append(" w").append(word(random));
+                    stop.bindLong(1, stopId);
+                    stop.bindString(2, "stop " + stopId);
+                    stop.bindLong(3, n);
+                    stop.bindDouble(4, 40.0 + s / 1000.0);
+                    stop.bindDouble(5, -75.0 - s / 1000.0);
+                    stop.bindString(6, notes.toString());
+                    stop.bindLong(7, stopId);
+                    stop.executeInsert();
+
+                    picture.bindLong(1, stopId);
+                    picture.bindLong(2, stopId);
+                    picture.bindString(3, "/sdcard/Pictures/Fieldnotes/" + stopId + ".jpg");
+                    picture.bindString(4, "w" + word(random) + " w" + word(random));
+                    picture.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Picks a word from the vocabulary, low numbers far more often than high ones, the way a few
+     * words make up most of any text.
+     */
+    private static int word(Random random) {
+        return (int) Math.min(VOCABULARY - 1, Math.floor(Math.pow(VOCABULARY, random.nextDouble())));
+    }
+}
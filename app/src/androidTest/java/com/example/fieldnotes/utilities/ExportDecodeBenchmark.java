@@ -0,0 +1,154 @@
+package com.example.fieldnotes.utilities;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.media.ExifInterface;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of the memory it takes to get one camera picture ready for an export:
+ * decoded at full size, the way the export used to, and with
+ * <code>PictureGetter.decodeScaled</code> at the default export resolution. A thread samples the
+ * Java and native heap while each runs, and the peak above where it started is logged under the
+ * tag below, with the time each took.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ExportDecodeBenchmark {
+
+    private static final String TAG = "ExportDecodeBenchmark";
+
+    //a 12 megapixel picture, the smallest our devices' cameras take
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    private File picture;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        picture = new File(context.getCacheDir(), "export_decode_test.jpg");
+        writeTestPicture(picture, WIDTH, HEIGHT, 3);
+    }
+
+    @After
+    public void tearDown() {
+        picture.delete();
+    }
+
+    @Test
+    public void scaledDecodeNeedsLessHeap() throws InterruptedException {
+        final String path = picture.getAbsolutePath();
+
+        long[] full = measure(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = BitmapFactory.decodeFile(path);
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 50, new ByteArrayOutputStream());
+                bitmap.recycle();
+            }
+        });
+        final int[] size = new int[2];
+        long[] scaled = measure(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = PictureGetter.decodeScaled(path, WIDTH, HEIGHT,
+                        ExportOptions.DEFAULT_MAX_LONG_EDGE, ExifInterface.ORIENTATION_NORMAL);
+                size[0] = bitmap.getWidth();
+                size[1] = bitmap.getHeight();
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 50, new ByteArrayOutputStream());
+                bitmap.recycle();
+            }
+        });
+
+        Log.i(TAG, "full size: peak " + full[0] / 1024 + " KiB, " + full[1] + " ms");
+        Log.i(TAG, "decodeScaled: peak " + scaled[0] / 1024 + " KiB, " + scaled[1] + " ms");
+
+        assertEquals(ExportOptions.DEFAULT_MAX_LONG_EDGE, Math.max(size[0], size[1]));
+        assertTrue(scaled[0] < full[0]);
+        //the full size picture alone is WIDTH * HEIGHT * 4 bytes
+        assertTrue(scaled[0] < (long) WIDTH * HEIGHT * 4);
+    }
+
+    /**
+     * Runs <code>work</code> while sampling the heap every millisecond.
+     *
+     * @return The peak bytes in use above where they started, and the milliseconds it took.
+     */
+    private static long[] measure(Runnable work) throws InterruptedException {
+        Runtime.getRuntime().gc();
+        final long base = heapInUse();
+        final AtomicLong peak = new AtomicLong();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    peak.set(Math.max(peak.get(), heapInUse() - base));
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        sampler.start();
+        long start = System.nanoTime();
+        work.run();
+        long millis = (System.nanoTime() - start) / 1000000;
+        running.set(false);
+        sampler.join();
+        return new long[]{peak.get(), millis};
+    }
+
+    /**
+     * Writes a JPEG of random circles, which compresses about as well as a photo does.
+     */
+    static void writeTestPicture(File file, int width, int height, long seed) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        Random random = new Random(seed);
+        for (int i = 0; i < 500; i++) {
+            paint.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            canvas.drawCircle(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(300), paint);
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        out.close();
+        bitmap.recycle();
+    }
+
+    /**
+     * Bytes in use on the Java heap and the native heap; pixel data lives on the first before
+     * Android 8.0 and on the second since.
+     */
+    private static long heapInUse() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.fieldnotes.utilities;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of the RTF export of a 500 picture notebook with 1, 2, 4 and 8 workers
+ * preparing the pictures. The pictures are 12 megapixels, so every one of them is decoded and
+ * scaled down. Logs the wall time of each export under the tag below, and checks that every
+ * number of workers writes exactly the same document.
+ *
+ * To keep the setup short, the 500 pictures share PICTURE_FILES files, which will mostly be in
+ * the page cache; the times are for decoding and writing, not for reading the storage.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ExportPipelineBenchmark {
+
+    private static final String TAG = "ExportPipelineBenchmark";
+
+    private static final int STOPS = 100;
+    private static final int PICTURES_PER_STOP = 5;
+    private static final int PICTURE_FILES = 10;
+    private static final int[] WORKERS = {1, 2, 4, 8};
+
+    private List<File> files = new ArrayList<>();
+    private NotebookWithStopsAndPictures notebook;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        for (int i = 0; i < PICTURE_FILES; i++) {
+            File file = new File(context.getCacheDir(), "export_pipeline_test_" + i + ".jpg");
+            ExportDecodeBenchmark.writeTestPicture(file, 4000, 3000, i);
+            files.add(file);
+        }
+
+        List<StopWithPictures> stops = new ArrayList<>();
+        long time = 1;
+        for (int s = 0; s < STOPS; s++) {
+            StopWithPictures stop = new StopWithPictures();
+            stop.setStop(new Stop(time++, "stop " + s, 0, "notes " + s, 40.0, -75.0));
+            List<Picture> pictures = new ArrayList<>();
+            for (int p = 0; p < PICTURES_PER_STOP; p++) {
+                File file = files.get((s * PICTURES_PER_STOP + p) % PICTURE_FILES);
+                pictures.add(new Picture(time++, file.getAbsolutePath(), "caption " + p));
+            }
+            stop.setPictures(pictures);
+            stops.add(stop);
+        }
+        notebook = new NotebookWithStopsAndPictures();
+        notebook.setNotebook(new Notebook(0, "benchmark"));
+        notebook.setStops(stops);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : files)
+            file.delete();
+    }
+
+    @Test
+    public void exportWallTimeByWorkers() throws IOException {
+        long firstChecksum = 0;
+        for (int workers : WORKERS) {
+            ExportOptions options = new ExportOptions();
+            options.setWorkers(workers);
+            options.setMaxBitmaps(workers);
+
+            ChecksumWriter out = new ChecksumWriter();
+            BufferedWriter writer = new BufferedWriter(out);
+            long start = System.nanoTime();
+            RtfUtility.generateRichText(notebook, options, writer);
+            writer.flush();
+            long millis = (System.nanoTime() - start) / 1000000;
+
+            Log.i(TAG, workers + " workers: " + millis + " ms for "
+                    + STOPS * PICTURES_PER_STOP + " pictures, " + out.length / 1024 + " KiB");
+            if (workers == WORKERS[0])
+                firstChecksum = out.crc.getValue();
+            else
+                assertEquals(firstChecksum, out.crc.getValue());
+        }
+    }
+
+    /**
+     * Keeps a checksum and a count of what it is given, and none of the text.
+     */
+    private static class ChecksumWriter extends Writer {
+
+        private final CRC32 crc = new CRC32();
+        private long length;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++)
+                crc.update(cbuf[i]);
+            length += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
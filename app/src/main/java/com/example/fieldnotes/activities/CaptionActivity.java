@@ -212,7 +212,7 @@ public class CaptionActivity extends AppCompatActivity {
 
     /**
      * Method that corresponds to save button in activity, saves picture and caption in database.
-     * Updates database synchronously.
+     * The insert is queued for the database's writer thread, so this returns right away.
      */
     private void save() {
         EditText captionField = (EditText) findViewById(R.id.caption);
@@ -3,42 +3,46 @@ package com.example.fieldnotes.activities;
 /*
 DEVELOPER NOTES:
 
-This class upon creation immediately calls the Notebook class's "deep" constructor. See the
-Notebook class for documentation on that. It essentially returns the Notebook from the
-database containing all Stops with all the Stops' pictures.
-
-RtfUtility.createRTF needs to run in its own thread. IT CANNOT RUN ON THE MAIN UI THREAD OR THE
-APP WILL CRASH. When the thread it done generating the RTF, it calls the method complete.
-
-The complete method returns control to the main UI thread, so the user can interact with it
-again. This generates an implicit intent. That is, any apps that have capabilities to share
-an RTF file answers the intent. A popup generated by the OS will show up letting the user choose
-which app they want to share that RTF with. The activity ends after this popup displays.
-
-If this activity is stopped, the app finishes. If the RTF thread ends while this app is
-not active, the app will likely crash, so it's best to end the activity.
+This class upon creation asks ExportService to export the Notebook, then shows how far along the
+export is: a progress bar, which Stop it is on, and a button to cancel it. The export itself runs
+in the service, not in this activity, so the user can leave the app while it runs; the service
+shows the same progress in a notification, and if the process is killed, it carries on from the
+last Stop it finished when Android restarts it (see ExportService.)
+
+While this activity is started, it listens to the service. The listener is always called on the
+main thread. When the export is done, the method complete generates an implicit intent. That is,
+any apps that have capabilities to share the document (RTF, DOCX, PDF, map or data files)
+answers the intent. A popup generated by the OS will show up letting the user choose which app
+they want to share it with. The app gets a content:// URI for the file from ExportProvider, and permission to read just
+that. The activity ends after this popup displays.
+
+A data export (see DataUtility) comes here too, with ExportService.ALL_DATA for its id and the
+time to export the changes since in SINCE.
+
+If the export ends while this activity is stopped, the service leaves a notification that shares
+the file instead, and the activity finishes as soon as it is started again.
  */
 
-import android.arch.lifecycle.ViewModelProviders;
 import android.content.Intent;
-import android.net.Uri;
 import android.os.Bundle;
-import android.os.StrictMode;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
-import android.view.WindowManager;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
 
 import com.example.fieldnotes.R;
-import com.example.fieldnotes.database.FieldNotesViewModel;
-import com.example.fieldnotes.java.Notebook;
-import com.example.fieldnotes.utilities.RtfUtility;
+import com.example.fieldnotes.providers.ExportProvider;
+import com.example.fieldnotes.services.ExportService;
+import com.example.fieldnotes.utilities.DataUtility;
 
 import java.io.File;
 
 /**
- * An <code>Activity</code> that displays a loading bar while the user waits for
- * the app to export the passed <code>Notebook</code> to an RTF document. Finishes once the
- * the document is finished generating.
+ * An <code>Activity</code> that displays a progress bar while the user waits for
+ * the app to export the passed <code>Notebook</code> to an RTF, DOCX or PDF document. Finishes once
+ * the document is finished generating, or the export is cancelled.
  *
  * @author Steven Hricenak (2019)
  */
@@ -46,71 +50,104 @@ public class ExportActivity extends AppCompatActivity {
 
     private static final String TAG = "ExportUtility";
     private static final String THIS_UNIX = "Unix Time";
+    public static final String TARGET_BYTES = "Target Bytes";
+    public static final String FORMAT = "Format";
+    public static final String SINCE = "Since";
 
-    private FieldNotesViewModel viewModel;
-
-    private Notebook notebook;
+    private long unixTime;
+    private boolean rows;
+    private boolean starting;
+    private ProgressBar progressBar;
+    private TextView progressText;
+    private Button cancelButton;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_export);
-        getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
-        viewModel = ViewModelProviders.of(this).get(FieldNotesViewModel.class);
+        progressBar = findViewById(R.id.exportload);
+        progressText = findViewById(R.id.exportprogress);
+        cancelButton = findViewById(R.id.exportcancel);
 
-        long unixTime = getIntent().getLongExtra(THIS_UNIX, 0);
+        unixTime = getIntent().getLongExtra(THIS_UNIX, 0);
+        String format = getIntent().getStringExtra(FORMAT);
+        rows = DataUtility.isDataFormat(format);
+        cancelButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                cancelButton.setEnabled(false);
+                ExportService.cancel(ExportActivity.this, unixTime);
+            }
+        });
+
+        //only once; after a rotation the export is already running
+        if (savedInstanceState == null) {
+            if (rows)
+                ExportService.exportData(this, format, getIntent().getLongExtra(SINCE, 0));
+            else
+                ExportService.export(this, unixTime, getIntent().getLongExtra(TARGET_BYTES, 0), format);
+            starting = true;
+        }
+    }
 
-        notebook = new Notebook(unixTime, viewModel);
+    /**
+     * Starts listening to the export. If it ended while this <code>Activity</code> was stopped,
+     * the notification has the result, so the <code>Activity</code> is finished.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        ExportService.setListener(new ExportService.Listener() {
+            @Override
+            public void onProgress(long notebookId, int stopsDone, int stops, int picturesDone, int pictures) {
+                if (notebookId != unixTime)
+                    return;
+                progressBar.setIndeterminate(false);
+                progressBar.setMax(stops + pictures);
+                progressBar.setProgress(stopsDone + picturesDone);
+                progressText.setText(getString(rows ? R.string.export_rows : R.string.export_stops, stopsDone, stops));
+            }
 
-        new Thread(new Runnable() {
-            public void run() {
-                File file = RtfUtility.createRTF(notebook);
-                complete(file);
+            @Override
+            public void onFinished(long notebookId, File file) {
+                if (notebookId == unixTime)
+                    complete(file);
             }
-        }).start();
+        });
+
+        //the service hasn't seen the Intent from onCreate yet
+        if (!starting && !ExportService.isExporting(unixTime))
+            finish();
     }
 
     /**
-     * When this <code>Activity</code> is stopped, it is finished, to prevent any issues with
-     * threads.
+     * Stops listening to the export, which goes on in the background.
      */
     @Override
-    protected void onStop(){
+    protected void onStop() {
         super.onStop();
-        finish();
+        ExportService.setListener(null);
+        starting = false;
     }
 
     /**
-     * Called once the file is done being generated. Sends control back to the main thread so
-     * <code>finish</code> can be called. Creates an implicit <code>Intent</code> for sharing
-     * a file.
+     * Called on the main thread once the export is over. Creates an implicit
+     * <code>Intent</code> for sharing a file, then finishes.
      *
-     * @param file The RTF generated.
+     * @param file The document generated, or null if the export failed or was cancelled.
      */
-    private void complete(final File file){
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                if (file == null) {
-                    Log.e(TAG, "RTF could not be generated.");
-                    finish();
-                }
-
-                StrictMode.VmPolicy.Builder builder = new StrictMode.VmPolicy.Builder();
-                StrictMode.setVmPolicy(builder.build());
-
-                Intent intent = new Intent();
-                intent.setAction(Intent.ACTION_SEND);
-                intent.setType("text/plain");
-                Uri uri = Uri.fromFile(file);
-                intent.putExtra(Intent.EXTRA_STREAM, uri);
-
-                if (intent.resolveActivity(getPackageManager()) != null)
-                    startActivity(intent);
-                finish();
-            }
-        });
+    private void complete(File file) {
+        if (file == null) {
+            Log.e(TAG, "Document could not be generated.");
+            finish();
+            return;
+        }
+
+        Intent intent = ExportProvider.shareIntent(ExportProvider.getFileUri(file));
+        if (intent.resolveActivity(getPackageManager()) != null)
+            startActivity(intent);
+        finish();
     }
 
 }
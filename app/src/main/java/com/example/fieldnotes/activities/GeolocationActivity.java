@@ -20,7 +20,8 @@ are all setting up Google's API. The code isn't too hard to follow.
 startLocationUpdates starts looking for information from the GPS services. It checks every
 0.1 seconds for information from the API on locational information. When onChangedLocation
 is called, it returns calls returnGeolocation which packs the latitude and longitude into
-an intent to be returned to the Stop Activity.
+an intent to be returned to the Stop Activity. It also remembers that fix as the app's last known
+location (see LocationUtility,) which the "stops near here" search starts from.
 
 If any error occurs during setting up the API or getting the location, exitActivity is called
 and the appropriate error message is displayed to the user in a Toast.
@@ -49,6 +50,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
 import com.example.fieldnotes.R;
+import com.example.fieldnotes.utilities.LocationUtility;
 import com.example.fieldnotes.utilities.PermissionsUtility;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
@@ -266,6 +268,7 @@ public class GeolocationActivity extends AppCompatActivity implements
      * the the <code>Stops</code> screen.
      */
     private void returnGeolocation() {
+        LocationUtility.saveLastLocation(this, latitude, longitude);
         Intent intent = new Intent();
         intent.putExtra("LONGITUDE", longitude);
         intent.putExtra("LATITUDE", latitude);
@@ -16,10 +16,13 @@ But if ACTION_UP happens then we determine the notebook where the user clicked b
 that was clicked and retrieving the unixTime from it.
 */
 
+import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -30,6 +33,7 @@ import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.text.InputType;
+import android.text.format.DateUtils;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
@@ -40,14 +44,20 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.fieldnotes.R;
+import com.example.fieldnotes.database.DatabaseCallback;
 import com.example.fieldnotes.database.FieldNotesViewModel;
 import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookSummary;
+import com.example.fieldnotes.providers.ExportProvider;
+import com.example.fieldnotes.services.ExportService;
+import com.example.fieldnotes.utilities.DataUtility;
+import com.example.fieldnotes.utilities.DocxUtility;
+import com.example.fieldnotes.utilities.GeoUtility;
 import com.example.fieldnotes.utilities.KeyboardUtility;
+import com.example.fieldnotes.utilities.PdfUtility;
 import com.example.fieldnotes.utilities.PermissionsUtility;
+import com.example.fieldnotes.utilities.RtfUtility;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
 
 /**
  * The main <code>Activity</code> of the app, and the first thing displayed when the app is
@@ -63,33 +73,19 @@ public class MainActivity extends AppCompatActivity {
     //constants
     private static final String THIS_UNIX = "Unix Time";
 
-    //comparator classes for sorting notebooks by name and date
-    private final Comparator<Notebook> nameSort = new Comparator<Notebook>() {
+    private FieldNotesViewModel viewModel;
+    private NotebookViewAdapter adapter;
+
+    //the paged list of notebooks on screen; the database sorts it, by name or by date
+    private LiveData<PagedList<NotebookSummary>> shownNotebooks;
+    private boolean sortByName;
+    private final Observer<PagedList<NotebookSummary>> notebooksObserver = new Observer<PagedList<NotebookSummary>>() {
         @Override
-        public int compare(Notebook o1, Notebook o2) {
-            String name1 = o1.getNotebookName();
-            String name2 = o2.getNotebookName();
-            return name1.compareTo(name2);
-        }
-    };
-    private final Comparator<Notebook> dateSort = new Comparator<Notebook>() {
-        @Override
-        public int compare(Notebook o1, Notebook o2) {
-            long time1 = o1.getUnixTime();
-            long time2 = o2.getUnixTime();
-            if (time1 > time2) {
-                return 1;
-            } else if (time1 < time2) {
-                return -1;
-            } else {
-                return 0;
-            }
+        public void onChanged(@Nullable final PagedList<NotebookSummary> notebooks) {
+            adapter.submitList(notebooks);
         }
     };
 
-    private FieldNotesViewModel viewModel;
-    private NotebookViewAdapter adapter;
-
     //needs to save view where the keyboard is open to close it
     private View viewWithKeyboard;
 
@@ -144,7 +140,7 @@ public class MainActivity extends AppCompatActivity {
                     case MotionEvent.ACTION_UP:
                         if (isOnClick) {
                             LinearLayout layout = (LinearLayout) recyclerView.findChildViewUnder(motionEvent.getX(), motionEvent.getY());
-                            if (layout != null) {
+                            if (layout != null && isLoaded(layout)) {
                                 TextView notebookUnix = (TextView) layout.getChildAt(2);
                                 long notebookUnixTime = Long.parseLong(notebookUnix.getText().toString());
                                 openNotebook(notebookUnixTime);
@@ -169,13 +165,32 @@ public class MainActivity extends AppCompatActivity {
         viewModel = ViewModelProviders.of(this).get(FieldNotesViewModel.class);
 
         //set an observer on the notebook data so the app knows to update the data when changed
-        viewModel.getNotebooks().observe(this, new Observer<List<Notebook>>() {
-            @Override
-            public void onChanged(@Nullable final List<Notebook> notebooks) {
-                // Update the cached copy of the words in the adapter.
-                adapter.setNotebooks(notebooks);
-            }
-        });
+        showNotebooks(false);
+    }
+
+    /**
+     * Shows the paged list of <code>Notebooks</code> in the given order, replacing the one on
+     * screen.
+     *
+     * @param byName True to sort by name, false to sort by date.
+     */
+    private void showNotebooks(boolean byName) {
+        if (shownNotebooks != null)
+            shownNotebooks.removeObserver(notebooksObserver);
+        sortByName = byName;
+        shownNotebooks = viewModel.getPagedNotebooks(byName);
+        shownNotebooks.observe(this, notebooksObserver);
+    }
+
+    /**
+     * Whether a row of a notebook list has its data yet. Rows of a paged list that are still
+     * placeholders have no unix time to act on.
+     *
+     * @param item The row's layout.
+     * @return True if the row holds a <code>Notebook</code>.
+     */
+    private static boolean isLoaded(LinearLayout item) {
+        return ((TextView) item.getChildAt(2)).length() > 0;
     }
 
     /**
@@ -201,6 +216,18 @@ public class MainActivity extends AppCompatActivity {
         // as you specify a parent activity in AndroidManifest.xml.
         int id = item.getItemId();
 
+        //search is offered even before any notebooks exist
+        if (id == R.id.action_search) {
+            startActivity(new Intent(this, SearchActivity.class));
+            return true;
+        }
+
+        //so is the data export, since deleting the last notebook is a change too
+        if (id == R.id.action_export_data) {
+            chooseDataFormat();
+            return true;
+        }
+
         //if there are no notebooks then there are no options
         if (adapter.getItemCount() > 0) {
             //three menu options: rename, delete, and reorder
@@ -212,6 +239,8 @@ public class MainActivity extends AppCompatActivity {
                 reorderNotebook(item);
             } else if (id == R.id.action_export) {
                 exportNotebook();
+            } else if (id == R.id.action_export_map) {
+                chooseMapFormat(ExportService.ALL_NOTEBOOKS);
             }
         }
         return super.onOptionsItemSelected(item);
@@ -301,7 +330,7 @@ public class MainActivity extends AppCompatActivity {
                     case MotionEvent.ACTION_UP:
                         if (isOnClick) {
                             LinearLayout layout = (LinearLayout) recyclerView.findChildViewUnder(motionEvent.getX(), motionEvent.getY());
-                            if (layout != null) {
+                            if (layout != null && isLoaded(layout)) {
                                 TextView notebookUnix = (TextView) layout.getChildAt(2);
                                 renameNotebookText(Long.parseLong(notebookUnix.getText().toString()));
                             }
@@ -322,11 +351,11 @@ public class MainActivity extends AppCompatActivity {
         final NotebookViewAdapter renameAdapter = new NotebookViewAdapter(this);
         notebookView.setAdapter(renameAdapter);
         notebookView.setLayoutManager(new LinearLayoutManager(this));
-        viewModel.getNotebooks().observe(this, new Observer<List<Notebook>>() {
+        viewModel.getPagedNotebooks(sortByName).observe(this, new Observer<PagedList<NotebookSummary>>() {
             @Override
-            public void onChanged(@Nullable final List<Notebook> notebooks) {
+            public void onChanged(@Nullable final PagedList<NotebookSummary> notebooks) {
                 // Update the cached copy of the words in the adapter.
-                renameAdapter.setNotebooks(notebooks);
+                renameAdapter.submitList(notebooks);
             }
         });
 
@@ -348,12 +377,26 @@ public class MainActivity extends AppCompatActivity {
      * @param notebookUnix unix time of selected notebook in string format
      */
     private void renameNotebookText(final long notebookUnix) {
+        viewModel.getNotebookByUnixTime(notebookUnix, new DatabaseCallback<Notebook>() {
+            @Override
+            public void onComplete(Notebook notebook) {
+                if (notebook != null)
+                    renameNotebookText(notebook);
+            }
+        });
+    }
+
+    /**
+     * Displays a popup prompting the user for the new name for the given
+     * <code>Notebook</code>, once it has been loaded from the database.
+     *
+     * @param notebook The <code>Notebook</code> to rename.
+     */
+    private void renameNotebookText(final Notebook notebook) {
         final AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setCancelable(true);
         builder.setTitle("Rename Notebook");
 
-        final Notebook notebook = viewModel.getNotebookByUnixTime(notebookUnix);
-
         //create text field and auto populate
         final EditText renameTextField = new EditText(this);
         renameTextField.append(notebook.getNotebookName());
@@ -364,7 +407,7 @@ public class MainActivity extends AppCompatActivity {
             public void onClick(DialogInterface dialog, int which) {
                 KeyboardUtility.forceHideKeyboard(MainActivity.this, renameTextField);
                 notebook.setNotebookName(renameTextField.getText().toString());
-                viewModel.updateSynchronously(notebook);
+                viewModel.update(notebook);
             }
         });
         builder.setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
@@ -411,7 +454,7 @@ public class MainActivity extends AppCompatActivity {
                             float xValue = motionEvent.getX();
                             float yValue = motionEvent.getY();
                             LinearLayout layout = (LinearLayout) recyclerView.findChildViewUnder(xValue, yValue);
-                            if (layout != null) {
+                            if (layout != null && isLoaded(layout)) {
                                 final TextView notebookUnix = (TextView) layout.getChildAt(2);
                                 final TextView notebookName = (TextView) layout.getChildAt(0);
                                 //popup that confirms if user really wants to delete notebook
@@ -422,8 +465,12 @@ public class MainActivity extends AppCompatActivity {
                                             public void onClick(DialogInterface dialog, int whichButton) {
                                                 long notebookUnixTime = Long.parseLong(notebookUnix.getText().toString());
                                                 //deletes notebook from database object, which will cascade changes to RecyclerViews
-                                                Notebook notebook = viewModel.getNotebookByUnixTime(notebookUnixTime);
-                                                viewModel.delete(notebook);
+                                                viewModel.delete(new Notebook(notebookUnixTime), new DatabaseCallback<Void>() {
+                                                    @Override
+                                                    public void onComplete(Void result) {
+                                                        Toast.makeText(MainActivity.this, "Deleted " + notebookName.getText(), Toast.LENGTH_SHORT).show();
+                                                    }
+                                                });
                                             }
                                         })
                                         .setNegativeButton(android.R.string.no, null).show();
@@ -446,11 +493,11 @@ public class MainActivity extends AppCompatActivity {
         final NotebookViewAdapter renameAdapter = new NotebookViewAdapter(this);
         notebookView.setAdapter(renameAdapter);
         notebookView.setLayoutManager(new LinearLayoutManager(this));
-        viewModel.getNotebooks().observe(this, new Observer<List<Notebook>>() {
+        viewModel.getPagedNotebooks(sortByName).observe(this, new Observer<PagedList<NotebookSummary>>() {
             @Override
-            public void onChanged(@Nullable final List<Notebook> notebooks) {
+            public void onChanged(@Nullable final PagedList<NotebookSummary> notebooks) {
                 // Update the cached copy of the words in the adapter.
-                renameAdapter.setNotebooks(notebooks);
+                renameAdapter.submitList(notebooks);
             }
         });
 
@@ -466,7 +513,8 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Sorts adapter for RecyclerView based on global Comparator objects.
+     * Switches the list of <code>Notebooks</code> between sorting by name and by date. The
+     * sorting is done by the database, so only the rows on screen are loaded again.
      *
      * @param item menu item that was selected by user
      */
@@ -474,25 +522,11 @@ public class MainActivity extends AppCompatActivity {
         //if title is reorder by name
         if (getResources().getString(R.string.action_reorder_name).equals(item.getTitle().toString())) {
             item.setTitle(R.string.action_reorder_date);
-            //gets database object
-            viewModel.getNotebooks().observe(this, new Observer<List<Notebook>>() {
-                @Override
-                public void onChanged(@Nullable final List<Notebook> notebooks) {
-                    Collections.sort(notebooks, nameSort);
-                    adapter.setNotebooks(notebooks);
-                }
-            });
+            showNotebooks(true);
             //if title is reorder by date
         } else {
             item.setTitle(R.string.action_reorder_name);
-            //gets database object
-            viewModel.getNotebooks().observe(this, new Observer<List<Notebook>>() {
-                @Override
-                public void onChanged(@Nullable final List<Notebook> notebooks) {
-                    Collections.sort(notebooks, dateSort);
-                    adapter.setNotebooks(notebooks);
-                }
-            });
+            showNotebooks(false);
         }
     }
 
@@ -500,8 +534,9 @@ public class MainActivity extends AppCompatActivity {
      * Handles when the user chooses "Export" from the dropdown menu. Opens a scroll popup
      * that lists all the names of the <code>Notebooks</code>. This method simply handles
      * getting which <code>Notebook</code> the user selects, and then sends its
-     * <code>unixTime</code> to the <code>sendToExportActivity</code> method to
-     * send the user to the <code>ExportActivity</code>.
+     * <code>unixTime</code> to the <code>chooseExportFormat</code> method, which asks what kind
+     * of document to make and how big it can be, and sends the user to the
+     * <code>ExportActivity</code>.
      */
     private void exportNotebook() {
         final AlertDialog optionDialog = new AlertDialog.Builder(this).create();
@@ -530,10 +565,10 @@ public class MainActivity extends AppCompatActivity {
                     case MotionEvent.ACTION_UP:
                         if (isOnClick) {
                             LinearLayout layout = (LinearLayout) recyclerView.findChildViewUnder(motionEvent.getX(), motionEvent.getY());
-                            if (layout != null) {
+                            if (layout != null && isLoaded(layout)) {
                                 TextView notebookUnix = (TextView) layout.getChildAt(2);
                                 optionDialog.dismiss();
-                                sendToExportActivity(Long.parseLong(notebookUnix.getText().toString()));
+                                chooseExportFormat(Long.parseLong(notebookUnix.getText().toString()));
 
                             }
                         }
@@ -553,11 +588,11 @@ public class MainActivity extends AppCompatActivity {
         final NotebookViewAdapter exportAdapter = new NotebookViewAdapter(this);
         notebookView.setAdapter(exportAdapter);
         notebookView.setLayoutManager(new LinearLayoutManager(this));
-        viewModel.getNotebooks().observe(this, new Observer<List<Notebook>>() {
+        viewModel.getPagedNotebooks(sortByName).observe(this, new Observer<PagedList<NotebookSummary>>() {
             @Override
-            public void onChanged(@Nullable final List<Notebook> notebooks) {
+            public void onChanged(@Nullable final PagedList<NotebookSummary> notebooks) {
                 // Update the cached copy of the words in the adapter.
-                exportAdapter.setNotebooks(notebooks);
+                exportAdapter.submitList(notebooks);
             }
         });
 
@@ -572,9 +607,198 @@ public class MainActivity extends AppCompatActivity {
         optionDialog.show();
     }
 
-    private void sendToExportActivity(long unixTime) {
+    /**
+     * Asks the user whether to export an RTF document, which any word processor opens, a DOCX
+     * one, which holds the pictures in half the space, map data for GIS tools, or a PDF document,
+     * for reading and printing. Then calls <code>chooseExportSize</code>, or <code>chooseMapFormat</code> for map data.
+     *
+     * @param unixTime The <code>unixTime</code> of the <code>Notebook</code> to export.
+     */
+    private void chooseExportFormat(final long unixTime) {
+        //null for map data, which has formats of its own
+        final String[] extensions = {RtfUtility.EXTENSION, DocxUtility.EXTENSION, null, PdfUtility.EXTENSION};
+        String[] formats = getResources().getStringArray(R.array.export_formats);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_format)
+                .setItems(formats, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        if (extensions[which] == null)
+                            chooseMapFormat(unixTime);
+                        else
+                            chooseExportSize(unixTime, extensions[which]);
+                    }
+                })
+                .setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Asks the user which map format to export the located <code>Stops</code> in: GeoJSON, KML
+     * or GPX. Then calls <code>chooseExportSize</code>.
+     *
+     * @param unixTime The <code>unixTime</code> of the <code>Notebook</code> to export, or
+     *                 <code>ExportService.ALL_NOTEBOOKS</code> for every one.
+     */
+    private void chooseMapFormat(final long unixTime) {
+        final String[] extensions = {GeoUtility.GEOJSON, GeoUtility.KML, GeoUtility.GPX};
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_map_format)
+                .setItems(R.array.export_map_formats, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        chooseExportSize(unixTime, extensions[which]);
+                    }
+                })
+                .setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Asks the user how big the document can be, full quality or small enough to email, and
+     * whether to save it or share it straight away. A PDF is drawn at the size its pictures take
+     * on the page, and map data has no pictures, so for those only the second is asked. Saving calls
+     * <code>sendToExportActivity</code> with the size chosen; sharing hands the other app a
+     * document from <code>ExportProvider</code> that is generated as it reads it, with no file.
+     *
+     * @param unixTime The <code>unixTime</code> of the <code>Notebook</code> to export.
+     * @param format   The extension of the document: <code>RtfUtility.EXTENSION</code>,
+     *                 <code>DocxUtility.EXTENSION</code>, <code>PdfUtility.EXTENSION</code> or
+     *                 a <code>GeoUtility</code> map format.
+     */
+    private void chooseExportSize(final long unixTime, final String format) {
+        final int[] megabytes = getResources().getIntArray(R.array.export_size_megabytes);
+        final int[] chosen = {0};
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        if (PdfUtility.EXTENSION.equals(format)) {
+            builder.setTitle(R.string.export_pdf);
+        } else if (GeoUtility.isGeoFormat(format)) {
+            builder.setTitle(R.string.export_map);
+        } else {
+            builder.setTitle(R.string.export_size)
+                    .setSingleChoiceItems(R.array.export_sizes, 0, new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            chosen[0] = which;
+                        }
+                    });
+        }
+        builder.setPositiveButton(R.string.export_save, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        sendToExportActivity(unixTime, megabytes[chosen[0]] * 1024L * 1024L, format);
+                    }
+                })
+                .setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                    }
+                });
+        if (ExportProvider.canStream()) {
+            builder.setNeutralButton(R.string.export_send, new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    Uri uri = ExportProvider.getNotebookUri(unixTime, megabytes[chosen[0]] * 1024L * 1024L, format);
+                    startActivity(Intent.createChooser(ExportProvider.shareIntent(uri),
+                            getString(R.string.export_send)));
+                }
+            });
+        }
+        builder.show();
+    }
+
+    /**
+     * Asks the user whether to export the data of every notebook as CSV, for spreadsheets, or
+     * as newline-delimited JSON. Then calls <code>chooseDataRange</code>.
+     */
+    private void chooseDataFormat() {
+        final String[] extensions = {DataUtility.CSV, DataUtility.NDJSON};
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_data_format)
+                .setItems(R.array.export_data_formats, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        chooseDataRange(extensions[which]);
+                    }
+                })
+                .setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Asks the user whether to export all the data or only what changed since the last data
+     * export, if there was one, and whether to save it or share it straight away, the same way
+     * as <code>chooseExportSize</code>.
+     *
+     * @param format <code>DataUtility.CSV</code> or <code>DataUtility.NDJSON</code>.
+     */
+    private void chooseDataRange(final String format) {
+        final long last = ExportService.getLastDataExport(this);
+        //the changes since the last export are what a regular pull wants, so they come first
+        final int[] chosen = {last > 0 ? 1 : 0};
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(R.string.export_data);
+        if (last > 0) {
+            String since = DateUtils.formatDateTime(this, last,
+                    DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_TIME);
+            String[] ranges = {getString(R.string.export_data_all), getString(R.string.export_data_since, since)};
+            builder.setSingleChoiceItems(ranges, chosen[0], new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    chosen[0] = which;
+                }
+            });
+        }
+        builder.setPositiveButton(R.string.export_save, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Intent intent = new Intent(MainActivity.this, ExportActivity.class);
+                        intent.putExtra(THIS_UNIX, ExportService.ALL_DATA);
+                        intent.putExtra(ExportActivity.FORMAT, format);
+                        intent.putExtra(ExportActivity.SINCE, chosen[0] == 1 ? last : 0);
+                        startActivity(intent);
+                    }
+                })
+                .setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                    }
+                });
+        if (ExportProvider.canStream()) {
+            builder.setNeutralButton(R.string.export_send, new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    Uri uri = ExportProvider.getDataUri(chosen[0] == 1 ? last : 0, format);
+                    startActivity(Intent.createChooser(ExportProvider.shareIntent(uri),
+                            getString(R.string.export_send)));
+                }
+            });
+        }
+        builder.show();
+    }
+
+    private void sendToExportActivity(long unixTime, long targetBytes, String format) {
         Intent intent = new Intent(this, ExportActivity.class);
         intent.putExtra(THIS_UNIX, unixTime);
+        intent.putExtra(ExportActivity.TARGET_BYTES, targetBytes);
+        intent.putExtra(ExportActivity.FORMAT, format);
         startActivity(intent);
     }
 
@@ -587,12 +811,16 @@ public class MainActivity extends AppCompatActivity {
      * @param name The title of the <code>Notebook</code> to be created.
      */
     private void createNotebook(String name) {
-        long unixTime = System.currentTimeMillis();
+        final long unixTime = System.currentTimeMillis();
         Notebook notebook = new Notebook(unixTime, name);
-        //code for inserting the new data into the notebook table of the DB.
-        viewModel.insert(notebook);
-
-        openNotebook(unixTime);
+        //code for inserting the new data into the notebook table of the DB. The notebook is only
+        //opened once it has been committed, so NotebookActivity is sure to find it
+        viewModel.insert(notebook, new DatabaseCallback<Void>() {
+            @Override
+            public void onComplete(Void result) {
+                openNotebook(unixTime);
+            }
+        });
     }
 
     /**
@@ -1,7 +1,9 @@
 package com.example.fieldnotes.activities;
 
+import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
@@ -24,16 +26,14 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.fieldnotes.R;
+import com.example.fieldnotes.database.DatabaseCallback;
 import com.example.fieldnotes.database.FieldNotesViewModel;
 import com.example.fieldnotes.database.FieldNotesViewModelFactory;
 import com.example.fieldnotes.java.Notebook;
 import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopSummary;
 import com.example.fieldnotes.utilities.KeyboardUtility;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-
 /**
  * An <code>Activity</code> that displays a <code>Notebook</code>; that is, a list of
  * <code>Stops</code> that pertain to a certain location. This displays a <code>ListView</code>
@@ -50,36 +50,21 @@ public class NotebookActivity extends AppCompatActivity {
 
     private static final int STOP_REQUEST = 1;
 
-    //comparator classes for sorting stops by name and date
-    private final Comparator<Stop> nameSort = new Comparator<Stop>() {
-        @Override
-        public int compare(Stop o1, Stop o2) {
-            String name1 = o1.getStopName();
-            String name2 = o2.getStopName();
-            return name1.compareTo(name2);
-        }
-    };
-
-    private final Comparator<Stop> dateSort = new Comparator<Stop>() {
-        @Override
-        public int compare(Stop o1, Stop o2) {
-            long time1 = o1.getUnixTime();
-            long time2 = o2.getUnixTime();
-            if (time1 > time2) {
-                return 1;
-            } else if (time1 < time2) {
-                return -1;
-            } else {
-                return 0;
-            }
-        }
-    };
-
     private long unixTime;
     private Notebook notebook;
     private FieldNotesViewModel viewModel;
     private StopViewAdapter adapter;
 
+    //the paged list of stops on screen; the database sorts it, by name or by time
+    private LiveData<PagedList<StopSummary>> shownStops;
+    private boolean sortByName;
+    private final Observer<PagedList<StopSummary>> stopsObserver = new Observer<PagedList<StopSummary>>() {
+        @Override
+        public void onChanged(@Nullable final PagedList<StopSummary> stops) {
+            adapter.submitList(stops);
+        }
+    };
+
     //needs to save view where the keyboard is open to close it
     private View viewWithKeyboard;
 
@@ -137,7 +122,7 @@ public class NotebookActivity extends AppCompatActivity {
                     case MotionEvent.ACTION_UP:
                         if (isOnClick) {
                             LinearLayout layout = (LinearLayout) recyclerView.findChildViewUnder(motionEvent.getX(), motionEvent.getY());
-                            if (layout != null) {
+                            if (layout != null && isLoaded(layout)) {
                                 TextView stopUnix = (TextView) layout.getChildAt(2);
                                 long stopUnixTime = Long.parseLong(stopUnix.getText().toString());
                                 openStop(stopUnixTime);
@@ -164,16 +149,54 @@ public class NotebookActivity extends AppCompatActivity {
 
         stopView.setAdapter(adapter);
 
-        //gets database object
-        notebook = viewModel.getNotebookByUnixTime(unixTime);
-        setTitle(notebook.getNotebookName());
+        //only the unix time is needed to find the stops, so the rest of the notebook (its title)
+        //can load in the background
+        notebook = new Notebook(unixTime);
+        loadNotebook(unixTime);
 
         //set an observer on the notebook data so the app knows to update the data when changed
-        viewModel.getAllStopsByNotebook(notebook).observe(this, new Observer<List<Stop>>() {
+        showStops(false);
+    }
+
+    /**
+     * Shows the paged list of <code>Stops</code> in the given order, replacing the one on
+     * screen.
+     *
+     * @param byName True to sort by name, false to sort by time.
+     */
+    private void showStops(boolean byName) {
+        if (shownStops != null)
+            shownStops.removeObserver(stopsObserver);
+        sortByName = byName;
+        shownStops = viewModel.getPagedStops(byName);
+        shownStops.observe(this, stopsObserver);
+    }
+
+    /**
+     * Whether a row of a stop list has its data yet. Rows of a paged list that are still
+     * placeholders have no unix time to act on.
+     *
+     * @param item The row's layout.
+     * @return True if the row holds a <code>Stop</code>.
+     */
+    private static boolean isLoaded(LinearLayout item) {
+        return ((TextView) item.getChildAt(2)).length() > 0;
+    }
+
+    /**
+     * Loads the <code>Notebook</code> with the given unix time off the main thread, and shows its
+     * name as the title once it arrives.
+     *
+     * @param unixTime The primary key of the <code>Notebook</code>.
+     */
+    private void loadNotebook(long unixTime) {
+        viewModel.getNotebookByUnixTime(unixTime, new DatabaseCallback<Notebook>() {
             @Override
-            public void onChanged(@Nullable final List<Stop> stops) {
-                // Update the cached copy of the words in the adapter.
-                adapter.setStops(stops);
+            public void onComplete(Notebook result) {
+                if (result == null)
+                    return;
+                notebook = result;
+                setTitle(notebook.getNotebookName());
             }
         });
     }
@@ -245,7 +268,7 @@ public class NotebookActivity extends AppCompatActivity {
                     case MotionEvent.ACTION_UP:
                         if (isOnClick) {
                             LinearLayout layout = (LinearLayout) recyclerView.findChildViewUnder(motionEvent.getX(), motionEvent.getY());
-                            if (layout != null) {
+                            if (layout != null && isLoaded(layout)) {
                                 TextView stopUnix = (TextView) layout.getChildAt(2);
                                 renameStopText(Long.parseLong(stopUnix.getText().toString()));
                             }
@@ -267,11 +290,11 @@ public class NotebookActivity extends AppCompatActivity {
         final StopViewAdapter renameAdapter = new StopViewAdapter(this);
         stopView.setAdapter(renameAdapter);
         stopView.setLayoutManager(new LinearLayoutManager(this));
-        viewModel.getAllStopsByNotebook(notebook).observe(this, new Observer<List<Stop>>() {
+        viewModel.getPagedStops(sortByName).observe(this, new Observer<PagedList<StopSummary>>() {
             @Override
-            public void onChanged(@Nullable final List<Stop> stops) {
+            public void onChanged(@Nullable final PagedList<StopSummary> stops) {
                 // Update the cached copy of the words in the adapter.
-                renameAdapter.setStops(stops);
+                renameAdapter.submitList(stops);
             }
         });
 
@@ -293,12 +316,26 @@ public class NotebookActivity extends AppCompatActivity {
      * @param stopUnix unix time of selected stop in string format
      */
     private void renameStopText(final long stopUnix) {
+        viewModel.getStopByUnixTime(stopUnix, new DatabaseCallback<Stop>() {
+            @Override
+            public void onComplete(Stop stop) {
+                if (stop != null)
+                    renameStopText(stop);
+            }
+        });
+    }
+
+    /**
+     * Displays a popup prompting the user for the new name for the given <code>Stop</code>,
+     * once it has been loaded from the database.
+     *
+     * @param stop The <code>Stop</code> to rename.
+     */
+    private void renameStopText(final Stop stop) {
         final AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setCancelable(true);
         builder.setTitle("Rename Stop");
 
-        final Stop stop = viewModel.getStopByUnixTime(stopUnix);
-
         //create text field and auto populate
         final EditText renameTextField = new EditText(this);
         renameTextField.append(stop.getStopName());
@@ -309,7 +346,7 @@ public class NotebookActivity extends AppCompatActivity {
             public void onClick(DialogInterface dialog, int which) {
                 KeyboardUtility.forceHideKeyboard(NotebookActivity.this, renameTextField);
                 stop.setStopName(renameTextField.getText().toString());
-                viewModel.updateSynchronously(stop);
+                viewModel.update(stop);
             }
         });
         builder.setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
@@ -356,7 +393,7 @@ public class NotebookActivity extends AppCompatActivity {
                             float xValue = motionEvent.getX();
                             float yValue = motionEvent.getY();
                             LinearLayout layout = (LinearLayout) recyclerView.findChildViewUnder(xValue, yValue);
-                            if (layout != null) {
+                            if (layout != null && isLoaded(layout)) {
                                 final TextView stopUnix = (TextView) layout.getChildAt(2);
                                 final TextView stopName = (TextView) layout.getChildAt(0);
                                 //popup that confirms if user really wants to delete stop
@@ -367,8 +404,7 @@ public class NotebookActivity extends AppCompatActivity {
                                             public void onClick(DialogInterface dialog, int whichButton) {
                                                 long stopUnixTime = Long.parseLong(stopUnix.getText().toString());
                                                 //deletes stop from database object, which will cascade changes to RecyclerViews
-                                                Stop stop = viewModel.getStopByUnixTime(stopUnixTime);
-                                                viewModel.delete(stop);
+                                                viewModel.delete(new Stop(stopUnixTime));
                                             }
                                         })
                                         .setNegativeButton(R.string.cancel, null).show();
@@ -391,11 +427,11 @@ public class NotebookActivity extends AppCompatActivity {
         final StopViewAdapter renameAdapter = new StopViewAdapter(this);
         stopView.setAdapter(renameAdapter);
         stopView.setLayoutManager(new LinearLayoutManager(this));
-        viewModel.getAllStopsByNotebook(notebook).observe(this, new Observer<List<Stop>>() {
+        viewModel.getPagedStops(sortByName).observe(this, new Observer<PagedList<StopSummary>>() {
             @Override
-            public void onChanged(@Nullable final List<Stop> stops) {
+            public void onChanged(@Nullable final PagedList<StopSummary> stops) {
                 // Update the cached copy of the words in the adapter.
-                renameAdapter.setStops(stops);
+                renameAdapter.submitList(stops);
             }
         });
 
@@ -411,7 +447,8 @@ public class NotebookActivity extends AppCompatActivity {
     }
 
     /**
-     * Sorts adapter for RecyclerView based on global Comparator objects.
+     * Switches the list of <code>Stops</code> between sorting by name and by time. The
+     * sorting is done by the database, so only the rows on screen are loaded again.
      *
      * @param item menu item that was selected by user
      */
@@ -419,25 +456,11 @@ public class NotebookActivity extends AppCompatActivity {
         //if title is reorder by name
         if (getResources().getString(R.string.action_reorder_name).equals(item.getTitle())) {
             item.setTitle(R.string.action_reorder_date);
-            //gets database object
-            viewModel.getAllStopsByNotebook(notebook).observe(this, new Observer<List<Stop>>() {
-                @Override
-                public void onChanged(@Nullable final List<Stop> stops) {
-                    Collections.sort(stops, nameSort);
-                    adapter.setStops(stops);
-                }
-            });
+            showStops(true);
             //if title is reorder by date
         } else {
             item.setTitle(R.string.action_reorder_name);
-            //gets database object
-            viewModel.getAllStopsByNotebook(notebook).observe(this, new Observer<List<Stop>>() {
-                @Override
-                public void onChanged(@Nullable final List<Stop> stops) {
-                    Collections.sort(stops, dateSort);
-                    adapter.setStops(stops);
-                }
-            });
+            showStops(false);
         }
     }
 
@@ -505,13 +528,18 @@ public class NotebookActivity extends AppCompatActivity {
      * @param name The title of the new <code>Stop</code>.
      */
     private void createStop(String name) {
-        long unixTime = System.currentTimeMillis();
+        final long unixTime = System.currentTimeMillis();
         Stop stop = new Stop(unixTime);
         stop.setStopName(name);
         stop.setTime(unixTime);
         stop.setParentUnixTime(notebook.getUnixTime());
-        viewModel.insert(stop);
-        openStop(unixTime);
+        //the stop is only opened once it has been committed, so StopActivity is sure to find it
+        viewModel.insert(stop, new DatabaseCallback<Void>() {
+            @Override
+            public void onComplete(Void result) {
+                openStop(unixTime);
+            }
+        });
     }
 
     /**
@@ -557,7 +585,7 @@ public class NotebookActivity extends AppCompatActivity {
         if (requestCode == STOP_REQUEST) {
             if (resultCode == RESULT_OK) {
                 unixTime = data.getLongExtra(THIS_UNIX, 0);
-                notebook = viewModel.getNotebookByUnixTime(unixTime);
+                loadNotebook(unixTime);
             }
         }
 
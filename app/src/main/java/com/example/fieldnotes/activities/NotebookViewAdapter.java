@@ -1,31 +1,49 @@
 package com.example.fieldnotes.activities;
 
+import android.arch.paging.PagedListAdapter;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.example.fieldnotes.R;
-import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookSummary;
 
-import java.util.Collections;
-import java.util.List;
 import java.util.Locale;
 
 /**
  * Adapter for Notebook RecyclerView in <code>MainActivity</code>. This class will notify any
  * attached RecyclerView of data updates to cascade changes in the database.
+ * <br/>
+ * It is fed <code>PagedLists</code> with <code>submitList</code>. Rows that haven't been loaded
+ * yet are null, and are shown blank until their page arrives. When a new list is submitted, only
+ * the rows that actually changed are redrawn.
  * @author Tyler Seidel
  */
-public class NotebookViewAdapter extends RecyclerView.Adapter<NotebookViewAdapter.FieldNotesViewHolder> {
+public class NotebookViewAdapter extends PagedListAdapter<NotebookSummary, NotebookViewAdapter.FieldNotesViewHolder> {
+
+    private static final DiffUtil.ItemCallback<NotebookSummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<NotebookSummary>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull NotebookSummary oldItem, @NonNull NotebookSummary newItem) {
+                    return oldItem.getUnixTime() == newItem.getUnixTime();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull NotebookSummary oldItem, @NonNull NotebookSummary newItem) {
+                    return TextUtils.equals(oldItem.getNotebookName(), newItem.getNotebookName());
+                }
+            };
 
     private final LayoutInflater inflater;
-    private List<Notebook> notebooks = Collections.emptyList();
 
     NotebookViewAdapter(Context context) {
+        super(DIFF_CALLBACK);
         inflater = LayoutInflater.from(context);
     }
 
@@ -50,33 +68,19 @@ public class NotebookViewAdapter extends RecyclerView.Adapter<NotebookViewAdapte
      */
     @Override
     public void onBindViewHolder(@NonNull final NotebookViewAdapter.FieldNotesViewHolder notesViewHolder, int i) {
-        Notebook notebook = notebooks.get(i);
+        NotebookSummary notebook = getItem(i);
+        if (notebook == null) {
+            //placeholder, the page holding this notebook is still loading
+            notesViewHolder.notebookTitle.setText(null);
+            notesViewHolder.notebookDate.setText(null);
+            notesViewHolder.notebookUnix.setText(null);
+            return;
+        }
         notesViewHolder.notebookTitle.setText(notebook.getNotebookName());
         notesViewHolder.notebookDate.setText(notebook.getDate().toString());
         notesViewHolder.notebookUnix.setText(String.format(Locale.ENGLISH, "%d", notebook.getUnixTime()));
     }
 
-    /**
-     * Returns count of notebooks
-     *
-     * @return int of counted notebooks
-     */
-    @Override
-    public int getItemCount() {
-        return notebooks.size();
-    }
-
-    /**
-     * sets notebook to new list and informs adapter of changes
-     *
-     * @param notebooks new notebooks list to set
-     */
-    public void setNotebooks(List<Notebook> notebooks) {
-        this.notebooks = notebooks;
-        //notifies RecyclerView to repopulate list with changed data
-        notifyDataSetChanged();
-    }
-
     //nested class for storing views
     class FieldNotesViewHolder extends RecyclerView.ViewHolder {
         private final TextView notebookTitle;
@@ -0,0 +1,161 @@
+package com.example.fieldnotes.activities;
+
+/*
+DEVELOPER NOTES:
+
+Searches run as the user types, a short moment after they stop, so a word typed quickly is only
+searched for once. Every search gets a number, and results are only shown if they belong to the
+latest one; a slow search for "oa" can otherwise come back after the search for "oak" and
+replace its results.
+
+The searching itself is done by SearchIndex, on a reader thread (see FieldNotesRepo.search.) It
+only ranks the newest matches of a search that matches a great many Stops; when it does, a line
+above the results says so, since an older Stop that matches better can be missing from them.
+ */
+
+import android.arch.lifecycle.ViewModelProviders;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.Toolbar;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import com.example.fieldnotes.R;
+import com.example.fieldnotes.database.DatabaseCallback;
+import com.example.fieldnotes.database.FieldNotesViewModel;
+import com.example.fieldnotes.java.SearchHit;
+import com.example.fieldnotes.java.SearchResults;
+import com.example.fieldnotes.utilities.KeyboardUtility;
+
+/**
+ * An <code>Activity</code> for finding <code>Stops</code> by what was written in them. The user
+ * types into a field in the toolbar, and every <code>Stop</code> whose name, notes or picture
+ * captions hold those words is listed, best match first. Tapping one opens it in a
+ * <code>StopActivity</code>.
+ */
+public class SearchActivity extends AppCompatActivity {
+
+    private static final String THIS_UNIX = "Unix Time";
+    private static final long TYPING_DELAY = 150;
+
+    private FieldNotesViewModel viewModel;
+    private SearchResultAdapter adapter;
+    private TextView empty;
+    private TextView truncated;
+    private EditText field;
+
+    private final Handler handler = new Handler();
+    private int searchNumber;
+
+    private final Runnable search = new Runnable() {
+        @Override
+        public void run() {
+            search(field.getText().toString());
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_search);
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setDisplayShowTitleEnabled(false);
+
+        viewModel = ViewModelProviders.of(this).get(FieldNotesViewModel.class);
+
+        empty = findViewById(R.id.search_empty);
+        truncated = findViewById(R.id.search_truncated);
+        RecyclerView results = findViewById(R.id.search_results);
+        adapter = new SearchResultAdapter(this, new SearchResultAdapter.OnHitClickListener() {
+            @Override
+            public void onHitClick(SearchHit hit) {
+                openStop(hit.getStopId());
+            }
+        });
+        results.setAdapter(adapter);
+        results.setLayoutManager(new LinearLayoutManager(this));
+
+        field = findViewById(R.id.search_field);
+        field.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                handler.removeCallbacks(search);
+                handler.postDelayed(search, TYPING_DELAY);
+            }
+        });
+        field.requestFocus();
+    }
+
+    /**
+     * Ensures that the keyboard closes and no search is left pending when this
+     * <code>Activity</code> is brought out of focus.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(search);
+        KeyboardUtility.forceHideKeyboard(this, field);
+    }
+
+    /**
+     * Starts a search, and shows its results once they arrive, unless another search has been
+     * started by then.
+     *
+     * @param text What the user has typed.
+     */
+    private void search(String text) {
+        final int number = ++searchNumber;
+        if (text.trim().isEmpty()) {
+            show(SearchResults.none(), false);
+            return;
+        }
+        viewModel.search(text, new DatabaseCallback<SearchResults>() {
+            @Override
+            public void onComplete(SearchResults results) {
+                if (number == searchNumber)
+                    show(results, true);
+            }
+        });
+    }
+
+    /**
+     * Shows the results of a search.
+     *
+     * @param results The <code>Stops</code> found, and whether the search was cut short.
+     * @param searched False if there was nothing to search for, so no message is shown.
+     */
+    private void show(SearchResults results, boolean searched) {
+        adapter.setHits(results.getHits());
+        empty.setVisibility(searched && results.getHits().isEmpty() ? View.VISIBLE : View.GONE);
+        truncated.setVisibility(results.isTruncated() ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Creates an <code>Intent</code> and starts the <code>StopActivity</code> with
+     * the <code>unixTime</code> of the <code>Stop</code> the user picked.
+     *
+     * @param unixTime The primary key of the <code>Stop</code> to open.
+     */
+    private void openStop(long unixTime) {
+        Intent intent = new Intent(this, StopActivity.class);
+        intent.putExtra(THIS_UNIX, unixTime);
+        startActivity(intent);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.fieldnotes.activities;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.example.fieldnotes.R;
+import com.example.fieldnotes.java.SearchHit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapter for the RecyclerView of search results in <code>SearchActivity</code>. Shows the name
+ * of each <code>Stop</code> found, with a snippet of where it matched below it, the matching
+ * words in bold.
+ */
+public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapter.SearchHitViewHolder> {
+
+    /**
+     * Told which result the user tapped.
+     */
+    interface OnHitClickListener {
+        void onHitClick(SearchHit hit);
+    }
+
+    private final LayoutInflater inflater;
+    private final OnHitClickListener listener;
+    private List<SearchHit> hits = new ArrayList<>();
+
+    SearchResultAdapter(Context context, OnHitClickListener listener) {
+        inflater = LayoutInflater.from(context);
+        this.listener = listener;
+    }
+
+    /**
+     * Replaces the results shown.
+     *
+     * @param hits The results of the latest search, best first.
+     */
+    void setHits(List<SearchHit> hits) {
+        this.hits = hits;
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public SearchHitViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int i) {
+        View itemView = inflater.inflate(R.layout.search_result_item, parent, false);
+        return new SearchHitViewHolder(itemView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull SearchHitViewHolder holder, int i) {
+        final SearchHit hit = hits.get(i);
+        holder.title.setText(hit.getStopName());
+        holder.snippet.setText(highlight(hit.getSnippet()));
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                listener.onHitClick(hit);
+            }
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return hits.size();
+    }
+
+    /**
+     * Turns the match markers in a snippet into bold text.
+     */
+    private static CharSequence highlight(String snippet) {
+        SpannableStringBuilder text = new SpannableStringBuilder();
+        if (snippet == null)
+            return text;
+        int start = -1;
+        for (int i = 0; i < snippet.length(); i++) {
+            String c = snippet.substring(i, i + 1);
+            if (c.equals(SearchHit.MATCH_START)) {
+                start = text.length();
+            } else if (c.equals(SearchHit.MATCH_END)) {
+                if (start >= 0)
+                    text.setSpan(new StyleSpan(Typeface.BOLD), start, text.length(),
+                            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                start = -1;
+            } else {
+                text.append(snippet.charAt(i));
+            }
+        }
+        return text;
+    }
+
+    //nested class for storing views
+    class SearchHitViewHolder extends RecyclerView.ViewHolder {
+        private final TextView title;
+        private final TextView snippet;
+
+        private SearchHitViewHolder(View itemView) {
+            super(itemView);
+            title = itemView.findViewById(R.id.search_result_title);
+            snippet = itemView.findViewById(R.id.search_result_snippet);
+        }
+    }
+}
@@ -41,6 +41,7 @@ import android.widget.TimePicker;
 import android.widget.Toast;
 
 import com.example.fieldnotes.R;
+import com.example.fieldnotes.database.DatabaseCallback;
 import com.example.fieldnotes.database.FieldNotesViewModel;
 import com.example.fieldnotes.java.Picture;
 import com.example.fieldnotes.java.Stop;
@@ -115,14 +116,33 @@ public class StopActivity extends AppCompatActivity {
 
         hasSaved = true;
 
+        initializeDisplayMetrics();
+
         long unixTime = getIntent().getLongExtra(THIS_UNIX, 0);
         if (unixTime == 0) {
-            stop = new Stop(System.currentTimeMillis());
+            showStop(new Stop(System.currentTimeMillis()));
         } else {
-            stop = viewModel.getStopByUnixTime(unixTime);
+            //the loading panel stays up until the stop arrives from the database
+            viewModel.getStopByUnixTime(unixTime, new DatabaseCallback<Stop>() {
+                @Override
+                public void onComplete(Stop result) {
+                    if (result == null) {
+                        finish();
+                        return;
+                    }
+                    showStop(result);
+                }
+            });
         }
+    }
 
-        initializeDisplayMetrics();
+    /**
+     * Fills the screen with the data of the <code>Stop</code>, once it has been loaded.
+     *
+     * @param loaded The <code>Stop</code> this <code>Activity</code> displays.
+     */
+    private void showStop(Stop loaded) {
+        stop = loaded;
         findViewById(R.id.loadingPanelStop).setVisibility(View.GONE);
         setTitle(stop.getStopName());
         populateNotes();
@@ -183,6 +203,11 @@ public class StopActivity extends AppCompatActivity {
      * parent <code>Activity</code>.
      */
     private void exitActivity() {
+        if (stop == null) {
+            //left before the stop finished loading
+            finish();
+            return;
+        }
         Intent intent = new Intent(this, NotebookActivity.class);
         intent.putExtra(THIS_UNIX, stop.getParentUnixTime());
         setResult(RESULT_OK, intent);
@@ -329,7 +354,7 @@ public class StopActivity extends AppCompatActivity {
                                 public void onClick(DialogInterface dialog, int which) {
                                     KeyboardUtility.forceHideKeyboard(StopActivity.this, renameTextField);
                                     picture.setCaption(renameTextField.getText().toString());
-                                    viewModel.updateSynchronously(picture);
+                                    viewModel.update(picture);
                                     optionDialog.dismiss();
                                 }
                             })
@@ -443,7 +468,7 @@ public class StopActivity extends AppCompatActivity {
                                 KeyboardUtility.forceHideKeyboard(StopActivity.this, renameTextField);
                                 picture.setCaption(renameTextField.getText().toString());
                                 textView.setText(renameTextField.getText());
-                                viewModel.updateSynchronously(picture);
+                                viewModel.update(picture);
                                 dialog.dismiss();
                             }
                         })
@@ -549,7 +574,8 @@ public class StopActivity extends AppCompatActivity {
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent intent) {
         super.onActivityResult(requestCode, resultCode, intent);
-        if (resultCode == RESULT_OK) {
+        //if this activity was recreated, the stop may not have been loaded again yet
+        if (resultCode == RESULT_OK && stop != null) {
             ArrayList<String> speech;
             if (requestCode == AUDIO_REQUEST_CODE) {
                 speech = intent.getStringArrayListExtra(RecognizerIntent.EXTRA_RESULTS);
@@ -643,6 +669,8 @@ public class StopActivity extends AppCompatActivity {
      * @param view The <code>View</code> that calls this function.
      */
     public void updateDate(View view) {
+        if (stop == null) //still loading
+            return;
         if (Build.VERSION.SDK_INT >= 24) {
             updateDateNew();
         } else {
@@ -742,6 +770,8 @@ public class StopActivity extends AppCompatActivity {
      * @param view The <code>View</code> that calls this function.
      */
     public void updateGeolocation(View view) {
+        if (stop == null) //still loading
+            return;
         Intent intent = new Intent(this, GeolocationActivity.class);
         startActivityForResult(intent, GEOLOCATION_REQUEST_CODE);
     }
@@ -784,6 +814,8 @@ public class StopActivity extends AppCompatActivity {
      * @param view The <code>View</code> that calls this function.
      */
     public void delete(View view) {
+        if (stop == null) //still loading
+            return;
 
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setCancelable(true);
@@ -816,9 +848,11 @@ public class StopActivity extends AppCompatActivity {
      * @param view The <code>View</code> that calls this function.
      */
     public void save(View view) {
+        if (stop == null) //still loading
+            return;
         hasSaved = true;
         stop.setNotes(noteField.getText().toString());
-        viewModel.updateSynchronously(stop);
+        viewModel.update(stop);
         exitActivity();
     }
 
@@ -829,6 +863,8 @@ public class StopActivity extends AppCompatActivity {
      * storage before sending the <code>Intent</code>.
      */
     private void openCaption() {
+        if (stop == null) //still loading
+            return;
         if (!PermissionsUtility.getPermissions(this,
                 PermissionsUtility.CAMERA | PermissionsUtility.EXTERNAL_STORAGE))
             return;
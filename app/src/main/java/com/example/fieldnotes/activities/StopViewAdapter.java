@@ -1,30 +1,49 @@
 package com.example.fieldnotes.activities;
 
+import android.arch.paging.PagedListAdapter;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.example.fieldnotes.R;
-import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopSummary;
 
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 /**
  * Adapter for Stop RecyclerView in <code>MainActivity</code>. This class will notify any
  * attached RecyclerView of data updates to cascade changes in the database.
+ * <br/>
+ * It is fed <code>PagedLists</code> with <code>submitList</code>. Rows that haven't been loaded
+ * yet are null, and are shown blank until their page arrives. The rows are
+ * <code>StopSummaries</code>, which only hold what the list shows, so the notes of the stops are
+ * never read just to draw the list.
  */
-public class StopViewAdapter extends RecyclerView.Adapter<StopViewAdapter.FieldNotesViewHolder> {
+public class StopViewAdapter extends PagedListAdapter<StopSummary, StopViewAdapter.FieldNotesViewHolder> {
+
+    private static final DiffUtil.ItemCallback<StopSummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<StopSummary>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull StopSummary oldItem, @NonNull StopSummary newItem) {
+                    return oldItem.getUnixTime() == newItem.getUnixTime();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull StopSummary oldItem, @NonNull StopSummary newItem) {
+                    return TextUtils.equals(oldItem.getStopName(), newItem.getStopName())
+                            && oldItem.getTime() == newItem.getTime();
+                }
+            };
 
     private final LayoutInflater inflater;
-    private List<Stop> stops = Collections.emptyList();
     StopViewAdapter(Context context) {
+        super(DIFF_CALLBACK);
         inflater = LayoutInflater.from(context);
     }
 
@@ -49,34 +68,19 @@ public class StopViewAdapter extends RecyclerView.Adapter<StopViewAdapter.FieldN
      */
     @Override
     public void onBindViewHolder(@NonNull final StopViewAdapter.FieldNotesViewHolder stopViewHolder, int i) {
-        Stop stop = stops.get(i);
+        StopSummary stop = getItem(i);
+        if (stop == null) {
+            //placeholder, the page holding this stop is still loading
+            stopViewHolder.stopTitle.setText(null);
+            stopViewHolder.stopDate.setText(null);
+            stopViewHolder.stopUnix.setText(null);
+            return;
+        }
         stopViewHolder.stopTitle.setText(stop.getStopName());
-        Date date = new Date(stop.getUnixTime());
-        stopViewHolder.stopDate.setText(date.toString());
+        stopViewHolder.stopDate.setText(stop.getDate().toString());
         stopViewHolder.stopUnix.setText(String.format(Locale.ENGLISH, "%d", stop.getUnixTime()));
     }
 
-    /**
-     * Returns count of <code>Stop</code>
-     *
-     * @return int of counted stops
-     */
-    @Override
-    public int getItemCount() {
-        return stops.size();
-    }
-
-    /**
-     * sets <code>Stop</code> to new list and informs adapter of changes
-     *
-     * @param stops new stops list to set
-     */
-    public void setStops(List<Stop> stops) {
-        this.stops = stops;
-        //notifys RecyclerView to repopulate list with changed data
-        notifyDataSetChanged();
-    }
-
     //nested class for storing views
     class FieldNotesViewHolder extends RecyclerView.ViewHolder {
         private final TextView stopTitle;
@@ -0,0 +1,88 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+A data export (see DataUtility) can be limited to what changed since some time, so a pipeline
+that pulls the field data every night only gets that day's changes. For that every row of the
+notebooks, stops and pictures tables has a last_modified time, and every row deleted from them
+leaves a row in deletions_table.
+
+Nothing in the app sets either. Like the full-text index (SearchIndex) and the spatial index
+(GeoIndex), they are kept up to date by the triggers below, so every insert, update and delete
+is covered whichever DAO made it, including the deletes the foreign keys cascade:
+
+- After an insert, the new row's last_modified is set to the current time, and any deletion
+  recorded for its primary key is removed (the row is back.)
+- After an update of any column but last_modified, last_modified is set again. The triggers are
+  limited to the other columns so the update they make themselves doesn't set them off, and
+  the triggers of the other indexes are limited the same way, so it doesn't set those off either.
+- After a delete, the deletion is recorded, replacing any earlier one for the same key.
+
+The time is SQLite's clock in milliseconds since 1970, the same clock as System.currentTimeMillis,
+so a time from the app can be compared with it. It is the time of the statement, not of the commit,
+and the writer batches its writes in transactions (see DatabaseExecutor), so a row can turn up
+with a time a little before the moment it was committed. An export that read up to "now" could
+miss it: it isn't there yet, and the next export reads from after that time. So exports read up
+to SETTLE_TIME ago (see FieldNotesRepo.getChangesUntil), and anything newer is left for the next.
+
+Deletions are never cleared: they are three numbers and a short name each, and a pipeline can be
+any number of exports behind.
+ */
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+
+/**
+ * The triggers that keep the <code>last_modified</code> times of the notebooks, stops and
+ * pictures tables, and the deletions table, up to date.
+ */
+final class ChangeLog {
+
+    //the current time in milliseconds, in SQL
+    static final String NOW = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    //how long before now an export reads changes up to, well over the longest write transaction
+    static final long SETTLE_TIME = 10 * 1000; //milliseconds
+
+    //the table, its primary key, and the columns whose changes count
+    private static final String[][] TABLES = {
+            {"notebooks_table", "notebook_id", "`notebook_name`"},
+            {"stops_table", "stop_id", "`stop_name`, `parent_notebook_id`, `latitude`, `longitude`, `notes`, `stop_time`"},
+            {"pictures_table", "picture_id", "`parent_stop_id`, `file_path`, `caption`"}
+    };
+
+    private ChangeLog() {
+    }
+
+    /**
+     * Creates the triggers, if they don't exist yet. Room creates the tables and columns itself.
+     */
+    static void create(SupportSQLiteDatabase db) {
+        for (String[] table : TABLES) {
+            String name = table[0];
+            String key = table[1];
+            String touch = "UPDATE `" + name + "` SET `last_modified` = " + NOW
+                    + " WHERE `" + key + "` = new.`" + key + "`; ";
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + name + "_modified_insert` AFTER INSERT ON `"
+                    + name + "` BEGIN " + touch
+                    + "DELETE FROM `deletions_table` WHERE `table_name` = '" + name
+                    + "' AND `row_id` = new.`" + key + "`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + name + "_modified_update` AFTER UPDATE OF "
+                    + table[2] + " ON `" + name + "` BEGIN " + touch + "END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + name + "_modified_delete` AFTER DELETE ON `"
+                    + name + "` BEGIN "
+                    + "INSERT OR REPLACE INTO `deletions_table` (`table_name`, `row_id`, `deleted_time`) "
+                    + "VALUES ('" + name + "', old.`" + key + "`, " + NOW + "); END");
+        }
+    }
+
+    /**
+     * Sets the <code>last_modified</code> time of every row to now. Used when the column is
+     * added to a database that already has data in it, so those rows count as changed since any
+     * time before.
+     */
+    static void stamp(SupportSQLiteDatabase db) {
+        for (String[] table : TABLES)
+            db.execSQL("UPDATE `" + table[0] + "` SET `last_modified` = " + NOW);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.fieldnotes.database;
+
+/**
+ * Callback for the asynchronous operations of the <code>FieldNotesRepo</code>. The repository
+ * does its database work off the main thread, then calls <code>onComplete</code> back on the
+ * main thread once that work has been committed, so it is safe to touch the UI from it.
+ *
+ * @param <T> The type of the result. Operations with no result use <code>Void</code> and pass
+ *            null.
+ */
+public interface DatabaseCallback<T> {
+
+    /**
+     * Called on the main thread once the operation has finished.
+     *
+     * @param result The result of the operation, or null if it has none.
+     */
+    void onComplete(T result);
+}
@@ -0,0 +1,138 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+The database runs in write-ahead-logging (WAL) mode by default. With the old rollback journal a
+write locked the whole file, so an export reading the database and the user logging a stop would
+block each other. With WAL, readers keep reading the last committed state while the writer appends
+to the log, and neither waits for the other.
+
+The pragmas are set in an onOpen callback (see FieldNotesRoomDatabase.build), so they apply to
+the connection Room opens, which is the one every write and every transaction goes through.
+
+That is also their limit. cache_size, mmap_size and temp_store are per connection, and in WAL mode
+Android's connection pool runs a read outside a transaction (a LiveData or paged list query, a
+search, an export cursor) on one of a few extra read-only connections it opens when it needs
+them. Neither the framework nor Room has a hook to run anything on those, so they keep SQLite's
+defaults (and the framework's own cache size), and the larger cache and memory mapping only help
+the writer and whatever reads inside a transaction. Getting them onto every connection would mean
+replacing the framework's open helper (SupportSQLiteOpenHelper.Factory) with one that opens its
+own connections, which isn't worth it for what the pragmas save here.
+
+What each one trades off:
+- synchronous: NORMAL only syncs the log at checkpoints. In WAL mode a power cut can lose the
+  last few commits but never corrupts the database. FULL syncs on every commit.
+- cache_size: pages kept in memory per connection. Negative values are in KiB, positive in pages.
+- mmap_size: bytes of the file read through memory mapping instead of read() calls. Some Android
+  builds compile SQLite with memory mapping off, in which case this does nothing.
+- temp_store: MEMORY keeps temporary tables and indexes (sorts, for example) off the disk.
+ */
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.RoomDatabase;
+import android.database.Cursor;
+
+/**
+ * The journal mode and SQLite pragmas the <code>FieldNotesRoomDatabase</code> is opened with.
+ * A new <code>DatabaseConfig</code> holds the values the app uses; change them with the setters
+ * before passing it to <code>FieldNotesRoomDatabase.build</code>.
+ */
+public class DatabaseConfig {
+
+    /**
+     * Values of <code>PRAGMA synchronous</code>.
+     */
+    public enum Synchronous { OFF, NORMAL, FULL }
+
+    /**
+     * Values of <code>PRAGMA temp_store</code>.
+     */
+    public enum TempStore { DEFAULT, FILE, MEMORY }
+
+    private RoomDatabase.JournalMode journalMode = RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING;
+    private Synchronous synchronous = Synchronous.NORMAL;
+    private long cacheSize = -8 * 1024;             //8 MiB
+    private long mmapSize = 32L * 1024 * 1024;       //32 MiB
+    private TempStore tempStore = TempStore.MEMORY;
+
+    public RoomDatabase.JournalMode getJournalMode() {
+        return journalMode;
+    }
+
+    /**
+     * Sets the journal mode. <code>WRITE_AHEAD_LOGGING</code> unless changed; Room falls back to
+     * <code>TRUNCATE</code> on devices older than API 16.
+     */
+    public void setJournalMode(RoomDatabase.JournalMode journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    public Synchronous getSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * Sets <code>PRAGMA synchronous</code>. <code>NORMAL</code> unless changed.
+     */
+    public void setSynchronous(Synchronous synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets <code>PRAGMA cache_size</code>. Negative values are KiB, positive values are pages.
+     * 8 MiB unless changed. Only set on the primary connection; see <code>apply</code>.
+     */
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    /**
+     * Sets <code>PRAGMA mmap_size</code> in bytes, 0 to turn memory mapping off. 32 MiB unless
+     * changed. Only set on the primary connection; see <code>apply</code>.
+     */
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    public TempStore getTempStore() {
+        return tempStore;
+    }
+
+    /**
+     * Sets <code>PRAGMA temp_store</code>. <code>MEMORY</code> unless changed.
+     */
+    public void setTempStore(TempStore tempStore) {
+        this.tempStore = tempStore;
+    }
+
+    /**
+     * Applies the pragmas to a freshly opened database. They take effect on the connection Room
+     * opens, the one writes and transactions use, but not on the read-only connections Android
+     * opens for reads in WAL mode, which keep SQLite's defaults.
+     */
+    void apply(SupportSQLiteDatabase db) {
+        pragma(db, "synchronous = " + synchronous.name());
+        pragma(db, "cache_size = " + cacheSize);
+        pragma(db, "mmap_size = " + mmapSize);
+        pragma(db, "temp_store = " + tempStore.name());
+    }
+
+    /**
+     * Runs a pragma through <code>query</code> rather than <code>execSQL</code>, since some of
+     * them (mmap_size, for one) return a row, which <code>execSQL</code> refuses on some Android
+     * versions.
+     */
+    private static void pragma(SupportSQLiteDatabase db, String pragma) {
+        Cursor cursor = db.query("PRAGMA " + pragma);
+        cursor.close();
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+All of the writes to the database go through one thread, the writer. Whenever it wakes up it takes
+everything that has been queued since its last pass (up to MAX_BATCH writes) and runs it in a single
+transaction, so a burst of writes costs one commit instead of one each. Writes that are queued while
+a transaction is running simply wait for the next pass; there is no timer.
+
+A write can be given a key. If two writes with the same key end up in the same batch, only the last
+one is run, in its own place in the queue, and the earlier ones are completed along with it. This is
+only safe for writes that overwrite a whole row (the update methods of FieldNotesRepo, keyed by
+entity type and id), since running the last one leaves the row exactly as running all of them would.
+Inserts and deletes are never keyed.
+
+If a batch throws, its transaction is rolled back and every write in it is retried in a transaction
+of its own, so one bad write (a foreign key violation, say) only fails itself. Anything a write
+throws is caught there, Errors included, and handed to its Future: if the writer thread died instead,
+every write already queued and every write after it would wait forever.
+
+Reads go to a small pool of reader threads instead, so they never wait behind the writer.
+
+Callbacks are always posted to the main thread, after the write has been committed. They are not
+called if the write failed; the error is logged, and the Future throws it from get().
+ */
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads that the <code>FieldNotesRepo</code> uses to access the database: a single writer
+ * thread that commits queued writes in batches, and a small pool of reader threads. There is one
+ * <code>DatabaseExecutor</code> per database, shared by every <code>FieldNotesRepo</code>.
+ */
+final class DatabaseExecutor {
+
+    private static final String TAG = "DatabaseExecutor";
+
+    private static final int MAX_BATCH = 64;
+    private static final int READER_THREADS = 2;
+
+    private static DatabaseExecutor INSTANCE;
+
+    private final FieldNotesRoomDatabase db;
+    private final BlockingQueue<PendingWrite> writes = new LinkedBlockingQueue<>();
+    private final ExecutorService readers;
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+
+    private DatabaseExecutor(FieldNotesRoomDatabase db) {
+        this.db = db;
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runWriter();
+            }
+        }, "FieldNotes-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        readers = Executors.newFixedThreadPool(READER_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "FieldNotes-reader-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the <code>DatabaseExecutor</code> for the database, starting its threads the first
+     * time it is called.
+     */
+    static synchronized DatabaseExecutor getInstance(FieldNotesRoomDatabase db) {
+        if (INSTANCE == null)
+            INSTANCE = new DatabaseExecutor(db);
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a write for the writer thread.
+     *
+     * @param key Writes with the same non-null key that land in the same batch are merged into
+     *            the last of them. Null for writes that must always run.
+     * @param write The database work. Runs inside a transaction on the writer thread.
+     * @param callback Called on the main thread once the write is committed. May be null.
+     * @return A <code>Future</code> that completes once the write is committed.
+     */
+    Future<Void> write(String key, Runnable write, DatabaseCallback<Void> callback) {
+        PendingWrite pending = new PendingWrite(key, write, callback);
+        writes.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Runs a query on one of the reader threads.
+     *
+     * @param query The query to run.
+     * @param callback Called on the main thread with the result of the query. May be null.
+     * @return A <code>Future</code> holding the result of the query.
+     */
+    <T> Future<T> read(final Callable<T> query, final DatabaseCallback<T> callback) {
+        return readers.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                T result;
+                try {
+                    result = query.call();
+                } catch (Exception e) {
+                    Log.e(TAG, "Query failed", e);
+                    throw e;
+                }
+                post(callback, result);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * The writer thread's loop. Blocks until there is something to write, then commits
+     * everything that is queued.
+     */
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(writes.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            writes.drainTo(batch, MAX_BATCH - 1);
+
+            final List<PendingWrite> merged = coalesce(batch);
+            boolean committed;
+            try {
+                db.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (PendingWrite pending : merged)
+                            pending.write.run();
+                    }
+                });
+                committed = true;
+            } catch (Throwable e) {
+                Log.e(TAG, "Batch of " + merged.size() + " writes failed, retrying one at a time", e);
+                committed = false;
+            }
+            for (PendingWrite pending : merged) {
+                if (committed) {
+                    complete(pending, null);
+                    continue;
+                }
+                try {
+                    db.runInTransaction(pending.write);
+                } catch (Throwable single) {
+                    Log.e(TAG, "Write failed", single);
+                    complete(pending, single);
+                    continue;
+                }
+                complete(pending, null);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Drops every keyed write that is followed by a later write with the same key in the batch.
+     * The dropped writes are attached to the write that replaces them, so they complete with it.
+     */
+    private static List<PendingWrite> coalesce(List<PendingWrite> batch) {
+        List<PendingWrite> merged = new ArrayList<>(batch.size());
+        Map<String, PendingWrite> latest = new HashMap<>();
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            PendingWrite pending = batch.get(i);
+            if (pending.key != null) {
+                PendingWrite later = latest.get(pending.key);
+                if (later != null) {
+                    later.superseded.add(pending);
+                    continue;
+                }
+                latest.put(pending.key, pending);
+            }
+            merged.add(pending);
+        }
+        Collections.reverse(merged);
+        return merged;
+    }
+
+    /**
+     * Completes a write, and any writes it replaced, and posts their callbacks if it succeeded.
+     */
+    private void complete(PendingWrite pending, Throwable error) {
+        pending.future.complete(error);
+        if (error == null)
+            post(pending.callback, null);
+        for (PendingWrite replaced : pending.superseded)
+            complete(replaced, error);
+    }
+
+    private <T> void post(final DatabaseCallback<T> callback, final T result) {
+        if (callback == null)
+            return;
+        mainThread.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onComplete(result);
+            }
+        });
+    }
+
+    /**
+     * A write waiting in the queue for the writer thread.
+     */
+    private static class PendingWrite {
+        final String key;
+        final Runnable write;
+        final DatabaseCallback<Void> callback;
+        final WriteFuture future = new WriteFuture();
+        final List<PendingWrite> superseded = new ArrayList<>(0);
+
+        PendingWrite(String key, Runnable write, DatabaseCallback<Void> callback) {
+            this.key = key;
+            this.write = write;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * The <code>Future</code> handed out for a write. Writes can't be cancelled once queued.
+     */
+    private static class WriteFuture implements Future<Void> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable error;
+
+        void complete(Throwable error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            done.await();
+            return result();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit))
+                throw new TimeoutException();
+            return result();
+        }
+
+        private Void result() throws ExecutionException {
+            if (error != null)
+                throw new ExecutionException(error);
+            return null;
+        }
+    }
+}
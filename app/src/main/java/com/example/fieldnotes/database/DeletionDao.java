@@ -0,0 +1,19 @@
+package com.example.fieldnotes.database;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Query;
+import android.database.Cursor;
+
+/**
+ * Data access object for the record of deleted rows. The app only reads it: the rows are written
+ * by the triggers in <code>ChangeLog</code>.
+ */
+@Dao
+public interface DeletionDao {
+
+    @Query("SELECT table_name, row_id, deleted_time FROM deletions_table WHERE deleted_time > :since AND deleted_time <= :until ORDER BY deleted_time, table_name, row_id")
+    Cursor getDeletionsCursor(long since, long until);
+
+    @Query("SELECT COUNT(*) FROM deletions_table WHERE deleted_time > :since AND deleted_time <= :until")
+    int countDeletions(long since, long until);
+}
@@ -0,0 +1,162 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+Every time an entity class changes in a way that changes the tables (a new column, index, foreign
+key, etc.) the version in the @Database annotation of FieldNotesRoomDatabase needs to go up by one,
+and a Migration from the old version to the new one needs to be added here and to ALL.
+
+Room checks the migrated tables against the entity classes when the database is opened, and the
+app crashes if they don't match, so the SQL here has to create exactly what Room would. The names
+Room gives indexes are "index_" + table name + "_" + the column names joined with "_".
+
+SQLite can't add a foreign key to an existing table, so a migration that changes foreign keys has
+to build the new table under a temporary name, copy the rows over, drop the old table and rename
+the new one into its place (dropping a table drops its indexes too, so those are recreated after.)
+Room turns on foreign key enforcement when it opens the database, not during migrations, so rows
+that would break the new keys have to be left out of the copy by hand.
+
+Tables Room doesn't manage, like the full-text index in SearchIndex, still need a version bump
+and a migration here to be added to existing databases.
+
+Versions 1 and 2 predate any of our field data, so those are still dropped and recreated (see
+getDatabase in FieldNotesRoomDatabase.)
+ */
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.migration.Migration;
+import android.support.annotation.NonNull;
+
+/**
+ * The schema migrations for the <code>FieldNotesRoomDatabase</code>. Each <code>Migration</code>
+ * upgrades the database one version in place, so no field data is lost on an app update.
+ */
+final class FieldNotesMigrations {
+
+    /**
+     * Adds indexes on the foreign key columns of the stops and pictures tables.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_stops_table_parent_notebook_id_stop_time` "
+                    + "ON `stops_table` (`parent_notebook_id`, `stop_time`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_pictures_table_parent_stop_id` "
+                    + "ON `pictures_table` (`parent_stop_id`)");
+        }
+    };
+
+    /**
+     * Rebuilds the stops and pictures tables with real foreign keys, so deleting a notebook
+     * deletes its stops, and deleting a stop deletes its pictures. Stops and pictures whose
+     * parent no longer exists are not copied over.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `stops_table_new` (`stop_id` INTEGER NOT NULL, "
+                    + "`stop_name` TEXT NOT NULL, `parent_notebook_id` INTEGER NOT NULL, "
+                    + "`latitude` REAL NOT NULL, `longitude` REAL NOT NULL, `notes` TEXT, "
+                    + "`stop_time` INTEGER NOT NULL, PRIMARY KEY(`stop_id`), "
+                    + "FOREIGN KEY(`parent_notebook_id`) REFERENCES `notebooks_table`(`notebook_id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO `stops_table_new` (`stop_id`, `stop_name`, "
+                    + "`parent_notebook_id`, `latitude`, `longitude`, `notes`, `stop_time`) "
+                    + "SELECT `stop_id`, `stop_name`, `parent_notebook_id`, `latitude`, `longitude`, "
+                    + "`notes`, `stop_time` FROM `stops_table` "
+                    + "WHERE `parent_notebook_id` IN (SELECT `notebook_id` FROM `notebooks_table`)");
+            database.execSQL("DROP TABLE `stops_table`");
+            database.execSQL("ALTER TABLE `stops_table_new` RENAME TO `stops_table`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_stops_table_parent_notebook_id_stop_time` "
+                    + "ON `stops_table` (`parent_notebook_id`, `stop_time`)");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `pictures_table_new` (`picture_id` INTEGER NOT NULL, "
+                    + "`parent_stop_id` INTEGER NOT NULL, `file_path` TEXT, `caption` TEXT, "
+                    + "PRIMARY KEY(`picture_id`), "
+                    + "FOREIGN KEY(`parent_stop_id`) REFERENCES `stops_table`(`stop_id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO `pictures_table_new` (`picture_id`, `parent_stop_id`, "
+                    + "`file_path`, `caption`) "
+                    + "SELECT `picture_id`, `parent_stop_id`, `file_path`, `caption` FROM `pictures_table` "
+                    + "WHERE `parent_stop_id` IN (SELECT `stop_id` FROM `stops_table`)");
+            database.execSQL("DROP TABLE `pictures_table`");
+            database.execSQL("ALTER TABLE `pictures_table_new` RENAME TO `pictures_table`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_pictures_table_parent_stop_id` "
+                    + "ON `pictures_table` (`parent_stop_id`)");
+        }
+    };
+
+    /**
+     * Adds the full-text search index of stops and picture captions, and fills it from the rows
+     * already in the database. Room doesn't know about the index, so there's nothing to check it
+     * against; see <code>SearchIndex</code>.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            SearchIndex.create(database);
+            SearchIndex.rebuild(database);
+        }
+    };
+
+    /**
+     * Adds the stop cells table, the spatial index of the stops, and fills it from the stops
+     * already in the database. See <code>GeoIndex</code>.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `stop_cells_table` (`stop_id` INTEGER NOT NULL, "
+                    + "`cell` INTEGER NOT NULL, PRIMARY KEY(`stop_id`), "
+                    + "FOREIGN KEY(`stop_id`) REFERENCES `stops_table`(`stop_id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_stop_cells_table_cell` "
+                    + "ON `stop_cells_table` (`cell`)");
+            GeoIndex.create(database);
+            GeoIndex.rebuild(database);
+        }
+    };
+
+    /**
+     * Adds the last_modified times of notebooks, stops and pictures, and the deletions table,
+     * for exporting what changed since some time; see <code>ChangeLog</code>. The rows already in
+     * the database count as changed now. The update triggers of the full-text index are made
+     * again, limited to the columns it holds, so setting those times doesn't rewrite it.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP TRIGGER IF EXISTS `stops_fts_update`");
+            database.execSQL("DROP TRIGGER IF EXISTS `pictures_fts_update`");
+            SearchIndex.create(database);
+
+            for (String table : new String[]{"notebooks_table", "stops_table", "pictures_table"}) {
+                database.execSQL("ALTER TABLE `" + table + "` ADD COLUMN `last_modified` INTEGER NOT NULL DEFAULT 0");
+                database.execSQL("CREATE INDEX IF NOT EXISTS `index_" + table + "_last_modified` "
+                        + "ON `" + table + "` (`last_modified`)");
+            }
+            database.execSQL("CREATE TABLE IF NOT EXISTS `deletions_table` (`table_name` TEXT NOT NULL, "
+                    + "`row_id` INTEGER NOT NULL, `deleted_time` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`table_name`, `row_id`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_deletions_table_deleted_time` "
+                    + "ON `deletions_table` (`deleted_time`)");
+            ChangeLog.stamp(database);
+            ChangeLog.create(database);
+        }
+    };
+
+    /**
+     * All the migrations, in version order, for use with <code>addMigrations</code>.
+     */
+    static final Migration[] ALL = {
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8
+    };
+
+    private FieldNotesMigrations() {
+    }
+}
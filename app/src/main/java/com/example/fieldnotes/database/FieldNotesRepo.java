@@ -2,17 +2,34 @@ package com.example.fieldnotes.database;
 
 import android.app.Application;
 import android.arch.lifecycle.LiveData;
-import android.os.AsyncTask;
+import android.arch.paging.DataSource;
 
+import com.example.fieldnotes.java.NearbyStop;
 import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookSummary;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
 import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.SearchResults;
 import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopSummary;
+import com.example.fieldnotes.utilities.GeoSource;
+import com.example.fieldnotes.utilities.StopSource;
+import com.example.fieldnotes.utilities.TableSource;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * A repository for managing query threads, since Android does not allow queries to be
  * run within the main thread.
+ * <br/>
+ * Inserts, updates and deletes are handed to a <code>DatabaseExecutor</code>, which commits them
+ * in batches on a single writer thread. Each returns a <code>Future</code> that completes once the
+ * write is committed, and takes an optional <code>DatabaseCallback</code> that is called on the
+ * main thread at the same point. Updates to the same row that are queued close together are
+ * merged into one write.
  *
  * @author Tyler Seidel (2019)
  */
@@ -22,9 +39,12 @@ public class FieldNotesRepo {
     ////                                  CLASS VARIABLES                                         //
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    private FieldNotesRoomDatabase db;
     private NotebookDao nbDao;
     private StopDao sDao;
     private PictureDao pDao;
+    private SearchDao searchDao;
+    private DatabaseExecutor executor;
 
     private LiveData<List<Notebook>> allNotebooks;
     private LiveData<List<Stop>> allStops;
@@ -41,11 +61,13 @@ public class FieldNotesRepo {
      */
     public FieldNotesRepo(Application application) {
         //retrieve database instance from the app
-        FieldNotesRoomDatabase db = FieldNotesRoomDatabase.getDatabase(application);
+        db = FieldNotesRoomDatabase.getDatabase(application);
 
         nbDao = db.notebookDao();
         sDao = db.stopDao();
         pDao = db.pictureDao();
+        searchDao = db.searchDao();
+        executor = DatabaseExecutor.getInstance(db);
 
         allNotebooks = nbDao.getAllNotebooks();
         allStops = sDao.getAllStops();
@@ -58,115 +80,189 @@ public class FieldNotesRepo {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Helper task class used to insert a <code>Notebook</code> into the database in an
-     * asynchronous thread.
+     * Method for getting a live list of <code>Notebook</code> objects.
      */
-    private static class insertAsyncNotebookTask extends AsyncTask<Notebook, Void, Void> {
-
-        private NotebookDao asyncNotebookDao;
-
-        insertAsyncNotebookTask(NotebookDao dao) {asyncNotebookDao = dao;}
-
+    public LiveData<List<Notebook>> getAllNotebooks(){return allNotebooks;}
 
-        @Override
-        protected Void doInBackground(final Notebook... params) {
-            asyncNotebookDao.insert(params[0]);
-            return null;
-        }
+    /**
+     * Gets a source of pages of <code>NotebookSummaries</code>, for a list that only loads the rows
+     * it shows.
+     *
+     * @param byName True to sort the <code>Notebooks</code> by name, false to sort them by the
+     *               date they were created.
+     */
+    public DataSource.Factory<Integer, NotebookSummary> getPagedNotebooks(boolean byName) {
+        return byName ? nbDao.getPagedNotebooksByName() : nbDao.getPagedNotebooksByDate();
     }
 
     /**
-     * Helper class used to delete a <code>Notebook</code> from the database in an
-     * asynchronous thread
+     * Method for getting a <code>Notebook</code> by its <code>unixTime</code> on the calling
+     * thread. Must not be called from the main thread.
      */
-    private static class deleteAsyncNotebookTask extends AsyncTask<Notebook, Void, Void> {
-
-        private NotebookDao asyncNotebookDao;
-        private StopDao asyncStopDao;
-        private PictureDao asyncPicDao;
-        deleteAsyncNotebookTask(NotebookDao nbDao, StopDao sDao, PictureDao pDao) {
-            asyncNotebookDao = nbDao;
-            asyncStopDao = sDao;
-            asyncPicDao = pDao;
-        }
+    public Notebook getNotebook(long unixTime) {return nbDao.selectNotebook(unixTime);}
 
-        /**
-         * Given a Notebook, use it's unix time to perform an asynchronous deletion of the notebook
-         * from the database, and then delete all stops from the database belonging to the notebook
-         * (by use of the stops' foreign keys)
-         */
-        @Override
-        protected Void doInBackground(final Notebook... params) {
+    /**
+     * Gets a <code>Notebook</code> by its <code>unixTime</code> on a reader thread.
+     *
+     * @param unixTime The primary key of the <code>Notebook</code>.
+     * @param callback Called on the main thread with the <code>Notebook</code>, or null if there
+     *                 is no such <code>Notebook</code>.
+     */
+    public Future<Notebook> getNotebook(final long unixTime, DatabaseCallback<Notebook> callback) {
+        return executor.read(new Callable<Notebook>() {
+            @Override
+            public Notebook call() {
+                return nbDao.selectNotebook(unixTime);
+            }
+        }, callback);
+    }
 
-            long parent_unix_time = params[0].getUnixTime();
-            List<Stop> stops = asyncStopDao.getStopsByNotebook(parent_unix_time);
+    /**
+     * Method for getting a <code>Notebook</code> along with all of its <code>Stops</code> and
+     * their <code>Pictures</code> in a single transaction. Must not be called from the main
+     * thread.
+     */
+    public NotebookWithStopsAndPictures getNotebookWithStopsAndPictures(long unixTime) {
+        return nbDao.getNotebookWithStopsAndPictures(unixTime);
+    }
 
-            for (Stop s: stops) {
-                new deleteAsyncStopTask(asyncStopDao, asyncPicDao).execute(s);
-            }
-            asyncStopDao.deleteAllStopsByNotebook(parent_unix_time);
-            asyncNotebookDao.deleteNotebook(parent_unix_time);
+    /**
+     * Opens the <code>Stops</code> of a <code>Notebook</code> to be read one at a time, with
+     * their <code>Pictures</code>, for exporting a notebook too big to load at once. Must not be
+     * called from the main thread.
+     *
+     * @param unixTime The primary key of the <code>Notebook</code>.
+     * @return The <code>Stops</code>, which must be closed once read, or null if there is no
+     * such <code>Notebook</code>.
+     */
+    public StopSource getNotebookStops(long unixTime) {
+        Notebook notebook = nbDao.selectNotebook(unixTime);
+        if (notebook == null)
+            return null;
+        return new NotebookStops(sDao, pDao, notebook);
+    }
 
+    /**
+     * Opens the located <code>Stops</code> of a <code>Notebook</code> to be read one at a time,
+     * for a map export. Must not be called from the main thread.
+     *
+     * @param unixTime The primary key of the <code>Notebook</code>.
+     * @return The <code>Stops</code>, which must be closed once read, or null if there is no
+     * such <code>Notebook</code>.
+     */
+    public GeoSource getNotebookGeoStops(long unixTime) {
+        Notebook notebook = nbDao.selectNotebook(unixTime);
+        if (notebook == null)
             return null;
-        }
+        return new GeoStops(sDao, unixTime, notebook.getNotebookName());
     }
 
     /**
-     * A class for asynchronous database updates.
+     * Opens the located <code>Stops</code> of every <code>Notebook</code> to be read one at a
+     * time, for a map export. Must not be called from the main thread.
+     *
+     * @param name What to call the export.
+     * @return The <code>Stops</code>, which must be closed once read.
      */
-    private static class updateAsyncNotebookTask extends AsyncTask<Notebook, Void, Void> {
+    public GeoSource getAllGeoStops(String name) {
+        return new GeoStops(sDao, null, name);
+    }
 
-        private Notebook notebook;
-        private NotebookDao asyncNotebookDao;
-        updateAsyncNotebookTask(NotebookDao nbDao) {asyncNotebookDao = nbDao;}
+    /**
+     * Gets the time a data export started now can read changes up to: a few seconds ago, since
+     * the rows changed in the last moment may not be committed yet (see <code>ChangeLog</code>).
+     * The next export should read from this time on.
+     *
+     * @return The time, in milliseconds since 1970.
+     */
+    public static long getChangesUntil() {
+        return System.currentTimeMillis() - ChangeLog.SETTLE_TIME;
+    }
 
-        /**
-         * Given a notebook, find (by its unix time) and update the name of the notebook in the
-         * database by use of a <code>NotebookDao</code>.
-         */
-        @Override
-        protected Void doInBackground(final Notebook... params) {
-            notebook = params[0];
-            long unix_time = notebook.getUnixTime();
-            asyncNotebookDao.updateNotebook(notebook.getNotebookName(), unix_time);
-            return null;
-        }
+    /**
+     * Opens the rows of the notebooks, stops and pictures tables changed between two times, and
+     * the deletions from them, to be read one at a time for a data export. Must not be called
+     * from the main thread.
+     *
+     * @param since Only rows changed after this time are read, in milliseconds since 1970; 0
+     *              for all of them.
+     * @param until Nor any changed after this one.
+     * @return The notebooks, stops, pictures and deletions, in that order, each of which must be
+     * closed once read.
+     */
+    public List<TableSource> getChangedRows(long since, long until) {
+        List<TableSource> tables = new ArrayList<>();
+        tables.add(new ChangedRows(db, ChangedRows.NOTEBOOKS, since, until));
+        tables.add(new ChangedRows(db, ChangedRows.STOPS, since, until));
+        tables.add(new ChangedRows(db, ChangedRows.PICTURES, since, until));
+        tables.add(new ChangedRows(db, ChangedRows.DELETIONS, since, until));
+        return tables;
     }
 
     /**
-     * Method for getting a live list of <code>Notebook</code> objects.
+     * Public method for inserting a <code>Notebook</code> into the database on the writer thread.
      */
-    public LiveData<List<Notebook>> getAllNotebooks(){return allNotebooks;}
+    public Future<Void> insert(Notebook notebook) { return insert(notebook, null); }
 
     /**
-     * Method for getting a <code>Notebook</code> by its <code>unixTime</code>.
+     * Inserts a <code>Notebook</code> into the database on the writer thread.
+     *
+     * @param notebook The <code>Notebook</code> to insert.
+     * @param callback Called once the insert has been committed. May be null.
      */
-    public Notebook getNotebook(long unixTime) {return nbDao.selectNotebook(unixTime);}
+    public Future<Void> insert(final Notebook notebook, DatabaseCallback<Void> callback) {
+        return executor.write(null, new Runnable() {
+            @Override
+            public void run() {
+                nbDao.insert(notebook);
+            }
+        }, callback);
+    }
 
     /**
-     * Public method for inserting a <code>Notebook</code> into the database through use of a
-     * private <code>insertAsyncNotebookTask</code> object.
+     * Public method for deleting a <code>Notebook</code> from the database on the writer thread.
      */
-    public void insert (Notebook notebook) { new insertAsyncNotebookTask(nbDao).execute(notebook); }
+    public Future<Void> delete(Notebook notebook) { return delete(notebook, null); }
 
     /**
-     * Public method for deleting a <code>Notebook</code> from the database through use of a
-     * private <code>deleteAsyncNotebookTask</code> object.
+     * Deletes a <code>Notebook</code>, along with all of its <code>Stops</code> and their
+     * <code>Pictures</code>, with a single statement, then calls <code>callback</code> on the
+     * main thread.
+     *
+     * @param notebook The <code>Notebook</code> to delete. Only its unix time is used.
+     * @param callback Called once the delete has been committed. May be null.
      */
-    public void delete(Notebook notebook) { new deleteAsyncNotebookTask(nbDao, sDao, pDao).execute(notebook); }
+    public Future<Void> delete(Notebook notebook, DatabaseCallback<Void> callback) {
+        final long unix_time = notebook.getUnixTime();
+        return executor.write(null, new Runnable() {
+            @Override
+            public void run() {
+                nbDao.deleteNotebook(unix_time);
+            }
+        }, callback);
+    }
 
     /**
-     * Public method for updating a <code>Notebook</code> within the database through use of a
-     * private <code>updateAsyncNotebookTask</code> object.
+     * Public method for updating a <code>Notebook</code> within the database on the writer thread.
      */
-    public void update(Notebook notebook) { new updateAsyncNotebookTask(nbDao).execute(notebook); }
+    public Future<Void> update(Notebook notebook) { return update(notebook, null); }
 
     /**
-     * Method for updating a <code>Notebook</code> in the database synchronously, so that the
-     * data committed is immediately available.
+     * Updates the name of a <code>Notebook</code> on the writer thread. The name is read when
+     * this is called, and later updates to the same <code>Notebook</code> may replace this one.
+     *
+     * @param notebook The <code>Notebook</code> to update.
+     * @param callback Called once the update has been committed. May be null.
      */
-    public void updateSynchronously(Notebook notebook){
-        nbDao.updateNotebook(notebook.getNotebookName(), notebook.getUnixTime());
+    public Future<Void> update(Notebook notebook, DatabaseCallback<Void> callback) {
+        final long unix_time = notebook.getUnixTime();
+        final String name = notebook.getNotebookName();
+        return executor.write("notebook:" + unix_time, new Runnable() {
+            @Override
+            public void run() {
+                nbDao.updateNotebook(name, unix_time);
+            }
+        }, callback);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -174,154 +270,183 @@ public class FieldNotesRepo {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Helper task class used to insert a <code>Stop</code> into the database in an
-     * asynchronous thread.
+     * Private method for getting a live list of <code>Stop</code> objects.
      */
-    private static class insertAsyncStopTask extends AsyncTask<Stop, Void, Void> {
-        private StopDao asyncStopDao;
-
-        insertAsyncStopTask(StopDao dao) {asyncStopDao = dao;}
-
-
-        @Override
-        protected Void doInBackground(final Stop... params) {
-            asyncStopDao.insert(params[0]);
-            return null;
-        }
-    }
+    public LiveData<List<Stop>> getAllStops(){return allStops;}
 
     /**
-     * Helper task class used to delete a <code>Stop</code> from the database in an
-     * asynchronous thread.
-     */
-    private static class deleteAsyncStopTask extends AsyncTask<Stop, Void, Void> {
-
-        private StopDao asyncStopDao;
-        private PictureDao asyncPicDao;
-        deleteAsyncStopTask(StopDao sDao, PictureDao pDao) {
-            asyncPicDao = pDao;
-            asyncStopDao = sDao;
-        }
-
-        /**
-         * Given a Notebook, use it's unix time to perform an asynchronous deletion of the notebook
-         * from the database, and then delete all stops from the database belonging to the notebook
-         * (by use of the stops' foreign keys)
-         */
-        @Override
-        protected Void doInBackground(final Stop... params) {
-            long unix_time = params[0].getUnixTime();
-            asyncStopDao.deleteStop(unix_time);
-            asyncPicDao.deleteAllByStop(unix_time);
-            return null;
-        }
+     * Call the <code>FieldNotesRepo</code> to perform the retrieval of all notebooks with a foreign
+     * key matching the primary key of a given <code>Notebook</code> object.
+     */
+    public LiveData<List<Stop>>getAllStopsByNotebook(Notebook notebook) {
+        return getAllStopsByNotebook(notebook.getUnixTime());
     }
 
-    private static class updateAsyncStopTask extends AsyncTask<Stop, Void, Void> {
-
-        private Stop stop;
-        private StopDao asyncStopDao;
-        updateAsyncStopTask(StopDao sDao) {asyncStopDao = sDao;}
-
-        /**
-         * Given a notebook, find (by its unix time) and update the name of the notebook in the
-         * database by use of a <code>NotebookDao</code>.
-         */
-        @Override
-        protected Void doInBackground(final Stop... params){
-            stop = params[0];
-            long unix_time = stop.getUnixTime();
-            String name = stop.getStopName();
-            double latitude = stop.getLatitude();
-            double longitude = stop.getLongitude();
-            String notes = stop.notes();
-            long time = stop.getTime();
-            long parent = stop.getParentUnixTime();
-            asyncStopDao.updateStop(unix_time, name, latitude, longitude, notes, time, parent);
-            return null;
-        }
+    /**
+     * Gets the live list of <code>Stops</code> belonging to the <code>Notebook</code> with the
+     * given unix time, without having to load the <code>Notebook</code> first.
+     */
+    public LiveData<List<Stop>>getAllStopsByNotebook(long notebookUnixTime) {
+        return sDao.getLiveStopsByNotebook(notebookUnixTime);
     }
 
     /**
-     * Private method for getting a live list of <code>Stop</code> objects.
+     * Finds the <code>Stops</code> within <code>radius</code> of a point on a reader thread.
+     *
+     * @param latitude  The latitude of the point.
+     * @param longitude The longitude of the point.
+     * @param radius    How far from the point to look, in meters.
+     * @param limit     The most <code>Stops</code> to return.
+     * @param callback  Called on the main thread with the <code>Stops</code> found, nearest first.
      */
-    public LiveData<List<Stop>> getAllStops(){return allStops;}
+    public Future<List<NearbyStop>> getStopsNear(final double latitude, final double longitude,
+                                                 final double radius, final int limit,
+                                                 DatabaseCallback<List<NearbyStop>> callback) {
+        return executor.read(new Callable<List<NearbyStop>>() {
+            @Override
+            public List<NearbyStop> call() {
+                return GeoIndex.nearest(sDao, latitude, longitude, radius, limit);
+            }
+        }, callback);
+    }
 
     /**
-     * Call the <code>FieldNotesRepo</code> to perform the retrieval of all notebooks with a foreign
-     * key matching the primary key of a given <code>Notebook</code> object.
+     * Gets a source of pages of <code>StopSummaries</code> of the <code>Stops</code> belonging to
+     * a <code>Notebook</code>, for a list that only loads the rows it shows.
+     *
+     * @param notebookUnixTime The unix time of the parent <code>Notebook</code>.
+     * @param byName True to sort the <code>Stops</code> by name, false to sort them by time.
      */
-    public LiveData<List<Stop>>getAllStopsByNotebook(Notebook notebook) {
-        return sDao.getLiveStopsByNotebook(notebook.getUnixTime());
+    public DataSource.Factory<Integer, StopSummary> getPagedStopsByNotebook(long notebookUnixTime, boolean byName) {
+        return byName ? sDao.getPagedStopsByNotebookByName(notebookUnixTime)
+                : sDao.getPagedStopsByNotebookByTime(notebookUnixTime);
     }
 
     /**
      * Call the <code>FieldNotesRepo</code> to perform a synchronous retrieval of all notebooks
      * with a foreign key matching the primary key of a given <code>Notebook</code> object so
-     * the data is guaranteed to be available right after the query.
+     * the data is guaranteed to be available right after the query. Must not be called from the
+     * main thread.
      */
     public List<Stop>getStopsByNotebookSynchronously(Notebook notebook) {
         return sDao.getStopsByNotebookSynchronously(notebook.getUnixTime());
     }
 
     /**
+     * Gets all the <code>Stops</code> of a <code>Notebook</code> on a reader thread.
      *
-     * @param unixTime
-     * @return
+     * @param notebook The parent <code>Notebook</code>. Only its unix time is used.
+     * @param callback Called on the main thread with the <code>Stops</code>.
      */
-    public Stop getStop(long unixTime) {return sDao.selectStop(unixTime);}
+    public Future<List<Stop>> getStopsByNotebook(Notebook notebook, DatabaseCallback<List<Stop>> callback) {
+        final long parent_unix_time = notebook.getUnixTime();
+        return executor.read(new Callable<List<Stop>>() {
+            @Override
+            public List<Stop> call() {
+                return sDao.getStopsByNotebookSynchronously(parent_unix_time);
+            }
+        }, callback);
+    }
 
     /**
-     * Public method for inserting a <code>Stop</code> into the database through use of a
-     * private <code>insertAsyncStopTask</code> object.
+     * Method for getting a <code>Stop</code> by its <code>unixTime</code> on the calling thread.
+     * Must not be called from the main thread.
+     *
+     * @param unixTime The primary key of the <code>Stop</code>.
+     * @return The <code>Stop</code>, or null if there is no such <code>Stop</code>.
      */
-    public void insert(Stop stop) { new insertAsyncStopTask(sDao).execute(stop); }
+    public Stop getStop(long unixTime) {return sDao.selectStop(unixTime);}
 
     /**
-     * Public method for deleting a <code>Stop</code> from the database through use of a
-     * private <code>deleteAsyncStopTask</code> object.
+     * Gets a <code>Stop</code> by its <code>unixTime</code> on a reader thread.
+     *
+     * @param unixTime The primary key of the <code>Stop</code>.
+     * @param callback Called on the main thread with the <code>Stop</code>, or null if there is
+     *                 no such <code>Stop</code>.
      */
-    public void delete(Stop stop) { new deleteAsyncStopTask(sDao, pDao).execute(stop); }
+    public Future<Stop> getStop(final long unixTime, DatabaseCallback<Stop> callback) {
+        return executor.read(new Callable<Stop>() {
+            @Override
+            public Stop call() {
+                return sDao.selectStop(unixTime);
+            }
+        }, callback);
+    }
 
     /**
-     * Public method for deleting a <code>Stop</code> within the database through use of a
-     * private <code>updateAsyncStopTask</code> object.
+     * Public method for inserting a <code>Stop</code> into the database on the writer thread.
      */
-    public void update(Stop stop){new updateAsyncStopTask(sDao).execute();}
+    public Future<Void> insert(Stop stop) { return insert(stop, null); }
 
     /**
-     * Updates a <code>Stop</code> in the database synchronously. That is, it can be called
-     * from the main thread of the application. This function was created to resolve some issues
-     * where the database wouldn't be updated before the data in it needed to be accessed again.
+     * Inserts a <code>Stop</code> into the database on the writer thread.
      *
-     * @param stop The <code>Stop</code> to be updated in the database.
+     * @param stop The <code>Stop</code> to insert.
+     * @param callback Called once the insert has been committed. May be null.
      */
-    public void updateSynchronously(Stop stop){
-        sDao.updateStop(stop.getUnixTime(), stop.getStopName(), stop.getLatitude(),
-                stop.getLongitude(), stop.notes(), stop.getTime(), stop.getParentUnixTime());
+    public Future<Void> insert(final Stop stop, DatabaseCallback<Void> callback) {
+        return executor.write(null, new Runnable() {
+            @Override
+            public void run() {
+                sDao.insert(stop);
+            }
+        }, callback);
     }
 
-    ////////////////////////////////////////////////////////////////////////////////////////////////
-    ////                             PICTURE-RELATED METHODS/CLASSES                              //
-    ////////////////////////////////////////////////////////////////////////////////////////////////
-
     /**
-     * Helper task class used to insert a <code>Picture</code> into the database in an
-     * asynchronous thread.
+     * Public method for deleting a <code>Stop</code> from the database on the writer thread.
      */
-    private static class insertAsyncPictureTask extends AsyncTask<Picture, Void, Void> {
-        private PictureDao asyncPictureDao;
+    public Future<Void> delete(Stop stop) { return delete(stop, null); }
 
-        insertAsyncPictureTask(PictureDao dao) {asyncPictureDao = dao;}
+    /**
+     * Deletes a <code>Stop</code> and all of its <code>Pictures</code>, then calls
+     * <code>callback</code> on the main thread.
+     *
+     * @param stop The <code>Stop</code> to delete. Only its unix time is used.
+     * @param callback Called once the delete has been committed. May be null.
+     */
+    public Future<Void> delete(Stop stop, DatabaseCallback<Void> callback) {
+        final long unix_time = stop.getUnixTime();
+        return executor.write(null, new Runnable() {
+            @Override
+            public void run() {
+                sDao.deleteStop(unix_time);
+            }
+        }, callback);
+    }
 
+    /**
+     * Public method for updating a <code>Stop</code> within the database on the writer thread.
+     */
+    public Future<Void> update(Stop stop) { return update(stop, null); }
 
-        @Override
-        protected Void doInBackground(final Picture... params) {
-            asyncPictureDao.insert(params[0]);
-            return null;
-        }
+    /**
+     * Updates every column of a <code>Stop</code> on the writer thread. The values are read when
+     * this is called, and later updates to the same <code>Stop</code> may replace this one.
+     *
+     * @param stop The <code>Stop</code> to update.
+     * @param callback Called once the update has been committed. May be null.
+     */
+    public Future<Void> update(Stop stop, DatabaseCallback<Void> callback) {
+        final long unix_time = stop.getUnixTime();
+        final String name = stop.getStopName();
+        final double latitude = stop.getLatitude();
+        final double longitude = stop.getLongitude();
+        final String notes = stop.notes();
+        final long time = stop.getTime();
+        final long parent = stop.getParentUnixTime();
+        return executor.write("stop:" + unix_time, new Runnable() {
+            @Override
+            public void run() {
+                sDao.updateStop(unix_time, name, latitude, longitude, notes, time, parent);
+            }
+        }, callback);
     }
 
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    ////                             PICTURE-RELATED METHODS/CLASSES                              //
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
      * Private method for getting a live list of <code>Picture</code> objects.
      */
@@ -341,7 +466,7 @@ public class FieldNotesRepo {
     /**
      * Method for getting all the <code>Pictures</code> belonging to a <code>Stop</code> by its
      * <code>unixTime</code> synchronously, so the data is ensured to be available right
-     * after the query.
+     * after the query. Must not be called from the main thread.
      *
      * @param parentUnixTime The <code>unixTime</code> of the parent <code>Stop</code>.
      * @return The <code>List</code> of <code>Pictures</code> belonging to the <code>Stop</code>.
@@ -351,49 +476,108 @@ public class FieldNotesRepo {
     }
 
     /**
-     * Public method for inserting a <code>Picture</code> into the database through use of a
-     * private <code>insertAsyncPictureTask</code> object.
+     * Gets all the <code>Pictures</code> belonging to a <code>Stop</code> on a reader thread.
+     *
+     * @param parentUnixTime The <code>unixTime</code> of the parent <code>Stop</code>.
+     * @param callback Called on the main thread with the <code>Pictures</code>.
+     */
+    public Future<List<Picture>> getPicturesByParentUnixTime(final long parentUnixTime,
+                                                            DatabaseCallback<List<Picture>> callback){
+        return executor.read(new Callable<List<Picture>>() {
+            @Override
+            public List<Picture> call() {
+                return pDao.getPicturesByParentUnixTimeSynchronously(parentUnixTime);
+            }
+        }, callback);
+    }
+
+    /**
+     * Public method for inserting a <code>Picture</code> into the database on the writer thread.
      */
-    public void insert(Picture picture) { new insertAsyncPictureTask(pDao).execute(picture);}
+    public Future<Void> insert(Picture picture) { return insert(picture, null); }
 
     /**
-     * Updates a <code>Picture</code> in the database synchronously. That is, it can be called
-     * from the main thread of the application. This function was created to resolve some issues
-     * where the database wouldn't be updated before the data in it needed to be accessed again.
+     * Inserts a <code>Picture</code> into the database on the writer thread.
      *
-     * @param picture The <code>Picture</code> to be updated in the database.
+     * @param picture The <code>Picture</code> to insert.
+     * @param callback Called once the insert has been committed. May be null.
      */
-    public void updateSynchronously(Picture picture){
-        pDao.updatePicture(picture.getUnixTime(), picture.getParentUnixTime(), picture.getFilePath(), picture.caption());
+    public Future<Void> insert(final Picture picture, DatabaseCallback<Void> callback) {
+        return executor.write(null, new Runnable() {
+            @Override
+            public void run() {
+                pDao.insert(picture);
+            }
+        }, callback);
     }
 
     /**
-     * Helper task class used to delete a <code>Picture</code> from the database in an
-     * asynchronous thread.
+     * Public method for updating a <code>Picture</code> within the database on the writer thread.
      */
-    private static class deleteAsyncPictureTask extends AsyncTask<Picture, Void, Void> {
-
-        private PictureDao asyncPictureDao;
-        deleteAsyncPictureTask(PictureDao sDao) {
-            asyncPictureDao = sDao;
-        }
+    public Future<Void> update(Picture picture) { return update(picture, null); }
 
-        /**
-         * Given a Picture, use it's unix time to perform an asynchronous deletion of the notebook
-         * from the database
-         */
-        @Override
-        protected Void doInBackground(final Picture... params) {
-            long unix_time = params[0].getUnixTime();
-            asyncPictureDao.delete(unix_time);
-            return null;
-        }
+    /**
+     * Updates every column of a <code>Picture</code> on the writer thread. The values are read
+     * when this is called, and later updates to the same <code>Picture</code> may replace this
+     * one.
+     *
+     * @param picture The <code>Picture</code> to update.
+     * @param callback Called once the update has been committed. May be null.
+     */
+    public Future<Void> update(Picture picture, DatabaseCallback<Void> callback) {
+        final long unix_time = picture.getUnixTime();
+        final long parent = picture.getParentUnixTime();
+        final String filePath = picture.getFilePath();
+        final String caption = picture.caption();
+        return executor.write("picture:" + unix_time, new Runnable() {
+            @Override
+            public void run() {
+                pDao.updatePicture(unix_time, parent, filePath, caption);
+            }
+        }, callback);
     }
 
     /**
-     * Public method for deleting a <code>Picture</code> from the database through use of a
-     * private <code>deleteAsyncPictureTask</code> object.
+     * Public method for deleting a <code>Picture</code> from the database on the writer thread.
+     */
+    public Future<Void> delete(Picture picture) { return delete(picture, null); }
+
+    /**
+     * Deletes a <code>Picture</code> from the database on the writer thread.
+     *
+     * @param picture The <code>Picture</code> to delete. Only its unix time is used.
+     * @param callback Called once the delete has been committed. May be null.
      */
-    public void delete(Picture picture) { new deleteAsyncPictureTask(pDao).execute(picture); }
+    public Future<Void> delete(Picture picture, DatabaseCallback<Void> callback) {
+        final long unix_time = picture.getUnixTime();
+        return executor.write(null, new Runnable() {
+            @Override
+            public void run() {
+                pDao.delete(unix_time);
+            }
+        }, callback);
+    }
+
 
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    ////                                      SEARCH                                              //
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Searches the names and notes of every <code>Stop</code>, and the captions of their
+     * <code>Pictures</code>, on a reader thread.
+     *
+     * @param text The search as the user typed it.
+     * @param callback Called on the main thread with the best matching <code>Stops</code>, best
+     *                 first, and whether the search was cut short. There are no hits if nothing
+     *                 matched.
+     */
+    public Future<SearchResults> search(final String text, DatabaseCallback<SearchResults> callback) {
+        return executor.read(new Callable<SearchResults>() {
+            @Override
+            public SearchResults call() {
+                return SearchIndex.search(searchDao, text);
+            }
+        }, callback);
+    }
 }
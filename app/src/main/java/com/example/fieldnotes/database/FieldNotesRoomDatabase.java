@@ -8,9 +8,12 @@ import android.content.Context;
 import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 
+import com.example.fieldnotes.BuildConfig;
+import com.example.fieldnotes.java.Deletion;
 import com.example.fieldnotes.java.Notebook;
 import com.example.fieldnotes.java.Picture;
 import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopCell;
 
 /**
  * Creates the Room Database within the app data, if it doesn't already exist. Tables will be
@@ -22,7 +25,10 @@ import com.example.fieldnotes.java.Stop;
  * Columns:<br>
  * Column        | Data Type |                      Description<br>
  * notebook_id   |   long    | Table primary key, generated using Unix Epoch time. Must be non-null.<br>
- * notebook_name |  String   | Name of the <code>Notebook</code>. Changable, but must be non-null.<br><br><br>
+ * notebook_name |  String   | Name of the <code>Notebook</code>. Changable, but must be non-null.<br>
+ * last_modified |   long    | When the row was last inserted or changed, set by triggers (see <code>ChangeLog</code>).<br><br>
+ * <p>
+ * Indexes: (last_modified)<br><br><br>
  * <p>
  * <p>
  * Table: stops_table<br><br>
@@ -31,11 +37,14 @@ import com.example.fieldnotes.java.Stop;
  * Column      | Data Type |                 Description<br>
  * stop_id     |   long    | Table primary key, generated using Unix Epoch time. Must be non-null.<br>
  * stop_name   |  String   | Name of the <code>Stop</code>. Changable, but must be non-null.<br>
- * notebook_id |   long    | Table foreign key, the primary key of the <code>Notebook</code> to which the stop belongs. Must be non-null<br>
+ * notebook_id |   long    | Table foreign key, the primary key of the <code>Notebook</code> to which the stop belongs. Must be non-null. Deleted with its <code>Notebook</code>.<br>
  * latitude    |  double   | Latitudinal coordinate of the <code>Stop</code>.<br>
  * longitude   |  double   | Longitudinal coordinate of the <code>Stop</code>.<br>
  * notes       |  String   | Notes taken for the <code>Stop</code>.<br>
- * stop_time   |   long    | Time at which the <code>Stop</code> was created. Editable for note taking purposes.<br><br><br>
+ * stop_time   |   long    | Time at which the <code>Stop</code> was created. Editable for note taking purposes.<br>
+ * last_modified |   long  | When the row was last inserted or changed, set by triggers (see <code>ChangeLog</code>).<br><br>
+ * <p>
+ * Indexes: (parent_notebook_id, stop_time), (last_modified)<br><br><br>
  * <p>
  * <p>
  * Table: pictures_table<br><br>
@@ -44,11 +53,47 @@ import com.example.fieldnotes.java.Stop;
  * Column       | Data Type |                   Description<br>
  * picture_id   |   long    | Table primary key, generated using Unix Epoch time. Must be non-null.<br>
  * picture_path |  String   | Local path to the <code>Picture</code>.
- * stop_id      |   long    | Table foreign key, the primary key of the <code>Stop</code> to which the picture belongs. Must be non-null<br><br>
+ * stop_id      |   long    | Table foreign key, the primary key of the <code>Stop</code> to which the picture belongs. Must be non-null. Deleted with its <code>Stop</code>.<br>
+ * last_modified |   long   | When the row was last inserted or changed, set by triggers (see <code>ChangeLog</code>).<br><br>
+ * <p>
+ * Indexes: (parent_stop_id), (last_modified)<br><br><br>
+ * <p>
+ * <p>
+ * Table: stop_cells_table (spatial index, kept up to date by triggers; see <code>GeoIndex</code>)<br><br>
+ * <p>
+ * Columns:<br>
+ * Column  | Data Type |                   Description<br>
+ * stop_id |   long    | Table primary key and foreign key, the primary key of the <code>Stop</code>. Deleted with its <code>Stop</code>.<br>
+ * cell    |   long    | The number of the latitude/longitude grid cell the <code>Stop</code> lies in.<br><br>
+ * <p>
+ * Indexes: (cell)<br><br><br>
+ * <p>
+ * <p>
+ * Table: deletions_table (rows deleted from the three tables above, kept by triggers; see <code>ChangeLog</code>)<br><br>
+ * <p>
+ * Columns:<br>
+ * Column       | Data Type |                   Description<br>
+ * table_name   |  String   | The table the row was deleted from. Primary key, with row_id.<br>
+ * row_id       |   long    | The primary key of the deleted row.<br>
+ * deleted_time |   long    | When the row was deleted.<br><br>
+ * <p>
+ * Indexes: (deleted_time)<br><br><br>
+ * <p>
+ * <p>
+ * Table: stops_fts (full-text search, not managed by Room; see <code>SearchIndex</code>)<br><br>
+ * <p>
+ * One row per <code>Stop</code>, holding its name, its notes and the captions of its
+ * <code>Pictures</code>, kept up to date by triggers on the stops and pictures tables.<br><br>
+ * <p>
+ * Changes to the tables are applied to existing databases by the migrations in
+ * <code>FieldNotesMigrations</code>.
+ * <p>
+ * The database is opened in write-ahead-logging mode, so reads don't wait for writes, with the
+ * pragmas in <code>DatabaseConfig</code>.
  *
  * @author Tyler Seidel (2019)
  */
-@Database(entities = {Stop.class, Notebook.class, Picture.class}, version = 3, exportSchema = false)
+@Database(entities = {Stop.class, Notebook.class, Picture.class, StopCell.class, Deletion.class}, version = 8, exportSchema = false)
 public abstract class FieldNotesRoomDatabase extends RoomDatabase {
 
 
@@ -59,6 +104,8 @@ public abstract class FieldNotesRoomDatabase extends RoomDatabase {
     public abstract StopDao stopDao();
     public abstract NotebookDao notebookDao();
     public abstract PictureDao pictureDao();
+    public abstract SearchDao searchDao();
+    public abstract DeletionDao deletionDao();
 
 
 
@@ -85,19 +132,46 @@ public abstract class FieldNotesRoomDatabase extends RoomDatabase {
 
         if (INSTANCE == null) {
             //database gets created here if it doesn't exist
-            INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                    FieldNotesRoomDatabase.class, "field_notes_database")
-                    .fallbackToDestructiveMigration()
-                    //UNCOMMENT LINE BELOW AND RUN TO POPULATE APP WITH TEST DATA
-                    //.addCallback(sRoomDatabaseCallback)
-                    .allowMainThreadQueries()
-                    .build();
+            INSTANCE = build(context, "field_notes_database", new DatabaseConfig());
         }
 
 
         return INSTANCE;
     }
 
+    /**
+     * Builds a <code>FieldNotesRoomDatabase</code> stored under <code>name</code>, opened with the
+     * journal mode and pragmas of <code>config</code>. The app only ever uses the one from
+     * <code>getDatabase</code>; this is separate so tests can open their own.
+     */
+    static FieldNotesRoomDatabase build(Context context, String name, final DatabaseConfig config) {
+        RoomDatabase.Builder<FieldNotesRoomDatabase> builder = Room.databaseBuilder(
+                context.getApplicationContext(), FieldNotesRoomDatabase.class, name)
+                .addMigrations(FieldNotesMigrations.ALL)
+                //versions before 3 never held field data, so they are still rebuilt
+                .fallbackToDestructiveMigrationFrom(1, 2)
+                .setJournalMode(config.getJournalMode())
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        super.onOpen(db);
+                        config.apply(db);
+                        //new databases don't go through the migrations, so the triggers are made here
+                        SearchIndex.create(db);
+                        GeoIndex.create(db);
+                        ChangeLog.create(db);
+                    }
+                });
+        //UNCOMMENT LINE BELOW AND RUN TO POPULATE APP WITH TEST DATA
+        //builder.addCallback(sRoomDatabaseCallback);
+
+        //main thread queries are only tolerated in debug builds; in release builds Room
+        //throws on them, so none of them can reach the field
+        if (BuildConfig.DEBUG)
+            builder.allowMainThreadQueries();
+        return builder.build();
+    }
+
 
 
     /**
@@ -3,12 +3,24 @@ package com.example.fieldnotes.database;
 import android.app.Application;
 import android.arch.lifecycle.AndroidViewModel;
 import android.arch.lifecycle.LiveData;
+import android.arch.paging.DataSource;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
+import android.location.Location;
 
+import com.example.fieldnotes.R;
+import com.example.fieldnotes.java.NearbyStop;
 import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookSummary;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
 import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.SearchResults;
 import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopSummary;
+import com.example.fieldnotes.utilities.LocationUtility;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * This class serves the purpose of extending the <code>AndroidViewModel</code>, which acts as a
@@ -26,11 +38,17 @@ public class FieldNotesViewModel extends AndroidViewModel {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     private FieldNotesRepo repo;
-    private Notebook notebook;
     private LiveData<List<Notebook>> notebooks;
     private LiveData<List<Stop>> stops;
     private LiveData<List<Picture>> pictures;
 
+    //paged lists, built the first time they are asked for so they survive configuration changes
+    private long notebookUnixTime;
+    private LiveData<PagedList<NotebookSummary>> notebooksByDate;
+    private LiveData<PagedList<NotebookSummary>> notebooksByName;
+    private LiveData<PagedList<StopSummary>> stopsByTime;
+    private LiveData<PagedList<StopSummary>> stopsByName;
+
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
     ////                                   CONSTRUCTORS                                           //
@@ -57,8 +75,24 @@ public class FieldNotesViewModel extends AndroidViewModel {
     public FieldNotesViewModel(Application application, long unixTime) {
         super(application);
         repo = new FieldNotesRepo(application);
-        notebook = repo.getNotebook(unixTime);
-        stops = repo.getAllStopsByNotebook(notebook);
+        notebookUnixTime = unixTime;
+        stops = repo.getAllStopsByNotebook(unixTime);
+    }
+
+    /**
+     * Wraps a source of pages in a <code>LiveData</code> of <code>PagedLists</code>. Rows are
+     * loaded <code>list_page_size</code> at a time (see integers.xml) as the list scrolls, and
+     * rows that aren't loaded yet are null placeholders, so the list keeps its full length.
+     */
+    private <T> LiveData<PagedList<T>> page(DataSource.Factory<Integer, T> factory) {
+        int pageSize = getApplication().getResources().getInteger(R.integer.list_page_size);
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(pageSize)
+                .setPrefetchDistance(pageSize)
+                .setInitialLoadSizeHint(pageSize * 2)
+                .setEnablePlaceholders(true)
+                .build();
+        return new LivePagedListBuilder<>(factory, config).build();
     }
 
 
@@ -74,11 +108,43 @@ public class FieldNotesViewModel extends AndroidViewModel {
     }
 
     /**
-     * Search the Notebooks list for and return a <code>Notebook</code> specified by the given
-     * unix time, or null if no such <code>Notebook</code> exists.
+     * Gets the paged list of all <code>Notebooks</code>, as the name and unix time the list shows.
+     * Only the rows around what is on screen are loaded, and a change to the table only reloads
+     * those.
+     *
+     * @param byName True to sort by name, false to sort by the date they were created.
      */
-    public Notebook getNotebookByUnixTime(long unixTime) {
-        return repo.getNotebook(unixTime);
+    public LiveData<PagedList<NotebookSummary>> getPagedNotebooks(boolean byName) {
+        if (byName) {
+            if (notebooksByName == null)
+                notebooksByName = page(repo.getPagedNotebooks(true));
+            return notebooksByName;
+        }
+        if (notebooksByDate == null)
+            notebooksByDate = page(repo.getPagedNotebooks(false));
+        return notebooksByDate;
+    }
+
+    /**
+     * Looks up the <code>Notebook</code> specified by the given unix time off the main thread,
+     * and passes it, or null if no such <code>Notebook</code> exists, to <code>callback</code>
+     * on the main thread.
+     */
+    public Future<Notebook> getNotebookByUnixTime(long unixTime, DatabaseCallback<Notebook> callback) {
+        return repo.getNotebook(unixTime, callback);
+    }
+
+    /**
+     * Loads the <code>Notebook</code> with the given unix time together with all of its
+     * <code>Stops</code> and their <code>Pictures</code>, as one consistent snapshot of the
+     * database. Performs the query on the calling thread, so it must not be called from the
+     * main thread.
+     *
+     * @param unixTime The primary key of the <code>Notebook</code>.
+     * @return The full <code>Notebook</code>, or null if no such <code>Notebook</code> exists.
+     */
+    public NotebookWithStopsAndPictures getNotebookWithStopsAndPictures(long unixTime) {
+        return repo.getNotebookWithStopsAndPictures(unixTime);
     }
 
     /**
@@ -93,31 +159,52 @@ public class FieldNotesViewModel extends AndroidViewModel {
      * Public method for use in app to insert a <code>Notebook</code> into the database through use
      * of a <code>FieldNotesRepo</code> object.
      */
-    public void insert(Notebook notebook) {
-        repo.insert(notebook);
+    public Future<Void> insert(Notebook notebook) {
+        return repo.insert(notebook);
+    }
+
+    /**
+     * Inserts a <code>Notebook</code>, and calls <code>callback</code> on the main
+     * thread once it has been committed.
+     */
+    public Future<Void> insert(Notebook notebook, DatabaseCallback<Void> callback) {
+        return repo.insert(notebook, callback);
     }
 
     /**
      * Public method for use in app to delete a <code>Notebook</code> from the database through use
      * of a <code>FieldNotesRepo</code> object.
      */
-    public void delete(Notebook notebook) {
-        repo.delete(notebook);
+    public Future<Void> delete(Notebook notebook) {
+        return repo.delete(notebook);
+    }
+
+    /**
+     * Deletes a <code>Notebook</code>, along with its <code>Stops</code> and their
+     * <code>Pictures</code>, and calls <code>callback</code> on the main thread when done.
+     */
+    public Future<Void> delete(Notebook notebook, DatabaseCallback<Void> callback) {
+        return repo.delete(notebook, callback);
     }
 
     /**
      * public method for use in app to update a <code>Notebook</code> within the database through use
      * of a <code>FieldNotesRepo</code> object.
      */
-    public void update(Notebook notebook) {
-        repo.update(notebook);
+    public Future<Void> update(Notebook notebook) {
+        return repo.update(notebook);
     }
 
-    public void updateSynchronously(Notebook notebook) {
-        repo.updateSynchronously(notebook);
+    /**
+     * Updates the name of a <code>Notebook</code>, and calls <code>callback</code> on the main
+     * thread once it has been committed.
+     */
+    public Future<Void> update(Notebook notebook, DatabaseCallback<Void> callback) {
+        return repo.update(notebook, callback);
     }
 
 
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
     ////                          STOP-RELATED METHODS/CLASSES                                    //
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -130,11 +217,56 @@ public class FieldNotesViewModel extends AndroidViewModel {
     }
 
     /**
-     * Search the Stops list for and return a <code>Stop</code> specified by the given unix time, or
-     * null if no such <code>Stop</code> exists.
+     * Looks up the <code>Stop</code> specified by the given unix time off the main thread, and
+     * passes it, or null if no such <code>Stop</code> exists, to <code>callback</code> on the main
+     * thread.
      */
-    public Stop getStopByUnixTime(long unixTime) {
-        return repo.getStop(unixTime);
+    public Future<Stop> getStopByUnixTime(long unixTime, DatabaseCallback<Stop> callback) {
+        return repo.getStop(unixTime, callback);
+    }
+
+    /**
+     * Gets the paged list of summaries of the <code>Stops</code> of the <code>Notebook</code> this
+     * <code>FieldNotesViewModel</code> was created for (see <code>FieldNotesViewModelFactory</code>.)
+     * Only the rows around what is on screen are loaded, and a change to the table only
+     * reloads those.
+     *
+     * @param byName True to sort by name, false to sort by the time of the <code>Stop</code>.
+     */
+    public LiveData<PagedList<StopSummary>> getPagedStops(boolean byName) {
+        if (byName) {
+            if (stopsByName == null)
+                stopsByName = page(repo.getPagedStopsByNotebook(notebookUnixTime, true));
+            return stopsByName;
+        }
+        if (stopsByTime == null)
+            stopsByTime = page(repo.getPagedStopsByNotebook(notebookUnixTime, false));
+        return stopsByTime;
+    }
+
+    /**
+     * Finds the <code>Stops</code>, of any <code>Notebook</code>, within <code>radius</code>
+     * meters of a point off the main thread, and passes the nearest <code>limit</code> of them,
+     * nearest first, to <code>callback</code> on the main thread.
+     */
+    public Future<List<NearbyStop>> getStopsNear(double latitude, double longitude, double radius,
+                                                 int limit, DatabaseCallback<List<NearbyStop>> callback) {
+        return repo.getStopsNear(latitude, longitude, radius, limit, callback);
+    }
+
+    /**
+     * Like <code>getStopsNear</code>, around the last location the app received (see
+     * <code>LocationUtility</code>.)
+     *
+     * @return The search, or null if the app has never received a location, in which case
+     * <code>callback</code> is not called.
+     */
+    public Future<List<NearbyStop>> getStopsNearLastLocation(double radius, int limit,
+                                                             DatabaseCallback<List<NearbyStop>> callback) {
+        Location here = LocationUtility.getLastLocation(getApplication());
+        if (here == null)
+            return null;
+        return repo.getStopsNear(here.getLatitude(), here.getLongitude(), radius, limit, callback);
     }
 
     /**
@@ -146,14 +278,15 @@ public class FieldNotesViewModel extends AndroidViewModel {
     }
 
     /**
-     * Given a <code>Notebook</code>, performs a synchronous query from the
-     * <code>FieldNotesRepo</code> to get all the <code>Stops'</code> data.
+     * Given a <code>Notebook</code>, queries the <code>FieldNotesRepo</code> off the main thread
+     * for all the <code>Stops'</code> data.
      *
      * @param notebook The <code>Notebook</code> to get all the <code>Stops</code> from.
-     * @return All the <code>Stops</code> belonging to the passed <code>Notebook</code>.
+     * @param callback Called on the main thread with all the <code>Stops</code> belonging to the
+     *                 passed <code>Notebook</code>.
      */
-    public List<Stop> getStopsByNotebookSynchronously(Notebook notebook){
-        return repo.getStopsByNotebookSynchronously(notebook);
+    public Future<List<Stop>> getStopsByNotebook(Notebook notebook, DatabaseCallback<List<Stop>> callback){
+        return repo.getStopsByNotebook(notebook, callback);
     }
 
     /**
@@ -168,34 +301,51 @@ public class FieldNotesViewModel extends AndroidViewModel {
      * Public method for use in app to insert a <code>Stop</code> into the database through use
      * of a <code>FieldNotesRepo</code> object.
      */
-    public void insert(Stop stop) {
-        repo.insert(stop);
+    public Future<Void> insert(Stop stop) {
+        return repo.insert(stop);
+    }
+
+    /**
+     * Inserts a <code>Stop</code>, and calls <code>callback</code> on the main
+     * thread once it has been committed.
+     */
+    public Future<Void> insert(Stop stop, DatabaseCallback<Void> callback) {
+        return repo.insert(stop, callback);
     }
 
     /**
      * Public method for use in app to delete a <code>Stop</code> from the database through use
      * of a <code>FieldNotesRepo</code> object.
      */
-    public void delete(Stop stop) {
-        repo.delete(stop);
+    public Future<Void> delete(Stop stop) {
+        return repo.delete(stop);
+    }
+
+    /**
+     * Deletes a <code>Stop</code> along with its <code>Pictures</code>, and calls
+     * <code>callback</code> on the main thread when done.
+     */
+    public Future<Void> delete(Stop stop, DatabaseCallback<Void> callback) {
+        return repo.delete(stop, callback);
     }
 
     /**
      * Public method for use in app to update a <code>Stop</code> within the database through use
      * of a <code>FieldNotesRepo</code> object.
      */
-    public void update(Stop stop) {
-        repo.update(stop);
+    public Future<Void> update(Stop stop) {
+        return repo.update(stop);
     }
 
     /**
-     * Public method for use in app to update a <code>Stop</code> within the database on the
-     * called thread.
+     * Updates a <code>Stop</code>, and calls <code>callback</code> on the main
+     * thread once it has been committed.
      */
-    public void updateSynchronously(Stop stop) {
-        repo.updateSynchronously(stop);
+    public Future<Void> update(Stop stop, DatabaseCallback<Void> callback) {
+        return repo.update(stop, callback);
     }
 
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
     ////                         PICTURE-RELATED METHODS/CLASSES                                  //
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -219,8 +369,16 @@ public class FieldNotesViewModel extends AndroidViewModel {
         return repo.getPicturesByParentUnixTime(parentUnixTime);
     }
 
-    public List<Picture> getPicturesByParentUnixTimeSynchronously(long parentUnixTime){
-        return repo.getPicturesByParentUnixTimeSynchronously(parentUnixTime);
+    /**
+     * Gets the <code>Pictures</code> that belong to a <code>Stop</code> off the main thread,
+     * once, and passes them to <code>callback</code> on the main thread.
+     *
+     * @param parentUnixTime The <code>unixTime</code> of the parent <code>Stop</code>.
+     * @param callback Called on the main thread with the <code>Pictures</code>.
+     */
+    public Future<List<Picture>> getPicturesByParentUnixTime(long parentUnixTime,
+                                                            DatabaseCallback<List<Picture>> callback){
+        return repo.getPicturesByParentUnixTime(parentUnixTime, callback);
     }
 
     /**
@@ -239,23 +397,60 @@ public class FieldNotesViewModel extends AndroidViewModel {
      * Wrapper method for the <code>FieldNotesRepo</code> class's
      * <code>insert(Picture)</code> method.
      */
-    public void insert(Picture picture) {
-        repo.insert(picture);
+    public Future<Void> insert(Picture picture) {
+        return repo.insert(picture);
+    }
+
+    /**
+     * Inserts a <code>Picture</code>, and calls <code>callback</code> on the main
+     * thread once it has been committed.
+     */
+    public Future<Void> insert(Picture picture, DatabaseCallback<Void> callback) {
+        return repo.insert(picture, callback);
     }
 
     /**
      * Wrapper method for the <code>FieldNotesRepo</code> class's
      * <code>delete(Picture)</code> method.
      */
-    public void delete(Picture picture) {
-        repo.delete(picture);
+    public Future<Void> delete(Picture picture) {
+        return repo.delete(picture);
+    }
+
+    /**
+     * Deletes a <code>Picture</code>, and calls <code>callback</code> on the main
+     * thread once it has been committed.
+     */
+    public Future<Void> delete(Picture picture, DatabaseCallback<Void> callback) {
+        return repo.delete(picture, callback);
+    }
+
+    /**
+     * Public method for use in app to update a <code>Picture</code> within the database through
+     * use of a <code>FieldNotesRepo</code> object.
+     */
+    public Future<Void> update(Picture picture) {
+        return repo.update(picture);
+    }
+
+    /**
+     * Updates a <code>Picture</code>, and calls <code>callback</code> on the main
+     * thread once it has been committed.
+     */
+    public Future<Void> update(Picture picture, DatabaseCallback<Void> callback) {
+        return repo.update(picture, callback);
     }
 
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    ////                                      SEARCH                                              //
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
-     * Public method for use in app to update a <code>Picture</code> within the database on the
-     * called thread.through use of a <code>FieldNotesRepo</code> object.
+     * Searches every <code>Stop</code> for <code>text</code> off the main thread, and passes
+     * the best matches, best first, to <code>callback</code> on the main thread.
      */
-    public void updateSynchronously(Picture picture) {
-        repo.updateSynchronously(picture);
+    public Future<SearchResults> search(String text, DatabaseCallback<SearchResults> callback) {
+        return repo.search(text, callback);
     }
 }
@@ -0,0 +1,195 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+Finding the stops near a point uses a grid laid over the globe, 0.01 degrees on a side (about
+1.1 km north to south, less east to west away from the equator.) Every Stop with coordinates has
+a row in stop_cells_table holding the number of its cell:
+
+    cell = row * LONGITUDE_CELLS + column
+    row = (int) ((latitude + 90) * 100),  column = (int) ((longitude + 180) * 100) % LONGITUDE_CELLS
+
+To find the stops within some radius, cellsAround lists the cells that overlap a box around the
+circle, StopDao reads the stops in those cells through the index on cell, and nearest works out
+the real distance to each in Java and drops the ones outside the circle. For the few kilometers
+the app searches, that is a handful of cells and a handful of stops, however many stops there are.
+
+SQLite's R*Tree module would do the same job, but Android doesn't build its SQLite with it, so
+the grid is the portable way. Nothing in the app writes stop_cells_table: the triggers below keep
+it in step with stops_table, the same formula is written out in SQL for them, and it has to stay
+the same as cell() here. Stops at (0, 0) are the ones without coordinates (see StopActivity), so
+they get no cell.
+
+A search over more than MAX_CELLS cells (a radius of more than 10 km or so, or anywhere near a
+pole) would bind more variables than SQLite allows, so it reads the whole band of latitudes
+instead. That is a scan, but one that only happens for searches that return a large share of the
+stops anyway.
+ */
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+
+import com.example.fieldnotes.java.NearbyStop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The spatial index of <code>Stops</code>: the SQL that creates and fills it, the numbering of
+ * its grid cells, and the search that reads it.
+ */
+final class GeoIndex {
+
+    static final double CELLS_PER_DEGREE = 100;
+    static final long LONGITUDE_CELLS = 360 * 100;
+    static final long LATITUDE_CELLS = 180 * 100 + 1;
+    static final int MAX_CELLS = 900;
+
+    private static final double EARTH_RADIUS = 6371008.8; //meters
+
+    //the SQL version of cell(), and the test for a stop with coordinates; %1$s is the row's name
+    private static final String CELL_OF = "(CAST((%1$s.`latitude` + 90) * 100 AS INTEGER) * "
+            + LONGITUDE_CELLS + " + CAST((%1$s.`longitude` + 180) * 100 AS INTEGER) % " + LONGITUDE_CELLS + ")";
+    private static final String HAS_FIX = "NOT (%1$s.`latitude` = 0 AND %1$s.`longitude` = 0)";
+
+    private static final String[] CREATE = {
+            "CREATE TRIGGER IF NOT EXISTS `stop_cells_insert` AFTER INSERT ON `stops_table` "
+                    + "WHEN " + String.format(HAS_FIX, "new") + " BEGIN "
+                    + "INSERT OR REPLACE INTO `stop_cells_table` (`stop_id`, `cell`) "
+                    + "VALUES (new.`stop_id`, " + String.format(CELL_OF, "new") + "); END",
+            "CREATE TRIGGER IF NOT EXISTS `stop_cells_update` AFTER UPDATE OF `latitude`, `longitude` "
+                    + "ON `stops_table` BEGIN "
+                    + "DELETE FROM `stop_cells_table` WHERE `stop_id` = old.`stop_id`; "
+                    + "INSERT INTO `stop_cells_table` (`stop_id`, `cell`) "
+                    + "SELECT new.`stop_id`, " + String.format(CELL_OF, "new")
+                    + " WHERE " + String.format(HAS_FIX, "new") + "; END"
+    };
+
+    private GeoIndex() {
+    }
+
+    /**
+     * Creates the triggers that keep the stop cells table up to date, if they don't exist yet.
+     * Room creates the table itself.
+     */
+    static void create(SupportSQLiteDatabase db) {
+        for (String sql : CREATE)
+            db.execSQL(sql);
+    }
+
+    /**
+     * Empties the stop cells table and fills it again from the stops table. Used when the index
+     * is added to a database that already has data in it.
+     */
+    static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM `stop_cells_table`");
+        db.execSQL("INSERT INTO `stop_cells_table` (`stop_id`, `cell`) "
+                + "SELECT s.`stop_id`, " + String.format(CELL_OF, "s") + " FROM `stops_table` s "
+                + "WHERE " + String.format(HAS_FIX, "s"));
+    }
+
+    /**
+     * Finds the <code>Stops</code> within <code>radius</code> of a point, nearest first. Must
+     * not be called from the main thread.
+     *
+     * @param dao       The <code>StopDao</code> of the database to search.
+     * @param latitude  The latitude of the point.
+     * @param longitude The longitude of the point.
+     * @param radius    How far from the point to look, in meters.
+     * @param limit     The most <code>Stops</code> to return.
+     * @return The <code>Stops</code> found, nearest first, with their distances set.
+     */
+    static List<NearbyStop> nearest(StopDao dao, double latitude, double longitude, double radius, int limit) {
+        List<Long> cells = cellsAround(latitude, longitude, radius);
+        List<NearbyStop> candidates;
+        if (cells != null) {
+            candidates = dao.getStopsInCells(cells);
+        } else {
+            double degrees = Math.toDegrees(radius / EARTH_RADIUS);
+            candidates = dao.getStopsInLatitudes(latitude - degrees, latitude + degrees);
+        }
+
+        List<NearbyStop> found = new ArrayList<>();
+        for (NearbyStop stop : candidates) {
+            double distance = distance(latitude, longitude, stop.getLatitude(), stop.getLongitude());
+            if (distance <= radius) {
+                stop.setDistance(distance);
+                found.add(stop);
+            }
+        }
+        Collections.sort(found, new Comparator<NearbyStop>() {
+            @Override
+            public int compare(NearbyStop o1, NearbyStop o2) {
+                return Double.compare(o1.getDistance(), o2.getDistance());
+            }
+        });
+        if (found.size() > limit)
+            found = new ArrayList<>(found.subList(0, limit));
+        return found;
+    }
+
+    /**
+     * Gets the number of the grid cell a point lies in. Must give the same answer as the SQL in
+     * the triggers.
+     */
+    static long cell(double latitude, double longitude) {
+        long row = (long) ((latitude + 90) * CELLS_PER_DEGREE);
+        long column = (long) ((longitude + 180) * CELLS_PER_DEGREE) % LONGITUDE_CELLS;
+        return row * LONGITUDE_CELLS + column;
+    }
+
+    /**
+     * Lists every grid cell that overlaps the box around a circle.
+     *
+     * @return The cells, or null if there are more than <code>MAX_CELLS</code> of them.
+     */
+    static List<Long> cellsAround(double latitude, double longitude, double radius) {
+        double latitudeSpan = Math.toDegrees(radius / EARTH_RADIUS);
+        double south = Math.max(-90, latitude - latitudeSpan);
+        double north = Math.min(90, latitude + latitudeSpan);
+        //a degree of longitude is shortest on the edge of the box nearest a pole, so that edge
+        //needs the most of them to cover the radius
+        double widest = Math.max(Math.abs(south), Math.abs(north));
+        double cos = Math.cos(Math.toRadians(widest));
+        if (cos <= 0)
+            return null;
+        double longitudeSpan = latitudeSpan / cos;
+        if (longitudeSpan >= 180)
+            return null;
+
+        long firstRow = (long) Math.floor((south + 90) * CELLS_PER_DEGREE);
+        long lastRow = Math.min(LATITUDE_CELLS - 1, (long) Math.floor((north + 90) * CELLS_PER_DEGREE));
+        long firstColumn = (long) Math.floor((longitude - longitudeSpan + 180) * CELLS_PER_DEGREE);
+        long lastColumn = (long) Math.floor((longitude + longitudeSpan + 180) * CELLS_PER_DEGREE);
+
+        long count = (lastRow - firstRow + 1) * (lastColumn - firstColumn + 1);
+        if (count > MAX_CELLS)
+            return null;
+
+        List<Long> cells = new ArrayList<>((int) count);
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                //columns past the 180th meridian wrap around to the other side
+                long wrapped = ((column % LONGITUDE_CELLS) + LONGITUDE_CELLS) % LONGITUDE_CELLS;
+                cells.add(row * LONGITUDE_CELLS + wrapped);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * The distance between two points along the surface of the Earth (the haversine formula.)
+     *
+     * @return The distance in meters.
+     */
+    static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+The streaming way to read Stops for a map export (see GeoUtility). Unlike NotebookStops, which
+runs a query for each Stop's Pictures, this is one query: the Stops with coordinates, joined with
+their notebook's name and LEFT JOINed with their Pictures, so a Stop comes out as one row per
+Picture (or a single row with a null file_path if it has none.) The rows are ordered by Stop, so
+next reads on until the stop_id changes, and leaves the cursor on the first row of the next Stop.
+Nothing is made into a Stop or a Picture; the current Stop's columns are kept as they are read,
+and its Pictures in two lists that are cleared for every Stop, so a hundred thousand Stops take
+no more memory than one.
+
+A Stop at exactly 0, 0 is one that was never located (see RtfUtility.getCoordinatesString), so
+the query leaves it out.
+ */
+
+import android.database.Cursor;
+
+import com.example.fieldnotes.utilities.GeoSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The located <code>Stops</code> of a <code>Notebook</code>, or of all of them, read from the
+ * database a row at a time for a map export. Must not be used on the main thread.
+ */
+final class GeoStops implements GeoSource {
+
+    private final StopDao stopDao;
+    private final Long notebookId;
+    private final String name;
+    private final List<String> picturePaths = new ArrayList<>();
+    private final List<String> pictureCaptions = new ArrayList<>();
+    private Cursor cursor;
+    private boolean onRow;
+
+    private int idColumn;
+    private int nameColumn;
+    private int timeColumn;
+    private int notesColumn;
+    private int latitudeColumn;
+    private int longitudeColumn;
+    private int notebookColumn;
+    private int pathColumn;
+    private int captionColumn;
+
+    private long stopId;
+    private String stopName;
+    private long time;
+    private String notes;
+    private double latitude;
+    private double longitude;
+    private String notebookName;
+
+    /**
+     * @param notebookId The <code>unixTime</code> of the <code>Notebook</code>, or null for all
+     *                   of them.
+     * @param name       What to call the export.
+     */
+    GeoStops(StopDao stopDao, Long notebookId, String name) {
+        this.stopDao = stopDao;
+        this.notebookId = notebookId;
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getStopCount() {
+        if (notebookId == null)
+            return stopDao.countLocatedStops();
+        return stopDao.countLocatedStopsByNotebook(notebookId);
+    }
+
+    @Override
+    public void start() {
+        if (cursor != null)
+            cursor.close();
+        cursor = notebookId == null ? stopDao.getGeoCursor() : stopDao.getGeoCursorByNotebook(notebookId);
+        idColumn = cursor.getColumnIndexOrThrow("stop_id");
+        nameColumn = cursor.getColumnIndexOrThrow("stop_name");
+        timeColumn = cursor.getColumnIndexOrThrow("stop_time");
+        notesColumn = cursor.getColumnIndexOrThrow("notes");
+        latitudeColumn = cursor.getColumnIndexOrThrow("latitude");
+        longitudeColumn = cursor.getColumnIndexOrThrow("longitude");
+        notebookColumn = cursor.getColumnIndexOrThrow("notebook_name");
+        pathColumn = cursor.getColumnIndexOrThrow("file_path");
+        captionColumn = cursor.getColumnIndexOrThrow("caption");
+        onRow = cursor.moveToFirst();
+    }
+
+    @Override
+    public boolean next() {
+        if (cursor == null || !onRow)
+            return false;
+
+        stopId = cursor.getLong(idColumn);
+        stopName = cursor.getString(nameColumn);
+        time = cursor.getLong(timeColumn);
+        notes = cursor.getString(notesColumn);
+        latitude = cursor.getDouble(latitudeColumn);
+        longitude = cursor.getDouble(longitudeColumn);
+        notebookName = cursor.getString(notebookColumn);
+        picturePaths.clear();
+        pictureCaptions.clear();
+        do {
+            String path = cursor.getString(pathColumn);
+            if (path != null) {
+                picturePaths.add(path);
+                pictureCaptions.add(cursor.getString(captionColumn));
+            }
+            onRow = cursor.moveToNext();
+        } while (onRow && cursor.getLong(idColumn) == stopId);
+        return true;
+    }
+
+    @Override
+    public long getStopId() {
+        return stopId;
+    }
+
+    @Override
+    public String getStopName() {
+        return stopName;
+    }
+
+    @Override
+    public String getNotebookName() {
+        return notebookName;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String getNotes() {
+        return notes;
+    }
+
+    @Override
+    public double getLatitude() {
+        return latitude;
+    }
+
+    @Override
+    public double getLongitude() {
+        return longitude;
+    }
+
+    @Override
+    public int getPictureCount() {
+        return picturePaths.size();
+    }
+
+    @Override
+    public String getPicturePath(int index) {
+        return picturePaths.get(index);
+    }
+
+    @Override
+    public String getPictureCaption(int index) {
+        return pictureCaptions.get(index);
+    }
+
+    @Override
+    public void close() {
+        if (cursor != null)
+            cursor.close();
+    }
+}
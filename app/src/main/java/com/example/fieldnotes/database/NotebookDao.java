@@ -2,11 +2,16 @@ package com.example.fieldnotes.database;
 
 
 import android.arch.lifecycle.LiveData;
+import android.arch.paging.DataSource;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.Transaction;
+import android.database.Cursor;
 
 import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookSummary;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
 
 import java.util.List;
 
@@ -34,6 +39,22 @@ public interface NotebookDao {
     @Query("SELECT * FROM notebooks_table")
     LiveData<List<Notebook>> getAllNotebooks();
 
+    @Query("SELECT notebook_id, notebook_name FROM notebooks_table ORDER BY notebook_id")
+    DataSource.Factory<Integer, NotebookSummary> getPagedNotebooksByDate();
+
+    @Query("SELECT notebook_id, notebook_name FROM notebooks_table ORDER BY notebook_name, notebook_id")
+    DataSource.Factory<Integer, NotebookSummary> getPagedNotebooksByName();
+
     @Query("UPDATE notebooks_table SET notebook_name = :name WHERE notebook_id = :unix_time")
     void updateNotebook(String name, long unix_time);
+
+    @Query("SELECT notebook_id, notebook_name, last_modified FROM notebooks_table WHERE last_modified > :since AND last_modified <= :until ORDER BY last_modified, notebook_id")
+    Cursor getChangedNotebooksCursor(long since, long until);
+
+    @Query("SELECT COUNT(*) FROM notebooks_table WHERE last_modified > :since AND last_modified <= :until")
+    int countChangedNotebooks(long since, long until);
+
+    @Transaction
+    @Query("SELECT * FROM notebooks_table WHERE notebook_id = :notebook_unix_time")
+    NotebookWithStopsAndPictures getNotebookWithStopsAndPictures(long notebook_unix_time);
 }
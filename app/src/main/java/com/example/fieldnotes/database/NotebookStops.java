@@ -0,0 +1,127 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+The streaming way to read a notebook for an export. Instead of one query that loads every Stop
+and every Picture of the notebook (getNotebookWithStopsAndPictures), this reads the notebook's
+Stops a page of PAGE_SIZE at a time in stop_time order, the same order NotebookActivity lists them
+in, and reads a Stop's Pictures, in picture_id order, only when that Stop is reached. The export
+never holds more than a page of Stops, however big the notebook is.
+
+Both orders are total (stop_id breaks ties in stop_time), so every export, and every pass of one,
+sees the Stops and Pictures in the same order: the RTF fragment cache, a resumed export and the
+two passes of the DOCX export all rely on that. The Pictures come off the parent_stop_id index,
+which SQLite already keeps in picture_id (rowid) order, so the ORDER BY costs no sort.
+
+Each page starts after the (stop_time, stop_id) of the last Stop of the page before, rather than
+at an OFFSET. This used to be one cursor, but a cursor over more rows than its window refills the
+window by running the query again at an OFFSET, in a transaction of its own. A Stop deleted
+between two refills shifted every later Stop down one, so the next window skipped a Stop; one
+inserted shifted them up, and a Stop was written twice. Starting from the last key written doesn't
+depend on what came before it, so every Stop that is still there when its page is read is written
+exactly once, in order.
+
+The pages aren't one transaction, so a Stop edited while the export runs may or may not make it
+in. Holding one open would keep a reader connection, and the WAL it reads from, pinned for as long
+as the export takes. Only the first page of a pass (start) goes by OFFSET, since a resumed export
+only knows how many Stops it had written.
+ */
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+import com.example.fieldnotes.utilities.StopSource;
+
+import java.util.List;
+
+/**
+ * The <code>Stops</code> of a <code>Notebook</code>, read from the database one at a time for an
+ * export. Must not be used on the main thread.
+ */
+final class NotebookStops implements StopSource {
+
+    //not private so the tests can fill more than one page
+    static final int PAGE_SIZE = 50;
+
+    private final StopDao stopDao;
+    private final PictureDao pictureDao;
+    private final Notebook notebook;
+
+    //the page being read, and the index in it of the next Stop; null before start and after close
+    private List<Stop> page;
+    private int position;
+
+    NotebookStops(StopDao stopDao, PictureDao pictureDao, Notebook notebook) {
+        this.stopDao = stopDao;
+        this.pictureDao = pictureDao;
+        this.notebook = notebook;
+    }
+
+    @Override
+    public Notebook getNotebook() {
+        return notebook;
+    }
+
+    @Override
+    public int getStopCount() {
+        return stopDao.countStopsByNotebook(notebook.getUnixTime());
+    }
+
+    @Override
+    public int getPictureCount() {
+        return pictureDao.countPicturesByNotebook(notebook.getUnixTime());
+    }
+
+    @Override
+    public int getPictureCountBefore(int index) {
+        if (index <= 0)
+            return 0;
+        return pictureDao.countPicturesOfFirstStops(notebook.getUnixTime(), index);
+    }
+
+    @Override
+    public long getTextLength() {
+        return stopDao.countTextByNotebook(notebook.getUnixTime());
+    }
+
+    @Override
+    public long getStopIdAt(int index) {
+        Long id = stopDao.getStopIdAt(notebook.getUnixTime(), index);
+        return id == null ? 0 : id;
+    }
+
+    @Override
+    public void start(int first) {
+        page = stopDao.getStopsPageByNotebook(notebook.getUnixTime(), Math.max(first, 0), PAGE_SIZE);
+        position = 0;
+    }
+
+    @Override
+    public StopWithPictures next() {
+        if (page == null)
+            return null;
+        if (position == page.size()) {
+            //a short page was the last one
+            if (page.size() < PAGE_SIZE)
+                return null;
+            Stop last = page.get(page.size() - 1);
+            page = stopDao.getStopsPageByNotebookAfter(notebook.getUnixTime(), last.getTime(),
+                    last.getUnixTime(), PAGE_SIZE);
+            position = 0;
+            if (page.isEmpty())
+                return null;
+        }
+        Stop stop = page.get(position++);
+
+        StopWithPictures stopWithPictures = new StopWithPictures();
+        stopWithPictures.setStop(stop);
+        stopWithPictures.setPictures(pictureDao.getPicturesByParentUnixTimeSynchronously(stop.getUnixTime()));
+        return stopWithPictures;
+    }
+
+    @Override
+    public void close() {
+        page = null;
+    }
+}
@@ -4,6 +4,7 @@ import android.arch.lifecycle.LiveData;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.Query;
+import android.database.Cursor;
 
 import com.example.fieldnotes.java.Picture;
 
@@ -22,21 +23,30 @@ public interface PictureDao {
     @Insert()
     void insert(Picture picture);
 
-    @Query("DELETE FROM pictures_table WHERE parent_stop_id = :parent_unix_time")
-    void deleteAllByStop(long parent_unix_time);
-
     @Query("DELETE FROM pictures_table WHERE picture_id = :unix_time")
     void delete(long unix_time);
 
-    @Query("SELECT * FROM pictures_table WHERE parent_stop_id = :parent_unix_time")
+    @Query("SELECT * FROM pictures_table WHERE parent_stop_id = :parent_unix_time ORDER BY picture_id")
     LiveData<List<Picture>> getPicturesByParentUnixTime(long parent_unix_time);
 
-    @Query("SELECT * FROM pictures_table WHERE parent_stop_id = :parent_unix_time")
+    @Query("SELECT * FROM pictures_table WHERE parent_stop_id = :parent_unix_time ORDER BY picture_id")
     List<Picture> getPicturesByParentUnixTimeSynchronously(long parent_unix_time);
 
     @Query("SELECT * FROM pictures_table")
     LiveData<List<Picture>> getAllPictures();
 
+    @Query("SELECT COUNT(*) FROM pictures_table WHERE parent_stop_id IN (SELECT stop_id FROM stops_table WHERE parent_notebook_id = :parent_unix_time)")
+    int countPicturesByNotebook(long parent_unix_time);
+
+    @Query("SELECT COUNT(*) FROM pictures_table WHERE parent_stop_id IN (SELECT stop_id FROM stops_table WHERE parent_notebook_id = :parent_unix_time ORDER BY stop_time, stop_id LIMIT :stops)")
+    int countPicturesOfFirstStops(long parent_unix_time, int stops);
+
+    @Query("SELECT picture_id, parent_stop_id, file_path, caption, last_modified FROM pictures_table WHERE last_modified > :since AND last_modified <= :until ORDER BY last_modified, picture_id")
+    Cursor getChangedPicturesCursor(long since, long until);
+
+    @Query("SELECT COUNT(*) FROM pictures_table WHERE last_modified > :since AND last_modified <= :until")
+    int countChangedPictures(long since, long until);
+
     @Query("UPDATE pictures_table SET parent_stop_id=:parent_unix_time, file_path=:filepath, caption=:caption WHERE picture_id=:unix_time")
     void updatePicture(long unix_time, long parent_unix_time, String filepath, String caption);
 
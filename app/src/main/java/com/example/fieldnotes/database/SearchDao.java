@@ -0,0 +1,25 @@
+package com.example.fieldnotes.database;
+
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.RawQuery;
+import android.database.Cursor;
+
+import com.example.fieldnotes.java.SearchHit;
+
+import java.util.List;
+
+/**
+ * Data access object for the full-text index of <code>Stops</code>. Room doesn't know about the
+ * index table, so it can't check queries against it; the queries are built by
+ * <code>SearchIndex</code> instead, which is what should be called to search.
+ */
+@Dao
+public interface SearchDao {
+
+    @RawQuery
+    Cursor matches(SupportSQLiteQuery query);
+
+    @RawQuery
+    List<SearchHit> hits(SupportSQLiteQuery query);
+}
@@ -0,0 +1,298 @@
+package com.example.fieldnotes.database;
+
+/*
+DEVELOPER NOTES:
+
+Search runs on a SQLite FTS4 table, stops_fts, that holds one row per Stop: its name, its notes and
+the captions of all its pictures run together. The row's docid is the stop_id, so a hit leads
+straight back to its Stop. Room 1.1 has no annotation for FTS tables, so it doesn't know this one
+exists: it is created here, by MIGRATION_5_6 for existing databases and from the onOpen callback
+in FieldNotesRoomDatabase.build for new ones (everything below is IF NOT EXISTS, so running it on
+every open costs next to nothing.) Room's queries are checked against the tables Room knows about
+when the app is compiled, which is why SearchDao can only use @RawQuery.
+
+Nothing in the app writes to stops_fts. Triggers on stops_table and pictures_table keep it in
+step with every insert, update and delete, including the ones the foreign keys cascade, so the
+index can never drift from the data whichever DAO made the change. The update triggers only
+look at the columns the index holds, so other updates (the last_modified times ChangeLog sets,
+say) don't rewrite the index for nothing.
+
+A search is two queries:
+1. The newest MAX_CANDIDATES matching Stops with their matchinfo, a blob of how often each search
+   term turned up in each column. Those are scored here in Java, since FTS4 has no ranking
+   function of its own (and Android gives no way to add one), and the best MAX_RESULTS are kept.
+   They are read off a cursor into a heap of the best so far, so memory stays flat, but scoring
+   is paid per row, and a common word can match half the database. The cap bounds that: a search
+   never reads more than MAX_CANDIDATES rows, whatever it matches. When it cuts a search short,
+   SearchResults says so and SearchActivity tells the user that older Stops weren't ranked and
+   more words will narrow the search, rather than presenting the hits as the best of everything.
+   FTS4 walks its doclists backwards for ORDER BY docid DESC, so taking the newest costs no sort.
+2. The names and snippets of just those Stops. Making a snippet means re-reading the text of the
+   Stop, which is by far the slowest part of a search, so it is only done for the hits that are
+   shown.
+
+The FTS4 options that would speed up prefix searches (prefix=) and fold the case of non-ASCII
+letters (tokenize=unicode61) need a newer SQLite than the oldest Android version we support, so
+the table uses the defaults. The default "simple" tokenizer splits on ASCII characters other than
+letters and digits, keeps every non-ASCII character as part of a word, and lowercases A-Z and
+nothing else. toMatchExpression has to cut up and fold the search the same way: lowercasing the
+capital U-umlaut of a word the user typed would look for a word the index never holds.
+ */
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.database.Cursor;
+
+import com.example.fieldnotes.java.SearchHit;
+import com.example.fieldnotes.java.SearchResults;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The full-text index of <code>Stops</code> and the captions of their <code>Pictures</code>:
+ * the SQL that creates and fills it, and the search that reads it.
+ */
+final class SearchIndex {
+
+    static final int MAX_CANDIDATES = 2000;
+    static final int MAX_RESULTS = 50;
+
+    private static final int SNIPPET_TOKENS = 12;
+
+    //how much a hit in each column of stops_fts counts for, in column order
+    private static final double[] COLUMN_WEIGHTS = {3.0, 1.0, 2.0};
+
+    private static final String CAPTIONS_OF = "(SELECT group_concat(`caption`, ' ') "
+            + "FROM `pictures_table` WHERE `parent_stop_id` = %s)";
+
+    private static final String[] CREATE = {
+            "CREATE VIRTUAL TABLE IF NOT EXISTS `stops_fts` USING fts4(`stop_name`, `notes`, `captions`)",
+
+            "CREATE TRIGGER IF NOT EXISTS `stops_fts_insert` AFTER INSERT ON `stops_table` BEGIN "
+                    + "INSERT INTO `stops_fts` (`docid`, `stop_name`, `notes`, `captions`) "
+                    + "VALUES (new.`stop_id`, new.`stop_name`, new.`notes`, "
+                    + String.format(CAPTIONS_OF, "new.`stop_id`") + "); END",
+            "CREATE TRIGGER IF NOT EXISTS `stops_fts_update` AFTER UPDATE OF `stop_name`, `notes` "
+                    + "ON `stops_table` BEGIN "
+                    + "DELETE FROM `stops_fts` WHERE `docid` = old.`stop_id`; "
+                    + "INSERT INTO `stops_fts` (`docid`, `stop_name`, `notes`, `captions`) "
+                    + "VALUES (new.`stop_id`, new.`stop_name`, new.`notes`, "
+                    + String.format(CAPTIONS_OF, "new.`stop_id`") + "); END",
+            "CREATE TRIGGER IF NOT EXISTS `stops_fts_delete` AFTER DELETE ON `stops_table` BEGIN "
+                    + "DELETE FROM `stops_fts` WHERE `docid` = old.`stop_id`; END",
+
+            "CREATE TRIGGER IF NOT EXISTS `pictures_fts_insert` AFTER INSERT ON `pictures_table` BEGIN "
+                    + "UPDATE `stops_fts` SET `captions` = " + String.format(CAPTIONS_OF, "new.`parent_stop_id`")
+                    + " WHERE `docid` = new.`parent_stop_id`; END",
+            "CREATE TRIGGER IF NOT EXISTS `pictures_fts_update` AFTER UPDATE OF `parent_stop_id`, `caption` "
+                    + "ON `pictures_table` BEGIN "
+                    + "UPDATE `stops_fts` SET `captions` = " + String.format(CAPTIONS_OF, "old.`parent_stop_id`")
+                    + " WHERE `docid` = old.`parent_stop_id`; "
+                    + "UPDATE `stops_fts` SET `captions` = " + String.format(CAPTIONS_OF, "new.`parent_stop_id`")
+                    + " WHERE `docid` = new.`parent_stop_id`; END",
+            "CREATE TRIGGER IF NOT EXISTS `pictures_fts_delete` AFTER DELETE ON `pictures_table` BEGIN "
+                    + "UPDATE `stops_fts` SET `captions` = " + String.format(CAPTIONS_OF, "old.`parent_stop_id`")
+                    + " WHERE `docid` = old.`parent_stop_id`; END"
+    };
+
+    private SearchIndex() {
+    }
+
+    /**
+     * Creates the index table and the triggers that keep it up to date, if they don't exist yet.
+     */
+    static void create(SupportSQLiteDatabase db) {
+        for (String sql : CREATE)
+            db.execSQL(sql);
+    }
+
+    /**
+     * Empties the index and fills it again from the stops and pictures tables. Used when the
+     * index is added to a database that already has data in it.
+     */
+    static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM `stops_fts`");
+        db.execSQL("INSERT INTO `stops_fts` (`docid`, `stop_name`, `notes`, `captions`) "
+                + "SELECT `stop_id`, `stop_name`, `notes`, " + String.format(CAPTIONS_OF, "`stop_id`")
+                + " FROM `stops_table`");
+    }
+
+    /**
+     * Searches the index for what the user typed. Must not be called from the main thread.
+     *
+     * @param dao The <code>SearchDao</code> of the database to search.
+     * @param text The search as the user typed it.
+     * @return The best of the newest <code>MAX_CANDIDATES</code> matching <code>Stops</code>, best
+     * first, and whether there were more matches than that. No hits if <code>text</code> has
+     * nothing to search for.
+     */
+    static SearchResults search(SearchDao dao, String text) {
+        String match = toMatchExpression(text);
+        if (match == null)
+            return SearchResults.none();
+
+        //the best matches so far, the worst of them first, so it is the one a better match replaces
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(MAX_RESULTS + 1);
+        //one row more than is scored, to tell whether the search was cut short
+        Cursor cursor = dao.matches(new SimpleSQLiteQuery(
+                "SELECT `docid` AS `stop_id`, matchinfo(`stops_fts`, 'pcnx') AS `matchinfo` "
+                        + "FROM `stops_fts` WHERE `stops_fts` MATCH ? ORDER BY `docid` DESC LIMIT "
+                        + (MAX_CANDIDATES + 1),
+                new Object[]{match}));
+        boolean truncated = false;
+        try {
+            while (cursor.moveToNext()) {
+                if (cursor.getPosition() == MAX_CANDIDATES) {
+                    truncated = true;
+                    break;
+                }
+                heap.add(new Candidate(cursor.getLong(0), score(cursor.getBlob(1))));
+                if (heap.size() > MAX_RESULTS)
+                    heap.poll();
+            }
+        } finally {
+            cursor.close();
+        }
+        if (heap.isEmpty())
+            return SearchResults.none();
+
+        List<Candidate> candidates = new ArrayList<>(heap);
+        Collections.sort(candidates, Collections.<Candidate>reverseOrder());
+        List<Long> best = new ArrayList<>();
+        for (Candidate candidate : candidates)
+            best.add(candidate.stopId);
+
+        List<SearchHit> hits = dao.hits(hitsQuery(match, best));
+        final Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < best.size(); i++)
+            rank.put(best.get(i), i);
+        Collections.sort(hits, new Comparator<SearchHit>() {
+            @Override
+            public int compare(SearchHit o1, SearchHit o2) {
+                return rank.get(o1.getStopId()) - rank.get(o2.getStopId());
+            }
+        });
+        return new SearchResults(hits, truncated);
+    }
+
+    /**
+     * The query for the names and snippets of the given <code>Stops</code>. The ids are numbers
+     * we produced ourselves, so they are written into the SQL rather than bound.
+     */
+    private static SupportSQLiteQuery hitsQuery(String match, List<Long> stopIds) {
+        StringBuilder ids = new StringBuilder();
+        for (Long id : stopIds) {
+            if (ids.length() > 0)
+                ids.append(',');
+            ids.append(id.longValue());
+        }
+        return new SimpleSQLiteQuery(
+                "SELECT s.`stop_id`, s.`parent_notebook_id`, s.`stop_name`, "
+                        + "snippet(`stops_fts`, ?, ?, ?, -1, " + SNIPPET_TOKENS + ") AS `snippet` "
+                        + "FROM `stops_fts` JOIN `stops_table` s ON s.`stop_id` = `stops_fts`.`docid` "
+                        + "WHERE `stops_fts` MATCH ? AND `stops_fts`.`docid` IN (" + ids + ")",
+                new Object[]{SearchHit.MATCH_START, SearchHit.MATCH_END, "\u2026", match});
+    }
+
+    /**
+     * Turns what the user typed into an FTS <code>MATCH</code> expression that finds the rows
+     * holding every word of it, treating the last word as the start of a word, since the user may
+     * not have finished typing it. Words are split and folded the way the index's tokenizer does
+     * it: anything outside ASCII is part of a word, ASCII punctuation is dropped, and only A-Z are
+     * lowercased. So nothing the user types can be read as FTS syntax (which is all ASCII, and AND,
+     * OR, NOT and NEAR only count in capitals.)
+     *
+     * @param text The search as the user typed it.
+     * @return The expression, or null if <code>text</code> holds nothing to search for.
+     */
+    static String toMatchExpression(String text) {
+        if (text == null)
+            return null;
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c >= 'A' && c <= 'Z') {
+                word.append((char) (c - 'A' + 'a'));
+            } else if (c >= 0x80 || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (words.isEmpty())
+            return null;
+
+        StringBuilder match = new StringBuilder();
+        for (String w : words) {
+            if (match.length() > 0)
+                match.append(' ');
+            match.append(w);
+        }
+        return match.append('*').toString();
+    }
+
+    /**
+     * Scores a row from its <code>matchinfo(stops_fts, 'pcnx')</code>. Each term counts for how
+     * often it appears in each column, with diminishing returns, times how rare the term is across
+     * all <code>Stops</code>, times the weight of the column (a hit in the name counts most.)
+     *
+     * @param matchinfo The blob SQLite returned: 32-bit integers in the device's byte order.
+     * @return The score; higher is better.
+     */
+    static double score(byte[] matchinfo) {
+        IntBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        int rows = info.get(2);
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns; c++) {
+                int at = 3 + 3 * (p * columns + c);
+                int hitsHere = info.get(at);
+                int rowsWithHits = info.get(at + 2);
+                if (hitsHere == 0)
+                    continue;
+                double weight = c < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[c] : 1.0;
+                double rarity = Math.log(1.0 + (rows - rowsWithHits + 0.5) / (rowsWithHits + 0.5));
+                score += weight * rarity * hitsHere / (hitsHere + 1.0);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * A matching <code>Stop</code> and its score. Orders by score, then newest first among equal
+     * scores, so the heap in <code>search</code> keeps the same ones whatever order the rows come in.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        final long stopId;
+        final double score;
+
+        Candidate(long stopId, double score) {
+            this.stopId = stopId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byScore = Double.compare(score, other.score);
+            if (byScore != 0)
+                return byScore;
+            return stopId < other.stopId ? -1 : (stopId == other.stopId ? 0 : 1);
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.example.fieldnotes.database;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.paging.DataSource;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.Query;
+import android.database.Cursor;
 
+import com.example.fieldnotes.java.NearbyStop;
 import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopSummary;
 
 import java.util.List;
 
@@ -24,17 +28,17 @@ public interface StopDao {
     @Query("DELETE FROM stops_table")
     void deleteAll();
 
-    @Query("DELETE FROM stops_table WHERE parent_notebook_id = :parent_unix_time")
-    void deleteAllStopsByNotebook(long parent_unix_time);
-
     @Query("SELECT * FROM stops_table WHERE stop_id = :stop_unix_time")
     Stop selectStop(long stop_unix_time);
 
     @Query("SELECT * FROM stops_table WHERE parent_notebook_id = :parent_unix_time")
     LiveData<List<Stop>> getLiveStopsByNotebook(long parent_unix_time);
 
-    @Query("SELECT * FROM stops_table WHERE parent_notebook_id = :parent_unix_time")
-    List<Stop> getStopsByNotebook(long parent_unix_time);
+    @Query("SELECT stop_id, stop_name, stop_time FROM stops_table WHERE parent_notebook_id = :parent_unix_time ORDER BY stop_time, stop_id")
+    DataSource.Factory<Integer, StopSummary> getPagedStopsByNotebookByTime(long parent_unix_time);
+
+    @Query("SELECT stop_id, stop_name, stop_time FROM stops_table WHERE parent_notebook_id = :parent_unix_time ORDER BY stop_name, stop_id")
+    DataSource.Factory<Integer, StopSummary> getPagedStopsByNotebookByName(long parent_unix_time);
 
     @Query("SELECT * FROM stops_table WHERE parent_notebook_id = :parent_unix_time")
     List<Stop> getStopsByNotebookSynchronously(long parent_unix_time);
@@ -42,6 +46,45 @@ public interface StopDao {
     @Query("SELECT * FROM stops_table")
     LiveData<List<Stop>> getAllStops();
 
+    @Query("SELECT * FROM stops_table WHERE parent_notebook_id = :parent_unix_time ORDER BY stop_time, stop_id LIMIT :count OFFSET :first")
+    List<Stop> getStopsPageByNotebook(long parent_unix_time, int first, int count);
+
+    @Query("SELECT * FROM stops_table WHERE parent_notebook_id = :parent_unix_time AND stop_time >= :after_time AND (stop_time > :after_time OR stop_id > :after_id) ORDER BY stop_time, stop_id LIMIT :count")
+    List<Stop> getStopsPageByNotebookAfter(long parent_unix_time, long after_time, long after_id, int count);
+
+    @Query("SELECT COUNT(*) FROM stops_table WHERE parent_notebook_id = :parent_unix_time")
+    int countStopsByNotebook(long parent_unix_time);
+
+    @Query("SELECT COALESCE(SUM(LENGTH(stop_name)), 0) + COALESCE(SUM(LENGTH(notes)), 0) FROM stops_table WHERE parent_notebook_id = :parent_unix_time")
+    long countTextByNotebook(long parent_unix_time);
+
+    @Query("SELECT stop_id FROM stops_table WHERE parent_notebook_id = :parent_unix_time ORDER BY stop_time, stop_id LIMIT 1 OFFSET :index")
+    Long getStopIdAt(long parent_unix_time, int index);
+
+    @Query("SELECT s.stop_id, s.stop_name, s.stop_time, s.notes, s.latitude, s.longitude, n.notebook_name, p.file_path, p.caption FROM stops_table s JOIN notebooks_table n ON n.notebook_id = s.parent_notebook_id LEFT JOIN pictures_table p ON p.parent_stop_id = s.stop_id WHERE s.parent_notebook_id = :parent_unix_time AND NOT (s.latitude = 0 AND s.longitude = 0) ORDER BY s.stop_time, s.stop_id, p.picture_id")
+    Cursor getGeoCursorByNotebook(long parent_unix_time);
+
+    @Query("SELECT s.stop_id, s.stop_name, s.stop_time, s.notes, s.latitude, s.longitude, n.notebook_name, p.file_path, p.caption FROM stops_table s JOIN notebooks_table n ON n.notebook_id = s.parent_notebook_id LEFT JOIN pictures_table p ON p.parent_stop_id = s.stop_id WHERE NOT (s.latitude = 0 AND s.longitude = 0) ORDER BY s.parent_notebook_id, s.stop_time, s.stop_id, p.picture_id")
+    Cursor getGeoCursor();
+
+    @Query("SELECT COUNT(*) FROM stops_table WHERE parent_notebook_id = :parent_unix_time AND NOT (latitude = 0 AND longitude = 0)")
+    int countLocatedStopsByNotebook(long parent_unix_time);
+
+    @Query("SELECT COUNT(*) FROM stops_table WHERE NOT (latitude = 0 AND longitude = 0)")
+    int countLocatedStops();
+
+    @Query("SELECT stop_id, parent_notebook_id, stop_name, stop_time, latitude, longitude, notes, last_modified FROM stops_table WHERE last_modified > :since AND last_modified <= :until ORDER BY last_modified, stop_id")
+    Cursor getChangedStopsCursor(long since, long until);
+
+    @Query("SELECT COUNT(*) FROM stops_table WHERE last_modified > :since AND last_modified <= :until")
+    int countChangedStops(long since, long until);
+
+    @Query("SELECT s.stop_id, s.stop_name, s.parent_notebook_id, s.latitude, s.longitude FROM stop_cells_table c JOIN stops_table s ON s.stop_id = c.stop_id WHERE c.cell IN (:cells)")
+    List<NearbyStop> getStopsInCells(List<Long> cells);
+
+    @Query("SELECT stop_id, stop_name, parent_notebook_id, latitude, longitude FROM stops_table WHERE latitude BETWEEN :south AND :north AND NOT (latitude = 0 AND longitude = 0)")
+    List<NearbyStop> getStopsInLatitudes(double south, double north);
+
     @Query("UPDATE stops_table SET stop_name=:name, latitude=:lat, longitude=:log, notes=:notes, stop_time=:time, parent_notebook_id=:parent_time WHERE stop_id=:unix_time")
     void updateStop(long unix_time, String name, double lat, double log, String notes, long time, long parent_time);
 
@@ -0,0 +1,69 @@
+package com.example.fieldnotes.java;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.support.annotation.NonNull;
+
+/**
+ * A record of a row deleted from the notebooks, stops or pictures table, so an export of what
+ * changed since some time (see <code>DataUtility</code>) can tell whoever reads it to delete
+ * the row on their side too.
+ * <br/>
+ * The app never writes these itself. Triggers on the three tables add one for every row deleted,
+ * including the ones the foreign keys cascade, and remove it again if a row with the same
+ * primary key is inserted. See <code>ChangeLog</code>.
+ * <br/>
+ * The table is indexed on <code>deleted_time</code>, so the deletions since some time can be
+ * found without scanning all of them.
+ */
+@Entity(tableName = "deletions_table",
+        primaryKeys = {"table_name", "row_id"},
+        indices = {@Index("deleted_time")})
+public class Deletion {
+
+    @NonNull
+    @ColumnInfo(name = "table_name")
+    private final String tableName;
+
+    @ColumnInfo(name = "row_id")
+    private final long rowId;
+
+    @ColumnInfo(name = "deleted_time")
+    private final long deletedTime;
+
+    public Deletion(@NonNull String tableName, long rowId, long deletedTime) {
+        this.tableName = tableName;
+        this.rowId = rowId;
+        this.deletedTime = deletedTime;
+    }
+
+    /**
+     * Gets the table the row was deleted from.
+     *
+     * @return "notebooks_table", "stops_table" or "pictures_table".
+     */
+    @NonNull
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Gets the primary key of the deleted row.
+     *
+     * @return The <code>unixTime</code> of the deleted <code>Notebook</code>, <code>Stop</code>
+     * or <code>Picture</code>.
+     */
+    public long getRowId() {
+        return rowId;
+    }
+
+    /**
+     * Gets when the row was deleted.
+     *
+     * @return The time of the deletion, in milliseconds since 1970.
+     */
+    public long getDeletedTime() {
+        return deletedTime;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.fieldnotes.java;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Ignore;
+
+/**
+ * A <code>Stop</code> found near a point: enough to list it, open it and put it on a map, and
+ * its distance from the point. This is not a table of its own; Room fills it in from the stops
+ * table, and the distance is worked out afterwards.
+ */
+public class NearbyStop {
+
+    @ColumnInfo(name = "stop_id")
+    private final long stopId;
+
+    @ColumnInfo(name = "stop_name")
+    private final String stopName;
+
+    @ColumnInfo(name = "parent_notebook_id")
+    private final long notebookId;
+
+    @ColumnInfo(name = "latitude")
+    private final double latitude;
+
+    @ColumnInfo(name = "longitude")
+    private final double longitude;
+
+    @Ignore
+    private double distance;
+
+    public NearbyStop(long stopId, String stopName, long notebookId, double latitude, double longitude) {
+        this.stopId = stopId;
+        this.stopName = stopName;
+        this.notebookId = notebookId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Gets the <code>unixTime</code> of the <code>Stop</code>, which is also its primary key.
+     *
+     * @return The <code>unixTime</code> of the <code>Stop</code>.
+     */
+    public long getStopId() {
+        return stopId;
+    }
+
+    /**
+     * Gets the name of the <code>Stop</code>.
+     *
+     * @return The name of the <code>Stop</code>.
+     */
+    public String getStopName() {
+        return stopName;
+    }
+
+    /**
+     * Gets the <code>unixTime</code> of the <code>Notebook</code> the <code>Stop</code> belongs to.
+     *
+     * @return The <code>unixTime</code> of the parent <code>Notebook</code>.
+     */
+    public long getNotebookId() {
+        return notebookId;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Gets the distance from the point that was searched around.
+     *
+     * @return The distance in meters.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Sets the distance from the point that was searched around.
+     *
+     * @param distance The distance in meters.
+     */
+    public void setDistance(double distance) {
+        this.distance = distance;
+    }
+}
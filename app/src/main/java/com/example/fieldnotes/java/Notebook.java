@@ -7,27 +7,22 @@ This is a container class representing a Notebook. It consists of mostly setters
 Contains a name, a unix time, which serves as the primary key of its database table, and an
 ArrayList of Stops.
 
-The only thing that needs some deeper understanding is the different types of constructors.
-There are two that are intuitive: one takes the unix time, the other takes unix time and name.
+There are two constructors: one takes the unix time, the other takes unix time and name.
 
-The third constructor is a little more involved, and is required by the RTF generation.
-The unix time is passed and the ViewModel of the activity passing it. Then it queries
-the database SYNCHRONOUSLY (see out manifest for synch/asynch issues we faced,) for all its
-Stops. Once the Stops are all added to stopList, we call reInitStops. Previously, the Stops
-contain  all their data besides their pictures. The reInitStops method loops through the
-Stops and re-initializes the Stops using a similar "deep" constructor.
-
-All of this is so the RTF generator can be passed just a single Notebook object.
+There used to be a third, "deep" constructor that queried the database for every Stop and every
+Stop's pictures so the RTF generator could be passed a single Notebook object. That took two
+queries per Stop, so it has been replaced by NotebookWithStopsAndPictures, which Room loads in a
+single transaction. See that class for details. Exports don't load a whole notebook at all; they
+read it a Stop at a time through NotebookStops, in the database package.
  */
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
 import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
 
-import com.example.fieldnotes.database.FieldNotesViewModel;
-
 import java.util.ArrayList;
 import java.util.Date;
 
@@ -47,10 +42,14 @@ import java.util.Date;
  * <br/>
  * Finally, the <code>@ColumnInfo(col_name)</code> tag is used to specify information regarding
  * columns, including column names and data types.
+ * <br/>
+ * The table is indexed on <code>last_modified</code>, so the notebooks changed since some time
+ * can be found without scanning all of them.
  *
  * @author Steven Hricenak (2019), Stephen Faett (2019), Tyler Seidel (2019)
  */
-@Entity(tableName = "notebooks_table")
+@Entity(tableName = "notebooks_table",
+        indices = {@Index("last_modified")})
 public class Notebook {
 
     @PrimaryKey
@@ -62,6 +61,9 @@ public class Notebook {
     @NonNull
     private String notebookName;
 
+    @ColumnInfo(name = "last_modified")
+    private long lastModified;
+
     @Ignore
     private ArrayList<Stop> stopList;
 
@@ -84,42 +86,6 @@ public class Notebook {
         this.notebookName = name;
     }
 
-    /**
-     * Queries into the notebook table of the database for an entry with
-     * the passed <code>unixTime</code> to get the name of the <code>Notebook</code>.
-     * It then queries the stops table for all entries with foreign key equal to the
-     * passed <code>unixTime</code> and fills <code>stopList</code> with
-     * the <code>Stop</code> objects from the query.
-     *
-     * @param unixTime The primary key of the <code>Notebook</code> in the notebooks table.
-     */
-    public Notebook(long unixTime, final FieldNotesViewModel viewModel){
-        this.unixTime = unixTime;
-        this.notebookDate = new Date(unixTime);
-
-        Notebook databaseNotebook = viewModel.getNotebookByUnixTime(unixTime);
-        this.notebookName = databaseNotebook.notebookName;
-
-        stopList = new ArrayList<>();
-        stopList.addAll(viewModel.getStopsByNotebookSynchronously(this));
-        reInitStops(viewModel);
-    }
-
-    /**
-     * Called when the deep constructor is finished populating the <code>stopList</code>. Goes
-     * through and calls the deep constructor for each <code>Stop</code>. This is not
-     * nested in the deep constructor because nested observations of asynchronous calls could
-     * cause problems.
-     *
-     * @param viewModel The <code>ViewModel</code> for the SQLite database.
-     */
-    private void reInitStops(FieldNotesViewModel viewModel) {
-        for(int i = 0; i < stopList.size(); i++){
-            Stop tempStop = new Stop(stopList.get(i).getUnixTime(), viewModel);
-            stopList.set(i, tempStop);
-        }
-    }
-
     /**
      * Gets the <code>unixTime</code> of this <code>Notebook</code>.
      *
@@ -227,4 +193,24 @@ public class Notebook {
     public Date getDate() {
         return notebookDate;
     }
+
+    /**
+     * Gets when this <code>Notebook</code> was last inserted or changed in the database, in milliseconds since
+     * 1970. Set by triggers in the database (see <code>ChangeLog</code>), not by the app.
+     *
+     * @return The time of the last change, or 0 if it hasn't been saved.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets when this <code>Notebook</code> was last changed. Needed for the SQLite database; anything set
+     * here is overwritten by the triggers when it is saved.
+     *
+     * @param lastModified The time of the last change, in milliseconds since 1970.
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
 }
@@ -0,0 +1,55 @@
+package com.example.fieldnotes.java;
+
+import android.arch.persistence.room.ColumnInfo;
+
+import java.util.Date;
+
+/**
+ * The part of a <code>Notebook</code> that the list of notebooks shows: its name and its unix
+ * time, which is both its id and its date. This is not a table of its own; Room fills it in from
+ * the columns of the notebooks table that a query selects.
+ * <br/>
+ * The notebooks table has no more columns than these today, but lists read these rather than
+ * <code>Notebooks</code> so that columns added to the table later don't end up in every row of
+ * the list, and so the list never holds an entity that could be mistaken for a loaded one.
+ */
+public class NotebookSummary {
+
+    @ColumnInfo(name = "notebook_id")
+    private final long unixTime;
+
+    @ColumnInfo(name = "notebook_name")
+    private final String notebookName;
+
+    public NotebookSummary(long unixTime, String notebookName) {
+        this.unixTime = unixTime;
+        this.notebookName = notebookName;
+    }
+
+    /**
+     * Gets the <code>unixTime</code> of the <code>Notebook</code>, which is also its primary key.
+     *
+     * @return The <code>unixTime</code> of the <code>Notebook</code>.
+     */
+    public long getUnixTime() {
+        return unixTime;
+    }
+
+    /**
+     * Gets the name of the <code>Notebook</code>.
+     *
+     * @return The name of the <code>Notebook</code>.
+     */
+    public String getNotebookName() {
+        return notebookName;
+    }
+
+    /**
+     * Gets the date the <code>Notebook</code> was created.
+     *
+     * @return The <code>date</code> of the <code>Notebook</code>.
+     */
+    public Date getDate() {
+        return new Date(unixTime);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.fieldnotes.java;
+
+/*
+DEVELOPER NOTES:
+
+This replaces the old "deep" Notebook and Stop constructors. Those queried the notebook, then its
+stops, then every stop a second time and every stop's pictures, one synchronous query at a time.
+For a notebook with N stops that came out to 2N + 2 round trips to the database.
+
+Room builds this whole graph from NotebookDao.getNotebookWithStopsAndPictures. That method is
+marked @Transaction, so the notebook row, its stops and their pictures are read as one consistent
+snapshot: one query for the notebook, one for all of its stops and one for all of their pictures
+(Room splits the last two into chunks of 999 ids, which is SQLite's limit on bound arguments.)
+
+It is still a database call, so it must not be made from the main UI thread.
+
+The whole graph of a big notebook doesn't fit in memory, so the exports don't load it this way:
+they stream the notebook a Stop at a time through NotebookStops, in the database package. A
+notebook that is already in memory, like the ones the tests build by hand, can still be exported
+through ListStopSource, which reads it the way the exports read the database.
+ */
+
+import android.arch.persistence.room.Embedded;
+import android.arch.persistence.room.Relation;
+
+import java.util.List;
+
+/**
+ * A <code>Notebook</code> together with all of its <code>Stops</code>, each of which carries
+ * all of its <code>Pictures</code>, read as one snapshot of the database.
+ */
+public class NotebookWithStopsAndPictures {
+
+    @Embedded
+    private Notebook notebook;
+
+    @Relation(parentColumn = "notebook_id", entityColumn = "parent_notebook_id",
+            entity = Stop.class)
+    private List<StopWithPictures> stops;
+
+    /**
+     * Returns the <code>Notebook</code> this object wraps.
+     *
+     * @return The <code>Notebook</code>.
+     */
+    public Notebook getNotebook() {
+        return notebook;
+    }
+
+    /**
+     * Sets the <code>Notebook</code>. Needed for the SQLite database.
+     *
+     * @param notebook The <code>Notebook</code> read from the notebooks table.
+     */
+    public void setNotebook(Notebook notebook) {
+        this.notebook = notebook;
+    }
+
+    /**
+     * Returns the <code>Stops</code> of the <code>Notebook</code>, each with its
+     * <code>Pictures</code>.
+     *
+     * @return The <code>Stops</code> of the <code>Notebook</code>. Never null when loaded by Room.
+     */
+    public List<StopWithPictures> getStops() {
+        return stops;
+    }
+
+    /**
+     * Sets the <code>Stops</code>. Needed for the SQLite database.
+     *
+     * @param stops The <code>Stops</code> read from the stops table.
+     */
+    public void setStops(List<StopWithPictures> stops) {
+        this.stops = stops;
+    }
+}
@@ -18,6 +18,7 @@ subdirectory titled "Fieldnotes."
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
 import android.arch.persistence.room.ForeignKey;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
 
@@ -30,20 +31,28 @@ import static android.arch.persistence.room.ForeignKey.CASCADE;
  * its <code>unixTime</code>, which is used as the primary key in the pictures table of the
  * database. It also contains not a picture, but the filepath to a picture saved by the phone
  * (since databases can't save pictures.)
+ * <br/>
+ * The table is indexed on <code>parent_stop_id</code>, so the pictures of a <code>Stop</code>
+ * can be found without scanning every picture in the database, and on <code>last_modified</code>,
+ * so can the pictures changed since some time.
+ * <br/>
+ * <code>parent_stop_id</code> is a foreign key to the stops table, so deleting a
+ * <code>Stop</code> deletes its <code>Pictures</code> from the database as well.
  *
  * @author Steven Hricenak (2019) Stephen Faett (2019)
  */
-@Entity(tableName = "pictures_table")
+@Entity(tableName = "pictures_table",
+        foreignKeys = @ForeignKey(entity = Stop.class,
+                parentColumns = "stop_id",
+                childColumns = "parent_stop_id",
+                onDelete = CASCADE),
+        indices = {@Index("parent_stop_id"), @Index("last_modified")})
 public class Picture {
     @PrimaryKey
     @NonNull
     @ColumnInfo(name = "picture_id")
     private long unixTime;
 
-    @ForeignKey(entity = Stop.class,
-            parentColumns = "stop_id",
-            childColumns = "stop_id",
-            onDelete = CASCADE)
     @ColumnInfo(name = "parent_stop_id")
     private long parentUnixTime; //foreign key for parent Stop
 
@@ -53,6 +62,9 @@ public class Picture {
     @ColumnInfo(name = "caption")
     private String caption;
 
+    @ColumnInfo(name = "last_modified")
+    private long lastModified;
+
     /**
      * Queries into the pictures table of the database for an entry with
      * the passed <code>unixTime</code> to get the file path for the image.
@@ -168,4 +180,24 @@ public class Picture {
         this.caption = caption;
     }
 
+    /**
+     * Gets when this <code>Picture</code> was last inserted or changed in the database, in milliseconds since
+     * 1970. Set by triggers in the database (see <code>ChangeLog</code>), not by the app.
+     *
+     * @return The time of the last change, or 0 if it hasn't been saved.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets when this <code>Picture</code> was last changed. Needed for the SQLite database; anything set
+     * here is overwritten by the triggers when it is saved.
+     *
+     * @param lastModified The time of the last change, in milliseconds since 1970.
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
 }
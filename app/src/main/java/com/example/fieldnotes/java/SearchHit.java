@@ -0,0 +1,74 @@
+package com.example.fieldnotes.java;
+
+import android.arch.persistence.room.ColumnInfo;
+
+/**
+ * A <code>Stop</code> found by a search: enough to list it and open it, and a snippet of the
+ * text it was found in. This is not a table of its own; Room fills it in from the stops table
+ * and the full-text index.
+ * <br/>
+ * The words that matched are wrapped in <code>MATCH_START</code> and <code>MATCH_END</code> in the
+ * snippet, so they can be highlighted. Those are control characters rather than markup, so nothing
+ * a user writes in their notes can be mistaken for them.
+ */
+public class SearchHit {
+
+    public static final String MATCH_START = "\u0002";
+    public static final String MATCH_END = "\u0003";
+
+    @ColumnInfo(name = "stop_id")
+    private final long stopId;
+
+    @ColumnInfo(name = "parent_notebook_id")
+    private final long notebookId;
+
+    @ColumnInfo(name = "stop_name")
+    private final String stopName;
+
+    @ColumnInfo(name = "snippet")
+    private final String snippet;
+
+    public SearchHit(long stopId, long notebookId, String stopName, String snippet) {
+        this.stopId = stopId;
+        this.notebookId = notebookId;
+        this.stopName = stopName;
+        this.snippet = snippet;
+    }
+
+    /**
+     * Gets the <code>unixTime</code> of the <code>Stop</code>, which is also its primary key.
+     *
+     * @return The <code>unixTime</code> of the <code>Stop</code>.
+     */
+    public long getStopId() {
+        return stopId;
+    }
+
+    /**
+     * Gets the <code>unixTime</code> of the <code>Notebook</code> the <code>Stop</code> belongs to.
+     *
+     * @return The <code>unixTime</code> of the parent <code>Notebook</code>.
+     */
+    public long getNotebookId() {
+        return notebookId;
+    }
+
+    /**
+     * Gets the name of the <code>Stop</code>.
+     *
+     * @return The name of the <code>Stop</code>.
+     */
+    public String getStopName() {
+        return stopName;
+    }
+
+    /**
+     * Gets a few words around where the search matched, from the name, the notes or the captions of
+     * the <code>Stop</code>, whichever matched best.
+     *
+     * @return The snippet, with the matching words marked.
+     */
+    public String getSnippet() {
+        return snippet;
+    }
+}
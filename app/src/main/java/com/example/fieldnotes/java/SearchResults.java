@@ -0,0 +1,45 @@
+package com.example.fieldnotes.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a search found: the best matching <code>Stops</code>, best first, and whether there were
+ * more matches than a search looks at, in which case only the newest of them were ranked.
+ */
+public class SearchResults {
+
+    private final List<SearchHit> hits;
+    private final boolean truncated;
+
+    public SearchResults(List<SearchHit> hits, boolean truncated) {
+        this.hits = hits;
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return Results with no hits, for a search that had nothing to search for or found nothing.
+     */
+    public static SearchResults none() {
+        return new SearchResults(new ArrayList<SearchHit>(), false);
+    }
+
+    /**
+     * Gets the <code>Stops</code> found, best first.
+     *
+     * @return The hits. Empty if nothing matched.
+     */
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * Tells whether more <code>Stops</code> matched than were ranked. Older matches past the
+     * limit were left out, so a better one may be missing from the hits.
+     *
+     * @return True if the search was cut short.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
@@ -13,22 +13,19 @@ All of these real world values exist as attributes with all appropriate setters
 Like all of our database tables, the unixTime is the primary key. Each Stop is linked to its parent
 Notebook where the foreign key is the unixTime of the notebook, called parentUnixTime here.
 
-In the Notebook class we document a "deep" constructor. A similar constructor is here.
-When you pass both the unixTime and the ViewModel of the database, the database is queried for the
-Stop's information, and then populates the parentUnixTime ArrayList with all the pictures found
-in the database belonging to this Stop. These queries are SYNCHRONOUS. See our manifest's
-documentation for more details on our synch/asynch issues.
+A Stop together with its pictures is loaded through StopWithPictures, which Room fills in with
+one query for the pictures of every Stop in the result. See NotebookWithStopsAndPictures. An
+export pairs them up in a StopWithPictures too, but one Stop at a time (see NotebookStops.)
  */
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
 import android.arch.persistence.room.ForeignKey;
 import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
 
-import com.example.fieldnotes.database.FieldNotesViewModel;
-
 import java.util.ArrayList;
 
 import static android.arch.persistence.room.ForeignKey.CASCADE;
@@ -49,10 +46,24 @@ import static android.arch.persistence.room.ForeignKey.CASCADE;
  * <br/>
  * Finally, the <code>@ColumnInfo(col_name)</code> tag is used to specify information regarding
  * columns, including column names and data types.
+ * <br/>
+ * The table is indexed on <code>parent_notebook_id</code> followed by <code>stop_time</code>, so
+ * the stops of a <code>Notebook</code> can be found, and read in time order, without scanning
+ * every stop in the database, and on <code>last_modified</code>, so can the stops changed since
+ * some time.
+ * <br/>
+ * <code>parent_notebook_id</code> is a foreign key to the notebooks table. Deleting a
+ * <code>Notebook</code> deletes its <code>Stops</code> (and, in turn, their
+ * <code>Pictures</code>) in the same statement.
  *
  * @author Steven Hricenak (2019), Tyler Seidel (2019)
  */
-@Entity(tableName = "stops_table")
+@Entity(tableName = "stops_table",
+        foreignKeys = @ForeignKey(entity = Notebook.class,
+                parentColumns = "notebook_id",
+                childColumns = "parent_notebook_id",
+                onDelete = CASCADE),
+        indices = {@Index(value = {"parent_notebook_id", "stop_time"}), @Index("last_modified")})
 public class Stop {
 
     @Ignore
@@ -66,10 +77,6 @@ public class Stop {
     @ColumnInfo(name = "stop_name")
     @NonNull
     private String stopName;
-    @ForeignKey(entity = Notebook.class,
-            parentColumns = "notebook_id",
-            childColumns = "parent_notebook_id",
-            onDelete = CASCADE)
     @ColumnInfo(name = "parent_notebook_id")
     @NonNull
     private long parentUnixTime;
@@ -84,6 +91,9 @@ public class Stop {
     @ColumnInfo(name = "stop_time")
     private long time; //could be updated, so could be different from unixTime
 
+    @ColumnInfo(name = "last_modified")
+    private long lastModified;
+
     /**
      * Creation method for a <code>Stop</code> that does not require querying the database.
      *
@@ -107,31 +117,6 @@ public class Stop {
         this.time = unixTime;
     }
 
-    /**
-     * Queries the stops table in the database with the passed in <code>unixTime</code> for the
-     * entry with the passed <code>unixTime</code>, then populates the attributes with the
-     * information from the query. It then queries the pictures table for all entries with foreign
-     * key equal to the passed <code>parentUnixTime</code> and fills <code>pictureList</code> with
-     * the <code>Picture</code> objects from the query.
-     *
-     * @param unixTime The primary key of the <code>Stop</code> in the stops table.
-     */
-    public Stop(long unixTime, FieldNotesViewModel viewModel) {
-        this.unixTime = unixTime;
-
-        //synchronously query database
-        Stop databaseStop = viewModel.getStopByUnixTime(unixTime);
-        this.stopName = databaseStop.stopName;
-        this.parentUnixTime = databaseStop.parentUnixTime;
-        this.notes = databaseStop.notes;
-        this.longitude = databaseStop.longitude;
-        this.latitude = databaseStop.latitude;
-        this.time = databaseStop.time;
-
-        pictureList = new ArrayList<>();
-        pictureList.addAll(viewModel.getPicturesByParentUnixTimeSynchronously(databaseStop.unixTime));
-    }
-
     /**
      * Queries the stops table in the database for the entry with the passed <code>unixTime</code>,
      * then populates the attributes with the information from the query.
@@ -311,4 +296,24 @@ public class Stop {
     public ArrayList<Picture> getPictureArrayList() {
         return pictureList;
     }
+
+    /**
+     * Gets when this <code>Stop</code> was last inserted or changed in the database, in milliseconds since
+     * 1970. Set by triggers in the database (see <code>ChangeLog</code>), not by the app.
+     *
+     * @return The time of the last change, or 0 if it hasn't been saved.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets when this <code>Stop</code> was last changed. Needed for the SQLite database; anything set
+     * here is overwritten by the triggers when it is saved.
+     *
+     * @param lastModified The time of the last change, in milliseconds since 1970.
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
 }
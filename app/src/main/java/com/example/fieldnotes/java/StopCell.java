@@ -0,0 +1,59 @@
+package com.example.fieldnotes.java;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.ForeignKey;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+
+import static android.arch.persistence.room.ForeignKey.CASCADE;
+
+/**
+ * The cell of the latitude/longitude grid a <code>Stop</code> lies in. The stop cells table is a
+ * spatial index of the stops table: finding the <code>Stops</code> near a point means looking up
+ * the few cells around it, through the index on <code>cell</code>, instead of reading every
+ * <code>Stop</code>.
+ * <br/>
+ * The app never writes these itself. Triggers on the stops table add, move and remove them as
+ * <code>Stops</code> are inserted and updated, and the foreign key deletes them with their
+ * <code>Stop</code>. <code>Stops</code> without coordinates (0, 0) have no cell. See
+ * <code>GeoIndex</code> for how cells are numbered.
+ */
+@Entity(tableName = "stop_cells_table",
+        foreignKeys = @ForeignKey(entity = Stop.class,
+                parentColumns = "stop_id",
+                childColumns = "stop_id",
+                onDelete = CASCADE),
+        indices = {@Index(value = {"cell"})})
+public class StopCell {
+
+    @PrimaryKey
+    @ColumnInfo(name = "stop_id")
+    private final long stopId;
+
+    @ColumnInfo(name = "cell")
+    private final long cell;
+
+    public StopCell(long stopId, long cell) {
+        this.stopId = stopId;
+        this.cell = cell;
+    }
+
+    /**
+     * Gets the <code>unixTime</code> of the <code>Stop</code>, which is also its primary key.
+     *
+     * @return The <code>unixTime</code> of the <code>Stop</code>.
+     */
+    public long getStopId() {
+        return stopId;
+    }
+
+    /**
+     * Gets the number of the grid cell the <code>Stop</code> lies in.
+     *
+     * @return The cell.
+     */
+    public long getCell() {
+        return cell;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.fieldnotes.java;
+
+import android.arch.persistence.room.ColumnInfo;
+
+import java.util.Date;
+
+/**
+ * The part of a <code>Stop</code> that the list of stops shows: its unix time, which is its id,
+ * its name, and its <code>time</code>, which is the date shown and the one the list is sorted by.
+ * The two times start out the same, but the <code>time</code> can be edited. This is not a table
+ * of its own; Room fills it in from the columns of the stops table that a query selects.
+ * <br/>
+ * Lists read these instead of whole <code>Stops</code> so the <code>notes</code> of every row,
+ * which can be several kilobytes long, are never copied out of the database just to be thrown
+ * away. The whole <code>Stop</code> is only loaded once it is opened.
+ */
+public class StopSummary {
+
+    @ColumnInfo(name = "stop_id")
+    private final long unixTime;
+
+    @ColumnInfo(name = "stop_name")
+    private final String stopName;
+
+    @ColumnInfo(name = "stop_time")
+    private final long time;
+
+    public StopSummary(long unixTime, String stopName, long time) {
+        this.unixTime = unixTime;
+        this.stopName = stopName;
+        this.time = time;
+    }
+
+    /**
+     * Gets the <code>unixTime</code> of the <code>Stop</code>, which is also its primary key.
+     *
+     * @return The <code>unixTime</code> of the <code>Stop</code>.
+     */
+    public long getUnixTime() {
+        return unixTime;
+    }
+
+    /**
+     * Gets the name of the <code>Stop</code>.
+     *
+     * @return The name of the <code>Stop</code>.
+     */
+    public String getStopName() {
+        return stopName;
+    }
+
+    /**
+     * Gets the <code>time</code> of the <code>Stop</code>, which may have been edited since it was
+     * created.
+     *
+     * @return The <code>time</code> of the <code>Stop</code>.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the date of the <code>Stop</code>, from its <code>time</code>, the same value the list
+     * is sorted by.
+     *
+     * @return The <code>date</code> of the <code>Stop</code>.
+     */
+    public Date getDate() {
+        return new Date(time);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.fieldnotes.java;
+
+import android.arch.persistence.room.Embedded;
+import android.arch.persistence.room.Relation;
+
+import java.util.List;
+
+/**
+ * A <code>Stop</code> paired with every <code>Picture</code> that belongs to it. This is not a
+ * table of its own; Room fills it in from the stops and pictures tables using the
+ * <code>@Relation</code> annotation below.
+ * <br/>
+ * <code>@Embedded</code> flattens the columns of the <code>Stop</code> into this class, and
+ * <code>@Relation</code> tells Room to fill <code>pictures</code> with every row of the pictures
+ * table whose <code>parent_stop_id</code> matches this <code>Stop</code>'s <code>stop_id</code>.
+ * Room loads the pictures of every <code>Stop</code> in a result with a single query, instead of
+ * one query per <code>Stop</code>.
+ * <br/>
+ * An export builds these by hand instead, one <code>Stop</code> at a time, with the
+ * <code>Pictures</code> in <code>picture_id</code> order (see <code>NotebookStops</code>).
+ */
+public class StopWithPictures {
+
+    @Embedded
+    private Stop stop;
+
+    @Relation(parentColumn = "stop_id", entityColumn = "parent_stop_id")
+    private List<Picture> pictures;
+
+    /**
+     * Returns the <code>Stop</code> this object wraps.
+     *
+     * @return The <code>Stop</code>.
+     */
+    public Stop getStop() {
+        return stop;
+    }
+
+    /**
+     * Sets the <code>Stop</code>. Needed for the SQLite database.
+     *
+     * @param stop The <code>Stop</code> read from the stops table.
+     */
+    public void setStop(Stop stop) {
+        this.stop = stop;
+    }
+
+    /**
+     * Returns the <code>Pictures</code> belonging to the <code>Stop</code>.
+     *
+     * @return The <code>Pictures</code> of the <code>Stop</code>. Never null when loaded by Room.
+     */
+    public List<Picture> getPictures() {
+        return pictures;
+    }
+
+    /**
+     * Sets the <code>Pictures</code>. Needed for the SQLite database.
+     *
+     * @param pictures The <code>Pictures</code> read from the pictures table.
+     */
+    public void setPictures(List<Picture> pictures) {
+        this.pictures = pictures;
+    }
+}
@@ -0,0 +1,538 @@
+package com.example.fieldnotes.providers;
+
+/*
+DEVELOPER NOTES:
+
+Sharing an export used to mean writing the whole document into Downloads first, then handing the
+other app a file:// URI, which Android 7 and up only allow with StrictMode turned down. For a big
+notebook that is hundreds of MB written to flash before the other app gets its first byte, and a
+file left behind that the user may never have wanted.
+
+This provider lets the other app read the document instead. A notebook URI (getNotebookUri) has
+no file behind it: openFile makes a pipe, hands the read end to the other app, and writes the
+document into the write end on a thread of its own as the other app reads, through the same
+RtfUtility.writeRTF and StopSource an export to a file uses. The pipe only holds a few KB, so
+the writer waits whenever the other app does, and the document is never all in one place. If the
+other app stops reading and closes its end, the next write fails and the thread gives up.
+
+The catch is that a pipe can't be measured or read twice, so the size column of query is empty
+for a notebook URI, and an app that needs to know the size first, or to seek, can't use it; the
+share without saving is offered alongside exporting to a file, not instead of it.
+
+A notebook URI can ask for a DOCX document instead (see DocxUtility), which is written the same
+way. Its pictures come before its text, so the other app gets nothing of the text until every
+picture has been prepared; on the other hand there is half as much to read. It can also ask for
+a PDF document (see PdfUtility), which comes through the pipe a page at a time, or for one of the
+map formats (see GeoUtility). For a map format the notebook id can be ExportService.ALL_NOTEBOOKS,
+for the Stops of every notebook.
+
+A data URI (getDataUri) is the tables of the database as CSV or NDJSON files in a zip (see
+DataUtility), changed since the time it asks for, written into a pipe the same way.
+
+A file URI (getFileUri) serves a document an export has already written to Downloads, so
+ExportActivity and the notification ExportService leaves can share it without a file:// URI.
+
+The provider isn't exported: other apps can only read the URIs they are granted, through the
+FLAG_GRANT_READ_URI_PERMISSION on the share Intent (see shareIntent). Android 4.0 only grants
+the Intent's data, not EXTRA_STREAM, so there the file is shared as a file:// URI as before,
+which that version allows, and a notebook can't be shared without saving it (see canStream).
+ */
+
+import android.app.Application;
+import android.content.ClipData;
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.example.fieldnotes.R;
+import com.example.fieldnotes.database.FieldNotesRepo;
+import com.example.fieldnotes.services.ExportService;
+import com.example.fieldnotes.utilities.DataUtility;
+import com.example.fieldnotes.utilities.DocxUtility;
+import com.example.fieldnotes.utilities.ExportCache;
+import com.example.fieldnotes.utilities.ExportOptions;
+import com.example.fieldnotes.utilities.GeoSource;
+import com.example.fieldnotes.utilities.GeoUtility;
+import com.example.fieldnotes.utilities.PdfUtility;
+import com.example.fieldnotes.utilities.RtfUtility;
+import com.example.fieldnotes.utilities.StopSource;
+import com.example.fieldnotes.utilities.TableSource;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Serves exported documents to the apps they are shared with: finished documents from their
+ * files, and notebooks, or the database as data files, generated while they are read.
+ */
+public class ExportProvider extends ContentProvider {
+
+    private static final String TAG = "ExportProvider";
+
+    public static final String AUTHORITY = "com.example.fieldnotes.exports";
+    private static final String NOTEBOOKS = "notebooks";
+    private static final String FILES = "files";
+    private static final String DATA = "data";
+    private static final String TARGET = "target";
+    private static final String FORMAT = "format";
+    private static final String SINCE = "since";
+
+    private static final String[] COLUMNS = {OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+
+    /**
+     * Gets the URI of a notebook's document, generated as it is read.
+     *
+     * @param notebookId  The <code>unixTime</code> of the <code>Notebook</code>.
+     * @param targetBytes The size the document should come in under; 0 for no target.
+     * @return The URI, to share with <code>shareIntent</code>.
+     */
+    public static Uri getNotebookUri(long notebookId, long targetBytes) {
+        return getNotebookUri(notebookId, targetBytes, RtfUtility.EXTENSION);
+    }
+
+    /**
+     * Gets the URI of a notebook's document in a format, generated as it is read.
+     *
+     * @param notebookId  The <code>unixTime</code> of the <code>Notebook</code>.
+     * @param targetBytes The size the document should come in under; 0 for no target.
+     * @param format      The extension of the document: <code>RtfUtility.EXTENSION</code>,
+     *                    <code>DocxUtility.EXTENSION</code>, <code>PdfUtility.EXTENSION</code>,
+     *                    or one of the <code>GeoUtility</code> map formats, for which
+     *                    <code>notebookId</code> can be <code>ExportService.ALL_NOTEBOOKS</code>.
+     * @return The URI, to share with <code>shareIntent</code>.
+     */
+    public static Uri getNotebookUri(long notebookId, long targetBytes, String format) {
+        Uri.Builder builder = new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath(NOTEBOOKS)
+                .appendPath(Long.toString(notebookId));
+        if (targetBytes > 0)
+            builder.appendQueryParameter(TARGET, Long.toString(targetBytes));
+        if (DocxUtility.EXTENSION.equals(format) || PdfUtility.EXTENSION.equals(format)
+                || GeoUtility.isGeoFormat(format))
+            builder.appendQueryParameter(FORMAT, format.substring(1));
+        return builder.build();
+    }
+
+    /**
+     * Gets the URI of the tables of the database as data files, generated as they are read.
+     *
+     * @param since  Only the rows changed after this time are in it, in milliseconds since 1970;
+     *               0 for all of them.
+     * @param format <code>DataUtility.CSV</code> or <code>DataUtility.NDJSON</code>.
+     * @return The URI, to share with <code>shareIntent</code>.
+     */
+    public static Uri getDataUri(long since, String format) {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath(DATA)
+                .appendQueryParameter(SINCE, Long.toString(since))
+                .appendQueryParameter(FORMAT, format.substring(1))
+                .build();
+    }
+
+    /**
+     * Gets the URI of a document an export has written.
+     *
+     * @param file The document, in the Downloads directory.
+     * @return The URI, to share with <code>shareIntent</code>; a file:// URI on Android 4.0.
+     */
+    public static Uri getFileUri(File file) {
+        if (!canStream())
+            return Uri.fromFile(file);
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath(FILES)
+                .appendPath(file.getName())
+                .build();
+    }
+
+    /**
+     * Checks whether the other app can be given a URI from here, which notebooks need to be
+     * shared without saving them first.
+     *
+     * @return True from Android 4.1 on.
+     */
+    public static boolean canStream() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    /**
+     * Creates an implicit <code>Intent</code> for sharing a document, which lets the app it is
+     * shared with read it. The <code>Intent</code> has the document's MIME type, the same one
+     * <code>getType</code> gives, so it is offered to the apps that open that format.
+     *
+     * @param uri The document, from <code>getNotebookUri</code>, <code>getDataUri</code> or
+     *            <code>getFileUri</code>.
+     */
+    public static Intent shareIntent(Uri uri) {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(getMimeType(uri));
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        //the grant covers the clip, not the extra
+        if (canStream())
+            intent.setClipData(ClipData.newRawUri(null, uri));
+        return intent;
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return getMimeType(uri);
+    }
+
+    /**
+     * @return The MIME type of the document a URI is for, from its format.
+     */
+    private static String getMimeType(Uri uri) {
+        String format = getFormat(uri);
+        if (DocxUtility.EXTENSION.equals(format))
+            return DocxUtility.MIME_TYPE;
+        if (PdfUtility.EXTENSION.equals(format))
+            return PdfUtility.MIME_TYPE;
+        if (GeoUtility.isGeoFormat(format))
+            return GeoUtility.getMimeType(format);
+        if (DataUtility.isDataFormat(format))
+            return DataUtility.MIME_TYPE;
+        return RtfUtility.MIME_TYPE;
+    }
+
+    /**
+     * Gives the name of a document, and its size if it is a file. Other apps ask for these
+     * before reading it, to show or save it under the right name.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        String name;
+        Long size = null;
+        File file = getFile(uri);
+        if (file != null) {
+            if (!file.exists())
+                return null;
+            name = file.getName();
+            size = file.length();
+        } else if (isData(uri)) {
+            name = getContext().getString(R.string.data_export) + getFormat(uri);
+        } else if (GeoUtility.isGeoFormat(getFormat(uri))) {
+            GeoSource stops = openGeoStops(uri);
+            if (stops == null)
+                return null;
+            try {
+                name = stops.getName() + getFormat(uri);
+            } finally {
+                stops.close();
+            }
+        } else {
+            StopSource stops = openNotebook(uri);
+            if (stops == null)
+                return null;
+            try {
+                name = stops.getNotebook().getNotebookName() + getFormat(uri);
+            } finally {
+                stops.close();
+            }
+        }
+
+        if (projection == null)
+            projection = COLUMNS;
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(projection[i]))
+                row[i] = name;
+            else if (OpenableColumns.SIZE.equals(projection[i]))
+                row[i] = size;
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    /**
+     * Opens a document for reading: a file as it is, or a notebook as a pipe with its document
+     * being written into the other end.
+     *
+     * @throws FileNotFoundException If there is no such document, or it was asked for with any
+     *                               mode other than "r".
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (!"r".equals(mode))
+            throw new FileNotFoundException("Exports can only be read: " + uri);
+
+        File file = getFile(uri);
+        if (file != null)
+            return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+
+        final String format = getFormat(uri);
+        if (isData(uri)) {
+            final long since = getSince(uri);
+            final long until = FieldNotesRepo.getChangesUntil();
+            Application application = (Application) getContext().getApplicationContext();
+            final List<TableSource> tables = new FieldNotesRepo(application).getChangedRows(since, until);
+            return pipe(new Document() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    DataUtility.write(tables, format, since, until, out, null);
+                }
+
+                @Override
+                public void close() {
+                    for (TableSource table : tables)
+                        table.close();
+                }
+            });
+        }
+        if (GeoUtility.isGeoFormat(format)) {
+            final GeoSource stops = openGeoStops(uri);
+            if (stops == null)
+                throw new FileNotFoundException("No such notebook: " + uri);
+            return pipe(new Document() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    GeoUtility.write(stops, format, out, null);
+                }
+
+                @Override
+                public void close() {
+                    stops.close();
+                }
+            });
+        }
+
+        final StopSource stops = openNotebook(uri);
+        if (stops == null)
+            throw new FileNotFoundException("No such notebook: " + uri);
+        final ExportOptions options = new ExportOptions();
+        options.setCache(ExportCache.getInstance(getContext()));
+        options.setTargetBytes(getTargetBytes(uri));
+        return pipe(new Document() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                if (DocxUtility.EXTENSION.equals(format))
+                    DocxUtility.writeDOCX(stops, options, out, null);
+                else if (PdfUtility.EXTENSION.equals(format))
+                    PdfUtility.writePDF(stops, options, out, null);
+                else
+                    RtfUtility.writeRTF(stops, options, out, null);
+            }
+
+            @Override
+            public void close() {
+                stops.close();
+            }
+        });
+    }
+
+    /**
+     * Makes a pipe and writes a document into it on a thread of its own.
+     *
+     * @param document The document; closed once it is written, or fails to be.
+     * @return The read end, for the other app.
+     * @throws FileNotFoundException If the pipe can't be made.
+     */
+    private static ParcelFileDescriptor pipe(final Document document) throws FileNotFoundException {
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            document.close();
+            throw new FileNotFoundException(e.getMessage());
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]);
+                try {
+                    document.write(out);
+                } catch (IOException e) {
+                    //usually the other app closing its end before the end of the document
+                    Log.e(TAG, e.getMessage());
+                } finally {
+                    document.close();
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        Log.e(TAG, e.getMessage());
+                    }
+                }
+            }
+        }, "FieldNotes-share").start();
+        return pipe[0];
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Exports can only be read");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Exports can only be read");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Exports can only be read");
+    }
+
+    /**
+     * Gets the file a file URI is for. Only documents of the formats exports write, directly in
+     * the Downloads directory, can be served, so a URI can't reach anywhere else with a name like
+     * "../something".
+     *
+     * @return The file, or null if it isn't a file URI or names no document.
+     */
+    private static File getFile(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !FILES.equals(segments.get(0)))
+            return null;
+        String name = segments.get(1);
+        if (name.indexOf('/') >= 0 || name.startsWith(".") || getExtension(name) == null)
+            return null;
+        return new File(Environment.getExternalStoragePublicDirectory(
+                Environment.DIRECTORY_DOWNLOADS), name);
+    }
+
+    /**
+     * A document written into a pipe, from what it holds open until it is closed.
+     */
+    private interface Document {
+
+        void write(OutputStream out) throws IOException;
+
+        void close();
+    }
+
+    /**
+     * Opens the located <code>Stops</code> a notebook URI with a map format is for: those of the
+     * notebook, or of all of them for <code>ExportService.ALL_NOTEBOOKS</code>.
+     *
+     * @return The <code>Stops</code>, to be closed by the caller, or null if it isn't a notebook
+     * URI or there is no such <code>Notebook</code>.
+     */
+    private GeoSource openGeoStops(Uri uri) {
+        long notebookId = getNotebookId(uri);
+        if (notebookId < 0)
+            return null;
+        FieldNotesRepo repo = new FieldNotesRepo((Application) getContext().getApplicationContext());
+        if (notebookId == ExportService.ALL_NOTEBOOKS)
+            return repo.getAllGeoStops(getContext().getString(R.string.all_notebooks));
+        return repo.getNotebookGeoStops(notebookId);
+    }
+
+    /**
+     * Opens the <code>Stops</code> of the notebook a notebook URI is for.
+     *
+     * @return The <code>Stops</code>, to be closed by the caller, or null if it isn't a notebook
+     * URI or there is no such <code>Notebook</code>.
+     */
+    private StopSource openNotebook(Uri uri) {
+        long notebookId = getNotebookId(uri);
+        if (notebookId < 0)
+            return null;
+        Application application = (Application) getContext().getApplicationContext();
+        return new FieldNotesRepo(application).getNotebookStops(notebookId);
+    }
+
+    /**
+     * @return True for a data URI.
+     */
+    private static boolean isData(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 1 && DATA.equals(segments.get(0));
+    }
+
+    /**
+     * @return The time a data URI asks for the changes since, or 0 for all of them.
+     */
+    private static long getSince(Uri uri) {
+        String since = uri.getQueryParameter(SINCE);
+        if (since == null)
+            return 0;
+        try {
+            return Math.max(0, Long.parseLong(since));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return The notebook id of a notebook URI, or -1 if it isn't one.
+     */
+    private static long getNotebookId(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !NOTEBOOKS.equals(segments.get(0)))
+            return -1;
+        try {
+            return Long.parseLong(segments.get(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The extension of the document a URI is for: that of its file, or the format a
+     * notebook or data URI asks for; <code>RtfUtility.EXTENSION</code> if a notebook URI asks
+     * for none, and <code>DataUtility.CSV</code>
+     * if a data URI asks for anything but a data format.
+     */
+    private static String getFormat(Uri uri) {
+        //a file:// URI, which shareIntent is given on Android 4.0, is named like a file URI
+        File file = "file".equals(uri.getScheme()) ? new File(uri.getPath()) : getFile(uri);
+        String extension = getExtension(file != null ? file.getName() : "." + uri.getQueryParameter(FORMAT));
+        if (isData(uri))
+            return DataUtility.isDataFormat(extension) ? extension : DataUtility.CSV;
+        if (extension == null)
+            return RtfUtility.EXTENSION;
+        return extension;
+    }
+
+    /**
+     * @return The extension a name ends with, if it is of a document exports write, or null.
+     */
+    private static String getExtension(String name) {
+        String[] extensions = {RtfUtility.EXTENSION, DocxUtility.EXTENSION, PdfUtility.EXTENSION,
+                GeoUtility.GEOJSON, GeoUtility.KML, GeoUtility.GPX, DataUtility.CSV, DataUtility.NDJSON};
+        for (String extension : extensions) {
+            if (name.endsWith(extension))
+                return extension;
+        }
+        return null;
+    }
+
+    /**
+     * @return The target size a notebook URI asks for, or 0 for none.
+     */
+    private static long getTargetBytes(Uri uri) {
+        String target = uri.getQueryParameter(TARGET);
+        if (target == null)
+            return 0;
+        try {
+            return Math.max(0, Long.parseLong(target));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.fieldnotes.services;
+
+/*
+DEVELOPER NOTES:
+
+Which exports ExportService has been asked for and not finished yet, and which of those have been
+cancelled, by the id they go under: a notebook's unixTime, ALL_NOTEBOOKS or ALL_DATA. This used
+to be a set of pending ids and a single cancelled id that was reset to 0 when nothing was
+cancelled, but 0 is also ALL_NOTEBOOKS, so every export of all the notebooks looked cancelled from
+its first Stop. Keeping the cancelled ids in a set of their own means no id, real or made up,
+stands for "none".
+
+The same export can be asked for twice before the first one ends (tapping export again while it
+runs), and the service runs them one after the other. So pending counts the exports under each
+id rather than just holding it: with a set, the first one to end took the id out while the second
+was still waiting, which left the second impossible to cancel and made ExportActivity think
+nothing was running. An id leaves pending, and its cancellation with it, only when the last
+export under it ends. Until then a cancellation stands for every export waiting under the id.
+
+onStartCommand (on the main thread) adds to both and the export (on the worker thread) reads
+them, so everything goes through one lock.
+ */
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The exports waiting or running in <code>ExportService</code>, and which of them are cancelled.
+ */
+final class ExportQueue {
+
+    //how many exports are waiting or running under each id
+    private final Map<Long, Integer> pending = new HashMap<>();
+    private final Set<Long> cancelled = new HashSet<>();
+
+    /**
+     * Records that an export was asked for. Asking again for one that was cancelled takes the
+     * cancellation back.
+     *
+     * @param id The id the export goes under.
+     */
+    synchronized void queued(long id) {
+        Integer count = pending.get(id);
+        pending.put(id, count == null ? 1 : count + 1);
+        cancelled.remove(id);
+    }
+
+    /**
+     * Cancels the exports waiting or running under the id, if there are any. Otherwise there is
+     * nothing to cancel, and the next export under it isn't affected.
+     *
+     * @param id The id the export goes under.
+     */
+    synchronized void cancel(long id) {
+        if (pending.containsKey(id))
+            cancelled.add(id);
+    }
+
+    /**
+     * Records that an export is over, however it ended. The id stays pending, and cancelled if it
+     * was, as long as another export under it hasn't ended yet.
+     *
+     * @param id The id the export goes under.
+     */
+    synchronized void ended(long id) {
+        Integer count = pending.get(id);
+        if (count != null && count > 1) {
+            pending.put(id, count - 1);
+            return;
+        }
+        pending.remove(id);
+        cancelled.remove(id);
+    }
+
+    /**
+     * @return True from when an export is asked for until it, and every other export asked for
+     * under the id since, has ended.
+     */
+    synchronized boolean isPending(long id) {
+        return pending.containsKey(id);
+    }
+
+    /**
+     * @return True if the exports under the id were cancelled and haven't all ended yet.
+     */
+    synchronized boolean isCancelled(long id) {
+        return cancelled.contains(id);
+    }
+}
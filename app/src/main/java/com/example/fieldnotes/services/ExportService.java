@@ -0,0 +1,574 @@
+package com.example.fieldnotes.services;
+
+/*
+DEVELOPER NOTES:
+
+Exports used to run on a plain thread started by ExportActivity, which had to finish itself as
+soon as the user left it or the thread would try to share a file from an Activity that was gone.
+Now they run here, in an IntentService, which handles one Intent at a time on its own worker
+thread and stops itself once the queue is empty. While an export runs the service is in the
+foreground, with a notification showing how far along it is and a button to cancel it, so Android
+keeps the process alive when the user switches apps. A partial wake lock keeps it going with the
+screen off.
+
+A notebook can be exported to RTF, DOCX (see DocxUtility) or PDF (see PdfUtility), as the FORMAT
+of the Intent says, by the extension of the document. The rest of this is the same for all of
+them, but only RTF can be resumed: a DOCX document is a zip, which is only readable once its end
+is written, and a PDF one is only written once its last page is drawn. For those only the file of
+the checkpoint is used, so a redelivered Intent writes the document again from the start into the
+same file rather than leaving another one behind, and the checkpoint isn't saved after every
+Stop. A checkpoint for a file of another format (the export was started again in another one)
+is thrown away with its file.
+
+The map formats (GeoJSON, KML and GPX; see GeoUtility) go the same way, but read the notebook
+through FieldNotesRepo.getNotebookGeoStops instead, and can have the Stops of every notebook in
+one document: the notebook id for that is ALL_NOTEBOOKS, which no real notebook has. Like DOCX,
+they are written again from the start if interrupted; they are quick to write.
+
+A data export (CSV or NDJSON; see DataUtility) has the tables of the whole database, so it goes
+under the id ALL_DATA, and reads them through FieldNotesRepo.getChangedRows: the rows changed
+after the SINCE of the Intent (0 for all of them) and up to a few seconds before the export
+starts (see FieldNotesRepo.getChangesUntil). Once one is done, that time is kept, and
+getLastDataExport gives it, so the next export can carry on from it. A shared data export (see
+ExportProvider) doesn't move it, since there is no telling whether the other app read all of it.
+
+The notebook is read one Stop at a time through FieldNotesRepo.getNotebookStops, so even a
+notebook too big to load at once can be exported. Every time a Stop is written, the
+ExportCheckpoint of the export is saved (see RtfUtility.writeRTF for how the file is kept
+resumable.) The service asks for its Intents to be redelivered, so if the process is killed in
+the middle of an export, Android starts the service again with the same Intent and the export
+carries on from the last Stop that was finished, in the same file. Starting an export of a
+notebook that has a checkpoint does the same.
+
+Cancelling is an Intent too, but it doesn't wait in the queue behind the export it cancels:
+onStartCommand sees it first and marks the export cancelled in the ExportQueue, which the export
+checks before every Stop and every Picture. A cancelled export deletes its file and its checkpoint.
+
+ExportActivity follows the export through setListener while it is on screen. Everything the
+listener is told is posted to the main thread. When the export is done, the service leaves a
+notification that shares the document when tapped, so the result isn't lost if the user never
+comes back to ExportActivity.
+ */
+
+import android.app.IntentService;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import com.example.fieldnotes.R;
+import com.example.fieldnotes.database.FieldNotesRepo;
+import com.example.fieldnotes.providers.ExportProvider;
+import com.example.fieldnotes.utilities.DataUtility;
+import com.example.fieldnotes.utilities.DocxUtility;
+import com.example.fieldnotes.utilities.ExportCache;
+import com.example.fieldnotes.utilities.ExportCancelledException;
+import com.example.fieldnotes.utilities.ExportCheckpoint;
+import com.example.fieldnotes.utilities.ExportListener;
+import com.example.fieldnotes.utilities.ExportOptions;
+import com.example.fieldnotes.utilities.GeoSource;
+import com.example.fieldnotes.utilities.GeoUtility;
+import com.example.fieldnotes.utilities.PdfUtility;
+import com.example.fieldnotes.utilities.RtfUtility;
+import com.example.fieldnotes.utilities.StopSource;
+import com.example.fieldnotes.utilities.TableSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Exports <code>Notebooks</code> to RTF, DOCX or PDF documents, or the database to data files,
+ * in the background, one at a time, with a notification showing the progress. Survives the user
+ * leaving the app, and picks an interrupted export up where it left off.
+ */
+public class ExportService extends IntentService {
+
+    private static final String TAG = "ExportService";
+
+    public static final String ACTION_EXPORT = "com.example.fieldnotes.action.EXPORT";
+    public static final String ACTION_CANCEL = "com.example.fieldnotes.action.CANCEL_EXPORT";
+    public static final String THIS_UNIX = "Unix Time";
+    public static final String TARGET_BYTES = "Target Bytes";
+    public static final String FORMAT = "Format";
+    public static final String SINCE = "Since";
+    public static final long ALL_NOTEBOOKS = 0;
+    public static final long ALL_DATA = -1;
+
+    private static final String CHANNEL_ID = "exports";
+    private static final int PROGRESS_NOTIFICATION = 1;
+    private static final int RESULT_NOTIFICATION = 2;
+    private static final long UPDATE_INTERVAL = 500; //milliseconds
+    private static final long WAKE_LOCK_TIMEOUT = 60 * 60 * 1000; //milliseconds
+    private static final String DATA_PREFERENCES = "data_exports";
+    private static final String LAST_UNTIL = "last_until";
+
+    private static final Handler main = new Handler(Looper.getMainLooper());
+    private static final ExportQueue queue = new ExportQueue();
+    private static Listener listener;
+
+    /**
+     * Writes one export's document, in its format, into the file of its checkpoint.
+     */
+    private interface Document {
+
+        /**
+         * @param checkpoint Where to write, and for RTF, where to resume from.
+         * @param listener   Told how far along the export is, and asked whether to stop.
+         * @throws ExportCancelledException If the listener cancelled the export.
+         * @throws IOException If the file can't be written.
+         */
+        void write(ExportCheckpoint checkpoint, ExportListener listener) throws IOException;
+    }
+
+    /**
+     * Told about the progress of exports. Called on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called as an export goes, at most a couple of times a second.
+         *
+         * @param notebookId   The <code>unixTime</code> of the <code>Notebook</code>.
+         * @param stopsDone    The number of <code>Stops</code> written so far.
+         * @param stops        The number of <code>Stops</code> in the notebook.
+         * @param picturesDone The number of <code>Pictures</code> written so far.
+         * @param pictures     The number of <code>Pictures</code> in the notebook.
+         */
+        void onProgress(long notebookId, int stopsDone, int stops, int picturesDone, int pictures);
+
+        /**
+         * Called once an export has ended.
+         *
+         * @param notebookId The <code>unixTime</code> of the <code>Notebook</code>.
+         * @param file       The document, or null if the export failed or was cancelled.
+         */
+        void onFinished(long notebookId, File file);
+    }
+
+    public ExportService() {
+        super(TAG);
+        setIntentRedelivery(true);
+    }
+
+    /**
+     * Starts exporting a <code>Notebook</code>, or queues it behind the exports already running.
+     *
+     * @param context    Any <code>Context</code> of the app.
+     * @param notebookId The <code>unixTime</code> of the <code>Notebook</code>.
+     */
+    public static void export(Context context, long notebookId) {
+        export(context, notebookId, 0);
+    }
+
+    /**
+     * Starts exporting a <code>Notebook</code> into a document that fits a target size, or
+     * queues it behind the exports already running.
+     *
+     * @param context     Any <code>Context</code> of the app.
+     * @param notebookId  The <code>unixTime</code> of the <code>Notebook</code>.
+     * @param targetBytes The size the document should come in under; 0 for no target.
+     */
+    public static void export(Context context, long notebookId, long targetBytes) {
+        export(context, notebookId, targetBytes, RtfUtility.EXTENSION);
+    }
+
+    /**
+     * Starts exporting a <code>Notebook</code> into a document of a format that fits a target
+     * size, or queues it behind the exports already running.
+     *
+     * @param context     Any <code>Context</code> of the app.
+     * @param notebookId  The <code>unixTime</code> of the <code>Notebook</code>.
+     * @param targetBytes The size the document should come in under; 0 for no target.
+     * @param format      The extension of the document: <code>RtfUtility.EXTENSION</code>,
+     *                    <code>DocxUtility.EXTENSION</code>, <code>PdfUtility.EXTENSION</code>,
+     *                    or one of the <code>GeoUtility</code> map formats, for which
+     *                    <code>notebookId</code> can be <code>ALL_NOTEBOOKS</code>.
+     */
+    public static void export(Context context, long notebookId, long targetBytes, String format) {
+        Intent intent = new Intent(context, ExportService.class);
+        intent.setAction(ACTION_EXPORT);
+        intent.putExtra(THIS_UNIX, notebookId);
+        intent.putExtra(TARGET_BYTES, targetBytes);
+        intent.putExtra(FORMAT, format);
+        context.startService(intent);
+    }
+
+    /**
+     * Starts exporting the database into data files, or queues it behind the exports already
+     * running. Its id, to cancel it or follow it, is <code>ALL_DATA</code>.
+     *
+     * @param context Any <code>Context</code> of the app.
+     * @param format  <code>DataUtility.CSV</code> or <code>DataUtility.NDJSON</code>.
+     * @param since   Only the rows changed after this time are exported, in milliseconds since
+     *                1970; 0 for all of them.
+     */
+    public static void exportData(Context context, String format, long since) {
+        Intent intent = new Intent(context, ExportService.class);
+        intent.setAction(ACTION_EXPORT);
+        intent.putExtra(THIS_UNIX, ALL_DATA);
+        intent.putExtra(FORMAT, format);
+        intent.putExtra(SINCE, since);
+        context.startService(intent);
+    }
+
+    /**
+     * Gets the time the last finished data export read changes up to, to export the changes
+     * since.
+     *
+     * @param context Any <code>Context</code> of the app.
+     * @return The time, in milliseconds since 1970, or 0 if there hasn't been one.
+     */
+    public static long getLastDataExport(Context context) {
+        return context.getSharedPreferences(DATA_PREFERENCES, Context.MODE_PRIVATE).getLong(LAST_UNTIL, 0);
+    }
+
+    /**
+     * Cancels the export of a <code>Notebook</code>, whether it is running or still queued.
+     *
+     * @param context    Any <code>Context</code> of the app.
+     * @param notebookId The <code>unixTime</code> of the <code>Notebook</code>.
+     */
+    public static void cancel(Context context, long notebookId) {
+        context.startService(cancelIntent(context, notebookId));
+    }
+
+    /**
+     * Checks whether a <code>Notebook</code> is being exported, or waiting to be.
+     *
+     * @param notebookId The <code>unixTime</code> of the <code>Notebook</code>.
+     * @return True until its export has ended.
+     */
+    public static boolean isExporting(long notebookId) {
+        return queue.isPending(notebookId);
+    }
+
+    /**
+     * Sets the one <code>Listener</code> to tell about exports. Must be called from the main
+     * thread.
+     *
+     * @param listener The <code>Listener</code>, or null to stop listening.
+     */
+    public static void setListener(Listener listener) {
+        ExportService.listener = listener;
+    }
+
+    /**
+     * Sees cancellations as they arrive, rather than once the export they cancel is over.
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null) {
+            long notebookId = intent.getLongExtra(THIS_UNIX, 0);
+            if (ACTION_CANCEL.equals(intent.getAction()))
+                queue.cancel(notebookId);
+            else if (ACTION_EXPORT.equals(intent.getAction()))
+                queue.queued(notebookId);
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null || !ACTION_EXPORT.equals(intent.getAction()))
+            return;
+        long notebookId = intent.getLongExtra(THIS_UNIX, 0);
+        long targetBytes = intent.getLongExtra(TARGET_BYTES, 0);
+        String format = getFormat(intent.getStringExtra(FORMAT));
+        long since = intent.getLongExtra(SINCE, 0);
+
+        PowerManager power = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        PowerManager.WakeLock wakeLock = power.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+        wakeLock.acquire(WAKE_LOCK_TIMEOUT);
+        createChannel();
+        NotificationCompat.Builder progress = progressNotification(notebookId);
+        startForeground(PROGRESS_NOTIFICATION, progress.build());
+
+        File file = null;
+        try {
+            file = export(notebookId, targetBytes, format, since, progress);
+        } finally {
+            queue.ended(notebookId);
+            stopForeground(true);
+            wakeLock.release();
+            postFinished(notebookId, file);
+        }
+    }
+
+    /**
+     * Opens the <code>Stops</code> of a <code>Notebook</code>, or of all of them for a map
+     * format, or the tables of the database for a data format, and exports them.
+     *
+     * @return The document, or null if the export failed or was cancelled.
+     */
+    private File export(long notebookId, long targetBytes, final String format, final long since, NotificationCompat.Builder progress) {
+        FieldNotesRepo repo = new FieldNotesRepo(getApplication());
+        if (DataUtility.isDataFormat(format)) {
+            final long until = FieldNotesRepo.getChangesUntil();
+            final List<TableSource> tables = repo.getChangedRows(since, until);
+            try {
+                File file = export(notebookId, getString(R.string.data_export), format, new Document() {
+                    @Override
+                    public void write(ExportCheckpoint checkpoint, ExportListener listener) throws IOException {
+                        DataUtility.write(tables, format, since, until, checkpoint.getFile(), listener);
+                    }
+                }, progress);
+                if (file != null) {
+                    getSharedPreferences(DATA_PREFERENCES, Context.MODE_PRIVATE).edit()
+                            .putLong(LAST_UNTIL, until)
+                            .apply();
+                }
+                return file;
+            } finally {
+                for (TableSource table : tables)
+                    table.close();
+            }
+        }
+        if (GeoUtility.isGeoFormat(format)) {
+            final GeoSource stops = notebookId == ALL_NOTEBOOKS
+                    ? repo.getAllGeoStops(getString(R.string.all_notebooks))
+                    : repo.getNotebookGeoStops(notebookId);
+            if (stops == null) {
+                ExportCheckpoint.clear(this, notebookId);
+                return null;
+            }
+            try {
+                return export(notebookId, stops.getName(), format, new Document() {
+                    @Override
+                    public void write(ExportCheckpoint checkpoint, ExportListener listener) throws IOException {
+                        GeoUtility.write(stops, format, checkpoint.getFile(), listener);
+                    }
+                }, progress);
+            } finally {
+                stops.close();
+            }
+        }
+
+        final StopSource stops = repo.getNotebookStops(notebookId);
+        if (stops == null) {
+            ExportCheckpoint.clear(this, notebookId);
+            return null;
+        }
+        final ExportOptions options = new ExportOptions();
+        options.setCache(ExportCache.getInstance(this));
+        options.setTargetBytes(targetBytes);
+        try {
+            return export(notebookId, stops.getNotebook().getNotebookName(), format, new Document() {
+                @Override
+                public void write(ExportCheckpoint checkpoint, ExportListener listener) throws IOException {
+                    if (DocxUtility.EXTENSION.equals(format))
+                        DocxUtility.writeDOCX(stops, options, checkpoint.getFile(), listener);
+                    else if (PdfUtility.EXTENSION.equals(format))
+                        PdfUtility.writePDF(stops, options, checkpoint.getFile(), listener);
+                    else
+                        RtfUtility.writeRTF(stops, options, checkpoint, listener);
+                }
+            }, progress);
+        } finally {
+            stops.close();
+        }
+    }
+
+    /**
+     * Exports a <code>Notebook</code>, from its checkpoint if it has one, and leaves a
+     * notification with the result.
+     *
+     * @param name     The name of the <code>Notebook</code>, which the document is named after.
+     * @param format   The extension of the document.
+     * @param document Writes the document.
+     * @return The document, or null if the export failed or was cancelled.
+     */
+    private File export(final long notebookId, String name, String format, Document document, final NotificationCompat.Builder progress) {
+        final NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        progress.setContentTitle(getString(R.string.export_progress, name));
+        manager.notify(PROGRESS_NOTIFICATION, progress.build());
+
+        ExportCheckpoint checkpoint = ExportCheckpoint.load(this, notebookId);
+        if (checkpoint != null && !checkpoint.getFile().getName().endsWith(format)) {
+            checkpoint.getFile().delete();
+            ExportCheckpoint.clear(this, notebookId);
+            checkpoint = null;
+        }
+        try {
+            if (checkpoint == null) {
+                checkpoint = new ExportCheckpoint(notebookId, RtfUtility.newDocumentFile(name, format));
+                //saved right away, so a redelivered Intent writes to the same file
+                checkpoint.save(this);
+            }
+
+            final ExportCheckpoint current = checkpoint;
+            final boolean resumable = RtfUtility.EXTENSION.equals(format);
+            final int counted = DataUtility.isDataFormat(format) ? R.string.export_rows : R.string.export_stops;
+            ExportListener listener = new ExportListener() {
+                private int stopsDone;
+                private int stops;
+                private int picturesDone;
+                private int pictures;
+                private long lastUpdate;
+
+                @Override
+                public boolean isCancelled() {
+                    return queue.isCancelled(notebookId);
+                }
+
+                @Override
+                public void onStopWritten(int stopsDone, int stops, long stopId, long offset) {
+                    if (resumable) {
+                        current.update(stopsDone, stopId, offset);
+                        current.save(ExportService.this);
+                    }
+                    this.stopsDone = stopsDone;
+                    this.stops = stops;
+                    update(stopsDone == stops);
+                }
+
+                @Override
+                public void onPictureWritten(int picturesDone, int pictures) {
+                    this.picturesDone = picturesDone;
+                    this.pictures = pictures;
+                    update(false);
+                }
+
+                private void update(boolean force) {
+                    long now = SystemClock.elapsedRealtime();
+                    if (!force && now - lastUpdate < UPDATE_INTERVAL)
+                        return;
+                    lastUpdate = now;
+                    progress.setProgress(stops + pictures, stopsDone + picturesDone, false);
+                    if (stops > 0)
+                        progress.setContentText(getString(counted, stopsDone, stops));
+                    manager.notify(PROGRESS_NOTIFICATION, progress.build());
+                    postProgress(notebookId, stopsDone, stops, picturesDone, pictures);
+                }
+            };
+            document.write(checkpoint, listener);
+        } catch (ExportCancelledException e) {
+            checkpoint.getFile().delete();
+            ExportCheckpoint.clear(this, notebookId);
+            return null;
+        } catch (IOException e) {
+            //the checkpoint is kept, so exporting again carries on from it
+            Log.e(TAG, e.getMessage());
+            manager.notify(RESULT_NOTIFICATION, resultNotification(name, null));
+            return null;
+        }
+
+        ExportCheckpoint.clear(this, notebookId);
+        manager.notify(RESULT_NOTIFICATION, resultNotification(name, checkpoint.getFile()));
+        return checkpoint.getFile();
+    }
+
+    /**
+     * Builds the notification shown while an export runs, with its cancel button.
+     */
+    private NotificationCompat.Builder progressNotification(long notebookId) {
+        PendingIntent cancel = PendingIntent.getService(this, (int) notebookId,
+                cancelIntent(this, notebookId), PendingIntent.FLAG_UPDATE_CURRENT);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(getString(R.string.exportmsg))
+                .setProgress(0, 0, true)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .addAction(0, getString(R.string.cancel), cancel);
+    }
+
+    /**
+     * Builds the notification left once an export is over. If it worked, tapping it shares the
+     * document.
+     *
+     * @param name The name of the <code>Notebook</code>.
+     * @param file The document, or null if the export failed.
+     */
+    private Notification resultNotification(String name, File file) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setAutoCancel(true);
+        if (file == null) {
+            return builder.setSmallIcon(android.R.drawable.stat_notify_error)
+                    .setContentTitle(getString(R.string.export_failed, name))
+                    .build();
+        }
+
+        Intent share = ExportProvider.shareIntent(ExportProvider.getFileUri(file));
+        Intent chooser = Intent.createChooser(share, getString(R.string.export_share));
+        PendingIntent content = PendingIntent.getActivity(this, 0, chooser,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+        return builder.setSmallIcon(android.R.drawable.stat_sys_download_done)
+                .setContentTitle(getString(R.string.export_done, name))
+                .setContentText(getString(R.string.export_share))
+                .setContentIntent(content)
+                .build();
+    }
+
+    /**
+     * Creates the notification channel for exports. Only needed, and only possible, on Android 8
+     * and up.
+     */
+    private void createChannel() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
+            return;
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                getString(R.string.export_channel), NotificationManager.IMPORTANCE_LOW);
+        ((NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE)).createNotificationChannel(channel);
+    }
+
+    /**
+     * Gets the format an export Intent asks for, falling back on RTF for anything it can't
+     * write.
+     *
+     * @param format The FORMAT of the Intent; may be null.
+     * @return The extension of the document.
+     */
+    private static String getFormat(String format) {
+        if (DocxUtility.EXTENSION.equals(format))
+            return DocxUtility.EXTENSION;
+        if (PdfUtility.EXTENSION.equals(format))
+            return PdfUtility.EXTENSION;
+        if (GeoUtility.isGeoFormat(format) || DataUtility.isDataFormat(format))
+            return format;
+        return RtfUtility.EXTENSION;
+    }
+
+    private static Intent cancelIntent(Context context, long notebookId) {
+        Intent intent = new Intent(context, ExportService.class);
+        intent.setAction(ACTION_CANCEL);
+        intent.putExtra(THIS_UNIX, notebookId);
+        return intent;
+    }
+
+    /**
+     * Tells the <code>Listener</code> how far along an export is, on the main thread.
+     */
+    private static void postProgress(final long notebookId, final int stopsDone, final int stops,
+                                     final int picturesDone, final int pictures) {
+        main.post(new Runnable() {
+            @Override
+            public void run() {
+                if (listener != null)
+                    listener.onProgress(notebookId, stopsDone, stops, picturesDone, pictures);
+            }
+        });
+    }
+
+    /**
+     * Tells the <code>Listener</code> an export has ended, on the main thread.
+     */
+    private static void postFinished(final long notebookId, final File file) {
+        main.post(new Runnable() {
+            @Override
+            public void run() {
+                if (listener != null)
+                    listener.onFinished(notebookId, file);
+            }
+        });
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+The documents the other utilities write are for reading; these are for analysis. The notebooks,
+stops and pictures tables are written as they are in the database, a file per table, in one of
+two formats that spreadsheets, pandas, R and the like read directly:
+
+- CSV (RFC 4180): a header of the column names, then a line per row, ending in CRLF. A value
+  with a comma, a quote or a line break in it is quoted, with its quotes doubled. A null is an
+  empty field, and an empty string is "" so the two can be told apart.
+- Newline-delimited JSON: a JSON object per row, with the column names as keys, on a line each.
+  Numbers are numbers and nulls are null.
+
+The files go in a zip, with an export.json that says which format they are in, which times the
+export covers, and how many rows each file has. The zip also deflates the text to a fraction of
+its size. Times are left as the database has them, milliseconds since 1970, and REAL values
+(the coordinates) are written in full, never with an exponent (see GeoUtility.coordinate).
+
+An export can be limited to the rows changed after one time and up to another (see ChangeLog in
+the database package for how changes are recorded). The deletions file lists the rows deleted
+in between, by table and primary key, so whoever reads the export can apply it to a copy they
+already have: insert or replace every row, then delete every deletion. A pipeline that asks for
+everything after the "until" of the last export it read gets every change once.
+
+Each table is written from a TableSource, which reads it a row at a time from a cursor (see
+ChangedRows), straight into a buffered writer on the zip, so nothing about the rows is kept once
+they are written and a million of them take the same memory as ten.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the tables of the database as zipped CSV or newline-delimited JSON files, for analysis.
+ */
+public class DataUtility {
+
+    public static final String CSV = ".csv.zip";
+    public static final String NDJSON = ".ndjson.zip";
+    public static final String MIME_TYPE = "application/zip";
+
+    static final String MANIFEST = "export.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Checks whether a format is one of the data formats written here.
+     *
+     * @param format The extension of the document, with its dot.
+     * @return True for <code>CSV</code> and <code>NDJSON</code>.
+     */
+    public static boolean isDataFormat(String format) {
+        return CSV.equals(format) || NDJSON.equals(format);
+    }
+
+    /**
+     * Writes tables into a file, from the start.
+     *
+     * @param tables   The tables. Not closed here.
+     * @param format   <code>CSV</code> or <code>NDJSON</code>.
+     * @param since    The time the rows were read from, for the manifest; 0 for all of them.
+     * @param until    The time they were read up to.
+     * @param file     The file to write, replacing whatever it held.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(List<TableSource> tables, String format, long since, long until, File file, ExportListener listener) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(tables, format, since, until, out, listener);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes tables into a stream, as they are read. Should not be run in the main thread.
+     *
+     * @param tables   The tables. Not closed here.
+     * @param format   <code>CSV</code> or <code>NDJSON</code>.
+     * @param since    The time the rows were read from, for the manifest; 0 for all of them.
+     * @param until    The time they were read up to.
+     * @param out      Where to write the zip. Finished, but not closed.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     *                 Its <code>Stops</code> are rows, of all the tables together.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the stream can't be written.
+     */
+    public static void write(List<TableSource> tables, String format, long since, long until, OutputStream out, ExportListener listener) throws IOException {
+        boolean csv = !NDJSON.equals(format);
+        String extension = csv ? ".csv" : ".ndjson";
+        int rows = 0;
+        for (TableSource table : tables)
+            rows += table.getRowCount();
+
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(zip, UTF_8));
+        int[] written = new int[tables.size()];
+        int rowsDone = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            TableSource table = tables.get(t);
+            zip.putNextEntry(new ZipEntry(table.getName() + extension));
+            table.start();
+            if (csv)
+                written[t] = writeCSV(table, writer, rowsDone, rows, listener);
+            else
+                written[t] = writeNDJSON(table, writer, rowsDone, rows, listener);
+            rowsDone += written[t];
+            writer.flush();
+            zip.closeEntry();
+        }
+
+        zip.putNextEntry(new ZipEntry(MANIFEST));
+        writer.write("{\"format\":");
+        GeoUtility.jsonString(writer, csv ? "csv" : "ndjson");
+        writer.write(",\"since\":" + since + ",\"until\":" + until + ",\"tables\":[");
+        for (int t = 0; t < tables.size(); t++) {
+            if (t > 0)
+                writer.write(',');
+            writer.write("{\"name\":");
+            GeoUtility.jsonString(writer, tables.get(t).getName());
+            writer.write(",\"file\":");
+            GeoUtility.jsonString(writer, tables.get(t).getName() + extension);
+            writer.write(",\"rows\":" + written[t] + "}");
+        }
+        writer.write("]}\n");
+        writer.flush();
+        zip.closeEntry();
+
+        //writes the central directory, and flushes it into out without closing that
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Writes a table as CSV, with a header of its column names.
+     *
+     * @param rowsDone The number of rows of the tables before this one.
+     * @param rows     The number of rows of all the tables.
+     * @return The number of rows written.
+     */
+    static int writeCSV(TableSource table, Writer writer, int rowsDone, int rows, ExportListener listener) throws IOException {
+        String[] columns = table.getColumnNames();
+        for (int c = 0; c < columns.length; c++) {
+            if (c > 0)
+                writer.write(',');
+            csvString(writer, columns[c]);
+        }
+        writer.write("\r\n");
+
+        int written = 0;
+        while (table.next()) {
+            checkCancelled(listener);
+            for (int c = 0; c < columns.length; c++) {
+                if (c > 0)
+                    writer.write(',');
+                switch (table.getType(c)) {
+                    case TableSource.TYPE_NULL:
+                        break;
+                    case TableSource.TYPE_INTEGER:
+                        writer.write(Long.toString(table.getLong(c)));
+                        break;
+                    case TableSource.TYPE_FLOAT:
+                        String number = number(table.getDouble(c));
+                        if (number != null)
+                            writer.write(number);
+                        break;
+                    default:
+                        csvString(writer, table.getString(c));
+                }
+            }
+            writer.write("\r\n");
+            written++;
+            if (listener != null)
+                listener.onStopWritten(rowsDone + written, rows, 0, 0);
+        }
+        return written;
+    }
+
+    /**
+     * Writes a table as newline-delimited JSON, an object per row.
+     *
+     * @param rowsDone The number of rows of the tables before this one.
+     * @param rows     The number of rows of all the tables.
+     * @return The number of rows written.
+     */
+    static int writeNDJSON(TableSource table, Writer writer, int rowsDone, int rows, ExportListener listener) throws IOException {
+        String[] columns = table.getColumnNames();
+        int written = 0;
+        while (table.next()) {
+            checkCancelled(listener);
+            writer.write('{');
+            for (int c = 0; c < columns.length; c++) {
+                if (c > 0)
+                    writer.write(',');
+                GeoUtility.jsonString(writer, columns[c]);
+                writer.write(':');
+                switch (table.getType(c)) {
+                    case TableSource.TYPE_NULL:
+                        writer.write("null");
+                        break;
+                    case TableSource.TYPE_INTEGER:
+                        writer.write(Long.toString(table.getLong(c)));
+                        break;
+                    case TableSource.TYPE_FLOAT:
+                        String number = number(table.getDouble(c));
+                        writer.write(number != null ? number : "null");
+                        break;
+                    default:
+                        GeoUtility.jsonString(writer, table.getString(c));
+                }
+            }
+            writer.write("}\n");
+            written++;
+            if (listener != null)
+                listener.onStopWritten(rowsDone + written, rows, 0, 0);
+        }
+        return written;
+    }
+
+    /**
+     * Writes a CSV field, quoted if it has to be: if it holds a comma, a quote or a line break,
+     * or is empty (an unquoted empty field is a null.)
+     */
+    static void csvString(Writer writer, String text) throws IOException {
+        if (text == null)
+            return;
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"')
+                writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * @return A REAL value in full, without an exponent, or null if it isn't a finite number,
+     * which neither format can hold.
+     */
+    static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return null;
+        return GeoUtility.coordinate(value);
+    }
+
+    private static void checkCancelled(ExportListener listener) throws ExportCancelledException {
+        if (listener != null && listener.isCancelled())
+            throw new ExportCancelledException();
+    }
+}
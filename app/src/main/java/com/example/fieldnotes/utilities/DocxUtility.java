@@ -0,0 +1,435 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+The other export format, next to RtfUtility. A DOCX document is a zip of XML files and the
+pictures that go in it, so each picture is kept as the JPEG it is, in an entry of its own, instead
+of as hex in the text, which doubles it. A photo-heavy notebook comes out about half the size of
+its RTF, and word processors open it much faster since they don't have to read the hex back.
+
+The pictures are already JPEG, so their entries are STORED, not compressed again (deflating JPEG
+saves nothing and takes time.) A stored entry needs its size and CRC-32 before its data; for a
+picture compressed in memory that is quick, and for one copied from its file it means reading
+the file twice, the second time mostly from the file system's cache. The XML is deflated, and
+written as it is generated, so the document is never all in memory.
+
+A zip entry has to be written in one go, and the document's XML has to say how big each picture
+is, so the notebook is gone through twice:
+
+1. The pictures, through a PicturePipeline the same way the RTF export prepares them (see
+   PicturePipeline and ExportOptions), each written into word/media as it is ready. All that is
+   kept of each is a Media: the number of its entry and its size in pixels, by picture_id. A
+   picture that was left out (it is missing or can't be decoded) has none.
+2. The Stops, read again from the start, into word/document.xml: the same name, time,
+   coordinates, notes, pictures and captions the RTF has, a Stop to a page. Each picture is
+   looked up by its picture_id.
+
+The notebook isn't locked between the two passes, and the pictures are matched by id rather
+than by position so a change in between can't put a picture under another one's caption. A
+picture added since the first pass has no entry and is left out, one deleted since has an entry
+that nothing refers to, and one moved to another Stop turns up under that Stop.
+The parts that don't depend on the notebook ([Content_Types].xml, the relationships) are
+constants, except word/_rels/document.xml.rels, which names every picture entry and so comes
+after them.
+
+Sizes in DOCX are in EMUs (914400 to the inch). A picture gets the same size on the page as in
+the RTF: the RTF sets 4 twips per pixel, and a twip is 635 EMUs. Text sizes are in half points,
+as in RTF.
+
+There is no checkpoint to resume from: the zip's central directory is only written at the end,
+so a cut short file can't be carried on. An interrupted DOCX export starts over.
+
+The DOCX reference used here is ECMA-376, Part 1 ("Office Open XML File Formats").
+ */
+
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a <code>Notebook</code> as a DOCX document, with its pictures as JPEG parts.
+ */
+public class DocxUtility {
+
+    public static final String EXTENSION = ".docx";
+    public static final String MIME_TYPE =
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int EMU_PER_PIXEL = 4 * 635;
+
+    private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Default Extension=\"jpeg\" ContentType=\"image/jpeg\"/>"
+            + "<Override PartName=\"/word/document.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+            + "</Types>";
+    private static final String PACKAGE_RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"word/document.xml\"/>"
+            + "</Relationships>";
+    private static final String DOCUMENT_START = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\""
+            + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\""
+            + " xmlns:wp=\"http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing\""
+            + " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\""
+            + " xmlns:pic=\"http://schemas.openxmlformats.org/drawingml/2006/picture\">"
+            + "<w:body>";
+    private static final String DOCUMENT_END = "</w:body></w:document>";
+    private static final String FONT = "<w:rFonts w:ascii=\"Times New Roman\" w:hAnsi=\"Times New Roman\" w:cs=\"Times New Roman\"/>";
+
+    /**
+     * Writes the DOCX document of a notebook into a file, from the start.
+     *
+     * @param stops The <code>Stops</code> of the notebook. Not closed here.
+     * @param options The settings to export with.
+     * @param file The file to write, replacing whatever it held.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeDOCX(StopSource stops, ExportOptions options, File file, ExportListener listener) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            writeDOCX(stops, options, out, listener);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the DOCX document of a notebook into a stream. Should not be run in the main
+     * thread.
+     *
+     * @param stops The <code>Stops</code> of the notebook. Not closed here.
+     * @param options The settings to export with.
+     * @param out Where to write the document. Finished, but not closed.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     *                 Every picture is written before the first <code>Stop</code>.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the stream can't be written.
+     */
+    public static void writeDOCX(StopSource stops, ExportOptions options, OutputStream out, ExportListener listener) throws IOException {
+        options = SizeBudget.planBinary(options, stops);
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new KeepOpenOutputStream(out)));
+        writeText(zip, "[Content_Types].xml", CONTENT_TYPES);
+        writeText(zip, "_rels/.rels", PACKAGE_RELATIONSHIPS);
+
+        Map<Long, Media> media = new HashMap<>();
+        int entries = writePictures(stops, options, zip, media, listener);
+
+        Writer writer = openText(zip, "word/_rels/document.xml.rels");
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+        writer.write("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= entries; i++) {
+            writer.write("<Relationship Id=\"rId" + i + "\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/image\" Target=\"media/image" + i + ".jpeg\"/>");
+        }
+        writer.write("</Relationships>");
+        closeText(zip, writer);
+
+        writer = openText(zip, "word/document.xml");
+        writeDocument(stops, writer, media, listener);
+        closeText(zip, writer);
+
+        //writes the central directory, and flushes it into out without closing that
+        zip.close();
+    }
+
+    /**
+     * Writes the DOCX document of a notebook that is already loaded. Not private so the tests
+     * can write it to any stream.
+     */
+    static void writeDOCX(NotebookWithStopsAndPictures notebook, ExportOptions options, OutputStream out) throws IOException {
+        writeDOCX(new ListStopSource(notebook), options, out, null);
+    }
+
+    /**
+     * Goes through every <code>Picture</code> of the notebook and writes the ones that can be
+     * prepared into word/media, in order.
+     *
+     * @param media Filled in with the entry of each picture written, by its id.
+     * @return The number of entries written.
+     * @throws IOException If the stream can't be written, or preparing a picture failed.
+     */
+    private static int writePictures(StopSource stops, ExportOptions options, ZipOutputStream zip, Map<Long, Media> media, ExportListener listener) throws IOException {
+        int pictures = stops.getPictureCount();
+        stops.start(0);
+        PicturePipeline pipeline = new PicturePipeline(new SourcePictures(stops), options);
+        int done = 0;
+        int entries = 0;
+        try {
+            while (pipeline.hasNext()) {
+                checkCancelled(listener);
+                PicturePipeline.PreparedPicture prepared = pipeline.next();
+                if (prepared != null) {
+                    entries++;
+                    media.put(prepared.getPicture().getUnixTime(), writeMedia(zip, prepared, entries));
+                }
+                done++;
+                //pictures added since they were counted make the count grow with them
+                if (listener != null)
+                    listener.onPictureWritten(done, Math.max(done, pictures));
+            }
+        } finally {
+            pipeline.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Writes a prepared picture into word/media as an entry of its own, stored as it is.
+     *
+     * @param entry The number of the entry, from 1.
+     * @return What the document needs to know of it.
+     * @throws IOException If the stream can't be written, or the picture's file read.
+     */
+    static Media writeMedia(ZipOutputStream zip, PicturePipeline.PreparedPicture prepared, int entry) throws IOException {
+        ZipEntry zipEntry = new ZipEntry("word/media/image" + entry + ".jpeg");
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(prepared.getLength());
+        zipEntry.setCompressedSize(prepared.getLength());
+        zipEntry.setCrc(prepared.getCrc());
+        zip.putNextEntry(zipEntry);
+        prepared.writeJpeg(zip);
+        zip.closeEntry();
+        return new Media(entry, prepared.getWidth(), prepared.getHeight());
+    }
+
+    /**
+     * Writes word/document.xml, reading the <code>Stops</code> again from the start.
+     *
+     * @param media The entry of each picture written in the first pass, by its id. The pictures
+     *              without one are left out.
+     * @throws IOException If the stream can't be written.
+     */
+    static void writeDocument(StopSource stops, Writer writer, Map<Long, Media> media, ExportListener listener) throws IOException {
+        writer.write(DOCUMENT_START);
+        paragraph(writer, true, 48, stops.getNotebook().getNotebookName());
+
+        stops.start(0);
+        int stopCount = stops.getStopCount();
+        StopWithPictures stopWithPictures;
+        for (int i = 0; (stopWithPictures = stops.next()) != null; i++) {
+            checkCancelled(listener);
+            if (i > 0)
+                writer.write("<w:p><w:r><w:br w:type=\"page\"/></w:r></w:p>");
+
+            Stop stop = stopWithPictures.getStop();
+            paragraph(writer, false, 32, stop.getStopName());
+            paragraph(writer, false, 24, "Time: " + RtfUtility.getTimeString(stop.getTime()));
+            String coordString = RtfUtility.getCoordinatesString(stop.getLongitude(), stop.getLatitude());
+            if (coordString != null)
+                paragraph(writer, false, 24, "Coordinates: " + coordString);
+            if (stop.notes() != null)
+                paragraph(writer, false, 24, stop.notes());
+
+            for (Picture p : RtfUtility.getPictures(stopWithPictures)) {
+                Media entry = media.get(p.getUnixTime());
+                if (entry != null) {
+                    writePicture(writer, entry.entry, entry.width, entry.height);
+                    paragraph(writer, true, 20, p.caption());
+                }
+            }
+            if (listener != null)
+                listener.onStopWritten(i + 1, stopCount, stop.getUnixTime(), 0);
+        }
+
+        writer.write(DOCUMENT_END);
+    }
+
+    /**
+     * Writes a centered paragraph with one picture in it, at the size it has in the RTF.
+     *
+     * @param entry  The number of the picture's entry in word/media.
+     * @param width  Its width in pixels.
+     * @param height Its height in pixels.
+     */
+    private static void writePicture(Writer writer, int entry, int width, int height) throws IOException {
+        long cx = (long) width * EMU_PER_PIXEL;
+        long cy = (long) height * EMU_PER_PIXEL;
+        writer.write("<w:p><w:pPr><w:jc w:val=\"center\"/></w:pPr><w:r><w:drawing>");
+        writer.write("<wp:inline><wp:extent cx=\"" + cx + "\" cy=\"" + cy + "\"/>");
+        writer.write("<wp:docPr id=\"" + entry + "\" name=\"Picture " + entry + "\"/>");
+        writer.write("<a:graphic><a:graphicData uri=\"http://schemas.openxmlformats.org/drawingml/2006/picture\">");
+        writer.write("<pic:pic><pic:nvPicPr><pic:cNvPr id=\"" + entry + "\" name=\"image" + entry + ".jpeg\"/><pic:cNvPicPr/></pic:nvPicPr>");
+        writer.write("<pic:blipFill><a:blip r:embed=\"rId" + entry + "\"/><a:stretch><a:fillRect/></a:stretch></pic:blipFill>");
+        writer.write("<pic:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"" + cx + "\" cy=\"" + cy + "\"/></a:xfrm>");
+        writer.write("<a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></pic:spPr></pic:pic>");
+        writer.write("</a:graphicData></a:graphic></wp:inline></w:drawing></w:r></w:p>");
+    }
+
+    /**
+     * Writes a paragraph of text in Times New Roman. Line breaks and tabs in the text are kept.
+     *
+     * @param centered True to center the paragraph, false to leave it left-justified.
+     * @param fontSize The size of the text in half points, so 24 is 12 point.
+     * @param text     The text; null for an empty paragraph.
+     */
+    private static void paragraph(Writer writer, boolean centered, int fontSize, String text) throws IOException {
+        writer.write("<w:p>");
+        if (centered)
+            writer.write("<w:pPr><w:jc w:val=\"center\"/></w:pPr>");
+        writer.write("<w:r><w:rPr>");
+        writer.write(FONT);
+        writer.write("<w:sz w:val=\"" + fontSize + "\"/></w:rPr><w:t xml:space=\"preserve\">");
+        if (text != null)
+            escape(writer, text);
+        writer.write("</w:t></w:r></w:p>");
+    }
+
+    /**
+     * Writes text into a &lt;w:t&gt; element, escaped for XML. Line breaks and tabs end the
+     * element and become &lt;w:br/&gt; and &lt;w:tab/&gt;, and other characters that XML can't
+     * hold are left out.
+     */
+    static void escape(Writer writer, CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '\n':
+                    writer.write("</w:t><w:br/><w:t xml:space=\"preserve\">");
+                    break;
+                case '\t':
+                    writer.write("</w:t><w:tab/><w:t xml:space=\"preserve\">");
+                    break;
+                default:
+                    if (c >= 0x20 && c != 0xfffe && c != 0xffff)
+                        writer.write(c);
+            }
+        }
+    }
+
+    /**
+     * Writes a whole entry of text.
+     */
+    private static void writeText(ZipOutputStream zip, String name, String text) throws IOException {
+        Writer writer = openText(zip, name);
+        writer.write(text);
+        closeText(zip, writer);
+    }
+
+    /**
+     * Starts a deflated entry, and gives a writer for its text in UTF-8.
+     */
+    private static Writer openText(ZipOutputStream zip, String name) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        return new BufferedWriter(new OutputStreamWriter(zip, UTF_8));
+    }
+
+    /**
+     * Flushes the writer into the entry, and ends it. The writer isn't closed, which would close
+     * the zip.
+     */
+    private static void closeText(ZipOutputStream zip, Writer writer) throws IOException {
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private static void checkCancelled(ExportListener listener) throws ExportCancelledException {
+        if (listener != null && listener.isCancelled())
+            throw new ExportCancelledException();
+    }
+
+    /**
+     * A picture written into word/media: the number of its entry, and its size in pixels.
+     */
+    static final class Media {
+
+        final int entry;
+        final int width;
+        final int height;
+
+        Media(int entry, int width, int height) {
+            this.entry = entry;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * The <code>Pictures</code> of every <code>Stop</code> of a source, read a <code>Stop</code>
+     * at a time as they are asked for.
+     */
+    private static class SourcePictures implements Iterator<Picture> {
+
+        private final StopSource stops;
+        private Iterator<Picture> current;
+
+        SourcePictures(StopSource stops) {
+            this.stops = stops;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                StopWithPictures stop = stops.next();
+                if (stop == null)
+                    return false;
+                current = RtfUtility.getPictures(stop).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Picture next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Passes everything through except <code>close</code>, so closing the zip doesn't close a
+     * stream that belongs to the caller.
+     */
+    private static class KeepOpenOutputStream extends FilterOutputStream {
+
+        KeepOpenOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
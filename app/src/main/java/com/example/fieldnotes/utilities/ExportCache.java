@@ -0,0 +1,404 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+Decoding, scaling and compressing a picture is the slow part of an export, and notebooks get
+exported over and over with the same pictures in them. This cache keeps the JPEG each picture
+became, in the app's cache directory, so the next export of the same picture only has to read it
+back. It also keeps fragments: the finished RTF of a whole Stop, text and pictures, so a Stop
+that hasn't changed since the last export is copied into the document from its file without
+looking at its pictures at all (see RtfUtility.getStopsText.)
+
+An entry's key is a SHA-1 of everything that decides what the picture becomes: the file's path,
+its last-modified time and size (so an edited or replaced file misses), its EXIF orientation,
+the JPEG quality, the export resolution and the size it had to fit (see SizeBudget). Each entry
+is a file named after its key, holding a small header (a magic number and the picture's width
+and height) and then the JPEG. A fragment is the RTF text in UTF-8, and its key is a hash of
+whatever its writer says it depends on. Entries are written to a temporary file and renamed into
+place, so a reader never sees half of one; a picture that doesn't start with the header is
+treated as a miss and deleted.
+
+When the entries add up to more than getMaxBytes, the ones used least recently are deleted. The
+order is kept in memory, and on disk as each file's last-modified time, so it survives the app
+restarting. There is one ExportCache per process (see getInstance), since two of them on the same
+directory would each think they knew its size. Failing to write an entry is logged and otherwise
+ignored; the export doesn't need the cache to succeed.
+ */
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An on-disk cache of pictures that have been prepared for an export, evicted least recently
+ * used first once it grows past a byte budget.
+ */
+public class ExportCache {
+
+    private static final String TAG = "ExportCache";
+    private static final String DIRECTORY = "export_images";
+    private static final String TEMPORARY = ".tmp";
+
+    public static final long DEFAULT_MAX_BYTES = 100L * 1024 * 1024;
+
+    private static final int MAGIC = 0x464e4331; //"FNC1"
+    private static final int HEADER_SIZE = 12;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ExportCache INSTANCE;
+
+    private final File directory;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long maxBytes;
+
+    /**
+     * Opens the cache in a directory, picking up the entries already in it.
+     *
+     * @param directory Where the entries are kept. Created if it doesn't exist.
+     * @param maxBytes  The most bytes the entries can take up.
+     */
+    ExportCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        directory.mkdirs();
+
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long difference = o1.lastModified() - o2.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMPORARY)) {
+                file.delete();
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            size += file.length();
+        }
+        trim();
+    }
+
+    /**
+     * Returns the app's <code>ExportCache</code>, opening it the first time it is called.
+     *
+     * @param context Any <code>Context</code> of the app.
+     */
+    public static synchronized ExportCache getInstance(Context context) {
+        if (INSTANCE == null)
+            INSTANCE = new ExportCache(new File(context.getCacheDir(), DIRECTORY), DEFAULT_MAX_BYTES);
+        return INSTANCE;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the most bytes the entries can take up, deleting the least recently used ones if
+     * they are over it. <code>DEFAULT_MAX_BYTES</code> unless changed.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * The bytes the entries take up now.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Deletes every entry.
+     */
+    public synchronized void clear() {
+        for (String key : entries.keySet())
+            new File(directory, key).delete();
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Makes the key of a picture file prepared a certain way.
+     *
+     * @param file        The picture file.
+     * @param orientation Its EXIF orientation.
+     * @param quality     The JPEG quality it is compressed at.
+     * @param maxLongEdge The export resolution it is scaled to.
+     * @param maxBytes    The bytes it is made to fit in, or 0 for no limit.
+     * @return The key, which is also a safe file name.
+     */
+    static String key(File file, int orientation, int quality, int maxLongEdge, int maxBytes) {
+        return hash("picture\n" + file.getAbsolutePath() + '\n' + file.lastModified() + '\n'
+                + file.length() + '\n' + orientation + '\n' + quality + '\n' + maxLongEdge + '\n'
+                + maxBytes);
+    }
+
+    /**
+     * Makes a key out of everything an entry depends on.
+     *
+     * @param identity Everything the entry depends on, written out.
+     * @return The SHA-1 of <code>identity</code> in hex, which is also a safe file name.
+     */
+    static String hash(String identity) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            StringWriter key = new StringWriter(40);
+            new HexEncoder().encode(sha1.digest(identity.getBytes(UTF_8)), key);
+            return key.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            //every Java runtime has SHA-1, and a StringWriter never throws
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads an entry, and marks it as the most recently used.
+     *
+     * @param key The entry's key, from <code>key</code>.
+     * @return The entry, or null if there is none.
+     */
+    Entry get(String key) {
+        File file = new File(directory, key);
+        synchronized (this) {
+            if (entries.get(key) == null)
+                return null;
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (file.length() < HEADER_SIZE || in.readInt() != MAGIC)
+                    throw new IOException("Not an entry");
+                int width = in.readInt();
+                int height = in.readInt();
+                byte[] jpeg = new byte[(int) file.length() - HEADER_SIZE];
+                in.readFully(jpeg);
+                return new Entry(width, height, jpeg);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            //evicted since we looked, or damaged; either way it's a miss
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Stores an entry, replacing any with the same key, and deletes the least recently used
+     * entries if that takes the cache over its budget.
+     *
+     * @param key    The entry's key, from <code>key</code>.
+     * @param width  The width of the picture in pixels.
+     * @param height The height of the picture in pixels.
+     * @param jpeg   The JPEG data.
+     */
+    void put(String key, int width, int height, byte[] jpeg) {
+        File temporary = new File(directory, key + "." + Thread.currentThread().getId() + TEMPORARY);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(width);
+                out.writeInt(height);
+                out.write(jpeg);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, e.getMessage());
+            temporary.delete();
+            return;
+        }
+
+        commit(key, temporary);
+    }
+
+    /**
+     * Checks for a fragment without marking it as used.
+     *
+     * @param key The fragment's key, from <code>hash</code>.
+     * @return True if the fragment is in the cache.
+     */
+    synchronized boolean hasFragment(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Opens a fragment, and marks it as the most recently used.
+     *
+     * @param key The fragment's key, from <code>hash</code>.
+     * @return The text of the fragment, which the caller has to close, or null if there is none.
+     */
+    Reader getFragment(String key) {
+        File file = new File(directory, key);
+        synchronized (this) {
+            if (entries.get(key) == null)
+                return null;
+            file.setLastModified(System.currentTimeMillis());
+        }
+        try {
+            return new InputStreamReader(new FileInputStream(file), UTF_8);
+        } catch (FileNotFoundException e) {
+            //evicted since we looked
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Starts writing a fragment. It is added to the cache when the <code>Fragment</code> is
+     * closed, and never if it is aborted.
+     *
+     * @param key The fragment's key, from <code>hash</code>.
+     * @return The <code>Fragment</code> to write the text to, or null if it couldn't be
+     * created.
+     */
+    Fragment newFragment(String key) {
+        File temporary = new File(directory, key + "." + Thread.currentThread().getId() + TEMPORARY);
+        try {
+            return new Fragment(key, temporary);
+        } catch (IOException e) {
+            Log.e(TAG, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Moves a finished temporary file into place as an entry.
+     */
+    private synchronized void commit(String key, File temporary) {
+        File file = new File(directory, key);
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            return;
+        }
+        Long old = entries.put(key, file.length());
+        if (old != null)
+            size -= old;
+        size += file.length();
+        trim();
+    }
+
+    /**
+     * Forgets an entry and deletes its file.
+     */
+    private synchronized void remove(String key) {
+        Long old = entries.remove(key);
+        if (old != null)
+            size -= old;
+        new File(directory, key).delete();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is within its budget.
+     */
+    private synchronized void trim() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (size > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(directory, entry.getKey()).delete();
+            size -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * A fragment being written. Closing it adds it to the cache.
+     */
+    final class Fragment extends Writer {
+
+        private final String key;
+        private final File temporary;
+        private final Writer out;
+
+        private Fragment(String key, File temporary) throws IOException {
+            this.key = key;
+            this.temporary = temporary;
+            this.out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(temporary)), UTF_8);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Finishes the fragment and adds it to the cache.
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+            commit(key, temporary);
+        }
+
+        /**
+         * Drops the fragment.
+         */
+        void abort() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.e(TAG, e.getMessage());
+            }
+            temporary.delete();
+        }
+    }
+
+    /**
+     * A picture read back from the cache.
+     */
+    static final class Entry {
+
+        final int width;
+        final int height;
+        final byte[] jpeg;
+
+        Entry(int width, int height, byte[] jpeg) {
+            this.width = width;
+            this.height = height;
+            this.jpeg = jpeg;
+        }
+    }
+}
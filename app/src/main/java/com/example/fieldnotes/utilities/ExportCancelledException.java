@@ -0,0 +1,13 @@
+package com.example.fieldnotes.utilities;
+
+import java.io.IOException;
+
+/**
+ * Thrown by an export when its <code>ExportListener</code> asks it to stop.
+ */
+public class ExportCancelledException extends IOException {
+
+    public ExportCancelledException() {
+        super("Export cancelled");
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+An export writes its document one Stop after another, and after each Stop the file on disk ends
+exactly where the next one will start. A checkpoint records that point: the file, how many
+Stops are in it and how long it is. If the export is interrupted (the process is killed, say),
+RtfUtility.writeRTF can cut the file back to that length and carry on with the next Stop instead
+of starting over.
+
+Checkpoints are kept in the app's preferences, one per notebook, so they survive the process.
+Before resuming, fits checks that the file is still there and at least that long, and that the
+last Stop written is still in the same place in the notebook; if the notebook changed that much
+in between, the export starts over in the same file. It does too if the pictures would be given
+a different share of a target size than the ones already written (see SizeBudget), because the
+notebook or the target changed.
+ */
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
+
+import java.io.File;
+
+/**
+ * How far an export of a <code>Notebook</code> has got, kept so it can resume after being
+ * interrupted.
+ */
+public class ExportCheckpoint {
+
+    private static final String PREFERENCES = "export_checkpoints";
+    private static final String PATH = ".path";
+    private static final String STOPS_DONE = ".stops_done";
+    private static final String LAST_STOP = ".last_stop";
+    private static final String OFFSET = ".offset";
+    private static final String PICTURE_BYTES = ".picture_bytes";
+
+    private final long notebookId;
+    private final File file;
+    private int stopsDone;
+    private long lastStopId;
+    private long offset;
+    private int pictureBytes;
+
+    /**
+     * Creates the checkpoint of an export that hasn't written anything yet.
+     *
+     * @param notebookId The <code>unixTime</code> of the <code>Notebook</code> being exported.
+     * @param file       The document being written.
+     */
+    public ExportCheckpoint(long notebookId, File file) {
+        this.notebookId = notebookId;
+        this.file = file;
+    }
+
+    /**
+     * Reads the checkpoint of a <code>Notebook</code>'s export.
+     *
+     * @param context    Any <code>Context</code> of the app.
+     * @param notebookId The <code>unixTime</code> of the <code>Notebook</code>.
+     * @return The checkpoint, or null if there is no export of it to resume.
+     */
+    public static ExportCheckpoint load(Context context, long notebookId) {
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        String path = preferences.getString(notebookId + PATH, null);
+        if (path == null)
+            return null;
+        ExportCheckpoint checkpoint = new ExportCheckpoint(notebookId, new File(path));
+        checkpoint.stopsDone = preferences.getInt(notebookId + STOPS_DONE, 0);
+        checkpoint.lastStopId = preferences.getLong(notebookId + LAST_STOP, 0);
+        checkpoint.offset = preferences.getLong(notebookId + OFFSET, 0);
+        checkpoint.pictureBytes = preferences.getInt(notebookId + PICTURE_BYTES, 0);
+        return checkpoint;
+    }
+
+    /**
+     * Forgets the checkpoint of a <code>Notebook</code>'s export, once it is finished or
+     * abandoned.
+     *
+     * @param context    Any <code>Context</code> of the app.
+     * @param notebookId The <code>unixTime</code> of the <code>Notebook</code>.
+     */
+    public static void clear(Context context, long notebookId) {
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+                .remove(notebookId + PATH)
+                .remove(notebookId + STOPS_DONE)
+                .remove(notebookId + LAST_STOP)
+                .remove(notebookId + OFFSET)
+                .remove(notebookId + PICTURE_BYTES)
+                .apply();
+    }
+
+    /**
+     * Saves the checkpoint. Blocks until it is on disk, so call it from the export's thread.
+     *
+     * @param context Any <code>Context</code> of the app.
+     */
+    public void save(Context context) {
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+                .putString(notebookId + PATH, file.getAbsolutePath())
+                .putInt(notebookId + STOPS_DONE, stopsDone)
+                .putLong(notebookId + LAST_STOP, lastStopId)
+                .putLong(notebookId + OFFSET, offset)
+                .putInt(notebookId + PICTURE_BYTES, pictureBytes)
+                .commit();
+    }
+
+    /**
+     * Moves the checkpoint to the end of a <code>Stop</code> that has just been written.
+     *
+     * @param stopsDone  The number of <code>Stops</code> written so far.
+     * @param lastStopId The <code>unixTime</code> of the last of them.
+     * @param offset     The length of the file after it.
+     */
+    public void update(int stopsDone, long lastStopId, long offset) {
+        this.stopsDone = stopsDone;
+        this.lastStopId = lastStopId;
+        this.offset = offset;
+    }
+
+    /**
+     * Checks whether the export can resume from here with the notebook as it is now.
+     *
+     * @param notebook The notebook, freshly loaded.
+     * @return True if the document is intact up to the checkpoint and the <code>Stops</code> in
+     * it are still the first ones of the notebook.
+     */
+    boolean fits(NotebookWithStopsAndPictures notebook) {
+        return fits(new ListStopSource(notebook));
+    }
+
+    /**
+     * Checks whether the export can resume from here with the notebook as it is now.
+     *
+     * @param stops The <code>Stops</code> of the notebook, not started yet.
+     * @return True if the document is intact up to the checkpoint and the <code>Stops</code> in
+     * it are still the first ones of the notebook.
+     */
+    boolean fits(StopSource stops) {
+        if (stopsDone <= 0 || stopsDone > stops.getStopCount())
+            return false;
+        if (stops.getStopIdAt(stopsDone - 1) != lastStopId)
+            return false;
+        return file.exists() && file.length() >= offset;
+    }
+
+    public long getNotebookId() {
+        return notebookId;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getStopsDone() {
+        return stopsDone;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * The bytes each picture of the document was given, or 0 for no limit.
+     */
+    public int getPictureBytes() {
+        return pictureBytes;
+    }
+
+    void setPictureBytes(int pictureBytes) {
+        this.pictureBytes = pictureBytes;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.fieldnotes.utilities;
+
+/**
+ * Follows an export as it is written, and can stop it. Called on the thread doing the export.
+ */
+public interface ExportListener {
+
+    /**
+     * Checked before every <code>Stop</code> and every <code>Picture</code>; once it returns
+     * true, the export stops with an <code>ExportCancelledException</code>.
+     */
+    boolean isCancelled();
+
+    /**
+     * Called once a <code>Stop</code>, with all of its pictures, is in the document and the
+     * document has been flushed to its file.
+     *
+     * @param stopsDone The number of <code>Stops</code> written so far.
+     * @param stops     The number of <code>Stops</code> in the notebook.
+     * @param stopId    The <code>unixTime</code> of the <code>Stop</code> just written.
+     * @param offset    The length of the file up to the end of that <code>Stop</code>; the
+     *                  export can resume from here (see <code>ExportCheckpoint</code>).
+     */
+    void onStopWritten(int stopsDone, int stops, long stopId, long offset);
+
+    /**
+     * Called once a <code>Picture</code> is in the document.
+     *
+     * @param picturesDone The number of <code>Pictures</code> written so far.
+     * @param pictures     The number of <code>Pictures</code> in the notebook.
+     */
+    void onPictureWritten(int picturesDone, int pictures);
+}
@@ -0,0 +1,139 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+Camera pictures on our devices are 12 to 48 megapixels. Decoded whole, one of those takes 48 to
+192 MB of heap as a Bitmap, which is more than a 2 GB device will give the app, and the export
+used to do that for every picture. maxLongEdge caps the resolution pictures go into the document
+at, and PictureGetter.decodeScaled makes sure no Bitmap along the way is much bigger than that:
+the decoder skips pixels (inSampleSize) to get within a factor of two of the size wanted, and a
+final scale does the rest.
+
+With the default of 1600 pixels, the biggest Bitmap an export holds is under 3200 pixels on its
+long edge (the sampled decode) plus the 1600 pixel result, about 40 MB together for a 4:3
+picture, whatever the camera's resolution. Pictures are prepared in parallel (see
+PicturePipeline), so maxBitmaps caps how many of those exist at once; the workers setting alone
+doesn't, since a picture copied into the document as it is needs no Bitmap.
+
+With a cache set, a picture that has been through all of that before, the same way, is read
+back from the cache instead (see ExportCache).
+
+With a target size set, the pictures are also made small enough for the whole document to come
+in under it, which is what getting it through an email attachment limit takes; SizeBudget works
+out how many bytes each picture gets, and PicturePipeline picks the JPEG quality and resolution
+that fit. getPictureBytes is that share, set on the copy of the options one export works with.
+ */
+
+/**
+ * Settings for exporting a <code>Notebook</code>. A new <code>ExportOptions</code> holds the
+ * values the app uses; change them with the setters before passing it to an export, such as
+ * <code>RtfUtility.writeRTF</code>.
+ */
+public class ExportOptions {
+
+    public static final int DEFAULT_MAX_LONG_EDGE = 1600;
+    public static final int DEFAULT_MAX_BITMAPS = 4;
+
+    private int maxLongEdge = DEFAULT_MAX_LONG_EDGE;
+    private int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private int maxBitmaps = DEFAULT_MAX_BITMAPS;
+    private ExportCache cache;
+    private long targetBytes;
+    private int pictureBytes;
+
+    public ExportOptions() {
+    }
+
+    /**
+     * Copies every setting of another <code>ExportOptions</code>.
+     */
+    ExportOptions(ExportOptions options) {
+        this.maxLongEdge = options.maxLongEdge;
+        this.workers = options.workers;
+        this.maxBitmaps = options.maxBitmaps;
+        this.cache = options.cache;
+        this.targetBytes = options.targetBytes;
+        this.pictureBytes = options.pictureBytes;
+    }
+
+    public int getMaxLongEdge() {
+        return maxLongEdge;
+    }
+
+    /**
+     * Sets the most pixels a picture can have along its longer side in the document; bigger
+     * pictures are scaled down to fit. 0 exports pictures at their full resolution.
+     * <code>DEFAULT_MAX_LONG_EDGE</code> unless changed.
+     */
+    public void setMaxLongEdge(int maxLongEdge) {
+        this.maxLongEdge = maxLongEdge;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets the number of threads that prepare pictures. The number of cores, up to 4, unless
+     * changed.
+     */
+    public void setWorkers(int workers) {
+        if (workers < 1)
+            throw new IllegalArgumentException("Need at least one worker");
+        this.workers = workers;
+    }
+
+    public int getMaxBitmaps() {
+        return maxBitmaps;
+    }
+
+    /**
+     * Sets the most pictures that can be decoded into memory at once.
+     * <code>DEFAULT_MAX_BITMAPS</code> unless changed.
+     */
+    public void setMaxBitmaps(int maxBitmaps) {
+        if (maxBitmaps < 1)
+            throw new IllegalArgumentException("Need room for at least one bitmap");
+        this.maxBitmaps = maxBitmaps;
+    }
+
+    public ExportCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets where prepared pictures are kept for the next export, null for nowhere. Null unless
+     * changed.
+     */
+    public void setCache(ExportCache cache) {
+        this.cache = cache;
+    }
+
+    public long getTargetBytes() {
+        return targetBytes;
+    }
+
+    /**
+     * Sets the size the document should come in under, in bytes; its pictures are compressed
+     * harder, and scaled down if that isn't enough, to fit. 0 for no target, which exports every
+     * picture the same way whatever the size. 0 unless changed.
+     */
+    public void setTargetBytes(long targetBytes) {
+        if (targetBytes < 0)
+            throw new IllegalArgumentException("The target size can't be negative");
+        this.targetBytes = targetBytes;
+    }
+
+    /**
+     * The most bytes of JPEG each picture of this export can have, or 0 for no limit. Set by
+     * <code>SizeBudget.plan</code>.
+     */
+    int getPictureBytes() {
+        return pictureBytes;
+    }
+
+    void setPictureBytes(int pictureBytes) {
+        this.pictureBytes = pictureBytes;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.fieldnotes.utilities;
+
+import java.io.Closeable;
+
+/**
+ * The located <code>Stops</code> of one <code>Notebook</code> or of all of them, read a row at a
+ * time for a map export. Unlike a <code>StopSource</code>, nothing is made into a
+ * <code>Stop</code>: the getters read the one the source is on, which is only good until the
+ * next call to <code>next</code>.
+ */
+public interface GeoSource extends Closeable {
+
+    /**
+     * @return The name of the <code>Notebook</code>, or of the export if it has all of them.
+     */
+    String getName();
+
+    /**
+     * @return The number of <code>Stops</code> with coordinates.
+     */
+    int getStopCount();
+
+    /**
+     * Starts reading the <code>Stops</code>, before <code>next</code>.
+     */
+    void start();
+
+    /**
+     * Moves on to the next <code>Stop</code>.
+     *
+     * @return False if there are no more.
+     */
+    boolean next();
+
+    /**
+     * @return The <code>unixTime</code> of the <code>Stop</code>.
+     */
+    long getStopId();
+
+    String getStopName();
+
+    /**
+     * @return The name of the <code>Notebook</code> the <code>Stop</code> is in.
+     */
+    String getNotebookName();
+
+    /**
+     * @return The time of the <code>Stop</code>, in milliseconds since 1970.
+     */
+    long getTime();
+
+    /**
+     * @return The notes of the <code>Stop</code>; may be null.
+     */
+    String getNotes();
+
+    double getLatitude();
+
+    double getLongitude();
+
+    /**
+     * @return The number of <code>Pictures</code> of the <code>Stop</code>.
+     */
+    int getPictureCount();
+
+    /**
+     * @param index The position of a <code>Picture</code> in the <code>Stop</code>.
+     * @return The absolute path of its file.
+     */
+    String getPicturePath(int index);
+
+    /**
+     * @param index The position of a <code>Picture</code> in the <code>Stop</code>.
+     * @return Its caption; may be null.
+     */
+    String getPictureCaption(int index);
+
+    /**
+     * Lets go of whatever the source holds open, such as a cursor.
+     */
+    @Override
+    void close();
+}
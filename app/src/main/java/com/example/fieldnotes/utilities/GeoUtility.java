@@ -0,0 +1,355 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+The documents the other utilities write are for people; these are for GIS tools. A notebook, or
+all of them, can be written as the three formats those tools read most: a GeoJSON
+FeatureCollection, a KML Document of Placemarks, or GPX waypoints. Every Stop with coordinates is
+a point, with its name, notebook, time, notes and the files and captions of its pictures as
+properties. Stops that were never located (at 0, 0) are left out, since they have no point.
+
+They are written from a GeoSource, which reads the Stops a row at a time from a cursor (see
+GeoStops), straight into a buffered Writer, so nothing about the Stops is kept once they are
+written and an export of a hundred thousand of them runs in the same memory as one of ten. The
+formats don't need anything up front that depends on the Stops, not even how many there are
+(that is only counted for the progress.)
+
+A few things that are the same for all three:
+
+- Times are ISO 8601 in UTC ("2019-05-04T13:22:10Z"), which is what GPX requires and what the
+  others expect.
+- Coordinates are written in full, as BigDecimal.toPlainString gives them, never in the
+  exponent notation Double.toString uses for tiny values, which GPX and KML don't accept.
+- Pictures are referenced by the path of their file on the phone. The files themselves aren't
+  part of the export.
+
+GeoJSON is RFC 7946: coordinates go longitude first. In KML the properties of a Placemark are
+Data elements in its ExtendedData, with the notes as its description. In GPX (1.1) a waypoint has
+no place for arbitrary properties without an extension schema, so the notebook goes in its type
+and each picture is a link, with its caption as the link's text.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes the coordinates of <code>Stops</code> as GeoJSON, KML or GPX, for GIS tools.
+ */
+public class GeoUtility {
+
+    public static final String GEOJSON = ".geojson";
+    public static final String KML = ".kml";
+    public static final String GPX = ".gpx";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    /**
+     * Checks whether a format is one of the map formats written here.
+     *
+     * @param format The extension of the document, with its dot.
+     * @return True for <code>GEOJSON</code>, <code>KML</code> and <code>GPX</code>.
+     */
+    public static boolean isGeoFormat(String format) {
+        return GEOJSON.equals(format) || KML.equals(format) || GPX.equals(format);
+    }
+
+    /**
+     * @param format <code>GEOJSON</code>, <code>KML</code> or <code>GPX</code>.
+     * @return The MIME type of documents of that format.
+     */
+    public static String getMimeType(String format) {
+        if (KML.equals(format))
+            return "application/vnd.google-earth.kml+xml";
+        if (GPX.equals(format))
+            return "application/gpx+xml";
+        return "application/geo+json";
+    }
+
+    /**
+     * Writes the located <code>Stops</code> of a source into a file, from the start.
+     *
+     * @param stops    The <code>Stops</code>. Not closed here.
+     * @param format   <code>GEOJSON</code>, <code>KML</code> or <code>GPX</code>.
+     * @param file     The file to write, replacing whatever it held.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(GeoSource stops, String format, File file, ExportListener listener) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(stops, format, out, listener);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the located <code>Stops</code> of a source into a stream, as they are read. Should
+     * not be run in the main thread.
+     *
+     * @param stops    The <code>Stops</code>. Not closed here.
+     * @param format   <code>GEOJSON</code>, <code>KML</code> or <code>GPX</code>.
+     * @param out      Where to write the document. Finished, but not closed.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the stream can't be written.
+     */
+    public static void write(GeoSource stops, String format, OutputStream out, ExportListener listener) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        if (KML.equals(format))
+            writeKML(stops, writer, listener);
+        else if (GPX.equals(format))
+            writeGPX(stops, writer, listener);
+        else
+            writeGeoJSON(stops, writer, listener);
+        writer.flush();
+    }
+
+    /**
+     * Writes a GeoJSON FeatureCollection with a Point Feature for every <code>Stop</code>.
+     */
+    static void writeGeoJSON(GeoSource stops, Writer writer, ExportListener listener) throws IOException {
+        SimpleDateFormat iso = isoFormat();
+        int stopCount = stops.getStopCount();
+        writer.write("{\"type\":\"FeatureCollection\",\"features\":[");
+        stops.start();
+        for (int i = 0; stops.next(); i++) {
+            checkCancelled(listener);
+            if (i > 0)
+                writer.write(',');
+            writer.write("\n{\"type\":\"Feature\",\"id\":");
+            writer.write(Long.toString(stops.getStopId()));
+            writer.write(",\"geometry\":{\"type\":\"Point\",\"coordinates\":[");
+            writer.write(coordinate(stops.getLongitude()));
+            writer.write(',');
+            writer.write(coordinate(stops.getLatitude()));
+            writer.write("]},\"properties\":{\"name\":");
+            jsonString(writer, stops.getStopName());
+            writer.write(",\"notebook\":");
+            jsonString(writer, stops.getNotebookName());
+            writer.write(",\"time\":");
+            jsonString(writer, iso.format(new Date(stops.getTime())));
+            writer.write(",\"notes\":");
+            jsonString(writer, stops.getNotes());
+            writer.write(",\"pictures\":[");
+            for (int p = 0; p < stops.getPictureCount(); p++) {
+                if (p > 0)
+                    writer.write(',');
+                writer.write("{\"path\":");
+                jsonString(writer, stops.getPicturePath(p));
+                writer.write(",\"caption\":");
+                jsonString(writer, stops.getPictureCaption(p));
+                writer.write('}');
+            }
+            writer.write("]}}");
+            if (listener != null)
+                listener.onStopWritten(i + 1, stopCount, stops.getStopId(), 0);
+        }
+        writer.write("\n]}\n");
+    }
+
+    /**
+     * Writes a KML Document with a Placemark for every <code>Stop</code>.
+     */
+    static void writeKML(GeoSource stops, Writer writer, ExportListener listener) throws IOException {
+        SimpleDateFormat iso = isoFormat();
+        int stopCount = stops.getStopCount();
+        writer.write(XML_DECLARATION);
+        writer.write("<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document><name>");
+        xmlText(writer, stops.getName());
+        writer.write("</name>");
+        stops.start();
+        for (int i = 0; stops.next(); i++) {
+            checkCancelled(listener);
+            writer.write("\n<Placemark id=\"stop");
+            writer.write(Long.toString(stops.getStopId()));
+            writer.write("\"><name>");
+            xmlText(writer, stops.getStopName());
+            writer.write("</name>");
+            if (stops.getNotes() != null) {
+                writer.write("<description>");
+                xmlText(writer, stops.getNotes());
+                writer.write("</description>");
+            }
+            writer.write("<TimeStamp><when>");
+            writer.write(iso.format(new Date(stops.getTime())));
+            writer.write("</when></TimeStamp><ExtendedData>");
+            kmlData(writer, "notebook", stops.getNotebookName());
+            for (int p = 0; p < stops.getPictureCount(); p++) {
+                kmlData(writer, "picture" + (p + 1), stops.getPicturePath(p));
+                kmlData(writer, "caption" + (p + 1), stops.getPictureCaption(p));
+            }
+            writer.write("</ExtendedData><Point><coordinates>");
+            writer.write(coordinate(stops.getLongitude()));
+            writer.write(',');
+            writer.write(coordinate(stops.getLatitude()));
+            writer.write("</coordinates></Point></Placemark>");
+            if (listener != null)
+                listener.onStopWritten(i + 1, stopCount, stops.getStopId(), 0);
+        }
+        writer.write("\n</Document></kml>\n");
+    }
+
+    /**
+     * Writes a GPX document with a waypoint for every <code>Stop</code>.
+     */
+    static void writeGPX(GeoSource stops, Writer writer, ExportListener listener) throws IOException {
+        SimpleDateFormat iso = isoFormat();
+        int stopCount = stops.getStopCount();
+        writer.write(XML_DECLARATION);
+        writer.write("<gpx version=\"1.1\" creator=\"FieldNotes\" xmlns=\"http://www.topografix.com/GPX/1/1\">");
+        writer.write("<metadata><name>");
+        xmlText(writer, stops.getName());
+        writer.write("</name></metadata>");
+        stops.start();
+        for (int i = 0; stops.next(); i++) {
+            checkCancelled(listener);
+            writer.write("\n<wpt lat=\"");
+            writer.write(coordinate(stops.getLatitude()));
+            writer.write("\" lon=\"");
+            writer.write(coordinate(stops.getLongitude()));
+            writer.write("\"><time>");
+            writer.write(iso.format(new Date(stops.getTime())));
+            writer.write("</time><name>");
+            xmlText(writer, stops.getStopName());
+            writer.write("</name>");
+            if (stops.getNotes() != null) {
+                writer.write("<desc>");
+                xmlText(writer, stops.getNotes());
+                writer.write("</desc>");
+            }
+            for (int p = 0; p < stops.getPictureCount(); p++) {
+                writer.write("<link href=\"");
+                xmlText(writer, new File(stops.getPicturePath(p)).toURI().toString());
+                writer.write("\">");
+                if (stops.getPictureCaption(p) != null) {
+                    writer.write("<text>");
+                    xmlText(writer, stops.getPictureCaption(p));
+                    writer.write("</text>");
+                }
+                writer.write("</link>");
+            }
+            writer.write("<type>");
+            xmlText(writer, stops.getNotebookName());
+            writer.write("</type></wpt>");
+            if (listener != null)
+                listener.onStopWritten(i + 1, stopCount, stops.getStopId(), 0);
+        }
+        writer.write("\n</gpx>\n");
+    }
+
+    /**
+     * @return A coordinate in full, without an exponent.
+     */
+    static String coordinate(double degrees) {
+        return BigDecimal.valueOf(degrees).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Writes a JSON string, quoted and escaped, or null.
+     */
+    static void jsonString(Writer writer, String text) throws IOException {
+        if (text == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        writer.write("\\u00");
+                        if (hex.length() < 2)
+                            writer.write('0');
+                        writer.write(hex);
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Writes text escaped for XML, in an element or an attribute. Characters XML can't hold are
+     * left out.
+     *
+     * @param text The text; nothing is written if it is null.
+     */
+    static void xmlText(Writer writer, String text) throws IOException {
+        if (text == null)
+            return;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                default:
+                    if (c >= 0x20 || c == '\n' || c == '\r' || c == '\t')
+                        writer.write(c);
+            }
+        }
+    }
+
+    private static void kmlData(Writer writer, String name, String value) throws IOException {
+        if (value == null)
+            return;
+        writer.write("<Data name=\"");
+        writer.write(name);
+        writer.write("\"><value>");
+        xmlText(writer, value);
+        writer.write("</value></Data>");
+    }
+
+    private static SimpleDateFormat isoFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    private static void checkCancelled(ExportListener listener) throws ExportCancelledException {
+        if (listener != null && listener.isCancelled())
+            throw new ExportCancelledException();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+RTF embeds pictures as hexadecimal, two digits per byte, so a 3 MB photo turns into 6 million
+characters. The old encoder made a String for every byte (Integer.toHexString, plus another to pad
+it with a zero) and appended each one to the writer separately. This one looks both digits up in a
+table, fills a char[] block with them, and hands the writer a whole block at a time, so encoding
+allocates nothing past the block, however big the picture.
+
+RTF readers ignore line breaks inside hex data, so the output can be wrapped into lines to keep
+the document readable in a text editor, and to keep lines short enough for the editors that
+choke on very long ones.
+
+An encoder keeps its block between calls, so it is meant to be made once per document and reused
+for every picture in it. It is not thread-safe; a thread that encodes needs its own.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+ * Writes bytes as lowercase hexadecimal, two digits per byte, optionally wrapped into lines.
+ */
+public class HexEncoder {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    //the two digits of every byte value, high digit first
+    private static final char[] DIGITS = new char[512];
+
+    static {
+        char[] hex = "0123456789abcdef".toCharArray();
+        for (int b = 0; b < 256; b++) {
+            DIGITS[2 * b] = hex[b >>> 4];
+            DIGITS[2 * b + 1] = hex[b & 0xf];
+        }
+    }
+
+    private final char[] block;
+    private final int lineLength;
+    private final char[] lineSeparator;
+    private final byte[] readBuffer;
+
+    /**
+     * Creates an encoder that writes one unbroken line.
+     */
+    public HexEncoder() {
+        this(0, "");
+    }
+
+    /**
+     * Creates an encoder that wraps its output into lines.
+     *
+     * @param lineLength    The number of hex digits per line; 0 to never wrap. Rounded down to
+     *                      an even number, so a byte is never split across lines.
+     * @param lineSeparator Written between lines.
+     */
+    public HexEncoder(int lineLength, String lineSeparator) {
+        this(lineLength, lineSeparator, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates an encoder that wraps its output into lines, and writes blocks of the given size.
+     *
+     * @param lineLength    The number of hex digits per line; 0 to never wrap.
+     * @param lineSeparator Written between lines.
+     * @param blockSize     The number of characters handed to the writer at a time.
+     */
+    public HexEncoder(int lineLength, String lineSeparator, int blockSize) {
+        this.lineLength = lineLength & ~1;
+        this.lineSeparator = lineSeparator.toCharArray();
+        if (blockSize < 2 + this.lineSeparator.length)
+            throw new IllegalArgumentException("Block of " + blockSize + " chars is too small");
+        this.block = new char[blockSize];
+        this.readBuffer = new byte[blockSize / 2];
+    }
+
+    /**
+     * Writes every byte of an array as hex.
+     *
+     * @param bytes  The bytes to encode.
+     * @param writer Where the hex is written.
+     * @throws IOException If the writer throws.
+     */
+    public void encode(byte[] bytes, Writer writer) throws IOException {
+        encode(bytes, 0, bytes.length, writer);
+    }
+
+    /**
+     * Writes part of an array as hex. Lines start over with each call.
+     *
+     * @param bytes  The bytes to encode.
+     * @param offset The index of the first byte to encode.
+     * @param length The number of bytes to encode.
+     * @param writer Where the hex is written.
+     * @throws IOException If the writer throws.
+     */
+    public void encode(byte[] bytes, int offset, int length, Writer writer) throws IOException {
+        encode(bytes, offset, length, writer, 0);
+    }
+
+    /**
+     * Writes everything left in a stream as hex, and leaves the stream open.
+     *
+     * @param in     The stream to encode.
+     * @param writer Where the hex is written.
+     * @throws IOException If reading or writing throws.
+     */
+    public void encode(InputStream in, Writer writer) throws IOException {
+        int column = 0;
+        int read;
+        while ((read = in.read(readBuffer)) != -1)
+            column = encode(readBuffer, 0, read, writer, column);
+    }
+
+    /**
+     * Does the encoding, starting <code>column</code> digits into the current line.
+     *
+     * @return The column the next digit would go in.
+     */
+    private int encode(byte[] bytes, int offset, int length, Writer writer, int column) throws IOException {
+        char[] block = this.block;
+        int limit = block.length - 2 - lineSeparator.length;
+        int filled = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (lineLength > 0 && column == lineLength) {
+                System.arraycopy(lineSeparator, 0, block, filled, lineSeparator.length);
+                filled += lineSeparator.length;
+                column = 0;
+            }
+            int pair = (bytes[i] & 0xff) << 1;
+            block[filled++] = DIGITS[pair];
+            block[filled++] = DIGITS[pair + 1];
+            column += 2;
+            if (filled > limit) {
+                writer.write(block, 0, filled);
+                filled = 0;
+            }
+        }
+        if (filled > 0)
+            writer.write(block, 0, filled);
+        return column;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.fieldnotes.utilities;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import java.util.List;
+
+/**
+ * A <code>StopSource</code> over a notebook that is already in memory.
+ */
+final class ListStopSource implements StopSource {
+
+    private final NotebookWithStopsAndPictures notebook;
+    private final List<StopWithPictures> stops;
+    private int next;
+
+    ListStopSource(NotebookWithStopsAndPictures notebook) {
+        this.notebook = notebook;
+        this.stops = notebook.getStops();
+    }
+
+    @Override
+    public Notebook getNotebook() {
+        return notebook.getNotebook();
+    }
+
+    @Override
+    public int getStopCount() {
+        return stops.size();
+    }
+
+    @Override
+    public int getPictureCount() {
+        return getPictureCountBefore(stops.size());
+    }
+
+    @Override
+    public int getPictureCountBefore(int index) {
+        int count = 0;
+        for (int i = 0; i < index && i < stops.size(); i++) {
+            if (stops.get(i).getPictures() != null)
+                count += stops.get(i).getPictures().size();
+        }
+        return count;
+    }
+
+    @Override
+    public long getTextLength() {
+        long length = 0;
+        for (StopWithPictures stop : stops) {
+            if (stop.getStop().getStopName() != null)
+                length += stop.getStop().getStopName().length();
+            if (stop.getStop().notes() != null)
+                length += stop.getStop().notes().length();
+        }
+        return length;
+    }
+
+    @Override
+    public long getStopIdAt(int index) {
+        if (index < 0 || index >= stops.size())
+            return 0;
+        return stops.get(index).getStop().getUnixTime();
+    }
+
+    @Override
+    public void start(int first) {
+        next = first;
+    }
+
+    @Override
+    public StopWithPictures next() {
+        return next < stops.size() ? stops.get(next++) : null;
+    }
+
+    @Override
+    public void close() {
+    }
+}
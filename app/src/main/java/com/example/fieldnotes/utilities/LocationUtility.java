@@ -0,0 +1,60 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+GeolocationActivity only runs for as long as it takes to get one fix for a Stop, and then hands
+the coordinates back to StopActivity. This utility keeps the last of those fixes in the app's
+preferences, so features that want to know roughly where the user is (finding the stops near
+here, for one) can use it without starting the GPS again.
+
+Doubles are stored as their raw long bits, since SharedPreferences has no putDouble.
+ */
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+
+/**
+ * A utility class for remembering the last location the app received.
+ */
+public class LocationUtility {
+
+    private static final String PREFERENCES = "last_location";
+    private static final String LATITUDE = "latitude";
+    private static final String LONGITUDE = "longitude";
+    private static final String TIME = "time";
+
+    /**
+     * Remembers a location as the last one received.
+     *
+     * @param context   Any <code>Context</code> of the app.
+     * @param latitude  The latitude of the location.
+     * @param longitude The longitude of the location.
+     */
+    public static void saveLastLocation(Context context, double latitude, double longitude) {
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+                .putLong(LATITUDE, Double.doubleToRawLongBits(latitude))
+                .putLong(LONGITUDE, Double.doubleToRawLongBits(longitude))
+                .putLong(TIME, System.currentTimeMillis())
+                .apply();
+    }
+
+    /**
+     * Gets the last location received by <code>GeolocationActivity</code>.
+     *
+     * @param context Any <code>Context</code> of the app.
+     * @return The location, with the time it was received, or null if the app has never
+     * received one.
+     */
+    public static Location getLastLocation(Context context) {
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        if (!preferences.contains(TIME))
+            return null;
+        Location location = new Location(PREFERENCES);
+        location.setLatitude(Double.longBitsToDouble(preferences.getLong(LATITUDE, 0)));
+        location.setLongitude(Double.longBitsToDouble(preferences.getLong(LONGITUDE, 0)));
+        location.setTime(preferences.getLong(TIME, 0));
+        return location;
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+The third export format, next to RtfUtility and DocxUtility, for when the document only has to be
+read and printed, not edited. The PDF is written by PdfWriter, not android.graphics.pdf.PdfDocument,
+which held every finished page, and every Bitmap drawn on it, until the end, so a long notebook
+could run out of memory. It works on every version of Android the app does.
+
+The layout is the same as the other formats: the notebook's name as a title, then a Stop to a
+page, with its name, time, coordinates and notes, and each of its pictures with its caption under
+it. A Stop whose text and pictures don't fit on one page carries on onto the next; text is broken
+into lines with a StaticLayout and drawn a line at a time, so a long note can be split between
+pages anywhere. A picture never is: if it doesn't fit in what is left of the page, it starts the
+next one.
+
+The pages are drawn one after the other through a PageWriter, which starts a page when it needs
+one and finishes the one before first, so only one page is ever open, and PdfWriter writes each
+page out as soon as it is finished. Pictures are decoded right before they are drawn, at the size
+they take on the page times PIXELS_PER_POINT, not at the export resolution (see
+PictureGetter.decodeScaled), compressed to JPEG, which goes into the document as it is, and
+recycled right away. So there is one Bitmap in memory at a time, however long the notebook. As
+with DocxUtility, an interrupted export starts over rather than resuming.
+
+Text is written in Times, one of the fonts PDF readers have built in, with the line breaks the
+StaticLayout found with Android's serif font, which is close enough in width. Those fonts only
+have the characters of Western European languages (see PdfWriter.canEncode); a line with any
+other character in it is drawn by Android into a Bitmap at TEXT_PIXELS_PER_POINT, and that goes
+in as a picture of the line instead.
+
+A picture is drawn as big as it fits in the width of the page and MAX_PICTURE_HEIGHT, but never
+bigger than a point per pixel, so small pictures aren't blown up. fit and getDecodeLongEdge work
+this out, and are not private so the tests can check them.
+
+Sizes here are in points, 72 to the inch, which is the unit PDF pages are measured in. Pages are
+US Letter.
+ */
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.media.ExifInterface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Draws a <code>Notebook</code> as a PDF document, a page at a time.
+ */
+public class PdfUtility {
+
+    public static final String EXTENSION = ".pdf";
+    public static final String MIME_TYPE = "application/pdf";
+
+    static final int PAGE_WIDTH = 612;
+    static final int PAGE_HEIGHT = 792;
+    static final int MARGIN = 54;
+    static final int CONTENT_WIDTH = PAGE_WIDTH - 2 * MARGIN;
+    static final int MAX_PICTURE_HEIGHT = (PAGE_HEIGHT - 2 * MARGIN) * 2 / 3;
+    static final int PIXELS_PER_POINT = 2;
+    static final int TEXT_PIXELS_PER_POINT = 4;
+
+    private static final float TITLE_SIZE = 24;
+    private static final float NAME_SIZE = 16;
+    private static final float TEXT_SIZE = 12;
+    private static final float CAPTION_SIZE = 10;
+    private static final float PARAGRAPH_SPACE = 6;
+
+    /**
+     * Writes the PDF document of a notebook into a file, from the start. Should not be run in
+     * the main thread.
+     *
+     * @param stops    The <code>Stops</code> of the notebook. Not closed here.
+     * @param options  The settings to export with. Only the resolution is used; PDF pictures
+     *                 are drawn at the size they take on the page, whatever the target size.
+     * @param file     The file to write, replacing whatever it held.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writePDF(StopSource stops, ExportOptions options, File file, ExportListener listener) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            writePDF(stops, options, out, listener);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the PDF document of a notebook into a stream. Should not be run in the main thread.
+     *
+     * @param stops    The <code>Stops</code> of the notebook. Not closed here.
+     * @param options  The settings to export with.
+     * @param out      Where to write the document. Finished, but not closed.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     *                 Each page is written into <code>out</code> as soon as it is finished.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the stream can't be written.
+     */
+    public static void writePDF(StopSource stops, ExportOptions options, OutputStream out, ExportListener listener) throws IOException {
+        PageWriter pages = new PageWriter(new PdfWriter(out, PAGE_WIDTH, PAGE_HEIGHT));
+        pages.text(stops.getNotebook().getNotebookName(), TITLE_SIZE, true, Layout.Alignment.ALIGN_CENTER);
+
+        stops.start(0);
+        int stopCount = stops.getStopCount();
+        int pictureCount = stops.getPictureCount();
+        int picturesDone = 0;
+        StopWithPictures stopWithPictures;
+        for (int i = 0; (stopWithPictures = stops.next()) != null; i++) {
+            checkCancelled(listener);
+            if (i > 0)
+                pages.newPage();
+
+            Stop stop = stopWithPictures.getStop();
+            pages.text(stop.getStopName(), NAME_SIZE, true, Layout.Alignment.ALIGN_NORMAL);
+            pages.text("Time: " + RtfUtility.getTimeString(stop.getTime()), TEXT_SIZE, false, Layout.Alignment.ALIGN_NORMAL);
+            String coordString = RtfUtility.getCoordinatesString(stop.getLongitude(), stop.getLatitude());
+            if (coordString != null)
+                pages.text("Coordinates: " + coordString, TEXT_SIZE, false, Layout.Alignment.ALIGN_NORMAL);
+            if (stop.notes() != null)
+                pages.text(stop.notes(), TEXT_SIZE, false, Layout.Alignment.ALIGN_NORMAL);
+
+            for (Picture picture : RtfUtility.getPictures(stopWithPictures)) {
+                checkCancelled(listener);
+                if (drawPicture(pages, picture.getFilePath(), options.getMaxLongEdge()))
+                    pages.text(picture.caption(), CAPTION_SIZE, false, Layout.Alignment.ALIGN_CENTER);
+                picturesDone++;
+                if (listener != null)
+                    listener.onPictureWritten(picturesDone, pictureCount);
+            }
+            if (listener != null)
+                listener.onStopWritten(i + 1, stopCount, stop.getUnixTime(), 0);
+        }
+
+        pages.finish();
+    }
+
+    /**
+     * Gets the scale, in points per pixel, to draw a picture at: as big as fits the space, but
+     * no bigger than a point per pixel.
+     *
+     * @param width     The width of the picture, upright, in pixels.
+     * @param height    The height of the picture, upright, in pixels.
+     * @param maxWidth  The most points it can take across.
+     * @param maxHeight The most points it can take down.
+     * @return The scale, more than 0 and at most 1.
+     */
+    static float fit(int width, int height, float maxWidth, float maxHeight) {
+        return Math.min(1f, Math.min(maxWidth / width, maxHeight / height));
+    }
+
+    /**
+     * Gets how many pixels to decode a picture with along its longer side, for it to be
+     * <code>PIXELS_PER_POINT</code> to the point on the page.
+     *
+     * @param width       The width of the picture, upright, in pixels.
+     * @param height      The height of the picture, upright, in pixels.
+     * @param maxLongEdge The most pixels the export allows along the longer side; 0 for no
+     *                    limit.
+     * @return The pixels along the longer side; never more than the file has.
+     */
+    static int getDecodeLongEdge(int width, int height, int maxLongEdge) {
+        int longEdge = Math.max(width, height);
+        float scale = fit(width, height, CONTENT_WIDTH, MAX_PICTURE_HEIGHT);
+        int pixels = (int) Math.ceil(longEdge * scale * PIXELS_PER_POINT);
+        if (maxLongEdge > 0)
+            pixels = Math.min(pixels, maxLongEdge);
+        return Math.min(pixels, longEdge);
+    }
+
+    /**
+     * Decodes a picture upright, at the resolution it is drawn at, and draws it as a JPEG.
+     *
+     * @return False if the picture is missing or can't be decoded, so nothing was drawn.
+     * @throws IOException If the document can't be written.
+     */
+    private static boolean drawPicture(PageWriter pages, String filepath, int maxLongEdge) throws IOException {
+        if (!new File(filepath).exists())
+            return false;
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filepath, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0)
+            return false;
+
+        int orientation = PictureGetter.getOrientation(filepath);
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (orientation == ExifInterface.ORIENTATION_ROTATE_90 || orientation == ExifInterface.ORIENTATION_ROTATE_270) {
+            width = bounds.outHeight;
+            height = bounds.outWidth;
+        }
+        Bitmap bitmap = PictureGetter.decodeScaled(filepath, bounds.outWidth, bounds.outHeight,
+                getDecodeLongEdge(width, height, maxLongEdge), orientation);
+        if (bitmap == null)
+            return false;
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        boolean compressed = bitmap.compress(Bitmap.CompressFormat.JPEG, PicturePipeline.JPEG_QUALITY, jpeg);
+        int pixelWidth = bitmap.getWidth();
+        int pixelHeight = bitmap.getHeight();
+        //the document only needs the JPEG, so the Bitmap can go before the next one is decoded
+        bitmap.recycle();
+        if (!compressed)
+            return false;
+        float scale = fit(width, height, CONTENT_WIDTH, MAX_PICTURE_HEIGHT);
+        pages.picture(jpeg.toByteArray(), pixelWidth, pixelHeight, width * scale, height * scale);
+        return true;
+    }
+
+    private static TextPaint paint(float size, boolean bold) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTypeface(Typeface.create(Typeface.SERIF, bold ? Typeface.BOLD : Typeface.NORMAL));
+        paint.setTextSize(size);
+        return paint;
+    }
+
+    private static void checkCancelled(ExportListener listener) throws ExportCancelledException {
+        if (listener != null && listener.isCancelled())
+            throw new ExportCancelledException();
+    }
+
+    /**
+     * Draws down the pages of a document, starting the next page when the one open is full.
+     */
+    private static class PageWriter {
+
+        private final PdfWriter pdf;
+        private boolean pageOpen;
+        private float y;
+
+        PageWriter(PdfWriter pdf) {
+            this.pdf = pdf;
+        }
+
+        /**
+         * Draws a paragraph, a line at a time, carrying on onto the next page if it runs out
+         * of room.
+         *
+         * @param text The text; nothing is drawn if it is null or empty.
+         */
+        void text(String text, float size, boolean bold, Layout.Alignment alignment) throws IOException {
+            if (text == null || text.length() == 0)
+                return;
+            text = text.replace('\t', ' ');
+            TextPaint paint = paint(size, bold);
+            StaticLayout layout = new StaticLayout(text, paint, CONTENT_WIDTH, alignment, 1, 0, false);
+            for (int line = 0; line < layout.getLineCount(); line++) {
+                float height = layout.getLineBottom(line) - layout.getLineTop(line);
+                room(height);
+                float ascent = layout.getLineBaseline(line) - layout.getLineTop(line);
+                String words = text.substring(layout.getLineStart(line), layout.getLineVisibleEnd(line));
+                if (PdfWriter.canEncode(words)) {
+                    float left = MARGIN + layout.getLineLeft(line);
+                    if (alignment == Layout.Alignment.ALIGN_CENTER)
+                        left = MARGIN + (CONTENT_WIDTH - PdfWriter.width(words, bold, size)) / 2;
+                    pdf.text(words, bold, size, left, y + ascent);
+                } else if (words.length() > 0) {
+                    rasterLine(words, paint, MARGIN + layout.getLineLeft(line), layout.getLineWidth(line), height, ascent);
+                }
+                y += height;
+            }
+            y += PARAGRAPH_SPACE;
+        }
+
+        /**
+         * Draws a picture centered, on the next page if it doesn't fit on this one.
+         *
+         * @param jpeg        The picture, upright, as a JPEG.
+         * @param pixelWidth  The width of the picture, in pixels.
+         * @param pixelHeight The height of the picture, in pixels.
+         * @param width       The points it takes across.
+         * @param height      The points it takes down.
+         */
+        void picture(byte[] jpeg, int pixelWidth, int pixelHeight, float width, float height) throws IOException {
+            room(height);
+            float left = MARGIN + (CONTENT_WIDTH - width) / 2;
+            pdf.jpeg(jpeg, pixelWidth, pixelHeight, left, y, width, height);
+            y += height + PARAGRAPH_SPACE;
+        }
+
+        /**
+         * Ends the page open, if any; whatever is drawn next goes on a new page.
+         */
+        void newPage() throws IOException {
+            if (!pageOpen)
+                return;
+            pdf.finishPage();
+            pageOpen = false;
+        }
+
+        /**
+         * Finishes the last page and the document.
+         */
+        void finish() throws IOException {
+            newPage();
+            pdf.finish();
+        }
+
+        /**
+         * Draws a line the built in fonts can't write into a Bitmap with Android's own, and
+         * draws that. It is compressed as it is read, a row at a time, and recycled before
+         * anything else is drawn.
+         */
+        private void rasterLine(String words, TextPaint paint, float left, float width, float height, float ascent) throws IOException {
+            int pixelWidth = Math.max(1, (int) Math.ceil(width * TEXT_PIXELS_PER_POINT));
+            int pixelHeight = Math.max(1, (int) Math.ceil(height * TEXT_PIXELS_PER_POINT));
+            Bitmap bitmap = Bitmap.createBitmap(pixelWidth, pixelHeight, Bitmap.Config.ARGB_8888);
+            ByteArrayOutputStream rgb = new ByteArrayOutputStream();
+            try {
+                bitmap.eraseColor(Color.WHITE);
+                Canvas canvas = new Canvas(bitmap);
+                canvas.scale(TEXT_PIXELS_PER_POINT, TEXT_PIXELS_PER_POINT);
+                canvas.drawText(words, 0, words.length(), 0, ascent, paint);
+
+                DeflaterOutputStream deflater = new DeflaterOutputStream(rgb);
+                int[] row = new int[pixelWidth];
+                byte[] bytes = new byte[3 * pixelWidth];
+                for (int r = 0; r < pixelHeight; r++) {
+                    bitmap.getPixels(row, 0, pixelWidth, 0, r, pixelWidth, 1);
+                    for (int c = 0; c < pixelWidth; c++) {
+                        bytes[3 * c] = (byte) Color.red(row[c]);
+                        bytes[3 * c + 1] = (byte) Color.green(row[c]);
+                        bytes[3 * c + 2] = (byte) Color.blue(row[c]);
+                    }
+                    deflater.write(bytes);
+                }
+                deflater.close();
+            } finally {
+                bitmap.recycle();
+            }
+            pdf.pixels(rgb.toByteArray(), pixelWidth, pixelHeight, left, y,
+                    (float) pixelWidth / TEXT_PIXELS_PER_POINT, (float) pixelHeight / TEXT_PIXELS_PER_POINT);
+        }
+
+        /**
+         * Makes sure there is room for something of a height, starting a new page if there is no
+         * page open or it doesn't have the room left. Something taller than a page goes at the
+         * top of one of its own.
+         */
+        private void room(float height) throws IOException {
+            if (pageOpen && y + height > PAGE_HEIGHT - MARGIN && y > MARGIN)
+                newPage();
+            if (!pageOpen) {
+                pdf.startPage();
+                pageOpen = true;
+                y = MARGIN;
+            }
+        }
+    }
+}
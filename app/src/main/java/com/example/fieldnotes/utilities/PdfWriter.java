@@ -0,0 +1,374 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+Writes the objects of a PDF file straight into a stream, a page at a time, for PdfUtility. It
+used to draw with android.graphics.pdf.PdfDocument, which keeps every finished page, and every
+Bitmap drawn on it, until writeTo writes the whole document out at the end; a notebook of a few
+hundred pictures took a few hundred of them, about 4 MB each, at once. Here a page is written out
+the moment it is finished, and a picture the moment it is drawn, so the document is never held in
+memory: only the drawing instructions of the open page, a few KB, plus the offset of every object
+and the object number of every page, which the cross-reference table and the page tree at the end
+need.
+
+Each picture is an image XObject holding its JPEG data as it is (/DCTDecode), which every PDF
+reader decodes itself, so it is written with nothing but its length known up front. The page that
+shows it refers to it by object number, and PDF doesn't mind objects coming in any order, so the
+picture goes out before its page does, and the page tree (object 2) goes out last of all.
+
+Text uses two of the fonts every PDF reader has built in, Times-Roman and Times-Bold, so none has
+to be embedded. Those only have the characters of WinAnsiEncoding, which is Latin-1 and a few
+more (canEncode says whether a string fits); PdfUtility draws anything else as a picture of its
+own. The fonts aren't in the document, so their widths, which centring a line needs, are kept
+here (from Adobe's AFM files for them). A letter with an accent counts as wide as the letter
+without it, and anything else outside ASCII as half an em; close enough to centre a title.
+
+Coordinates passed in are from the top left of the page, in points, like the rest of PdfUtility;
+PDF's own go up from the bottom left, which this turns them into.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PDF document into a stream as its pages are drawn: text in the built in Times fonts,
+ * JPEG pictures, and pictures of raw RGB pixels.
+ */
+final class PdfWriter {
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int REGULAR_FONT = 3;
+    private static final int BOLD_FONT = 4;
+
+    //where WinAnsiEncoding puts the characters it has outside Latin-1, from 0x80 to 0x9f
+    private static final String WIN_ANSI_80 = "\u20ac\u0000\u201a\u0192\u201e\u2026\u2020\u2021"
+            + "\u02c6\u2030\u0160\u2039\u0152\u0000\u017d\u0000"
+            + "\u0000\u2018\u2019\u201c\u201d\u2022\u2013\u2014"
+            + "\u02dc\u2122\u0161\u203a\u0153\u0000\u017e\u0178";
+
+    //widths of ' ' to '~' in thousandths of the font size
+    private static final short[] REGULAR_WIDTHS = {
+            250, 333, 408, 500, 500, 833, 778, 180, 333, 333, 500, 564, 250, 333, 250, 278,
+            500, 500, 500, 500, 500, 500, 500, 500, 500, 500, 278, 278, 564, 564, 564, 444,
+            921, 722, 667, 667, 722, 611, 556, 722, 722, 333, 389, 722, 611, 889, 722, 722,
+            556, 722, 667, 556, 611, 722, 722, 944, 722, 722, 611, 333, 278, 333, 469, 500,
+            333, 444, 500, 444, 500, 444, 333, 500, 500, 278, 278, 500, 278, 778, 500, 500,
+            500, 500, 333, 389, 278, 500, 500, 722, 500, 500, 444, 480, 200, 480, 541};
+    private static final short[] BOLD_WIDTHS = {
+            250, 333, 555, 500, 500, 1000, 833, 278, 333, 333, 500, 570, 250, 333, 250, 278,
+            500, 500, 500, 500, 500, 500, 500, 500, 500, 500, 333, 333, 570, 570, 570, 500,
+            930, 722, 667, 722, 722, 667, 611, 778, 778, 389, 500, 778, 667, 944, 722, 778,
+            611, 778, 722, 556, 667, 722, 722, 1000, 722, 722, 667, 333, 278, 333, 581, 500,
+            333, 500, 556, 444, 556, 444, 333, 500, 556, 278, 333, 556, 278, 833, 556, 500,
+            556, 556, 444, 389, 333, 556, 500, 722, 500, 500, 444, 394, 220, 394, 520};
+    private static final int OTHER_WIDTH = 500;
+
+    private final CountingOutputStream out;
+    private final float pageWidth;
+    private final float pageHeight;
+
+    //the offset in the file of each object, by object number less one
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<Integer> pages = new ArrayList<>();
+
+    //the open page: its drawing instructions and the pictures they draw
+    private ByteArrayOutputStream content;
+    private final List<Integer> images = new ArrayList<>();
+
+    /**
+     * Starts a document, writing its header and fonts.
+     *
+     * @param out        Where to write it. Not closed here.
+     * @param pageWidth  The width of every page, in points.
+     * @param pageHeight The height of every page, in points.
+     * @throws IOException If the stream can't be written.
+     */
+    PdfWriter(OutputStream out, float pageWidth, float pageHeight) throws IOException {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out));
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+
+        //a comment with bytes over 127, so tools that look for it treat the file as binary
+        write("%PDF-1.4\n");
+        this.out.write(new byte[]{'%', (byte) 0xe2, (byte) 0xe3, (byte) 0xcf, (byte) 0xd3, '\n'});
+
+        allocate();
+        allocate();
+        startObject(CATALOG);
+        write("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+        startObject(allocate());
+        write("<< /Type /Font /Subtype /Type1 /BaseFont /Times-Roman /Encoding /WinAnsiEncoding >>\nendobj\n");
+        startObject(allocate());
+        write("<< /Type /Font /Subtype /Type1 /BaseFont /Times-Bold /Encoding /WinAnsiEncoding >>\nendobj\n");
+    }
+
+    /**
+     * Checks whether text can be written with the built in fonts.
+     *
+     * @return True if every character of it is in WinAnsiEncoding.
+     */
+    static boolean canEncode(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (encode(text.charAt(i)) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Works out how wide a line of text comes out in the built in fonts.
+     *
+     * @param text The text, which <code>canEncode</code>.
+     * @param size The size of the font, in points.
+     * @return The width, in points.
+     */
+    static float width(String text, boolean bold, float size) {
+        short[] widths = bold ? BOLD_WIDTHS : REGULAR_WIDTHS;
+        int total = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c > '~')
+                c = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+            total += c >= ' ' && c <= '~' ? widths[c - ' '] : OTHER_WIDTH;
+        }
+        return total * size / 1000;
+    }
+
+    /**
+     * Starts a new page. The one open before must have been finished.
+     */
+    void startPage() {
+        if (content != null)
+            throw new IllegalStateException("The page before isn't finished");
+        content = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Writes a line of text on the open page.
+     *
+     * @param text     The text, which <code>canEncode</code>.
+     * @param bold     True for Times-Bold, false for Times-Roman.
+     * @param size     The size of the font, in points.
+     * @param x        Where the line starts, from the left of the page.
+     * @param baseline Where the baseline is, from the top of the page.
+     */
+    void text(String text, boolean bold, float size, float x, float baseline) throws IOException {
+        StringBuilder line = new StringBuilder("BT /").append(bold ? "F2 " : "F1 ")
+                .append(number(size)).append(" Tf ").append(number(x)).append(' ')
+                .append(number(pageHeight - baseline)).append(" Td (");
+        for (int i = 0; i < text.length(); i++) {
+            char c = (char) encode(text.charAt(i));
+            if (c == '(' || c == ')' || c == '\\')
+                line.append('\\');
+            line.append(c);
+        }
+        line.append(") Tj ET\n");
+        content.write(latin1(line.toString()));
+    }
+
+    /**
+     * Writes a JPEG picture out and draws it on the open page.
+     *
+     * @param jpeg        The JPEG data, in color.
+     * @param pixelWidth  The width of the picture, in pixels.
+     * @param pixelHeight The height of the picture, in pixels.
+     * @param x           Where its left side goes, from the left of the page.
+     * @param y           Where its top goes, from the top of the page.
+     * @param width       The points it takes across.
+     * @param height      The points it takes down.
+     */
+    void jpeg(byte[] jpeg, int pixelWidth, int pixelHeight, float x, float y, float width, float height) throws IOException {
+        image(jpeg, pixelWidth, pixelHeight, "/DCTDecode", x, y, width, height);
+    }
+
+    /**
+     * Writes a picture out from its pixels and draws it on the open page.
+     *
+     * @param rgb         Three bytes for every pixel, red, green and blue, a row at a time from
+     *                    the top, compressed with <code>DeflaterOutputStream</code>.
+     * @param pixelWidth  The width of the picture, in pixels.
+     * @param pixelHeight The height of the picture, in pixels.
+     * @param x           Where its left side goes, from the left of the page.
+     * @param y           Where its top goes, from the top of the page.
+     * @param width       The points it takes across.
+     * @param height      The points it takes down.
+     */
+    void pixels(byte[] rgb, int pixelWidth, int pixelHeight, float x, float y, float width, float height) throws IOException {
+        image(rgb, pixelWidth, pixelHeight, "/FlateDecode", x, y, width, height);
+    }
+
+    /**
+     * Writes out the open page. Whatever is drawn next goes on a new page.
+     *
+     * @throws IOException If the stream can't be written.
+     */
+    void finishPage() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+        content.writeTo(deflater);
+        deflater.close();
+        content = null;
+
+        int contents = allocate();
+        startObject(contents);
+        write("<< /Length " + compressed.size() + " /Filter /FlateDecode >>\nstream\n");
+        compressed.writeTo(out);
+        write("\nendstream\nendobj\n");
+
+        int page = allocate();
+        startObject(page);
+        StringBuilder resources = new StringBuilder("<< /Font << /F1 " + REGULAR_FONT + " 0 R /F2 "
+                + BOLD_FONT + " 0 R >>");
+        if (!images.isEmpty()) {
+            resources.append(" /XObject <<");
+            for (int image : images)
+                resources.append(" /Im").append(image).append(' ').append(image).append(" 0 R");
+            resources.append(" >>");
+        }
+        resources.append(" >>");
+        write("<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 " + number(pageWidth) + " "
+                + number(pageHeight) + "] /Contents " + contents + " 0 R /Resources " + resources
+                + " >>\nendobj\n");
+        images.clear();
+        pages.add(page);
+    }
+
+    /**
+     * Writes out the page tree and the cross-reference table, which end the document, and
+     * flushes the stream. A document without pages gets an empty one, which readers need.
+     *
+     * @throws IOException If the stream can't be written.
+     */
+    void finish() throws IOException {
+        if (content != null)
+            finishPage();
+        if (pages.isEmpty()) {
+            startPage();
+            finishPage();
+        }
+
+        startObject(PAGES);
+        StringBuilder kids = new StringBuilder();
+        for (int page : pages)
+            kids.append(page).append(" 0 R ");
+        write("<< /Type /Pages /Kids [" + kids + "] /Count " + pages.size() + " >>\nendobj\n");
+
+        long xref = out.count;
+        StringBuilder table = new StringBuilder("xref\n0 " + (offsets.size() + 1) + "\n0000000000 65535 f \n");
+        for (long offset : offsets) {
+            String digits = Long.toString(offset);
+            for (int i = digits.length(); i < 10; i++)
+                table.append('0');
+            table.append(digits).append(" 00000 n \n");
+        }
+        write(table.toString());
+        write("trailer\n<< /Size " + (offsets.size() + 1) + " /Root " + CATALOG + " 0 R >>\nstartxref\n"
+                + xref + "\n%%EOF\n");
+        out.flush();
+    }
+
+    /**
+     * Writes out an image XObject and draws it on the open page.
+     */
+    private void image(byte[] data, int pixelWidth, int pixelHeight, String filter, float x, float y, float width, float height) throws IOException {
+        int image = allocate();
+        startObject(image);
+        write("<< /Type /XObject /Subtype /Image /Width " + pixelWidth + " /Height " + pixelHeight
+                + " /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter " + filter + " /Length "
+                + data.length + " >>\nstream\n");
+        out.write(data);
+        write("\nendstream\nendobj\n");
+
+        images.add(image);
+        content.write(latin1("q " + number(width) + " 0 0 " + number(height) + " " + number(x) + " "
+                + number(pageHeight - y - height) + " cm /Im" + image + " Do Q\n"));
+    }
+
+    /**
+     * Takes the next object number.
+     */
+    private int allocate() {
+        offsets.add(-1L);
+        return offsets.size();
+    }
+
+    private void startObject(int object) throws IOException {
+        offsets.set(object - 1, out.count);
+        write(object + " 0 obj\n");
+    }
+
+    private void write(String ascii) throws IOException {
+        out.write(latin1(ascii));
+    }
+
+    /**
+     * @return The WinAnsiEncoding of a character, or -1 if it has none.
+     */
+    private static int encode(char c) {
+        if ((c >= ' ' && c <= '~') || (c >= '\u00a0' && c <= '\u00ff'))
+            return c;
+        int at = WIN_ANSI_80.indexOf(c);
+        return c != 0 && at >= 0 ? 0x80 + at : -1;
+    }
+
+    private static byte[] latin1(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) text.charAt(i);
+        return bytes;
+    }
+
+    /**
+     * Writes a number the way PDF reads it: no exponent, at most two decimals, and a point
+     * whatever the locale. Not private so the tests can check it.
+     */
+    static String number(float value) {
+        long hundredths = Math.round(value * 100.0);
+        StringBuilder number = new StringBuilder();
+        if (hundredths < 0) {
+            number.append('-');
+            hundredths = -hundredths;
+        }
+        number.append(hundredths / 100);
+        long fraction = hundredths % 100;
+        if (fraction != 0) {
+            number.append('.').append(fraction / 10);
+            if (fraction % 10 != 0)
+                number.append(fraction % 10);
+        }
+        return number.toString();
+    }
+
+    /**
+     * Counts the bytes written, for the offsets the cross-reference table needs.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
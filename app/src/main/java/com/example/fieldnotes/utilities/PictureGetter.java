@@ -18,6 +18,9 @@ method getOrientation simply looks at the filepath of a picture and returns its
 The fixOrientation method takes a Bitmap and its orientation, and rotates the Bitmap according to
 what its orientation is and its orientation should be. The code is pretty intuitive, considering
 the ExifInterface class has constants for degrees of rotation.
+
+decodeScaled does the same for exports, and scales the picture down to the export resolution
+(see ExportOptions) on the way, without ever decoding it at full size.
  */
 
 import android.app.Activity;
@@ -190,20 +193,9 @@ public class PictureGetter {
      * @return The <code>Bitmap</code> oriented properly.
      */
     public static Bitmap fixOrientation(Bitmap bitmap, int orientation) {
-        int rotate;
-        switch (orientation) {
-            case ExifInterface.ORIENTATION_ROTATE_270:
-                rotate = 270;
-                break;
-            case ExifInterface.ORIENTATION_ROTATE_180:
-                rotate = 180;
-                break;
-            case ExifInterface.ORIENTATION_ROTATE_90:
-                rotate = 90;
-                break;
-            default:
-                return bitmap;
-        }
+        int rotate = getRotation(orientation);
+        if (rotate == 0)
+            return bitmap;
 
         int w = bitmap.getWidth();
         int h = bitmap.getHeight();
@@ -211,4 +203,82 @@ public class PictureGetter {
         mtx.postRotate(rotate);
         return Bitmap.createBitmap(bitmap, 0, 0, w, h, mtx, true);
     }
+
+    /**
+     * Decodes a picture no bigger than it needs to be to fit <code>maxLongEdge</code>, and
+     * reorients it. The decoder skips pixels to get within a factor of two of the size wanted,
+     * then a single scale and rotation brings it the rest of the way, so the full resolution
+     * picture is never in memory.
+     *
+     * @param filepath    The absolute path of the picture.
+     * @param width       The width of the picture file, from a bounds-only decode.
+     * @param height      The height of the picture file, from a bounds-only decode.
+     * @param maxLongEdge The most pixels the result can have along its longer side; 0 for no
+     *                    limit.
+     * @param orientation The orientation of the picture file, from <code>getOrientation</code>.
+     * @return The <code>Bitmap</code> scaled and oriented properly, or null if it couldn't be
+     * decoded.
+     */
+    public static Bitmap decodeScaled(String filepath, int width, int height, int maxLongEdge, int orientation) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = getSampleSize(width, height, maxLongEdge);
+        Bitmap bitmap = BitmapFactory.decodeFile(filepath, options);
+        if (bitmap == null)
+            return null;
+
+        int w = bitmap.getWidth();
+        int h = bitmap.getHeight();
+        float scale = 1;
+        if (maxLongEdge > 0 && Math.max(w, h) > maxLongEdge)
+            scale = (float) maxLongEdge / Math.max(w, h);
+        int rotate = getRotation(orientation);
+        if (scale == 1 && rotate == 0)
+            return bitmap;
+
+        Matrix mtx = new Matrix();
+        mtx.postScale(scale, scale);
+        mtx.postRotate(rotate);
+        Bitmap result = Bitmap.createBitmap(bitmap, 0, 0, w, h, mtx, true);
+        if (result != bitmap)
+            bitmap.recycle();
+        return result;
+    }
+
+    /**
+     * Gets the largest power of two the decoder can divide a picture's sides by while keeping
+     * its longer side at least <code>maxLongEdge</code>.
+     *
+     * @param width       The width of the picture file.
+     * @param height      The height of the picture file.
+     * @param maxLongEdge The pixels wanted along the longer side; 0 for no limit.
+     * @return The <code>inSampleSize</code> to decode with.
+     */
+    static int getSampleSize(int width, int height, int maxLongEdge) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        if (maxLongEdge <= 0)
+            return sampleSize;
+        while (longEdge / (sampleSize * 2) >= maxLongEdge)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    /**
+     * Gets how far a picture with the given orientation has to be turned to be upright.
+     *
+     * @param orientation The orientation, from <code>getOrientation</code>.
+     * @return The rotation in degrees clockwise; 0, 90, 180 or 270.
+     */
+    private static int getRotation(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            default:
+                return 0;
+        }
+    }
 }
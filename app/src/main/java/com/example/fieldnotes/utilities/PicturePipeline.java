@@ -0,0 +1,433 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+Getting a picture ready for a document (reading its header, decoding it, turning it upright and
+compressing it again) is where an export spends nearly all of its time, and each picture is
+independent of the others. The pipeline hands that work to a pool of worker threads, while the
+thread writing the document takes the results one at a time in the order the pictures were
+given, so the document comes out exactly as it would have one picture at a time.
+
+The writer never waits for more than the next picture, and the workers never get more than
+WINDOW_PER_WORKER pictures per worker ahead of it, so a slow writer can't make prepared pictures
+pile up in memory. Decoded Bitmaps are the big cost (see ExportOptions), so on top of that only
+ExportOptions.getMaxBitmaps of them exist at once, whatever the number of workers; a picture that
+is copied into the document as it is needs no Bitmap and doesn't wait for one.
+
+A picture that had to be decoded is put in the ExportCache, if the options have one, and the
+next export that needs it the same way reads it back from there without decoding anything.
+
+The pictures can come from an iterator that doesn't have them all yet (see StopReader): one that
+says it has nothing left is asked again every time the writer takes a picture.
+
+With a target size in the options, each picture also has to fit the bytes SizeBudget gave it.
+An original that fits is still copied as it is. Otherwise the quality is picked on a sample of
+the picture, at most SAMPLE_LONG_EDGE pixels along its longer side, since compressing that a few
+times for the binary search is much quicker than compressing the whole picture once; its size
+per pixel, times the pixels of the picture, is the estimate. The picture is compressed for real
+once, and if the estimate was off and it is still too big, scaled down and compressed again, up
+to MAX_FIT_ATTEMPTS times in all. The sample and the scaled copies are smaller than the Bitmap
+they come from, and only exist while it holds its permit, so the Bitmap limit still holds
+roughly.
+
+A picture that is missing or can't be decoded comes out as null and is left out of the document,
+like it always has been. Any other failure is thrown from next on the writer's thread.
+ */
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.os.Process;
+
+import com.example.fieldnotes.java.Picture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Prepares the <code>Pictures</code> of an export on a pool of worker threads, and gives them
+ * back in their original order. Made for one export and closed at the end of it.
+ */
+final class PicturePipeline {
+
+    static final long MAX_ORIGINAL_BYTES = 4 * 1024 * 1024;
+
+    private static final int WINDOW_PER_WORKER = 2;
+    static final int JPEG_QUALITY = 50;
+    private static final int SAMPLE_LONG_EDGE = 400;
+    private static final int MAX_FIT_ATTEMPTS = 3;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final ExportOptions options;
+    private final Iterator<Picture> pending;
+    private final ArrayDeque<Future<PreparedPicture>> inFlight = new ArrayDeque<>();
+    private final int window;
+    private final Semaphore bitmaps;
+    private final ExecutorService workers;
+
+    /**
+     * Starts preparing the pictures.
+     *
+     * @param pictures Every <code>Picture</code> of the export, in the order they will be
+     *                 written.
+     * @param options  The settings to export with.
+     */
+    PicturePipeline(List<Picture> pictures, ExportOptions options) {
+        this(pictures.iterator(), options);
+    }
+
+    /**
+     * Starts preparing the pictures.
+     *
+     * @param pictures Every <code>Picture</code> of the export, in the order they will be
+     *                 written. May run dry for a while and have more later.
+     * @param options  The settings to export with.
+     */
+    PicturePipeline(Iterator<Picture> pictures, ExportOptions options) {
+        this.options = options;
+        this.pending = pictures;
+        this.window = options.getWorkers() * WINDOW_PER_WORKER;
+        this.bitmaps = new Semaphore(options.getMaxBitmaps());
+        this.workers = Executors.newFixedThreadPool(options.getWorkers(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "FieldNotes-export-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        fill();
+    }
+
+    /**
+     * Waits for the next picture, in the order they were given, and starts preparing another.
+     *
+     * @return The picture ready to write, or null if it is missing or couldn't be decoded.
+     * @throws IOException If preparing the picture failed, or the thread was interrupted.
+     */
+    PreparedPicture next() throws IOException {
+        fill();
+        Future<PreparedPicture> next = inFlight.poll();
+        if (next == null)
+            throw new IllegalStateException("No pictures left");
+        try {
+            return next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a picture");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            fill();
+        }
+    }
+
+    /**
+     * Checks whether there is another picture to take, for a writer that doesn't know how many
+     * there are.
+     *
+     * @return True if <code>next</code> has a picture to give.
+     */
+    boolean hasNext() {
+        fill();
+        return !inFlight.isEmpty();
+    }
+
+    /**
+     * Stops the workers, dropping any pictures not taken yet.
+     */
+    void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Keeps <code>window</code> pictures queued or in progress, while there are any left.
+     */
+    private void fill() {
+        while (inFlight.size() < window && pending.hasNext()) {
+            final Picture picture = pending.next();
+            inFlight.add(workers.submit(new Callable<PreparedPicture>() {
+                @Override
+                public PreparedPicture call() throws Exception {
+                    return prepare(picture);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Gets one picture ready for the document. A JPEG that is upright, no bigger than
+     * <code>MAX_ORIGINAL_BYTES</code> and within the export resolution is left in its file to be
+     * copied in as it is, if it fits its share of the target size; anything else is decoded at
+     * the export resolution, turned upright and compressed into JPEG.
+     */
+    private PreparedPicture prepare(Picture picture) throws InterruptedException {
+        String filepath = picture.getFilePath();
+        File file = new File(filepath);
+        if (!file.exists())
+            return null;
+
+        //reads the size and type from the header, without decoding any pixels
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filepath, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0)
+            return null;
+        int orientation = PictureGetter.getOrientation(filepath);
+
+        if (canCopyOriginal(bounds, orientation, file.length()))
+            return new PreparedPicture(picture, bounds.outWidth, bounds.outHeight, file, null);
+
+        ExportCache cache = options.getCache();
+        String key = null;
+        if (cache != null) {
+            key = ExportCache.key(file, orientation, JPEG_QUALITY, options.getMaxLongEdge(),
+                    options.getPictureBytes());
+            ExportCache.Entry cached = cache.get(key);
+            if (cached != null)
+                return new PreparedPicture(picture, cached.width, cached.height, null, cached.jpeg);
+        }
+
+        PreparedPicture prepared;
+        bitmaps.acquire();
+        try {
+            Bitmap bitmap = PictureGetter.decodeScaled(filepath, bounds.outWidth, bounds.outHeight,
+                    options.getMaxLongEdge(), orientation);
+            if (bitmap == null)
+                return null;
+            if (options.getPictureBytes() > 0) {
+                prepared = compressToFit(picture, bitmap, options.getPictureBytes());
+            } else {
+                prepared = new PreparedPicture(picture, bitmap.getWidth(), bitmap.getHeight(), null,
+                        compress(bitmap, JPEG_QUALITY));
+            }
+            bitmap.recycle();
+        } finally {
+            bitmaps.release();
+        }
+
+        if (cache != null)
+            cache.put(key, prepared.width, prepared.height, prepared.jpeg);
+        return prepared;
+    }
+
+    /**
+     * Compresses a picture into the bytes it can have, at the highest quality that fits, or
+     * smaller if it doesn't fit at <code>SizeBudget.MIN_QUALITY</code>.
+     *
+     * @param picture The <code>Picture</code> the Bitmap is of.
+     * @param bitmap  The picture, upright and at the export resolution. Not recycled here.
+     * @param budget  The bytes it can have.
+     * @return The picture ready to write; over the budget only if it still was after
+     * <code>MAX_FIT_ATTEMPTS</code>.
+     */
+    private PreparedPicture compressToFit(Picture picture, Bitmap bitmap, int budget) {
+        final Bitmap sample = scale(bitmap, Math.min(1f,
+                (float) SAMPLE_LONG_EDGE / Math.max(bitmap.getWidth(), bitmap.getHeight())));
+        final double pixelRatio = (double) bitmap.getWidth() * bitmap.getHeight()
+                / ((double) sample.getWidth() * sample.getHeight());
+        SizeBudget.Probe probe = new SizeBudget.Probe() {
+            @Override
+            public long bytesAt(int quality) {
+                return (long) (compress(sample, quality).length * pixelRatio);
+            }
+        };
+
+        int quality = SizeBudget.findQuality(probe, SizeBudget.MIN_QUALITY, JPEG_QUALITY, budget);
+        float scale = 1;
+        if (quality < SizeBudget.MIN_QUALITY) {
+            quality = SizeBudget.MIN_QUALITY;
+            scale = SizeBudget.shrink(probe.bytesAt(quality), budget);
+        }
+        if (sample != bitmap)
+            sample.recycle();
+
+        for (int attempt = 1; ; attempt++) {
+            Bitmap scaled = scale(bitmap, scale);
+            byte[] jpeg = compress(scaled, quality);
+            PreparedPicture prepared = new PreparedPicture(picture, scaled.getWidth(),
+                    scaled.getHeight(), null, jpeg);
+            if (scaled != bitmap)
+                scaled.recycle();
+            if (jpeg.length <= budget || attempt == MAX_FIT_ATTEMPTS)
+                return prepared;
+            scale *= SizeBudget.shrink(jpeg.length, budget);
+        }
+    }
+
+    /**
+     * Scales a Bitmap down.
+     *
+     * @return A new Bitmap, or <code>bitmap</code> itself if the scale is 1 or more.
+     */
+    private static Bitmap scale(Bitmap bitmap, float scale) {
+        if (scale >= 1)
+            return bitmap;
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+
+    /**
+     * Compresses a Bitmap into JPEG.
+     */
+    private static byte[] compress(Bitmap bitmap, int quality) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, stream);
+        return stream.toByteArray();
+    }
+
+    /**
+     * Checks whether a picture file can go into the document byte for byte: it has to be a JPEG,
+     * since that is the only kind the document declares, it has to be the right way up, since
+     * document readers ignore the EXIF orientation, and it can't be too big, in bytes or in
+     * pixels. With a target size, the bytes it can have are its share of it, if that is less.
+     */
+    private boolean canCopyOriginal(BitmapFactory.Options bounds, int orientation, long length) {
+        int maxLongEdge = options.getMaxLongEdge();
+        if (maxLongEdge > 0 && Math.max(bounds.outWidth, bounds.outHeight) > maxLongEdge)
+            return false;
+        return "image/jpeg".equals(bounds.outMimeType)
+                && (orientation == ExifInterface.ORIENTATION_NORMAL
+                    || orientation == ExifInterface.ORIENTATION_UNDEFINED)
+                && length <= MAX_ORIGINAL_BYTES
+                && (options.getPictureBytes() <= 0 || length <= options.getPictureBytes());
+    }
+
+    /**
+     * A picture ready to go into a document: upright JPEG data, either still in its file or
+     * compressed in memory, and its size in pixels.
+     */
+    static final class PreparedPicture {
+
+        private final Picture picture;
+        private final int width;
+        private final int height;
+        private final File original;
+        private final byte[] jpeg;
+
+        /**
+         * Not private so the tests can make one without decoding a picture.
+         *
+         * @param original The picture's file, if its JPEG data is still in it; null otherwise.
+         * @param jpeg     The JPEG data compressed in memory; null if it is still in the file.
+         */
+        PreparedPicture(Picture picture, int width, int height, File original, byte[] jpeg) {
+            this.picture = picture;
+            this.width = width;
+            this.height = height;
+            this.original = original;
+            this.jpeg = jpeg;
+        }
+
+        Picture getPicture() {
+            return picture;
+        }
+
+        int getWidth() {
+            return width;
+        }
+
+        int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return The number of bytes of JPEG data.
+         */
+        long getLength() {
+            return jpeg != null ? jpeg.length : original.length();
+        }
+
+        /**
+         * Works out the CRC-32 of the JPEG data, which a zip entry stored without compression
+         * needs before the data. Reads the file, if the picture is still in its file.
+         */
+        long getCrc() throws IOException {
+            CRC32 crc = new CRC32();
+            if (jpeg != null) {
+                crc.update(jpeg);
+                return crc.getValue();
+            }
+            InputStream imageIP = new FileInputStream(original);
+            try {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = imageIP.read(buffer)) != -1)
+                    crc.update(buffer, 0, read);
+            } finally {
+                imageIP.close();
+            }
+            return crc.getValue();
+        }
+
+        /**
+         * Writes the JPEG data as it is.
+         */
+        void writeJpeg(OutputStream out) throws IOException {
+            if (jpeg != null) {
+                out.write(jpeg);
+                return;
+            }
+            InputStream imageIP = new FileInputStream(original);
+            try {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = imageIP.read(buffer)) != -1)
+                    out.write(buffer, 0, read);
+            } finally {
+                imageIP.close();
+            }
+        }
+
+        /**
+         * Writes the JPEG data as hex.
+         */
+        void writeHex(HexEncoder hex, Writer writer) throws IOException {
+            if (jpeg != null) {
+                hex.encode(jpeg, writer);
+                return;
+            }
+            InputStream imageIP = new FileInputStream(original);
+            try {
+                hex.encode(imageIP, writer);
+            } finally {
+                imageIP.close();
+            }
+        }
+    }
+}
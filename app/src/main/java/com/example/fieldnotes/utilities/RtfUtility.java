@@ -3,15 +3,19 @@ package com.example.fieldnotes.utilities;
 /*
 DEVELOPER NOTES:
 
-This class only has one public method: create RTF. This method will create an RTF
-document with the Notebook's name passed to it as the title, so NotebookName.rtf.
-This file is saved in the default Downloads directory.
-This method must be called in its own dedicated thread. If you attempt to call it on the
-main UI thread, the app WILL crash.
-
-Rtf generation uses a Buffered Writer to append RTF script to an open file. This writer is passed
-to all helper functions, which subsequently declare "throws IOException" that is handled in the
-main createRTF method.
+The main public method of this class is writeRTF. It writes an RTF document with the Notebook's
+name as the title, either into a file that newDocumentFile made in the Downloads directory
+(NotebookName.rtf), where the export can be cancelled and resumed, or into a stream. It takes a
+StopSource, which reads the Stops one at a time (from a database cursor, in ExportService and
+ExportProvider), so a notebook of any size exports in the memory of a few Stops.
+It must be called in its own dedicated thread. If you attempt to call it on the main UI thread,
+the app WILL crash.
+
+Rtf generation uses an RtfWriter to append RTF script to an open file. It writes groups, control
+words and text straight into its buffer, and escapes the text (braces, backslashes and anything
+past ASCII) so whatever the user typed comes out in the document as it was typed; see RtfWriter.
+This writer is passed to all helper functions, which declare "throws IOException" and leave it to
+whoever called writeRTF.
 
 The writer starts with the title of the notebook, which is centered in the document and has
 a little larger text. Then getStopsText is called to loop through all the Stops and output
@@ -21,12 +25,45 @@ functions that format the date/time and geolocation, but these are fairly straig
 
 The trickiest bit of code here is encoding pictures to hexadecimal. This is how rtf
 encode/decodes its pictures (so we don't have file dependencies when sharing the rtf file.)
-The InputStream class has a method called "read" that returns the next byte of information, in
-the form of an integer. The Integer class has a "toHex" function, but it is important to note that
-this function does not pad zeroes. That is, if the byte can be expressed in one hex digit, it is.
-This is a problem, since rtf needs all its hexadecimal byes to be exactly two digits. To
-prevent issues, we simply check if the length of the hex is 1, and if it is, manually
-concatenate a 0 to the beginning.
+Every byte becomes exactly two hex digits. HexEncoder does this with a lookup table and writes
+whole blocks of digits at a time, wrapped into lines of HEX_LINE_LENGTH (RTF readers skip the
+line breaks.) One encoder is made per document and passed down with the writer.
+
+Most pictures are already JPEGs from the camera, and the document holds JPEGs, so those are copied
+into the document straight from the file, with no Bitmap in between. Only a picture that isn't a
+JPEG, needs turning upright (RTF readers don't look at the EXIF orientation) or is bigger than
+the export resolution is decoded and compressed again at quality 50; see ExportOptions and
+PictureGetter.decodeScaled. Either way, the size written into \picw and \picwgoal is the size of
+the picture that actually went into the document. With a target size in the options, SizeBudget
+gives each picture its share of it before anything is written, and the pictures are compressed
+harder or scaled down to fit.
+
+Getting the pictures ready is the slow part, so it happens on the worker threads of a
+PicturePipeline. A StopReader reads the Stops from the source and hands their pictures to the
+pipeline a few Stops ahead of this thread, which writes everything in order and takes each
+picture from the pipeline when it gets to it, so the workers stay a few pictures ahead of it.
+
+With an ExportCache in the options, the RTF of each Stop is also kept as a fragment. Its key
+covers everything that goes into it: the Stop's row, its pictures' rows and files, the export
+settings, the time zone (the times are written in local time) and FRAGMENT_VERSION, which has to
+go up whenever this class changes what it writes for a Stop. StopReader looks every Stop's
+fragment up as it reads it, so only the pictures of the Stops that changed go to the pipeline;
+getStopsText copies the cached fragments into the document and writes the rest, saving each as
+it goes. The page breaks between Stops are not part of the fragments. Re-exporting a notebook
+where one Stop changed then mostly copies files.
+
+writeRTF is what ExportService uses. It takes an ExportListener, which is told after every
+picture and every Stop how far along the export is, and is asked before each of them whether to
+stop. At the end of each Stop the writer is flushed and the listener gets the length of the file,
+which ExportService saves as an ExportCheckpoint. Given a checkpoint that still fits the notebook,
+writeRTF cuts the file back to that length, leaves out the header and the Stops before it (and
+their pictures, which never go to the pipeline), and appends the rest. Since a Stop is always
+followed by either a page break or the closing brace, the file at a checkpoint is exactly what
+a full export would have written up to there.
+
+ExportProvider uses the writeRTF that takes an OutputStream instead of a checkpoint. It writes the
+whole document into a pipe that the app the notebook is shared with reads from as it goes, so
+there is no file and nothing to resume.
 
 The resource used for learning the RTF used here can be found at
 https://www.oreilly.com/library/view/rtf-pocket-guide/9781449302047/ch01.html
@@ -60,128 +97,380 @@ Pictures have this syntax:
 This can be surrounded by paragraphs if you want to center them.
  */
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Environment;
-import android.util.Log;
 
-import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
 import com.example.fieldnotes.java.Picture;
 import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
 
-import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
 
 public class RtfUtility {
 
-    private static final String TAG = "RTF Utility";
+    public static final String EXTENSION = ".rtf";
+    public static final String MIME_TYPE = "application/rtf";
 
     private static final String RTF_HEADER = "{\\rtf1\\ansi\\deff0 {\\fonttbl {\\f0 Times New Roman;}}";
     private static final String RTF_NEWLINE = System.getProperty("line.separator");
 
     private static final int SCALE_FACTOR = 4;
+    private static final int HEX_LINE_LENGTH = 128;
+    private static final int FRAGMENT_VERSION = 2;
 
     /**
-     * Creates .rtf file and writes to it using helper methods. Should not be run in the main
-     * thread. Needs to be run in its own thread or it will crash the app.
+     * Creates an empty .rtf file in the Downloads directory for a notebook, named after it. If
+     * that name is taken, a number is added: NotebookName(1).rtf, NotebookName(2).rtf and so on.
      *
-     * @param notebook <code>Notebook</code> that will have contents put into file.
-     * @return The file generated.
+     * @param notebookName The name of the <code>Notebook</code>.
+     * @return The new file.
+     * @throws IOException If the file can't be created.
      */
-    public static File createRTF(Notebook notebook) {
-        File file = null;
+    public static File newDocumentFile(String notebookName) throws IOException {
+        return newDocumentFile(notebookName, EXTENSION);
+    }
 
-        try {
+    /**
+     * Creates an empty file in the Downloads directory for a notebook, named after it, with the
+     * extension of the format it is exported to. If that name is taken, a number is added.
+     *
+     * @param notebookName The name of the <code>Notebook</code>.
+     * @param extension    The extension, with its dot: ".rtf" or ".docx".
+     * @return The new file.
+     * @throws IOException If the file can't be created.
+     */
+    public static File newDocumentFile(String notebookName, String extension) throws IOException {
+        File file = new File(Environment.getExternalStoragePublicDirectory(
+                Environment.DIRECTORY_DOWNLOADS), notebookName + extension);
+        int i = 1;
+        while (file.exists()) {
             file = new File(Environment.getExternalStoragePublicDirectory(
-                    Environment.DIRECTORY_DOWNLOADS), notebook.getNotebookName() + ".rtf");
-            int i = 1;
-            while (file.exists()) {
-                file = new File(Environment.getExternalStoragePublicDirectory(
-                        Environment.DIRECTORY_DOWNLOADS), notebook.getNotebookName() + "(" + i + ").rtf");
-                i++;
+                    Environment.DIRECTORY_DOWNLOADS), notebookName + "(" + i + ")" + extension);
+            i++;
+        }
+
+        file.createNewFile();
+        return file;
+    }
+
+    /**
+     * Writes the RTF document of a notebook that is already in memory into the checkpoint's file,
+     * carrying on from the checkpoint if it still fits the notebook and starting over otherwise.
+     * Not private so the tests can write one without a database.
+     *
+     * @param notebook <code>Notebook</code> that will have contents put into file, with all of
+     *                 its <code>Stops</code> and <code>Pictures</code> loaded.
+     * @param options The settings to export with.
+     * @param checkpoint The file to write, and how much of it was written already.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export. The file is left
+     * as it is.
+     * @throws IOException If the file can't be written.
+     */
+    static void writeRTF(NotebookWithStopsAndPictures notebook, ExportOptions options, ExportCheckpoint checkpoint, ExportListener listener) throws IOException {
+        writeRTF(new ListStopSource(notebook), options, checkpoint, listener);
+    }
+
+    /**
+     * Writes the RTF document of a notebook into the checkpoint's file, reading its
+     * <code>Stops</code> one at a time, carrying on from the checkpoint if it still fits the
+     * notebook and starting over otherwise. Should not be run in the main thread.
+     *
+     * @param stops The <code>Stops</code> of the notebook, not started yet. Not closed here.
+     * @param options The settings to export with.
+     * @param checkpoint The file to write, and how much of it was written already.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export. The file is left
+     * as it is.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeRTF(StopSource stops, ExportOptions options, ExportCheckpoint checkpoint, ExportListener listener) throws IOException {
+        options = SizeBudget.plan(options, stops, HEX_LINE_LENGTH, RTF_NEWLINE);
+        File file = checkpoint.getFile();
+        int first = 0;
+        //the pictures already written have to have been given the same share
+        if (checkpoint.fits(stops) && checkpoint.getPictureBytes() == options.getPictureBytes()) {
+            RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+            try {
+                truncate.setLength(checkpoint.getOffset());
+            } finally {
+                truncate.close();
             }
+            first = checkpoint.getStopsDone();
+        } else {
+            checkpoint.setPictureBytes(options.getPictureBytes());
+        }
 
-            file.createNewFile();
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            generateRichText(notebook, writer);
+        FileOutputStream out = new FileOutputStream(file, first > 0);
+        RtfWriter writer = new RtfWriter(new OutputStreamWriter(out), RTF_NEWLINE);
+        try {
+            Progress progress = new Progress(listener, writer, out.getChannel(), stops.getStopCount(),
+                    stops.getPictureCount());
+            generateRichText(stops, options, writer, first, progress);
+        } finally {
             writer.close();
-        } catch (Exception e) {
-            Log.e(TAG, e.getMessage());
         }
+    }
 
-        return file;
+    /**
+     * Writes the whole RTF document of a notebook into a stream, reading its <code>Stops</code>
+     * one at a time. Nothing is kept to resume from, so this is for streams that are read as they
+     * are written, such as the pipe <code>ExportProvider</code> shares documents through. Should
+     * not be run in the main thread.
+     *
+     * @param stops The <code>Stops</code> of the notebook, not started yet. Not closed here.
+     * @param options The settings to export with.
+     * @param out Where to write the document. Flushed, but not closed.
+     * @param listener Told how far along the export is, and asked whether to stop; may be null.
+     * @throws ExportCancelledException If the listener cancelled the export.
+     * @throws IOException If the stream can't be written, such as when its reader has gone.
+     */
+    public static void writeRTF(StopSource stops, ExportOptions options, OutputStream out, ExportListener listener) throws IOException {
+        options = SizeBudget.plan(options, stops, HEX_LINE_LENGTH, RTF_NEWLINE);
+        RtfWriter writer = new RtfWriter(new OutputStreamWriter(out), RTF_NEWLINE);
+        Progress progress = new Progress(listener, writer, null, stops.getStopCount(),
+                stops.getPictureCount());
+        generateRichText(stops, options, writer, 0, progress);
+        writer.flush();
     }
 
     /**
-     * Private method that generates a new RTF file given a notebook.
+     * Writes a whole RTF document for a notebook. Not private so the benchmarks can write it to
+     * any writer.
      *
      * @param notebook <code>Notebook</code> that will have contents put into file.
+     * @param options The settings to export with.
      * @param writer Output stream for writing notebooks contents into.
-     * @throws IOException Handled in <code>createRTF</code>.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
      */
-    private static void generateRichText(Notebook notebook, BufferedWriter writer) throws IOException {
-        writer.append(RTF_HEADER);
-        writer.append(RTF_NEWLINE);
+    static void generateRichText(NotebookWithStopsAndPictures notebook, ExportOptions options, Writer writer) throws IOException {
+        StopSource stops = new ListStopSource(notebook);
+        options = SizeBudget.plan(options, stops, HEX_LINE_LENGTH, RTF_NEWLINE);
+        RtfWriter rtf = new RtfWriter(writer, RTF_NEWLINE);
+        generateRichText(stops, options, rtf, 0, new Progress(null, rtf, null, stops.getStopCount(),
+                stops.getPictureCount()));
+        rtf.flush();
+    }
 
-        String name = notebook.getNotebookName();
-        writer.append("{\\pard\\qc\\f0\\fs48 " + name + "\\par}");
-        writer.append(RTF_NEWLINE);
+    /**
+     * Writes an RTF document for a notebook, or the rest of one.
+     *
+     * @param stops The <code>Stops</code> of the notebook, not started yet.
+     * @param options The settings to export with.
+     * @param writer Output stream for writing notebooks contents into.
+     * @param first The first <code>Stop</code> to write. If it isn't 0, the header and the
+     *              <code>Stops</code> before it are already in the document.
+     * @param progress Where to report to.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
+     */
+    private static void generateRichText(StopSource stops, ExportOptions options, RtfWriter writer, int first, Progress progress) throws IOException {
+        if (first == 0) {
+            writer.write(RTF_HEADER);
+            writer.newline();
+
+            String name = stops.getNotebook().getNotebookName();
+            openParagraph(writer, true, 48).text(name);
+            closeParagraph(writer).newline();
+        }
 
-        ArrayList<Stop> stops = notebook.getStopList();
-        getStopsText(stops, writer);
+        getStopsText(stops, first, options, writer, new HexEncoder(HEX_LINE_LENGTH, RTF_NEWLINE), progress);
 
-        writer.append("}");
+        writer.closeGroup();
     }
 
     /**
      * Gets data from every <code>Stop</code> and converts each into string for storing in a file.
+     * <code>Stops</code> with a cached fragment are copied from the cache; the pictures of the
+     * rest are prepared by a <code>PicturePipeline</code>.
+     *
+     * @param stops The <code>Stops</code> to convert into .rtf readable format, not started yet.
+     * @param first The first <code>Stop</code> to write; the ones before it are skipped.
+     * @param options The settings to export with.
+     * @param writer Output stream to write string outputs into.
+     * @param hex Encoder for the pictures, shared by the whole document.
+     * @param progress Where to report to.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
+     */
+    private static void getStopsText(StopSource stops, int first, ExportOptions options, RtfWriter writer, HexEncoder hex, Progress progress) throws IOException {
+        ExportCache cache = options.getCache();
+        progress.picturesDone = stops.getPictureCountBefore(first);
+        stops.start(first);
+        StopReader reader = new StopReader(stops, options);
+
+        PicturePipeline pipeline = new PicturePipeline(reader.pictures(), options);
+        try {
+            for (int i = first; ; i++) {
+                progress.checkCancelled();
+                StopReader.ReadStop stop = reader.next();
+                if (stop == null)
+                    break;
+                //If it's the first Stop do nothing; otherwise print a new page.
+                if (i > 0)
+                    writer.openGroup().controlWord("page").closeGroup();
+
+                if (stop.cached && copyFragment(cache, stop.key, writer)) {
+                    progress.picturesDone += getPictures(stop.stop).size();
+                } else if (stop.cached) {
+                    //evicted since we looked, so its pictures aren't in the pipeline
+                    PicturePipeline own = new PicturePipeline(getPictures(stop.stop), options);
+                    try {
+                        getStopTextAndCache(stop.stop, cache, stop.key, writer, own, hex, progress);
+                    } finally {
+                        own.close();
+                    }
+                } else {
+                    getStopTextAndCache(stop.stop, cache, stop.key, writer, pipeline, hex, progress);
+                }
+                progress.stopWritten(i, stop.stop.getStop().getUnixTime());
+            }
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Writes one <code>Stop</code>, and saves what was written as its fragment.
      *
-     * @param stops List of <code>Stops</code> to convert into .rtf readable format.
+     * @param stop The <code>Stop</code> to write.
+     * @param cache Where to save the fragment; null to not save it.
+     * @param key The key of the fragment.
      * @param writer Output stream to write string outputs into.
-     * @throws IOException Handled in <code>createRTF</code>.
+     * @param pipeline Prepares the pictures; the <code>Stop</code>'s must be the next ones in it.
+     * @param hex Encoder for the pictures.
+     * @param progress Where to report to.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
      */
-    private static void getStopsText(ArrayList<Stop> stops, BufferedWriter writer) throws IOException {
-        boolean first = true;
-        for (Stop stop : stops) {
-            //If it's the first Stop do nothing; otherwise print a new page.
-            if(first)
-                first = false;
+    private static void getStopTextAndCache(StopWithPictures stop, ExportCache cache, String key, RtfWriter writer, PicturePipeline pipeline, HexEncoder hex, Progress progress) throws IOException {
+        ExportCache.Fragment fragment = cache == null ? null : cache.newFragment(key);
+        if (fragment == null) {
+            getStopText(stop, writer, pipeline, hex, progress);
+            return;
+        }
+
+        boolean written = false;
+        try {
+            RtfWriter both = new RtfWriter(new TeeWriter(writer, fragment), RTF_NEWLINE);
+            getStopText(stop, both, pipeline, hex, progress);
+            both.flush();
+            written = true;
+        } finally {
+            if (written)
+                fragment.close();
             else
-                writer.append("{\\page}");
+                fragment.abort();
+        }
+    }
 
-            String name = stop.getStopName();
-            writer.append("{\\pard\\f0\\fs32 " + name + "\\par}");
-            writer.append(RTF_NEWLINE);
+    /**
+     * Writes the name, time, coordinates, notes and pictures of one <code>Stop</code>.
+     *
+     * @param stopWithPictures The <code>Stop</code> to write.
+     * @param writer Output stream to write string outputs into.
+     * @param pipeline Prepares the pictures; the <code>Stop</code>'s must be the next ones in it.
+     * @param hex Encoder for the pictures.
+     * @param progress Where to report to.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
+     */
+    private static void getStopText(StopWithPictures stopWithPictures, RtfWriter writer, PicturePipeline pipeline, HexEncoder hex, Progress progress) throws IOException {
+        Stop stop = stopWithPictures.getStop();
 
-            String timeString = getTimeString(stop.getTime());
-            writer.append("{\\pard\\f0\\fs24 Time: " + timeString + "\\par}");
+        openParagraph(writer, false, 32).text(stop.getStopName());
+        closeParagraph(writer).newline();
 
-            String coordString = getCoordinatesString(stop.getLongitude(), stop.getLatitude());
-            if (coordString != null)
-                writer.append("{\\pard\\f0\\fs24 Coordinates: " + coordString + "\\par}");
+        openParagraph(writer, false, 24).text("Time: ").text(getTimeString(stop.getTime()));
+        closeParagraph(writer);
 
-            writer.append(RTF_NEWLINE);
+        String coordString = getCoordinatesString(stop.getLongitude(), stop.getLatitude());
+        if (coordString != null) {
+            openParagraph(writer, false, 24).text("Coordinates: ").text(coordString);
+            closeParagraph(writer);
+        }
 
-            String notes = stop.notes();
-            if(notes != null)
-                writer.append("{\\pard\\f0\\fs24 " + notes + "\\par}");
+        writer.newline();
 
-            writer.append(RTF_NEWLINE);
-            ArrayList<Picture> pics = stop.getPictureArrayList();
-            if (pics != null && pics.size() > 0) {
-                writer.append("{\\pard \\par}");
-                getPicturesString(pics, writer);
-            }
+        String notes = stop.notes();
+        if (notes != null) {
+            openParagraph(writer, false, 24).text(notes);
+            closeParagraph(writer);
+        }
+
+        writer.newline();
+        List<Picture> pics = stopWithPictures.getPictures();
+        if (pics != null && pics.size() > 0) {
+            writer.openGroup().controlWord("pard").controlWord("par").closeGroup();
+            getPicturesString(pics, writer, pipeline, hex, progress);
+        }
+    }
+
+    /**
+     * Copies a cached fragment into the document.
+     *
+     * @return False if the fragment wasn't in the cache after all.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
+     */
+    private static boolean copyFragment(ExportCache cache, String key, Writer writer) throws IOException {
+        Reader fragment = cache.getFragment(key);
+        if (fragment == null)
+            return false;
+        try {
+            char[] buffer = new char[HexEncoder.DEFAULT_BLOCK_SIZE];
+            int read;
+            while ((read = fragment.read(buffer)) != -1)
+                writer.write(buffer, 0, read);
+        } finally {
+            fragment.close();
         }
+        return true;
+    }
+
+    /**
+     * Makes the key of a <code>Stop</code>'s fragment out of everything that goes into it.
+     */
+    static String getFragmentKey(StopWithPictures stopWithPictures, ExportOptions options) {
+        Stop stop = stopWithPictures.getStop();
+        StringBuilder identity = new StringBuilder("fragment\n")
+                .append(FRAGMENT_VERSION).append('\n')
+                .append(options.getMaxLongEdge()).append('\n')
+                .append(PicturePipeline.JPEG_QUALITY).append('\n')
+                .append(PicturePipeline.MAX_ORIGINAL_BYTES).append('\n')
+                .append(options.getPictureBytes()).append('\n')
+                .append(TimeZone.getDefault().getID()).append('\n')
+                .append(stop.getUnixTime()).append('\n')
+                .append(stop.getStopName()).append('\n')
+                .append(stop.getTime()).append('\n')
+                .append(stop.getLatitude()).append('\n')
+                .append(stop.getLongitude()).append('\n')
+                .append(stop.notes()).append('\n');
+        for (Picture picture : getPictures(stopWithPictures)) {
+            File file = new File(picture.getFilePath());
+            identity.append(picture.getUnixTime()).append('\n')
+                    .append(picture.getFilePath()).append('\n')
+                    .append(file.lastModified()).append('\n')
+                    .append(file.length()).append('\n')
+                    .append(picture.caption()).append('\n');
+        }
+        return ExportCache.hash(identity.toString());
+    }
+
+    /**
+     * The <code>Pictures</code> of a <code>Stop</code>, never null.
+     */
+    static List<Picture> getPictures(StopWithPictures stop) {
+        List<Picture> pictures = stop.getPictures();
+        return pictures == null ? new ArrayList<Picture>() : pictures;
     }
 
     /**
@@ -190,7 +479,7 @@ public class RtfUtility {
      * @param time Time in milliseconds since Epoch.
      * @return String of converted time into standard format (HH:MM)
      */
-    private static String getTimeString(long time) {
+    static String getTimeString(long time) {
         Calendar calendar = Calendar.getInstance();
         calendar.setTimeInMillis(time);
 
@@ -220,7 +509,7 @@ public class RtfUtility {
      * @param latitude Value to convert.
      * @return The readable representation of the coordinates.
      */
-    private static String getCoordinatesString(double longitude, double latitude) {
+    static String getCoordinatesString(double longitude, double latitude) {
         if (longitude == 0 && latitude == 0)
             return null;
 
@@ -235,69 +524,174 @@ public class RtfUtility {
     }
 
     /**
-     * Gets all <code>Picture</code> objects in list and converts them to bitmaps to compress and
-     * store them in a file. Compresses pictures into JPEG format at 50% quality.
+     * Writes every <code>Picture</code> in the list into the document, with its caption, as the
+     * pipeline finishes preparing them. Pictures that are missing or can't be decoded are left
+     * out.
      *
-     * @param pictures List of pictures to convert and store in output stream.
+     * @param pictures List of pictures to store in output stream.
      * @param writer Output stream that will have pictures stored in it.
-     * @throws IOException Handled in <code>createRTF</code>.
+     * @param pipeline Prepares the pictures; these must be the next ones it was given.
+     * @param hex Encoder that writes the pictures' bytes into the document.
+     * @param progress Where to report to.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
      */
-    private static void getPicturesString(ArrayList<Picture> pictures, BufferedWriter writer) throws IOException {
+    private static void getPicturesString(List<Picture> pictures, RtfWriter writer, PicturePipeline pipeline, HexEncoder hex, Progress progress) throws IOException {
         if (pictures.size() == 0)
             return;
-        InputStream imageIP;
-        Bitmap bitmap;
-        for (Picture picture : pictures) {
-            String filepath = picture.getFilePath();
-
-            File testFile = new File(filepath);
-            if(!testFile.exists())
+        for (int i = 0; i < pictures.size(); i++) {
+            progress.checkCancelled();
+            PicturePipeline.PreparedPicture prepared = pipeline.next();
+            progress.pictureWritten();
+            if (prepared == null)
                 continue;
 
-            imageIP = new FileInputStream(filepath);
-            int orientation = PictureGetter.getOrientation(picture.getFilePath());
-            bitmap = BitmapFactory.decodeFile(picture.getFilePath());
-            bitmap = PictureGetter.fixOrientation(bitmap, orientation);
+            writePictureStart(prepared.getWidth(), prepared.getHeight(), writer);
+            prepared.writeHex(hex, writer);
+            writer.closeGroup();
+            closeParagraph(writer).newline();
+            writer.openGroup().controlWord("pard").controlWord("par").closeGroup();
+            openParagraph(writer, true, 20).text(prepared.getPicture().caption());
+            closeParagraph(writer).newline();
+        }
+    }
+
+    /**
+     * Opens a centered paragraph and a JPEG picture of the given size; the hex and the closing
+     * braces come next.
+     *
+     * @param width The width of the picture in pixels.
+     * @param height The height of the picture in pixels.
+     * @param writer The output stream.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
+     */
+    private static void writePictureStart(int width, int height, RtfWriter writer) throws IOException {
+        width *= SCALE_FACTOR;
+        height *= SCALE_FACTOR;
+        writer.openGroup().controlWord("pard").controlWord("qc");
+        writer.openGroup().controlWord("pict").controlWord("jpegblip")
+                .controlWord("picw", width).controlWord("pich", height)
+                .controlWord("picwgoal", width).controlWord("pichgoal", height)
+                .controlWord("hex");
+    }
+
+    /**
+     * Opens a paragraph in Times New Roman; the text and <code>closeParagraph</code> come next.
+     *
+     * @param writer The output stream.
+     * @param centered True to center the paragraph, false to leave it left-justified.
+     * @param fontSize The size of the text in half points, so 24 is 12 point.
+     * @return The writer, to write the text with.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
+     */
+    private static RtfWriter openParagraph(RtfWriter writer, boolean centered, int fontSize) throws IOException {
+        writer.openGroup().controlWord("pard");
+        if (centered)
+            writer.controlWord("qc");
+        return writer.controlWord("f", 0).controlWord("fs", fontSize);
+    }
+
+    /**
+     * Ends a paragraph opened by <code>openParagraph</code> (or <code>writePictureStart</code>.)
+     *
+     * @param writer The output stream.
+     * @return The writer.
+     * @throws IOException Passed on to the caller of <code>writeRTF</code>.
+     */
+    private static RtfWriter closeParagraph(RtfWriter writer) throws IOException {
+        return writer.controlWord("par").closeGroup();
+    }
 
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 50, stream);
-            byte[] imageInBytes = stream.toByteArray();
-            ByteArrayInputStream bis = new ByteArrayInputStream(imageInBytes);
+    /**
+     * Keeps count of the <code>Stops</code> and <code>Pictures</code> written, and passes them on
+     * to the <code>ExportListener</code>, if there is one.
+     */
+    private static class Progress {
+
+        private final ExportListener listener;
+        private final Writer writer;
+        private final FileChannel channel;
+        private final int stops;
+        private final int pictures;
+        int picturesDone;
+
+        /**
+         * @param listener Where to report to; null to only count.
+         * @param writer The writer of the document, flushed at the end of every <code>Stop</code>.
+         * @param channel The file under the writer, to tell the length from; null if there is
+         *                no file.
+         * @param stops The number of <code>Stops</code> in the notebook.
+         * @param pictures The number of <code>Pictures</code> in the notebook.
+         */
+        Progress(ExportListener listener, Writer writer, FileChannel channel, int stops, int pictures) {
+            this.listener = listener;
+            this.writer = writer;
+            this.channel = channel;
+            this.stops = stops;
+            this.pictures = pictures;
+        }
 
+        void checkCancelled() throws ExportCancelledException {
+            if (listener != null && listener.isCancelled())
+                throw new ExportCancelledException();
+        }
 
-            if (imageIP == null || bitmap == null)
-                continue;
+        void pictureWritten() {
+            picturesDone++;
+            if (listener != null)
+                listener.onPictureWritten(picturesDone, pictures);
+        }
 
-            int width = bitmap.getWidth() * SCALE_FACTOR;
-            int height = bitmap.getHeight() * SCALE_FACTOR;
-            writer.append("{\\pard\\qc ");
-            writer.append("{\\pict\\jpegblip\\picw" + width + "\\pich" + height
-                    + "\\picwgoal" + width + "\\pichgoal" + height + "\\hex ");
-            getHex(bis, writer);
-            writer.append("} \\par}");
-            writer.append(RTF_NEWLINE);
-            String caption = picture.caption();
-            writer.append("{\\pard \\par}");
-            writer.append("{\\pard\\qc\\f0\\fs20 " + caption + "\\par}");
-            writer.append(RTF_NEWLINE);
+        /**
+         * Flushes the document to its file and reports the end of a <code>Stop</code>.
+         *
+         * @param index The index of the <code>Stop</code> just written.
+         * @param stopId Its <code>unixTime</code>.
+         */
+        void stopWritten(int index, long stopId) throws IOException {
+            if (listener == null)
+                return;
+            writer.flush();
+            long offset = channel == null ? 0 : channel.position();
+            listener.onStopWritten(index + 1, stops, stopId, offset);
         }
     }
 
     /**
-     * Gets the input stream for the image and converts each line to hex values
-     * for storing in a file. Writes hex value to output stream.
-     *
-     * @param imageIP The input stream of the image.
-     * @param writer The output stream.
-     * @throws IOException Handled in <code>createRTF</code>.
+     * Writes everything to two writers: the document and a fragment of it.
      */
-    private static void getHex(InputStream imageIP, BufferedWriter writer) throws IOException {
-        int temp;
-        while ((temp = imageIP.read()) != -1) { //gives -1 when stream reaches EOF
-            String hexString = Integer.toHexString(temp);
-            if (hexString.length() == 1)
-                hexString = "0" + hexString;
-            writer.append(hexString);
+    private static class TeeWriter extends Writer {
+
+        private final Writer first;
+        private final Writer second;
+
+        TeeWriter(Writer first, Writer second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            first.write(cbuf, off, len);
+            second.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            first.write(str, off, len);
+            second.write(str, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+
+        /**
+         * Does nothing; the two writers are closed by whoever opened them.
+         */
+        @Override
+        public void close() {
         }
     }
 }
\ No newline at end of file
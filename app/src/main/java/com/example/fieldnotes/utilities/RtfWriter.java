@@ -0,0 +1,277 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+RTF is plain text with three special characters: backslash starts a control word, and braces
+open and close groups. Text that has any of them in it has to escape them (\\, \{ and \}) or the
+reader takes them for markup; a note with an unmatched brace used to cut the rest of the document
+off. RTF is also 7-bit: anything past ASCII is written as the control word "u" with the UTF-16
+code unit as a signed 16-bit parameter, followed by a stand-in character for readers that don't
+know it. Characters outside the BMP take two of them, one per surrogate, the same way Word writes
+them. A line break in the text becomes \line, and a tab \tab; other control characters are
+dropped.
+
+A control word ends at the first character that isn't a letter or a digit, and a space right
+after it is taken as the end of the word rather than as text. So after a control word the writer
+owes a space, but only if what comes next is text or data: another control word, a brace or a
+line break ends the word on its own. controlWord sets delimit, and whatever is written next pays
+it if it has to.
+
+Everything goes into one char[] buffer, and the buffer into the underlying writer when it is full
+or flushed. Control words, numbers and escapes are written into it a character at a time, without
+building Strings. Writes of a buffer or more (hex from HexEncoder, mostly) skip the buffer.
+
+An RtfWriter is also a Writer, and anything written through the Writer methods goes into the
+document as it is, for data that is already RTF (the header, hex, cached fragments.)
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes RTF: groups, control words and escaped text, into a buffer in front of another
+ * <code>Writer</code>. Not thread-safe.
+ */
+public class RtfWriter extends Writer {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    //the character written after a Unicode escape, for readers that can't show it
+    private static final char UNICODE_STAND_IN = '?';
+
+    private final Writer out;
+    private final char[] buffer;
+    private final char[] newline;
+    private int count;
+    private boolean delimit;
+
+    /**
+     * @param out     Where the RTF goes.
+     * @param newline What to write for a line break between paragraphs. Readers ignore it; it
+     *                only makes the document readable in a text editor.
+     */
+    public RtfWriter(Writer out, String newline) {
+        this(out, newline, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out        Where the RTF goes.
+     * @param newline    What to write for a line break between paragraphs.
+     * @param bufferSize The number of characters to buffer; at least 32.
+     */
+    public RtfWriter(Writer out, String newline, int bufferSize) {
+        if (bufferSize < 32)
+            throw new IllegalArgumentException("Buffer too small: " + bufferSize);
+        this.out = out;
+        this.newline = newline.toCharArray();
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Opens a group: <code>{</code>.
+     */
+    public RtfWriter openGroup() throws IOException {
+        delimit = false;
+        put('{');
+        return this;
+    }
+
+    /**
+     * Closes a group: <code>}</code>.
+     */
+    public RtfWriter closeGroup() throws IOException {
+        delimit = false;
+        put('}');
+        return this;
+    }
+
+    /**
+     * Writes a control word with no parameter, such as <code>\par</code>.
+     *
+     * @param word The word, without the backslash. Only ASCII letters.
+     */
+    public RtfWriter controlWord(String word) throws IOException {
+        put('\\');
+        for (int i = 0; i < word.length(); i++)
+            put(word.charAt(i));
+        delimit = true;
+        return this;
+    }
+
+    /**
+     * Writes a control word with a number, such as <code>\fs24</code>.
+     *
+     * @param word      The word, without the backslash. Only ASCII letters.
+     * @param parameter The number.
+     */
+    public RtfWriter controlWord(String word, int parameter) throws IOException {
+        put('\\');
+        for (int i = 0; i < word.length(); i++)
+            put(word.charAt(i));
+        putNumber(parameter);
+        delimit = true;
+        return this;
+    }
+
+    /**
+     * Writes text, escaped so it comes out in the document as it is.
+     *
+     * @param text The text; nothing is written for null.
+     */
+    public RtfWriter text(CharSequence text) throws IOException {
+        if (text == null)
+            return this;
+        for (int i = 0; i < text.length(); i++)
+            textChar(text.charAt(i));
+        return this;
+    }
+
+    /**
+     * Writes a number as text.
+     */
+    public RtfWriter text(long number) throws IOException {
+        payDelimiter();
+        putNumber(number);
+        return this;
+    }
+
+    /**
+     * Writes a line break between paragraphs. It isn't part of the document's text.
+     */
+    public RtfWriter newline() throws IOException {
+        //CR and LF end a control word too, and a space after them would be text
+        delimit = false;
+        for (char c : newline)
+            put(c);
+        return this;
+    }
+
+    /**
+     * Writes characters into the document as they are, as RTF.
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (len <= 0)
+            return;
+        payDelimiter();
+        if (len >= buffer.length) {
+            flushBuffer();
+            out.write(cbuf, off, len);
+            return;
+        }
+        if (len > buffer.length - count)
+            flushBuffer();
+        System.arraycopy(cbuf, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Writes characters into the document as they are, as RTF.
+     */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if (len <= 0)
+            return;
+        payDelimiter();
+        if (len >= buffer.length) {
+            flushBuffer();
+            out.write(str, off, len);
+            return;
+        }
+        if (len > buffer.length - count)
+            flushBuffer();
+        str.getChars(off, off + len, buffer, count);
+        count += len;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        payDelimiter();
+        put((char) c);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+    private void textChar(char c) throws IOException {
+        switch (c) {
+            case '\\':
+            case '{':
+            case '}':
+                delimit = false;
+                put('\\');
+                put(c);
+                return;
+            case '\n':
+                controlWord("line");
+                return;
+            case '\t':
+                controlWord("tab");
+                return;
+            default:
+                break;
+        }
+        if (c < 0x20)
+            return; //other control characters, including the \r of \r\n
+        if (c < 0x80) {
+            payDelimiter();
+            put(c);
+            return;
+        }
+        //the Unicode escape takes a signed 16-bit number
+        controlWord("u", (short) c);
+        delimit = false;
+        put(UNICODE_STAND_IN);
+    }
+
+    private void payDelimiter() throws IOException {
+        if (delimit) {
+            delimit = false;
+            put(' ');
+        }
+    }
+
+    private void putNumber(long number) throws IOException {
+        if (number < 0) {
+            put('-');
+        } else {
+            number = -number; //works in negatives, so Long.MIN_VALUE fits
+        }
+        if (number > -10) {
+            put((char) ('0' - number));
+            return;
+        }
+        if (count > buffer.length - 20)
+            flushBuffer();
+        int digits = 0;
+        for (long n = number; n != 0; n /= 10)
+            digits++;
+        int at = count + digits;
+        count = at;
+        for (long n = number; n != 0; n /= 10)
+            buffer[--at] = (char) ('0' - n % 10);
+    }
+
+    private void put(char c) throws IOException {
+        if (count == buffer.length)
+            flushBuffer();
+        buffer[count++] = c;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
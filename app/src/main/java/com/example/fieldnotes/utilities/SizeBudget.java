@@ -0,0 +1,195 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+Exported documents get emailed, and most mail servers turn away attachments over 20 or 25 MB.
+Nearly all of a document is its pictures, and hex encoding doubles them, so a notebook of a few
+dozen pictures goes over easily. With a target size in the ExportOptions, this class decides how
+big each picture can be for the document to come in under it.
+
+plan gives every picture an equal share of what's left of the target after the text. The text
+isn't known until it's written, so it is estimated from the number of Stops and Pictures (the
+paragraphs, times, coordinates and picture headers around them) and the length of the names
+and notes, counted twice over since some of it comes out escaped. MARGIN_PERCENT of the target is
+kept back on top of that. The share only depends on the notebook and the target, so a resumed
+export gives its pictures the same share as the part it resumes, and the cache and fragment keys
+can include it.
+
+What a picture becomes within its share is PicturePipeline's job. A JPEG that can go into the
+document as it is and already fits isn't touched. Anything else is compressed at the highest
+quality, from MIN_QUALITY up to the usual PicturePipeline.JPEG_QUALITY, that the sizes estimated
+by a Probe say fits; findQuality binary searches for it, trying the usual quality first since it
+usually fits. When not even MIN_QUALITY fits, shrink says how much to scale the picture down:
+JPEG size goes roughly with the number of pixels, so by the square root of how far over it is.
+
+A DOCX document (see DocxUtility) keeps its pictures as they are rather than in hex, so
+planBinary gives each picture twice the bytes plan would, less what its zip entries take.
+
+A share smaller than MIN_PICTURE_BYTES is raised to it; pictures that small aren't worth having,
+so a target that would need them is missed rather than met with thumbnails.
+ */
+
+/**
+ * Works out how many bytes each picture of an export gets for the document to fit a target size.
+ */
+final class SizeBudget {
+
+    static final int MIN_QUALITY = 20;
+    static final int MIN_PICTURE_BYTES = 16 * 1024;
+
+    private static final int MARGIN_PERCENT = 5;
+    private static final int HEADER_CHARS = 1024;
+    private static final int STOP_CHARS = 512;
+    private static final int PICTURE_CHARS = 512;
+    private static final int TEXT_EXPANSION = 2;
+    private static final double SHRINK_MARGIN = 0.9;
+    private static final int ZIP_ENTRY_BYTES = 256;
+
+    private SizeBudget() {
+    }
+
+    /**
+     * Estimates the compressed size of one picture at a JPEG quality.
+     */
+    interface Probe {
+
+        /**
+         * @param quality The JPEG quality, 0 to 100.
+         * @return The bytes the picture would take at that quality.
+         */
+        long bytesAt(int quality);
+    }
+
+    /**
+     * Gets the options to export a notebook with, with the share of the target size each picture
+     * gets.
+     *
+     * @param options       The settings the export was asked for.
+     * @param stops         The <code>Stops</code> of the notebook.
+     * @param hexLineLength The number of hex digits per line in the document.
+     * @param newline       What ends a line in the document.
+     * @return <code>options</code> itself if it has no target size or the notebook has no
+     * <code>Pictures</code>; otherwise a copy, with <code>getPictureBytes</code> set.
+     */
+    static ExportOptions plan(ExportOptions options, StopSource stops, int hexLineLength, String newline) {
+        if (options.getTargetBytes() <= 0)
+            return options;
+        int pictures = stops.getPictureCount();
+        if (pictures == 0)
+            return options;
+
+        ExportOptions planned = new ExportOptions(options);
+        planned.setPictureBytes(perPicture(options.getTargetBytes(), stops.getStopCount(),
+                stops.getTextLength(), pictures, hexLineLength, newline.length()));
+        return planned;
+    }
+
+    /**
+     * Gets the options to export a notebook with into a document that holds its pictures as
+     * binary, with the share of the target size each picture gets.
+     *
+     * @param options The settings the export was asked for.
+     * @param stops   The <code>Stops</code> of the notebook.
+     * @return <code>options</code> itself if it has no target size or the notebook has no
+     * <code>Pictures</code>; otherwise a copy, with <code>getPictureBytes</code> set.
+     */
+    static ExportOptions planBinary(ExportOptions options, StopSource stops) {
+        if (options.getTargetBytes() <= 0)
+            return options;
+        int pictures = stops.getPictureCount();
+        if (pictures == 0)
+            return options;
+
+        ExportOptions planned = new ExportOptions(options);
+        planned.setPictureBytes(perPictureBinary(options.getTargetBytes(), stops.getStopCount(),
+                stops.getTextLength(), pictures));
+        return planned;
+    }
+
+    /**
+     * Gets the bytes of JPEG each picture can have for a document to fit a target size.
+     *
+     * @param targetBytes   The size the document should come in under.
+     * @param stops         The number of <code>Stops</code> in it.
+     * @param textLength    The number of characters in their names and notes.
+     * @param pictures      The number of <code>Pictures</code> in it; at least 1.
+     * @param hexLineLength The number of hex digits per line.
+     * @param newlineLength The number of characters that end a line.
+     * @return The bytes each picture can have; never less than <code>MIN_PICTURE_BYTES</code>.
+     */
+    static int perPicture(long targetBytes, int stops, long textLength, int pictures, int hexLineLength, int newlineLength) {
+        //every byte is two hex digits, and every line of them ends with a newline
+        long bytes = share(targetBytes, stops, textLength, pictures)
+                * hexLineLength / (2L * (hexLineLength + newlineLength));
+        return (int) Math.max(MIN_PICTURE_BYTES, Math.min(bytes, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Gets the bytes of JPEG each picture can have for a document that holds them as binary,
+     * each in a zip entry of its own, to fit a target size.
+     *
+     * @param targetBytes The size the document should come in under.
+     * @param stops       The number of <code>Stops</code> in it.
+     * @param textLength  The number of characters in their names and notes.
+     * @param pictures    The number of <code>Pictures</code> in it; at least 1.
+     * @return The bytes each picture can have; never less than <code>MIN_PICTURE_BYTES</code>.
+     */
+    static int perPictureBinary(long targetBytes, int stops, long textLength, int pictures) {
+        long bytes = share(targetBytes, stops, textLength, pictures) - ZIP_ENTRY_BYTES;
+        return (int) Math.max(MIN_PICTURE_BYTES, Math.min(bytes, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Gets each picture's share of what is left of a target size once the text is taken out.
+     */
+    private static long share(long targetBytes, int stops, long textLength, int pictures) {
+        long chars = targetBytes / 100 * (100 - MARGIN_PERCENT)
+                - HEADER_CHARS
+                - (long) stops * STOP_CHARS
+                - textLength * TEXT_EXPANSION
+                - (long) pictures * PICTURE_CHARS;
+        return chars / pictures;
+    }
+
+    /**
+     * Finds the highest JPEG quality a picture fits its share at, trying <code>high</code> first.
+     * The probe's sizes have to go up with the quality.
+     *
+     * @param probe  Estimates the size of the picture.
+     * @param low    The lowest quality to consider.
+     * @param high   The highest quality to consider.
+     * @param budget The bytes the picture can have.
+     * @return The quality, or <code>low - 1</code> if it doesn't fit even at <code>low</code>.
+     */
+    static int findQuality(Probe probe, int low, int high, long budget) {
+        if (probe.bytesAt(high) <= budget)
+            return high;
+        int found = low - 1;
+        high--;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (probe.bytesAt(middle) <= budget) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets how much to scale a picture's sides by to bring it within its share, with a little
+     * to spare.
+     *
+     * @param bytes  The bytes the picture takes at the size it is now.
+     * @param budget The bytes it can have.
+     * @return The scale, more than 0 and at most 1.
+     */
+    static float shrink(long bytes, long budget) {
+        if (bytes <= budget)
+            return 1;
+        return (float) (Math.sqrt((double) budget / bytes) * SHRINK_MARGIN);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.fieldnotes.utilities;
+
+/*
+DEVELOPER NOTES:
+
+An export reads the Stops of a notebook from a StopSource one at a time, but the PicturePipeline
+wants to start on the pictures of the next few Stops before the writer gets to them. StopReader
+sits between the two: the writer takes Stops from next, the pipeline takes Pictures from the
+iterator of pictures, and whichever of them gets ahead reads the Stop it needs from the source
+and leaves it queued for the other.
+
+The pipeline never gets more than MAX_AHEAD Stops ahead of the writer. Past that, the picture
+iterator says it has nothing left for now, and the pipeline asks again after the writer takes its
+next picture. That way a run of Stops without pictures can't make the pipeline read the rest of
+the notebook into memory looking for the next picture, and an export holds at most MAX_AHEAD
+Stops at once, however big the notebook is.
+
+Each Stop's fragment key is worked out as it is read (see RtfUtility.getFragmentKey); the
+pictures of a Stop with a cached fragment are never given to the pipeline. Only Stops that have
+pictures for the pipeline wait in toFeed, so the writer copying a long run of cached Stops
+doesn't pile them up there either.
+ */
+
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the <code>Stops</code> of an export from a <code>StopSource</code>, for the writer and
+ * the <code>PicturePipeline</code> at once.
+ */
+final class StopReader {
+
+    static final int MAX_AHEAD = 16;
+
+    private final StopSource source;
+    private final ExportOptions options;
+    private final ArrayDeque<ReadStop> ahead = new ArrayDeque<>();
+    private final ArrayDeque<ReadStop> toFeed = new ArrayDeque<>();
+    private ReadStop feeding;
+    private int feedIndex;
+    private boolean done;
+
+    /**
+     * @param source  Where to read the <code>Stops</code> from; already started.
+     * @param options The settings to export with.
+     */
+    StopReader(StopSource source, ExportOptions options) {
+        this.source = source;
+        this.options = options;
+    }
+
+    /**
+     * Takes the next <code>Stop</code> to write.
+     *
+     * @return The <code>Stop</code>, or null if there are no more.
+     */
+    ReadStop next() {
+        if (ahead.isEmpty() && !read())
+            return null;
+        return ahead.poll();
+    }
+
+    /**
+     * The <code>Pictures</code> to prepare, in the order they will be written. Only for one
+     * <code>PicturePipeline</code>.
+     */
+    Iterator<Picture> pictures() {
+        return new Iterator<Picture>() {
+            @Override
+            public boolean hasNext() {
+                while (feeding == null || feedIndex >= pictures(feeding).size()) {
+                    feeding = toFeed.poll();
+                    feedIndex = 0;
+                    if (feeding == null && (ahead.size() >= MAX_AHEAD || !read()))
+                        return false;
+                }
+                return true;
+            }
+
+            @Override
+            public Picture next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return pictures(feeding).get(feedIndex++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Reads one more <code>Stop</code> from the source and queues it for both.
+     *
+     * @return False if there are no more.
+     */
+    private boolean read() {
+        if (done)
+            return false;
+        StopWithPictures stop = source.next();
+        if (stop == null) {
+            done = true;
+            return false;
+        }
+        ExportCache cache = options.getCache();
+        String key = cache == null ? null : RtfUtility.getFragmentKey(stop, options);
+        ReadStop read = new ReadStop(stop, key, key != null && cache.hasFragment(key));
+        ahead.add(read);
+        if (!read.cached && !pictures(read).isEmpty())
+            toFeed.add(read);
+        return true;
+    }
+
+    private static List<Picture> pictures(ReadStop read) {
+        return RtfUtility.getPictures(read.stop);
+    }
+
+    /**
+     * A <code>Stop</code> as read, with the key of its fragment.
+     */
+    static final class ReadStop {
+
+        final StopWithPictures stop;
+        final String key;
+        final boolean cached;
+
+        ReadStop(StopWithPictures stop, String key, boolean cached) {
+            this.stop = stop;
+            this.key = key;
+            this.cached = cached;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.fieldnotes.utilities;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import java.io.Closeable;
+
+/**
+ * The <code>Stops</code> of a <code>Notebook</code>, each with its <code>Pictures</code>, read
+ * one at a time in the order they go in a document. Lets an export work from a database cursor
+ * without loading the whole notebook at once.
+ */
+public interface StopSource extends Closeable {
+
+    /**
+     * @return The <code>Notebook</code> the <code>Stops</code> belong to.
+     */
+    Notebook getNotebook();
+
+    /**
+     * @return The number of <code>Stops</code> in the notebook.
+     */
+    int getStopCount();
+
+    /**
+     * @return The number of <code>Pictures</code> in the notebook.
+     */
+    int getPictureCount();
+
+    /**
+     * @param index The position of a <code>Stop</code> in the notebook.
+     * @return The number of <code>Pictures</code> of the <code>Stops</code> before it.
+     */
+    int getPictureCountBefore(int index);
+
+    /**
+     * @return The number of characters in the names and notes of all the <code>Stops</code>, to
+     * estimate the size of a document before writing it.
+     */
+    long getTextLength();
+
+    /**
+     * @param index The position of a <code>Stop</code> in the notebook.
+     * @return The <code>unixTime</code> of that <code>Stop</code>, or 0 if there isn't one.
+     */
+    long getStopIdAt(int index);
+
+    /**
+     * Starts reading the <code>Stops</code>, before <code>next</code>. Calling it again starts
+     * over, for a writer that goes through the notebook twice.
+     *
+     * @param first The position of the first <code>Stop</code> to read.
+     */
+    void start(int first);
+
+    /**
+     * Reads the next <code>Stop</code>, with its <code>Pictures</code>.
+     *
+     * @return The <code>Stop</code>, or null if there are no more.
+     */
+    StopWithPictures next();
+
+    /**
+     * Lets go of whatever the source holds open, such as a cursor.
+     */
+    @Override
+    void close();
+}
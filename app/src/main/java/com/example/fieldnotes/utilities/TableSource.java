@@ -0,0 +1,65 @@
+package com.example.fieldnotes.utilities;
+
+import java.io.Closeable;
+
+/**
+ * The rows of one table of the database changed between two times, read one at a time for a
+ * data export. The getters read the row the source is on, which is only good until the next call
+ * to <code>next</code>.
+ */
+public interface TableSource extends Closeable {
+
+    //the types a value can have, the same numbers as Cursor.FIELD_TYPE_*
+    int TYPE_NULL = 0;
+    int TYPE_INTEGER = 1;
+    int TYPE_FLOAT = 2;
+    int TYPE_STRING = 3;
+
+    /**
+     * @return The name of the table in the export: "notebooks", "stops", "pictures" or
+     * "deletions".
+     */
+    String getName();
+
+    /**
+     * @return The names of the columns, in the order of the values of a row. Only known once
+     * <code>start</code> has been called.
+     */
+    String[] getColumnNames();
+
+    /**
+     * @return The number of rows.
+     */
+    int getRowCount();
+
+    /**
+     * Starts reading the rows, before <code>next</code>.
+     */
+    void start();
+
+    /**
+     * Moves on to the next row.
+     *
+     * @return False if there are no more.
+     */
+    boolean next();
+
+    /**
+     * @param column The position of a column.
+     * @return The type of its value in the row: <code>TYPE_NULL</code>,
+     * <code>TYPE_INTEGER</code>, <code>TYPE_FLOAT</code> or <code>TYPE_STRING</code>.
+     */
+    int getType(int column);
+
+    long getLong(int column);
+
+    double getDouble(int column);
+
+    String getString(int column);
+
+    /**
+     * Lets go of whatever the source holds open, such as a cursor.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,56 @@
+package com.example.fieldnotes.database;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the grid and distance math in <code>GeoIndex</code>.
+ */
+public class GeoIndexTest {
+
+    @Test
+    public void pointsInTheSameHundredthOfADegreeShareACell() {
+        assertEquals(GeoIndex.cell(39.9521, -75.1932), GeoIndex.cell(39.9579, -75.1901));
+        assertNotEquals(GeoIndex.cell(39.9521, -75.1932), GeoIndex.cell(39.9621, -75.1932));
+    }
+
+    @Test
+    public void cellsAroundIncludeTheCellOfEveryPointInTheCircle() {
+        double latitude = 39.9526;
+        double longitude = -75.1652;
+        List<Long> cells = GeoIndex.cellsAround(latitude, longitude, 2000);
+        assertNotNull(cells);
+        for (int bearing = 0; bearing < 360; bearing += 15) {
+            //a point just inside the circle in each direction
+            double dLatitude = Math.toDegrees(1990 / 6371008.8) * Math.cos(Math.toRadians(bearing));
+            double dLongitude = Math.toDegrees(1990 / 6371008.8) * Math.sin(Math.toRadians(bearing))
+                    / Math.cos(Math.toRadians(latitude));
+            assertTrue(cells.contains(GeoIndex.cell(latitude + dLatitude, longitude + dLongitude)));
+        }
+    }
+
+    @Test
+    public void cellsAroundWrapAtTheAntimeridian() {
+        List<Long> cells = GeoIndex.cellsAround(0, 179.999, 1000);
+        assertNotNull(cells);
+        assertTrue(cells.contains(GeoIndex.cell(0, 179.999)));
+        assertTrue(cells.contains(GeoIndex.cell(0, -179.999)));
+    }
+
+    @Test
+    public void largeOrPolarSearchesHaveTooManyCells() {
+        assertNull(GeoIndex.cellsAround(39.9526, -75.1652, 100000));
+        assertNull(GeoIndex.cellsAround(89.999, 0, 1000));
+    }
+
+    @Test
+    public void distanceMatchesKnownValue() {
+        //Philadelphia City Hall to the Liberty Bell, about 1.2 km
+        double distance = GeoIndex.distance(39.9526, -75.1635, 39.9496, -75.1503);
+        assertEquals(1170, distance, 60);
+        assertEquals(0, GeoIndex.distance(10, 10, 10, 10), 1e-9);
+    }
+}
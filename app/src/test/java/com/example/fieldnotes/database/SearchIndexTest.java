@@ -0,0 +1,66 @@
+package com.example.fieldnotes.database;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the parts of <code>SearchIndex</code> that don't need a database: turning
+ * what the user typed into an FTS query, and scoring a <code>matchinfo</code> blob.
+ */
+public class SearchIndexTest {
+
+    @Test
+    public void wordsAreLowercasedAndLastWordIsAPrefix() {
+        assertEquals("oak tree*", SearchIndex.toMatchExpression("Oak Tree"));
+    }
+
+    @Test
+    public void punctuationAndOperatorsAreNotFtsSyntax() {
+        assertEquals("oak or near ash*", SearchIndex.toMatchExpression("\"oak\" OR NEAR -ash*"));
+    }
+
+    @Test
+    public void onlyAsciiLettersAreLowercased() {
+        //the simple tokenizer leaves non-ASCII letters as they are, so folding them finds nothing
+        assertEquals("\u00dcber stra\u00dfe*", SearchIndex.toMatchExpression("\u00dcber STRA\u00dfE"));
+    }
+
+    @Test
+    public void nonAsciiCharactersStayInTheirWord() {
+        //the simple tokenizer only splits on ASCII, so a curly apostrophe is part of the word
+        assertEquals("don\u2019t caf\u00e9*", SearchIndex.toMatchExpression("Don\u2019t caf\u00e9"));
+    }
+
+    @Test
+    public void nothingToSearchForGivesNull() {
+        assertNull(SearchIndex.toMatchExpression(null));
+        assertNull(SearchIndex.toMatchExpression("  - * \" "));
+    }
+
+    @Test
+    public void hitInNameOutscoresHitInNotes() {
+        //one phrase, three columns, 100 rows; the term is in 10 rows
+        byte[] inName = matchinfo(1, 3, 100, new int[]{1, 10, 10, 0, 0, 10, 0, 0, 10});
+        byte[] inNotes = matchinfo(1, 3, 100, new int[]{0, 0, 10, 1, 10, 10, 0, 0, 10});
+        assertTrue(SearchIndex.score(inName) > SearchIndex.score(inNotes));
+    }
+
+    @Test
+    public void rareTermOutscoresCommonTerm() {
+        byte[] rare = matchinfo(1, 3, 100, new int[]{0, 0, 0, 1, 2, 2, 0, 0, 0});
+        byte[] common = matchinfo(1, 3, 100, new int[]{0, 0, 0, 1, 90, 90, 0, 0, 0});
+        assertTrue(SearchIndex.score(rare) > SearchIndex.score(common));
+    }
+
+    private static byte[] matchinfo(int phrases, int columns, int rows, int[] hits) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (3 + hits.length)).order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases).putInt(columns).putInt(rows);
+        for (int hit : hits)
+            buffer.putInt(hit);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.fieldnotes.services;
+
+import com.example.fieldnotes.utilities.ExportListener;
+import com.example.fieldnotes.utilities.GeoSource;
+import com.example.fieldnotes.utilities.GeoUtility;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of how <code>ExportQueue</code> keeps track of pending and cancelled exports.
+ */
+public class ExportQueueTest {
+
+    private static final long NOTEBOOK = 1556976130000L;
+
+    @Test
+    public void allNotebooksExportRunsToTheEnd() throws IOException {
+        final ExportQueue queue = new ExportQueue();
+        queue.queued(ExportService.ALL_NOTEBOOKS);
+        assertTrue(queue.isPending(ExportService.ALL_NOTEBOOKS));
+
+        //the listener ExportService gives an export, as far as cancelling goes
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoUtility.write(new OneStop(), GeoUtility.GEOJSON, out, new ExportListener() {
+            @Override
+            public boolean isCancelled() {
+                return queue.isCancelled(ExportService.ALL_NOTEBOOKS);
+            }
+
+            @Override
+            public void onStopWritten(int stopsDone, int stops, long stopId, long offset) {
+            }
+
+            @Override
+            public void onPictureWritten(int picturesDone, int pictures) {
+            }
+        });
+        queue.ended(ExportService.ALL_NOTEBOOKS);
+
+        String json = new String(out.toByteArray(), "UTF-8");
+        assertTrue(json.contains("\"coordinates\":[-105.2705,40.015]"));
+        assertTrue(json.trim().endsWith("]}"));
+        assertFalse(queue.isPending(ExportService.ALL_NOTEBOOKS));
+    }
+
+    @Test
+    public void cancellingOneExportLeavesTheOthers() {
+        ExportQueue queue = new ExportQueue();
+        queue.queued(NOTEBOOK);
+        queue.queued(ExportService.ALL_NOTEBOOKS);
+        queue.queued(ExportService.ALL_DATA);
+
+        queue.cancel(NOTEBOOK);
+        assertTrue(queue.isCancelled(NOTEBOOK));
+        assertFalse(queue.isCancelled(ExportService.ALL_NOTEBOOKS));
+        assertFalse(queue.isCancelled(ExportService.ALL_DATA));
+
+        queue.cancel(ExportService.ALL_NOTEBOOKS);
+        assertTrue(queue.isCancelled(ExportService.ALL_NOTEBOOKS));
+
+        queue.ended(NOTEBOOK);
+        assertFalse(queue.isCancelled(NOTEBOOK));
+        assertTrue(queue.isCancelled(ExportService.ALL_NOTEBOOKS));
+    }
+
+    @Test
+    public void cancellingNothingDoesntCancelTheNextExport() {
+        ExportQueue queue = new ExportQueue();
+        queue.cancel(ExportService.ALL_NOTEBOOKS);
+        queue.queued(ExportService.ALL_NOTEBOOKS);
+        assertFalse(queue.isCancelled(ExportService.ALL_NOTEBOOKS));
+    }
+
+    @Test
+    public void askingAgainTakesTheCancellationBack() {
+        ExportQueue queue = new ExportQueue();
+        queue.queued(NOTEBOOK);
+        queue.cancel(NOTEBOOK);
+        queue.queued(NOTEBOOK);
+        assertFalse(queue.isCancelled(NOTEBOOK));
+        assertTrue(queue.isPending(NOTEBOOK));
+    }
+
+    @Test
+    public void secondExportOfTheSameIdStaysPendingAndCancellable() {
+        ExportQueue queue = new ExportQueue();
+        queue.queued(NOTEBOOK);
+        queue.queued(NOTEBOOK);
+
+        queue.ended(NOTEBOOK);
+        assertTrue(queue.isPending(NOTEBOOK));
+        queue.cancel(NOTEBOOK);
+        assertTrue(queue.isCancelled(NOTEBOOK));
+
+        queue.ended(NOTEBOOK);
+        assertFalse(queue.isPending(NOTEBOOK));
+        assertFalse(queue.isCancelled(NOTEBOOK));
+    }
+
+    @Test
+    public void cancellationStandsUntilTheLastExportOfTheIdEnds() {
+        ExportQueue queue = new ExportQueue();
+        queue.queued(NOTEBOOK);
+        queue.queued(NOTEBOOK);
+        queue.cancel(NOTEBOOK);
+
+        queue.ended(NOTEBOOK);
+        assertTrue(queue.isCancelled(NOTEBOOK));
+        queue.ended(NOTEBOOK);
+        assertFalse(queue.isCancelled(NOTEBOOK));
+    }
+
+    /**
+     * One located <code>Stop</code> without pictures.
+     */
+    private static class OneStop implements GeoSource {
+
+        private int index = -1;
+
+        @Override
+        public String getName() {
+            return "All notebooks";
+        }
+
+        @Override
+        public int getStopCount() {
+            return 1;
+        }
+
+        @Override
+        public void start() {
+            index = -1;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < 1;
+        }
+
+        @Override
+        public long getStopId() {
+            return NOTEBOOK + 1;
+        }
+
+        @Override
+        public String getStopName() {
+            return "Flagstaff";
+        }
+
+        @Override
+        public String getNotebookName() {
+            return "Boulder";
+        }
+
+        @Override
+        public long getTime() {
+            return NOTEBOOK;
+        }
+
+        @Override
+        public String getNotes() {
+            return null;
+        }
+
+        @Override
+        public double getLatitude() {
+            return 40.015;
+        }
+
+        @Override
+        public double getLongitude() {
+            return -105.2705;
+        }
+
+        @Override
+        public int getPictureCount() {
+            return 0;
+        }
+
+        @Override
+        public String getPicturePath(int index) {
+            return null;
+        }
+
+        @Override
+        public String getPictureCaption(int index) {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the CSV and newline-delimited JSON files <code>DataUtility</code> writes.
+ */
+public class DataUtilityTest {
+
+    @Test
+    public void csvHasAHeaderAndQuotesOnlyWhatItMust() throws IOException {
+        Map<String, String> files = write(DataUtility.CSV, tables());
+        assertEquals("stop_id,stop_name,latitude,notes\r\n"
+                        + "1,Flagstaff,40.015,\"Windy, \"\"cold\"\"\r\nand wet\"\r\n"
+                        + "2,Chautauqua,0.00001,\r\n"
+                        + "3,,,\"\"\r\n",
+                files.get("stops.csv"));
+        assertEquals("table_name,row_id,deleted_time\r\n", files.get("deletions.csv"));
+    }
+
+    @Test
+    public void ndjsonKeepsTypes() throws IOException {
+        Map<String, String> files = write(DataUtility.NDJSON, tables());
+        String[] lines = files.get("stops.ndjson").split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"stop_id\":1,\"stop_name\":\"Flagstaff\",\"latitude\":40.015,"
+                + "\"notes\":\"Windy, \\\"cold\\\"\\r\\nand wet\"}", lines[0]);
+        assertEquals("{\"stop_id\":3,\"stop_name\":null,\"latitude\":null,\"notes\":\"\"}", lines[2]);
+        assertEquals("", files.get("deletions.ndjson"));
+    }
+
+    @Test
+    public void manifestSaysWhatTheExportCovers() throws IOException {
+        Map<String, String> files = write(DataUtility.CSV, tables());
+        assertEquals("{\"format\":\"csv\",\"since\":100,\"until\":200,\"tables\":["
+                        + "{\"name\":\"stops\",\"file\":\"stops.csv\",\"rows\":3},"
+                        + "{\"name\":\"deletions\",\"file\":\"deletions.csv\",\"rows\":0}]}\n",
+                files.get(DataUtility.MANIFEST));
+        assertEquals(Arrays.asList("stops.csv", "deletions.csv", DataUtility.MANIFEST),
+                new ArrayList<>(files.keySet()));
+    }
+
+    @Test
+    public void csvFieldsAreQuotedOnlyWhenNeeded() throws IOException {
+        assertEquals("plain", csv("plain"));
+        assertEquals("\"a,b\"", csv("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", csv("say \"hi\""));
+        assertEquals("\"\"", csv(""));
+        assertEquals("", csv(null));
+    }
+
+    @Test
+    public void numbersThatAreNotFiniteAreLeftOut() {
+        assertNull(DataUtility.number(Double.NaN));
+        assertNull(DataUtility.number(Double.POSITIVE_INFINITY));
+        assertEquals("-105.2705", DataUtility.number(-105.2705));
+    }
+
+    @Test
+    public void cancellingStopsTheExport() throws IOException {
+        try {
+            DataUtility.write(tables(), DataUtility.NDJSON, 0, 1, new ByteArrayOutputStream(), new ExportListener() {
+                @Override
+                public boolean isCancelled() {
+                    return true;
+                }
+
+                @Override
+                public void onStopWritten(int stopsDone, int stops, long stopId, long offset) {
+                }
+
+                @Override
+                public void onPictureWritten(int picturesDone, int pictures) {
+                }
+            });
+            fail("The export should have been cancelled");
+        } catch (ExportCancelledException e) {
+            //expected
+        }
+    }
+
+    private static List<TableSource> tables() {
+        ListTableSource stops = new ListTableSource("stops", "stop_id", "stop_name", "latitude", "notes");
+        stops.add(1L, "Flagstaff", 40.015, "Windy, \"cold\"\r\nand wet");
+        stops.add(2L, "Chautauqua", 0.00001, null);
+        stops.add(3L, null, Double.NaN, "");
+        ListTableSource deletions = new ListTableSource("deletions", "table_name", "row_id", "deleted_time");
+        List<TableSource> tables = new ArrayList<>();
+        tables.add(stops);
+        tables.add(deletions);
+        return tables;
+    }
+
+    /**
+     * Writes tables and reads the zip back.
+     *
+     * @return The text of each entry, by name, in the order of the zip.
+     */
+    private static Map<String, String> write(String format, List<TableSource> tables) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataUtility.write(tables, format, 100, 200, out, null);
+
+        Map<String, String> files = new LinkedHashMap<>();
+        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = zip.read(buffer)) > 0)
+                text.write(buffer, 0, read);
+            files.put(entry.getName(), new String(text.toByteArray(), "UTF-8"));
+        }
+        return files;
+    }
+
+    private static String csv(String text) throws IOException {
+        StringWriter writer = new StringWriter();
+        DataUtility.csvString(writer, text);
+        return writer.toString();
+    }
+
+    /**
+     * Rows from a list; the type of each value is that of the object holding it.
+     */
+    private static class ListTableSource implements TableSource {
+
+        private final String name;
+        private final String[] columns;
+        private final List<Object[]> rows = new ArrayList<>();
+        private int index = -1;
+
+        ListTableSource(String name, String... columns) {
+            this.name = name;
+            this.columns = columns;
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return columns;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public void start() {
+            index = -1;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < rows.size();
+        }
+
+        @Override
+        public int getType(int column) {
+            Object value = rows.get(index)[column];
+            if (value == null)
+                return TYPE_NULL;
+            if (value instanceof Long)
+                return TYPE_INTEGER;
+            if (value instanceof Double)
+                return TYPE_FLOAT;
+            return TYPE_STRING;
+        }
+
+        @Override
+        public long getLong(int column) {
+            return (Long) rows.get(index)[column];
+        }
+
+        @Override
+        public double getDouble(int column) {
+            return (Double) rows.get(index)[column];
+        }
+
+        @Override
+        public String getString(int column) {
+            return (String) rows.get(index)[column];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
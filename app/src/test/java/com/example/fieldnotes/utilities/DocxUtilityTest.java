@@ -0,0 +1,166 @@
+package com.example.fieldnotes.utilities;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the DOCX documents <code>DocxUtility</code> writes.
+ */
+public class DocxUtilityTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void picturesAreStoredAsTheyAre() throws IOException {
+        byte[] inMemory = new byte[5000];
+        new Random(3).nextBytes(inMemory);
+        byte[] inFile = new byte[7000];
+        new Random(4).nextBytes(inFile);
+        File file = folder.newFile("picture.jpg");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(inFile);
+        out.close();
+
+        //made by hand, so nothing is decoded: the sizes are whatever the pipeline would have found
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        DocxUtility.Media first = DocxUtility.writeMedia(zip, new PicturePipeline.PreparedPicture(
+                new Picture(11, "/compressed.jpg", ""), 100, 50, null, inMemory), 1);
+        DocxUtility.Media second = DocxUtility.writeMedia(zip, new PicturePipeline.PreparedPicture(
+                new Picture(12, file.getAbsolutePath(), ""), 40, 30, file, null), 2);
+        zip.close();
+
+        assertEquals(1, first.entry);
+        assertEquals(100, first.width);
+        assertEquals(50, first.height);
+        assertEquals(2, second.entry);
+
+        Map<String, byte[]> entries = unzip(bytes.toByteArray());
+        assertEquals(Arrays.asList("word/media/image1.jpeg", "word/media/image2.jpeg"),
+                new ArrayList<>(entries.keySet()));
+        assertArrayEquals(inMemory, entries.get("word/media/image1.jpeg"));
+        assertArrayEquals(inFile, entries.get("word/media/image2.jpeg"));
+    }
+
+    @Test
+    public void picturesAreMatchedByIdNotPosition() throws IOException {
+        //the first pass wrote pictures 11 and 12; since then 13 was added ahead of them
+        Map<Long, DocxUtility.Media> media = new HashMap<>();
+        media.put(11L, new DocxUtility.Media(1, 100, 50));
+        media.put(12L, new DocxUtility.Media(2, 40, 30));
+        NotebookWithStopsAndPictures notebook = notebook("Notes",
+                new Picture(13, "/pictures/13.jpg", "Added"), new Picture(11, "/pictures/11.jpg", "First"));
+        StopWithPictures stop = new StopWithPictures();
+        stop.setStop(new Stop(20, "Second stop", 1, null, 0, 0));
+        stop.setPictures(new ArrayList<>(Arrays.asList(new Picture(12, "/pictures/12.jpg", "Second"))));
+        notebook.getStops().add(stop);
+
+        StringWriter writer = new StringWriter();
+        DocxUtility.writeDocument(new ListStopSource(notebook), writer, media, null);
+        String document = writer.toString();
+
+        assertFalse(document.contains("Added"));
+        //100 by 50 pixels, at 4 twips of 635 EMUs each
+        int first = document.indexOf("<wp:extent cx=\"254000\" cy=\"127000\"/>");
+        int second = document.indexOf("<wp:extent cx=\"101600\" cy=\"76200\"/>");
+        assertTrue(first >= 0);
+        assertTrue(document.indexOf("r:embed=\"rId1\"") > first);
+        assertTrue(document.indexOf("First") > first);
+        assertTrue(document.indexOf("Second stop") > document.indexOf("First"));
+        assertTrue(second > document.indexOf("Second stop"));
+        assertTrue(document.indexOf("r:embed=\"rId2\"") > second);
+    }
+
+    @Test
+    public void missingPicturesAreLeftOut() throws IOException {
+        NotebookWithStopsAndPictures notebook = notebook("Notes", new Picture(11, "/none/picture.jpg", "Gone"));
+        Map<String, byte[]> entries = unzip(notebook);
+
+        assertFalse(entries.containsKey("word/media/image1.jpeg"));
+        String document = new String(entries.get("word/document.xml"), "UTF-8");
+        assertFalse(document.contains("<w:drawing>"));
+        assertFalse(document.contains("Gone"));
+    }
+
+    @Test
+    public void textIsEscaped() throws IOException {
+        NotebookWithStopsAndPictures notebook = notebook("<b> & caf\u00e9\nnext\tline\u0007");
+        String document = new String(unzip(notebook).get("word/document.xml"), "UTF-8");
+
+        assertTrue(document.contains("&lt;b&gt; &amp; caf\u00e9</w:t><w:br/><w:t xml:space=\"preserve\">next"
+                + "</w:t><w:tab/><w:t xml:space=\"preserve\">line</w:t>"));
+    }
+
+    private static NotebookWithStopsAndPictures notebook(String notes, Picture... pictures) {
+        StopWithPictures stop = new StopWithPictures();
+        stop.setStop(new Stop(10, "Stop", 1, notes, 0, 0));
+        stop.setPictures(new ArrayList<>(Arrays.asList(pictures)));
+        List<StopWithPictures> stops = new ArrayList<>();
+        stops.add(stop);
+
+        NotebookWithStopsAndPictures notebook = new NotebookWithStopsAndPictures();
+        notebook.setNotebook(new Notebook(1, "Notebook"));
+        notebook.setStops(stops);
+        return notebook;
+    }
+
+    private static Map<String, byte[]> unzip(NotebookWithStopsAndPictures notebook) throws IOException {
+        ByteArrayOutputStream docx = new ByteArrayOutputStream();
+        DocxUtility.writeDOCX(notebook, new ExportOptions(), docx);
+        return unzip(docx.toByteArray());
+    }
+
+    /**
+     * Reads every entry of a zip, checking that the pictures are stored. Reading a stored entry
+     * checks its CRC-32 against its data.
+     */
+    private static Map<String, byte[]> unzip(byte[] bytes) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes));
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.getName().startsWith("word/media/"))
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+            entries.put(entry.getName(), read(zip));
+        }
+        zip.close();
+        return entries;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            bytes.write(buffer, 0, read);
+        return bytes.toByteArray();
+    }
+}
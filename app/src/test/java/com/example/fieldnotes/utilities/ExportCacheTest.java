@@ -0,0 +1,137 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the keys, storage and eviction of <code>ExportCache</code>, for both
+ * pictures and fragments.
+ */
+public class ExportCacheTest {
+
+    //a 1000 byte picture makes a 1012 byte entry
+    private static final int ENTRY = 1012;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void entriesComeBackAsTheyWereStored() throws IOException {
+        ExportCache cache = new ExportCache(folder.newFolder(), ExportCache.DEFAULT_MAX_BYTES);
+        byte[] jpeg = picture(1000, 7);
+        cache.put("a", 1600, 1200, jpeg);
+
+        ExportCache.Entry entry = cache.get("a");
+        assertNotNull(entry);
+        assertEquals(1600, entry.width);
+        assertEquals(1200, entry.height);
+        assertArrayEquals(jpeg, entry.jpeg);
+        assertNull(cache.get("b"));
+        assertEquals(ENTRY, cache.getSize());
+    }
+
+    @Test
+    public void theLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        ExportCache cache = new ExportCache(folder.newFolder(), 3 * ENTRY);
+        cache.put("a", 1, 1, picture(1000, 1));
+        cache.put("b", 1, 1, picture(1000, 2));
+        cache.put("c", 1, 1, picture(1000, 3));
+        assertNotNull(cache.get("a")); //b is now the least recently used
+
+        cache.put("d", 1, 1, picture(1000, 4));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(3 * ENTRY, cache.getSize());
+
+        cache.setMaxBytes(ENTRY);
+        assertEquals(ENTRY, cache.getSize());
+        assertNotNull(cache.get("d"));
+    }
+
+    @Test
+    public void entriesSurviveReopening() throws IOException {
+        File directory = folder.newFolder();
+        new ExportCache(directory, ExportCache.DEFAULT_MAX_BYTES).put("a", 2, 3, picture(1000, 5));
+
+        ExportCache reopened = new ExportCache(directory, ExportCache.DEFAULT_MAX_BYTES);
+        assertEquals(ENTRY, reopened.getSize());
+        ExportCache.Entry entry = reopened.get("a");
+        assertNotNull(entry);
+        assertEquals(2, entry.width);
+        assertArrayEquals(picture(1000, 5), entry.jpeg);
+    }
+
+    @Test
+    public void damagedEntriesAreMisses() throws IOException {
+        File directory = folder.newFolder();
+        FileOutputStream out = new FileOutputStream(new File(directory, "a"));
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+        out.close();
+
+        ExportCache cache = new ExportCache(directory, ExportCache.DEFAULT_MAX_BYTES);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+        assertFalse(new File(directory, "a").exists());
+    }
+
+    @Test
+    public void fragmentsAreOnlyAddedWhenClosed() throws IOException {
+        ExportCache cache = new ExportCache(folder.newFolder(), ExportCache.DEFAULT_MAX_BYTES);
+        String key = ExportCache.hash("fragment");
+
+        ExportCache.Fragment aborted = cache.newFragment(key);
+        aborted.write("{\\pard half\\par}");
+        aborted.abort();
+        assertFalse(cache.hasFragment(key));
+        assertNull(cache.getFragment(key));
+
+        ExportCache.Fragment fragment = cache.newFragment(key);
+        fragment.write("{\\pard caf\u00e9\\par}");
+        fragment.close();
+        assertTrue(cache.hasFragment(key));
+
+        Reader reader = cache.getFragment(key);
+        StringBuilder text = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1)
+            text.append((char) c);
+        reader.close();
+        assertEquals("{\\pard caf\u00e9\\par}", text.toString());
+    }
+
+    @Test
+    public void keysChangeWithTheFileAndTheSettings() throws IOException {
+        File file = folder.newFile("picture.jpg");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(picture(1000, 6));
+        out.close();
+
+        String key = ExportCache.key(file, 1, 50, 1600, 0);
+        assertEquals(40, key.length());
+        assertEquals(key, ExportCache.key(file, 1, 50, 1600, 0));
+        assertNotEquals(key, ExportCache.key(file, 6, 50, 1600, 0));
+        assertNotEquals(key, ExportCache.key(file, 1, 80, 1600, 0));
+        assertNotEquals(key, ExportCache.key(file, 1, 50, 2048, 0));
+        assertNotEquals(key, ExportCache.key(file, 1, 50, 1600, 500000));
+
+        file.setLastModified(file.lastModified() - 60000);
+        assertNotEquals(key, ExportCache.key(file, 1, 50, 1600, 0));
+    }
+
+    private static byte[] picture(int length, int seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the GeoJSON, KML and GPX documents <code>GeoUtility</code> writes.
+ */
+public class GeoUtilityTest {
+
+    //2019-05-04T13:22:10Z
+    private static final long TIME = 1556976130000L;
+
+    @Test
+    public void geoJsonPutsLongitudeFirst() throws IOException {
+        String json = write(GeoUtility.GEOJSON, source());
+        assertTrue(json.startsWith("{\"type\":\"FeatureCollection\",\"features\":["));
+        assertTrue(json.contains("\"id\":1,\"geometry\":{\"type\":\"Point\",\"coordinates\":[-105.2705,40.015]}"));
+        assertTrue(json.contains("\"time\":\"2019-05-04T13:22:10Z\""));
+        assertTrue(json.contains("\"pictures\":[{\"path\":\"/pictures/a.jpg\",\"caption\":\"A \\\"peak\\\"\"}]"));
+        assertTrue(json.contains("\"notes\":null,\"pictures\":[]"));
+        assertTrue(json.trim().endsWith("]}"));
+    }
+
+    @Test
+    public void geoJsonEscapesText() throws IOException {
+        StringWriter writer = new StringWriter();
+        GeoUtility.jsonString(writer, "a\\b\n\u0001");
+        assertEquals("\"a\\\\b\\n\\u0001\"", writer.toString());
+    }
+
+    @Test
+    public void kmlIsWellFormed() throws Exception {
+        Document kml = parse(write(GeoUtility.KML, source()));
+        NodeList placemarks = kml.getElementsByTagName("Placemark");
+        assertEquals(2, placemarks.getLength());
+        Element first = (Element) placemarks.item(0);
+        assertEquals("stop1", first.getAttribute("id"));
+        assertEquals("Flagstaff <Summit> & Trail", text(first, "name"));
+        assertEquals("-105.2705,40.015", text(first, "coordinates"));
+        assertEquals("2019-05-04T13:22:10Z", text(first, "when"));
+    }
+
+    @Test
+    public void gpxIsWellFormed() throws Exception {
+        Document gpx = parse(write(GeoUtility.GPX, source()));
+        NodeList waypoints = gpx.getElementsByTagName("wpt");
+        assertEquals(2, waypoints.getLength());
+        Element first = (Element) waypoints.item(0);
+        assertEquals("40.015", first.getAttribute("lat"));
+        assertEquals("-105.2705", first.getAttribute("lon"));
+        assertEquals("Boulder", text(first, "type"));
+        assertEquals("A \"peak\"", text(first, "text"));
+        assertTrue(((Element) first.getElementsByTagName("link").item(0)).getAttribute("href").startsWith("file:"));
+    }
+
+    @Test
+    public void tinyCoordinatesHaveNoExponent() {
+        assertEquals("0.00001", GeoUtility.coordinate(0.00001));
+        assertEquals("-179.9999999", GeoUtility.coordinate(-179.9999999));
+    }
+
+    @Test
+    public void cancellingStopsTheExport() throws IOException {
+        try {
+            GeoUtility.write(source(), GeoUtility.GPX, new ByteArrayOutputStream(), new ExportListener() {
+                @Override
+                public boolean isCancelled() {
+                    return true;
+                }
+
+                @Override
+                public void onStopWritten(int stopsDone, int stops, long stopId, long offset) {
+                }
+
+                @Override
+                public void onPictureWritten(int picturesDone, int pictures) {
+                }
+            });
+            fail("The export should have been cancelled");
+        } catch (ExportCancelledException e) {
+            //expected
+        }
+    }
+
+    private static ListGeoSource source() {
+        ListGeoSource source = new ListGeoSource();
+        source.add(new Row(1, "Flagstaff <Summit> & Trail", "Boulder", "Windy\n\u0007", 40.015, -105.2705,
+                "/pictures/a.jpg", "A \"peak\""));
+        source.add(new Row(2, "Chautauqua", "Boulder", null, 39.999, -105.281));
+        return source;
+    }
+
+    private static String write(String format, GeoSource source) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoUtility.write(source, format, out, null);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    private static Document parse(String xml) throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+
+    private static String text(Element element, String tag) {
+        return element.getElementsByTagName(tag).item(0).getTextContent();
+    }
+
+    private static class Row {
+
+        final long id;
+        final String name;
+        final String notebook;
+        final String notes;
+        final double latitude;
+        final double longitude;
+        final String[] pictures;
+
+        Row(long id, String name, String notebook, String notes, double latitude, double longitude, String... pictures) {
+            this.id = id;
+            this.name = name;
+            this.notebook = notebook;
+            this.notes = notes;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.pictures = pictures;
+        }
+    }
+
+    /**
+     * Stops from a list; the pictures of a row are its paths and captions in turn.
+     */
+    private static class ListGeoSource implements GeoSource {
+
+        private final List<Row> rows = new ArrayList<>();
+        private int index = -1;
+
+        void add(Row row) {
+            rows.add(row);
+        }
+
+        @Override
+        public String getName() {
+            return "Boulder";
+        }
+
+        @Override
+        public int getStopCount() {
+            return rows.size();
+        }
+
+        @Override
+        public void start() {
+            index = -1;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < rows.size();
+        }
+
+        @Override
+        public long getStopId() {
+            return rows.get(index).id;
+        }
+
+        @Override
+        public String getStopName() {
+            return rows.get(index).name;
+        }
+
+        @Override
+        public String getNotebookName() {
+            return rows.get(index).notebook;
+        }
+
+        @Override
+        public long getTime() {
+            return TIME;
+        }
+
+        @Override
+        public String getNotes() {
+            return rows.get(index).notes;
+        }
+
+        @Override
+        public double getLatitude() {
+            return rows.get(index).latitude;
+        }
+
+        @Override
+        public double getLongitude() {
+            return rows.get(index).longitude;
+        }
+
+        @Override
+        public int getPictureCount() {
+            return rows.get(index).pictures.length / 2;
+        }
+
+        @Override
+        public String getPicturePath(int index) {
+            return rows.get(this.index).pictures[index * 2];
+        }
+
+        @Override
+        public String getPictureCaption(int index) {
+            return rows.get(this.index).pictures[index * 2 + 1];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
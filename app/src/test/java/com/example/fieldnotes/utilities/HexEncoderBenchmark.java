@@ -0,0 +1,102 @@
+package com.example.fieldnotes.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of <code>HexEncoder</code> against the one-byte-at-a-time encoding RtfUtility
+ * used before it, on pictures of 1, 5 and 20 MB. Both write through a <code>BufferedWriter</code>
+ * into a writer that throws the characters away, so only the encoding is measured.
+ *
+ * This is not a JUnit test, so it doesn't slow down the unit tests; run main from the IDE, with
+ * the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HexEncoderBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int megabytes;
+
+    private byte[] picture;
+    private HexEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        picture = new byte[megabytes * 1024 * 1024];
+        new Random(7).nextBytes(picture);
+        encoder = new HexEncoder(128, "\n");
+    }
+
+    @Benchmark
+    public void perByte() throws IOException {
+        BufferedWriter writer = new BufferedWriter(new NullWriter());
+        int temp;
+        InputStream imageIP = new ByteArrayInputStream(picture);
+        while ((temp = imageIP.read()) != -1) {
+            String hexString = Integer.toHexString(temp);
+            if (hexString.length() == 1)
+                hexString = "0" + hexString;
+            writer.append(hexString);
+        }
+        writer.flush();
+    }
+
+    @Benchmark
+    public void hexEncoder() throws IOException {
+        BufferedWriter writer = new BufferedWriter(new NullWriter());
+        encoder.encode(picture, writer);
+        writer.flush();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HexEncoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Counts what it is given, and keeps none of it.
+     */
+    private static class NullWriter extends Writer {
+
+        private long written;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            written += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of <code>HexEncoder</code>, checked against the one-byte-at-a-time encoding
+ * it replaced.
+ */
+public class HexEncoderTest {
+
+    @Test
+    public void everyByteIsTwoLowercaseDigits() throws IOException {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < 256; i++)
+            bytes[i] = (byte) i;
+
+        StringWriter out = new StringWriter();
+        new HexEncoder().encode(bytes, out);
+        assertEquals(slowHex(bytes), out.toString());
+        assertTrue(out.toString().startsWith("000102"));
+        assertTrue(out.toString().endsWith("fdfeff"));
+    }
+
+    @Test
+    public void inputsLongerThanABlockComeOutWhole() throws IOException {
+        byte[] bytes = randomBytes(10000);
+
+        StringWriter fromArray = new StringWriter();
+        new HexEncoder(0, "", 64).encode(bytes, fromArray);
+        StringWriter fromStream = new StringWriter();
+        new HexEncoder(0, "", 64).encode(new ByteArrayInputStream(bytes), fromStream);
+
+        assertEquals(slowHex(bytes), fromArray.toString());
+        assertEquals(slowHex(bytes), fromStream.toString());
+    }
+
+    @Test
+    public void linesAreWrappedAtTheLineLength() throws IOException {
+        byte[] bytes = randomBytes(1000);
+
+        StringWriter out = new StringWriter();
+        new HexEncoder(30, "\r\n", 64).encode(new ByteArrayInputStream(bytes), out);
+        String[] lines = out.toString().split("\r\n", -1);
+
+        assertEquals(67, lines.length); //2000 digits, 30 to a line
+        for (int i = 0; i < lines.length - 1; i++)
+            assertEquals(30, lines[i].length());
+        assertEquals(20, lines[lines.length - 1].length());
+        assertEquals(slowHex(bytes), out.toString().replace("\r\n", ""));
+    }
+
+    @Test
+    public void anEncoderCanBeReused() throws IOException {
+        HexEncoder encoder = new HexEncoder(8, "\n");
+        StringWriter first = new StringWriter();
+        encoder.encode(new byte[]{1, 2, 3, 4, 5}, first);
+        StringWriter second = new StringWriter();
+        encoder.encode(new byte[]{(byte) 0xab, (byte) 0xcd}, second);
+
+        assertEquals("01020304\n05", first.toString());
+        assertEquals("abcd", second.toString());
+    }
+
+    @Test
+    public void nothingIsWrittenForNoBytes() throws IOException {
+        StringWriter out = new StringWriter();
+        new HexEncoder(8, "\n").encode(new byte[0], out);
+        assertEquals("", out.toString());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(11).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * The encoding RtfUtility used before HexEncoder.
+     */
+    static String slowHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            String hexString = Integer.toHexString(b & 0xff);
+            if (hexString.length() == 1)
+                hexString = "0" + hexString;
+            hex.append(hexString);
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of how <code>PdfUtility</code> sizes pictures on its pages.
+ */
+public class PdfUtilityTest {
+
+    @Test
+    public void bigPicturesFitThePage() {
+        float scale = PdfUtility.fit(4000, 3000, PdfUtility.CONTENT_WIDTH, PdfUtility.MAX_PICTURE_HEIGHT);
+        assertEquals(PdfUtility.CONTENT_WIDTH, 4000 * scale, 0.01);
+        assertTrue(3000 * scale <= PdfUtility.MAX_PICTURE_HEIGHT);
+
+        scale = PdfUtility.fit(3000, 4000, PdfUtility.CONTENT_WIDTH, PdfUtility.MAX_PICTURE_HEIGHT);
+        assertEquals(PdfUtility.MAX_PICTURE_HEIGHT, 4000 * scale, 0.01);
+        assertTrue(3000 * scale <= PdfUtility.CONTENT_WIDTH);
+    }
+
+    @Test
+    public void smallPicturesAreNotBlownUp() {
+        assertEquals(1, PdfUtility.fit(100, 50, PdfUtility.CONTENT_WIDTH, PdfUtility.MAX_PICTURE_HEIGHT), 0);
+    }
+
+    @Test
+    public void picturesAreDecodedAtPageResolution() {
+        //a landscape picture takes the width of the page
+        assertEquals(PdfUtility.CONTENT_WIDTH * PdfUtility.PIXELS_PER_POINT,
+                PdfUtility.getDecodeLongEdge(4000, 3000, 0));
+        //a portrait one takes the height it is allowed
+        assertEquals(PdfUtility.MAX_PICTURE_HEIGHT * PdfUtility.PIXELS_PER_POINT,
+                PdfUtility.getDecodeLongEdge(3000, 4000, 0));
+        assertEquals(800, PdfUtility.getDecodeLongEdge(4000, 3000, 800));
+        //never more pixels than the file has
+        assertEquals(600, PdfUtility.getDecodeLongEdge(600, 400, 0));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PDF files <code>PdfWriter</code> writes, and of what it can write.
+ */
+public class PdfWriterTest {
+
+    @Test
+    public void crossReferencesPointAtTheirObjects() throws IOException {
+        String pdf = write();
+
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+
+        Matcher startxref = Pattern.compile("startxref\n(\\d+)\n%%EOF\n$").matcher(pdf);
+        assertTrue(startxref.find());
+        int xref = Integer.parseInt(startxref.group(1));
+        assertTrue(pdf.startsWith("xref\n", xref));
+
+        Matcher entry = Pattern.compile("(\\d{10}) 00000 n \n").matcher(pdf.substring(xref));
+        int objects = 0;
+        while (entry.find()) {
+            objects++;
+            int offset = Integer.parseInt(entry.group(1));
+            assertTrue("object " + objects, pdf.startsWith(objects + " 0 obj\n", offset));
+        }
+        assertTrue(pdf.contains("/Size " + (objects + 1) + " "));
+    }
+
+    @Test
+    public void pagesAndPicturesAreWritten() throws IOException {
+        String pdf = write();
+
+        assertTrue(pdf.contains("/Type /Pages /Kids ["));
+        assertTrue(pdf.contains("/Count 2 >>"));
+        assertTrue(pdf.contains("/Filter /DCTDecode /Length 4 >>\nstream\n\u00ff\u00d8\u00ff\u00d9\nendstream"));
+        assertTrue(pdf.contains("/Width 40 /Height 30 "));
+    }
+
+    @Test
+    public void textIsEscaped() throws IOException {
+        String pdf = write();
+        String start = "/Filter /FlateDecode >>\nstream\n";
+        int from = pdf.indexOf(start) + start.length();
+        byte[] compressed = pdf.substring(from, pdf.indexOf("\nendstream", from)).getBytes("ISO-8859-1");
+        InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0)
+            content.write(b);
+
+        assertEquals("BT /F2 16 Tf 54 722 Td (Flagstaff \\(north\\) \\\\ caf\u00e9) Tj ET\n",
+                new String(content.toByteArray(), "ISO-8859-1"));
+    }
+
+    @Test
+    public void emptyDocumentGetsAPage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PdfWriter(out, 612, 792).finish();
+        assertTrue(new String(out.toByteArray(), "ISO-8859-1").contains("/Count 1 >>"));
+    }
+
+    @Test
+    public void onlyWesternTextIsEncoded() {
+        assertTrue(PdfWriter.canEncode("Caf\u00e9 (\u20ac5) \u201cnotes\u201d"));
+        assertFalse(PdfWriter.canEncode("\u4e2d\u6587"));
+        assertFalse(PdfWriter.canEncode("\u0141\u00f3d\u017a"));
+    }
+
+    @Test
+    public void widthsComeFromTheFonts() {
+        assertEquals(7.78, PdfWriter.width("m", false, 10), 0.001);
+        assertEquals(8.33, PdfWriter.width("m", true, 10), 0.001);
+        //an accented letter is as wide as the letter
+        assertEquals(PdfWriter.width("e", false, 12), PdfWriter.width("\u00e9", false, 12), 0.001);
+    }
+
+    @Test
+    public void numbersIgnoreTheLocale() {
+        assertEquals("612", PdfWriter.number(612));
+        assertEquals("0.5", PdfWriter.number(0.5f));
+        assertEquals("-1.25", PdfWriter.number(-1.25f));
+    }
+
+    /**
+     * Writes two pages, the first with text that needs escaping and the second with a picture.
+     */
+    private static String write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PdfWriter pdf = new PdfWriter(out, 612, 792);
+        pdf.startPage();
+        pdf.text("Flagstaff (north) \\ caf\u00e9", true, 16, 54, 70);
+        pdf.finishPage();
+        pdf.startPage();
+        pdf.jpeg(new byte[]{(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xd9}, 40, 30, 54, 54, 40, 30);
+        pdf.finishPage();
+        pdf.finish();
+        return new String(out.toByteArray(), "ISO-8859-1");
+    }
+}
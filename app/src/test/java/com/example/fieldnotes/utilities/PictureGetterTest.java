@@ -0,0 +1,32 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of how far <code>PictureGetter</code> samples pictures down when decoding
+ * them for an export.
+ */
+public class PictureGetterTest {
+
+    @Test
+    public void sampleSizeKeepsTheLongEdgeAtLeastTheTarget() {
+        assertEquals(2, PictureGetter.getSampleSize(4000, 3000, 1600)); //2000 px
+        assertEquals(4, PictureGetter.getSampleSize(8000, 6000, 1600)); //2000 px
+        assertEquals(2, PictureGetter.getSampleSize(3000, 4000, 1600)); //portrait, the same
+        assertEquals(4, PictureGetter.getSampleSize(6400, 4800, 1600)); //exactly 1600 px
+    }
+
+    @Test
+    public void smallPicturesAreNotSampled() {
+        assertEquals(1, PictureGetter.getSampleSize(1600, 1200, 1600));
+        assertEquals(1, PictureGetter.getSampleSize(3199, 2400, 1600));
+        assertEquals(1, PictureGetter.getSampleSize(640, 480, 1600));
+    }
+
+    @Test
+    public void noTargetMeansFullResolution() {
+        assertEquals(1, PictureGetter.getSampleSize(8000, 6000, 0));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.fieldnotes.utilities;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of cancelling, resuming and streaming <code>RtfUtility.writeRTF</code>, with
+ * <code>Stops</code> that have no pictures.
+ */
+public class RtfUtilityTest {
+
+    private static final long NOTEBOOK = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void aResumedExportWritesTheSameDocument() throws IOException {
+        NotebookWithStopsAndPictures notebook = notebook(5);
+        File whole = folder.newFile();
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(whole)));
+        RtfUtility.generateRichText(notebook, new ExportOptions(), writer);
+        writer.close();
+
+        ExportCheckpoint checkpoint = new ExportCheckpoint(NOTEBOOK, folder.newFile());
+        try {
+            RtfUtility.writeRTF(notebook, new ExportOptions(), checkpoint, new CancelAfter(checkpoint, 3));
+            fail("The export should have been cancelled");
+        } catch (ExportCancelledException e) {
+            //expected
+        }
+        assertEquals(3, checkpoint.getStopsDone());
+        assertTrue(checkpoint.getFile().length() >= checkpoint.getOffset());
+
+        RtfUtility.writeRTF(notebook, new ExportOptions(), checkpoint, new CancelAfter(checkpoint, -1));
+        assertEquals(5, checkpoint.getStopsDone());
+        assertEquals(read(whole), read(checkpoint.getFile()));
+    }
+
+    @Test
+    public void aCheckpointIsOnlyUsedWhileItFits() throws IOException {
+        NotebookWithStopsAndPictures notebook = notebook(5);
+        File file = folder.newFile();
+        ExportCheckpoint checkpoint = new ExportCheckpoint(NOTEBOOK, file);
+        assertFalse(checkpoint.fits(notebook)); //nothing written yet
+
+        checkpoint.update(3, stopId(2), 0);
+        assertTrue(checkpoint.fits(notebook));
+
+        checkpoint.update(3, stopId(1), 0);
+        assertFalse(checkpoint.fits(notebook)); //a Stop before it was deleted
+
+        checkpoint.update(6, stopId(5), 0);
+        assertFalse(checkpoint.fits(notebook)); //more Stops than the notebook has
+
+        checkpoint.update(3, stopId(2), file.length() + 1);
+        assertFalse(checkpoint.fits(notebook)); //the file was cut short
+    }
+
+    @Test
+    public void aStreamedExportWritesTheSameDocument() throws IOException {
+        NotebookWithStopsAndPictures notebook = notebook(5);
+        File whole = folder.newFile();
+        RtfUtility.writeRTF(notebook, new ExportOptions(), new ExportCheckpoint(NOTEBOOK, whole), null);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        RtfUtility.writeRTF(new ListStopSource(notebook), new ExportOptions(), streamed, null);
+        assertEquals(read(whole), streamed.toString());
+    }
+
+    private static NotebookWithStopsAndPictures notebook(int stops) {
+        List<StopWithPictures> list = new ArrayList<>();
+        for (int i = 0; i < stops; i++) {
+            StopWithPictures stop = new StopWithPictures();
+            stop.setStop(new Stop(stopId(i), "Stop " + i, NOTEBOOK, "Notes " + i, 0, 0));
+            stop.setPictures(new ArrayList<Picture>());
+            list.add(stop);
+        }
+        NotebookWithStopsAndPictures notebook = new NotebookWithStopsAndPictures();
+        notebook.setNotebook(new Notebook(NOTEBOOK, "Notebook"));
+        notebook.setStops(list);
+        return notebook;
+    }
+
+    private static long stopId(int i) {
+        return NOTEBOOK + 1 + i;
+    }
+
+    private static String read(File file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file));
+        try {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1)
+                text.append(buffer, 0, read);
+        } finally {
+            reader.close();
+        }
+        return text.toString();
+    }
+
+    /**
+     * Moves a checkpoint along as the export goes, and cancels the export once it has written a
+     * number of <code>Stops</code>.
+     */
+    private static class CancelAfter implements ExportListener {
+
+        private final ExportCheckpoint checkpoint;
+        private final int cancelAt;
+
+        CancelAfter(ExportCheckpoint checkpoint, int cancelAt) {
+            this.checkpoint = checkpoint;
+            this.cancelAt = cancelAt;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return checkpoint.getStopsDone() == cancelAt;
+        }
+
+        @Override
+        public void onStopWritten(int stopsDone, int stops, long stopId, long offset) {
+            checkpoint.update(stopsDone, stopId, offset);
+        }
+
+        @Override
+        public void onPictureWritten(int picturesDone, int pictures) {
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.fieldnotes.utilities;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.NotebookWithStopsAndPictures;
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of writing the text of a notebook through <code>RtfWriter</code> against the
+ * string concatenation RtfUtility used before it, on notebooks of 100 and 1000 stops with long
+ * notes and no pictures. The notes mix plain words with braces, backslashes, line breaks and
+ * accented letters, so the escaping is part of what's measured; the concatenation doesn't escape
+ * at all, so it is the cost to beat, not a document anyone should open.
+ *
+ * This is not a JUnit test, so it doesn't slow down the unit tests; run main from the IDE, with
+ * the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RtfWriterBenchmark {
+
+    private static final String[] WORDS = {"ridge", "north", "creek", "{sample}", "C:\\data",
+            "caf\u00e9", "\u00e9tang", "sch\u00f6n", "\u00bd mile", "line\nbreak", "tab\there"};
+
+    @Param({"100", "1000"})
+    public int stops;
+
+    private NotebookWithStopsAndPictures notebook;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        List<StopWithPictures> list = new ArrayList<>();
+        for (int i = 0; i < stops; i++) {
+            StringBuilder notes = new StringBuilder();
+            for (int j = 0; j < 400; j++)
+                notes.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            StopWithPictures stop = new StopWithPictures();
+            stop.setStop(new Stop(i + 1, "Stop " + i, 1, notes.toString(), 44.97, -93.26));
+            stop.setPictures(new ArrayList<Picture>());
+            list.add(stop);
+        }
+        notebook = new NotebookWithStopsAndPictures();
+        notebook.setNotebook(new Notebook(1, "Benchmark"));
+        notebook.setStops(list);
+    }
+
+    @Benchmark
+    public void concatenation() throws IOException {
+        BufferedWriter writer = new BufferedWriter(new NullWriter());
+        for (StopWithPictures stopWithPictures : notebook.getStops()) {
+            Stop stop = stopWithPictures.getStop();
+            writer.append("{\\pard\\f0\\fs32 " + stop.getStopName() + "\\par}");
+            writer.append("\n");
+            writer.append("{\\pard\\f0\\fs24 " + stop.notes() + "\\par}");
+            writer.append("\n");
+        }
+        writer.flush();
+    }
+
+    @Benchmark
+    public void rtfWriter() throws IOException {
+        RtfWriter writer = new RtfWriter(new NullWriter(), "\n");
+        for (StopWithPictures stopWithPictures : notebook.getStops()) {
+            Stop stop = stopWithPictures.getStop();
+            writer.openGroup().controlWord("pard").controlWord("f", 0).controlWord("fs", 32)
+                    .text(stop.getStopName()).controlWord("par").closeGroup().newline();
+            writer.openGroup().controlWord("pard").controlWord("f", 0).controlWord("fs", 24)
+                    .text(stop.notes()).controlWord("par").closeGroup().newline();
+        }
+        writer.flush();
+    }
+
+    @Benchmark
+    public void wholeDocument() throws IOException {
+        RtfUtility.generateRichText(notebook, new ExportOptions(), new NullWriter());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RtfWriterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Counts what it is given, and keeps none of it.
+     */
+    private static class NullWriter extends Writer {
+
+        private long written;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            written += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
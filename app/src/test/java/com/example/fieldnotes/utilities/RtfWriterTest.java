@@ -0,0 +1,83 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the escaping and control words of <code>RtfWriter</code>.
+ */
+public class RtfWriterTest {
+
+    @Test
+    public void specialCharactersAreEscaped() throws IOException {
+        assertEquals("a\\{b\\}c\\\\d", write("a{b}c\\d"));
+    }
+
+    @Test
+    public void nonAsciiBecomesUnicodeEscapes() throws IOException {
+        //e acute, then a character past 32767, then one outside the BMP (a surrogate pair)
+        assertEquals("caf\\u233?", write("caf\u00e9"));
+        assertEquals("\\u-1?", write("\uffff"));
+        assertEquals("\\u-10179?\\u-8704?", write(new String(Character.toChars(0x1f600))));
+    }
+
+    @Test
+    public void lineBreaksAndTabsBecomeControlWords() throws IOException {
+        assertEquals("one\\line two\\tab three", write("one\r\ntwo\tthree"));
+        assertEquals("a\\line\\line b", write("a\n\nb"));
+    }
+
+    @Test
+    public void controlWordsAreDelimitedOnlyWhenNeeded() throws IOException {
+        StringWriter out = new StringWriter();
+        RtfWriter writer = new RtfWriter(out, "\n");
+        writer.openGroup().controlWord("pard").controlWord("f", 0).controlWord("fs", -24)
+                .text("Name").controlWord("par").closeGroup().newline();
+        writer.openGroup().controlWord("pict").controlWord("picw", 1234567);
+        writer.controlWord("hex");
+        writer.write("ff00");
+        writer.closeGroup().controlWord("page").text("{");
+        writer.flush();
+        assertEquals("{\\pard\\f0\\fs-24 Name\\par}\n{\\pict\\picw1234567\\hex ff00}\\page\\{",
+                out.toString());
+    }
+
+    @Test
+    public void numbersAreWrittenWithoutStrings() throws IOException {
+        StringWriter out = new StringWriter();
+        RtfWriter writer = new RtfWriter(out, "\n", 32);
+        writer.text(0).text(" ").text(-7).text(" ").text(Long.MAX_VALUE).text(" ").text(Long.MIN_VALUE);
+        writer.flush();
+        assertEquals("0 -7 " + Long.MAX_VALUE + " " + Long.MIN_VALUE, out.toString());
+    }
+
+    @Test
+    public void writesBiggerThanTheBufferComeOutInOrder() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        StringWriter out = new StringWriter();
+        RtfWriter writer = new RtfWriter(out, "\n", 32);
+        for (int i = 0; i < 50; i++) {
+            String text = "block " + i + " {" + (i % 2 == 0 ? "short" : "a good deal longer than the thirty-two character buffer") + "}";
+            writer.text(text);
+            expected.append(text.replace("{", "\\{").replace("}", "\\}"));
+            char[] raw = new char[i];
+            java.util.Arrays.fill(raw, 'x');
+            writer.write(raw);
+            expected.append(raw);
+        }
+        writer.flush();
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    private static String write(String text) throws IOException {
+        StringWriter out = new StringWriter();
+        RtfWriter writer = new RtfWriter(out, "\n");
+        writer.text(text);
+        writer.flush();
+        return out.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.fieldnotes.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of how <code>SizeBudget</code> shares out a target size and picks a quality.
+ */
+public class SizeBudgetTest {
+
+    @Test
+    public void picturesShareWhatTheTextLeaves() {
+        long target = 20L * 1024 * 1024;
+        int share = SizeBudget.perPicture(target, 10, 5000, 40, 128, 1);
+        //hex doubles every byte, so 40 pictures of this size have to fit in half the target
+        assertTrue(share * 40L * 2 < target);
+        assertTrue(share * 40L * 2 > target * 8 / 10);
+
+        assertTrue(SizeBudget.perPicture(target, 10, 5000, 80, 128, 1) < share);
+        assertTrue(SizeBudget.perPicture(target, 10, 500000, 40, 128, 1) < share);
+        assertTrue(SizeBudget.perPicture(target, 10, 5000, 40, 128, 2) < share);
+    }
+
+    @Test
+    public void binaryPicturesGetTwiceTheirHexShare() {
+        long target = 20L * 1024 * 1024;
+        int hex = SizeBudget.perPicture(target, 10, 5000, 40, 128, 0);
+        int binary = SizeBudget.perPictureBinary(target, 10, 5000, 40);
+        assertTrue(binary < hex * 2);
+        assertTrue(binary > hex * 2 - 1024);
+        assertTrue(binary * 40L < target);
+    }
+
+    @Test
+    public void aTargetTooSmallStillLeavesThePicturesSomething() {
+        assertEquals(SizeBudget.MIN_PICTURE_BYTES, SizeBudget.perPicture(100000, 10, 5000, 40, 128, 1));
+        assertEquals(SizeBudget.MIN_PICTURE_BYTES, SizeBudget.perPicture(1000, 10, 5000, 40, 128, 1));
+    }
+
+    @Test
+    public void theUsualQualityIsTriedFirst() {
+        CountingProbe probe = new CountingProbe();
+        assertEquals(50, SizeBudget.findQuality(probe, 20, 50, 1000000));
+        assertEquals(1, probe.probes);
+    }
+
+    @Test
+    public void theHighestQualityThatFitsIsFound() {
+        for (int budget = 20000; budget <= 50000; budget += 1000) {
+            CountingProbe probe = new CountingProbe();
+            assertEquals(budget / 1000, SizeBudget.findQuality(probe, 20, 50, budget));
+            assertTrue(probe.probes <= 7);
+        }
+        assertEquals(19, SizeBudget.findQuality(new CountingProbe(), 20, 50, 19999));
+    }
+
+    @Test
+    public void shrinkingBringsThePictureUnderItsShare() {
+        assertEquals(1, SizeBudget.shrink(1000, 1000), 0);
+        float scale = SizeBudget.shrink(4000, 1000);
+        assertTrue(scale < 0.5f);
+        //size goes with the pixels, so with the square of the scale
+        assertTrue(4000 * scale * scale <= 1000);
+    }
+
+    /**
+     * A picture that takes a thousand bytes per point of quality.
+     */
+    private static class CountingProbe implements SizeBudget.Probe {
+
+        int probes;
+
+        @Override
+        public long bytesAt(int quality) {
+            probes++;
+            return quality * 1000L;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.fieldnotes.utilities;
+
+import com.example.fieldnotes.java.Notebook;
+import com.example.fieldnotes.java.Picture;
+import com.example.fieldnotes.java.Stop;
+import com.example.fieldnotes.java.StopWithPictures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of how far ahead of the writer <code>StopReader</code> reads.
+ */
+public class StopReaderTest {
+
+    @Test
+    public void everyStopAndPictureComesOutInOrder() {
+        CountingSource source = new CountingSource(new int[]{2, 0, 3, 0, 0, 1});
+        StopReader reader = new StopReader(source, new ExportOptions());
+        Iterator<Picture> pictures = reader.pictures();
+
+        List<Long> fed = new ArrayList<>();
+        while (pictures.hasNext())
+            fed.add(pictures.next().getUnixTime());
+        List<Long> written = new ArrayList<>();
+        for (StopReader.ReadStop stop = reader.next(); stop != null; stop = reader.next()) {
+            for (Picture picture : stop.stop.getPictures())
+                written.add(picture.getUnixTime());
+        }
+        assertEquals(written, fed);
+        assertEquals(6, source.read);
+    }
+
+    @Test
+    public void picturesNeverReadMoreThanMaxAheadStops() {
+        //a picture, then a long run of Stops without any, then another picture
+        int[] pictures = new int[10 * StopReader.MAX_AHEAD];
+        pictures[0] = 1;
+        pictures[pictures.length - 1] = 1;
+        CountingSource source = new CountingSource(pictures);
+        StopReader reader = new StopReader(source, new ExportOptions());
+        Iterator<Picture> fed = reader.pictures();
+
+        assertTrue(fed.hasNext());
+        fed.next();
+        assertFalse(fed.hasNext()); //not yet: the next picture is too far ahead
+        assertTrue(source.read <= StopReader.MAX_AHEAD + 1);
+
+        //the writer catching up lets the pictures read further
+        for (int i = 0; i < pictures.length - StopReader.MAX_AHEAD; i++)
+            assertNotNull(reader.next());
+        assertTrue(fed.hasNext());
+        assertEquals(pictures.length, source.read);
+    }
+
+    /**
+     * Stops with the given numbers of pictures, counting how many have been read.
+     */
+    private static class CountingSource implements StopSource {
+
+        private final int[] pictures;
+        int read;
+
+        CountingSource(int[] pictures) {
+            this.pictures = pictures;
+        }
+
+        @Override
+        public Notebook getNotebook() {
+            return new Notebook(1, "Notebook");
+        }
+
+        @Override
+        public int getStopCount() {
+            return pictures.length;
+        }
+
+        @Override
+        public int getPictureCount() {
+            return getPictureCountBefore(pictures.length);
+        }
+
+        @Override
+        public int getPictureCountBefore(int index) {
+            int count = 0;
+            for (int i = 0; i < index; i++)
+                count += pictures[i];
+            return count;
+        }
+
+        @Override
+        public long getTextLength() {
+            return 4 * pictures.length;
+        }
+
+        @Override
+        public long getStopIdAt(int index) {
+            return index + 1;
+        }
+
+        @Override
+        public void start(int first) {
+            read = first;
+        }
+
+        @Override
+        public StopWithPictures next() {
+            if (read >= pictures.length)
+                return null;
+            StopWithPictures stop = new StopWithPictures();
+            stop.setStop(new Stop(read + 1, "Stop", 1, "", 0, 0));
+            List<Picture> list = new ArrayList<>();
+            for (int i = 0; i < pictures[read]; i++)
+                list.add(new Picture(1000 * (read + 1) + i, "/none/" + read + "_" + i + ".jpg", ""));
+            stop.setPictures(list);
+            read++;
+            return stop;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}